@@ -18,12 +18,12 @@
 
 package brunonova.drmips.android;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
-import java.io.InputStreamReader;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 
+import brunonova.drmips.simulator.BinaryCPUFile;
 import brunonova.drmips.simulator.CPU;
 
 import android.app.Application;
@@ -31,6 +31,7 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager.NameNotFoundException;
+import android.content.res.Resources;
 import android.os.Build;
 import android.os.Environment;
 import android.util.Log;
@@ -78,6 +79,10 @@ public class DrMIPS extends Application {
 	public static final String OVERLAYED_SHOW_NAMES_PREF = "overlayed_show_names";
 	/** The key of the overlayed show for all components preference. */
 	public static final String OVERLAYED_SHOW_FOR_ALL_PREF = "overlayed_show_for_all";
+	/** The maximum number of clock cycles executed by the "run" action. */
+	public static final long MAX_EXECUTION_CYCLES = 100000;
+	/** The maximum time spent by the "run" action, in milliseconds. */
+	public static final long MAX_EXECUTION_TIME = 30000;
 	/** The default format with which the registers are displayed. */
 	public static final int DEFAULT_REGISTER_FORMAT = Util.DECIMAL_FORMAT_INDEX;
 	/** The default format with which the datapath data is displayed. */
@@ -288,19 +293,37 @@ public class DrMIPS extends Application {
 	
 	/**
 	 * Copies the raw file with the given id to the specified path.
+	 * <p>The precompiled binary version of the file is also copied, if it was
+	 * packaged, so that the CPU is loaded from it instead of parsing the JSON file.</p>
 	 * @param resource The resource identifier of the file to copy.
 	 * @param dest The File representation with the full path to the destination (including the file name).
 	 */
 	private void copyResourceFile(int resource, File dest) {
-		BufferedReader in = null;
-		BufferedWriter out = null;
-		String line;
+		copyRawFile(resource, dest);
+
+		Resources res = getContext().getResources();
+		int binary = res.getIdentifier(res.getResourceEntryName(resource) + "_bin", "raw", getPackageName());
+		if(binary != 0)
+			copyRawFile(binary, BinaryCPUFile.getBinaryFile(dest));
+	}
+
+	/**
+	 * Copies the raw file with the given id to the specified path, byte by byte
+	 * (the binary file checks the size and checksum of the JSON file).
+	 * @param resource The resource identifier of the file to copy.
+	 * @param dest The File representation with the full path to the destination (including the file name).
+	 */
+	private void copyRawFile(int resource, File dest) {
+		InputStream in = null;
+		OutputStream out = null;
+		byte[] buffer = new byte[8192];
+		int n;
 		
 		try {
-			in = new BufferedReader(new InputStreamReader(getContext().getResources().openRawResource(resource)));
-			out = new BufferedWriter(new FileWriter(dest));
-			while((line = in.readLine()) != null)
-				out.write(line + "\n");
+			in = getContext().getResources().openRawResource(resource);
+			out = new FileOutputStream(dest);
+			while((n = in.read(buffer)) != -1)
+				out.write(buffer, 0, n);
 		}
 		catch(Exception e) {
 			Log.e(getClass().getName(), "Failed to copy default file to " + dest.getAbsolutePath() + "!", e);
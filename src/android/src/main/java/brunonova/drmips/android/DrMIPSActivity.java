@@ -19,6 +19,8 @@
 package brunonova.drmips.android;
 
 import android.app.Activity;
+import android.app.ProgressDialog;
+import android.content.DialogInterface;
 import android.content.SharedPreferences;
 import android.graphics.Typeface;
 import android.os.Bundle;
@@ -50,6 +52,8 @@ import brunonova.drmips.android.dialogs.*;
 import brunonova.drmips.simulator.AssembledInstruction;
 import brunonova.drmips.simulator.CPU;
 import brunonova.drmips.simulator.Data;
+import brunonova.drmips.simulator.ExecutionResult;
+import brunonova.drmips.simulator.ExecutionTask;
 import brunonova.drmips.simulator.exceptions.*;
 import org.json.JSONException;
 
@@ -63,6 +67,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
 
 public class DrMIPSActivity extends Activity {
 	/** The file currently open (if <tt>null</tt> no file is open). */
@@ -79,6 +84,10 @@ public class DrMIPSActivity extends Activity {
 	private SpinnersListener spinnersListener = new SpinnersListener();
 	/** The datapath being shown. */
 	private Datapath datapath = null;
+	/** The execution started by <tt>run()</tt>, or <tt>null</tt> if no program is being executed. */
+	private ExecutionTask execution = null;
+	/** The dialog shown while a program is being executed. */
+	private ProgressDialog dlgExecution = null;
 	
 	private TabHost tabHost;
 	private EditText txtCode;
@@ -162,6 +171,26 @@ public class DrMIPSActivity extends Activity {
 		super.onSaveInstanceState(outState);
 	}
 	
+	@Override
+	protected void onDestroy() {
+		// Stop the execution, if any, so that the CPU can be used by the new activity
+		if(execution != null) {
+			ExecutionTask task = execution;
+			execution = null;
+			task.stop();
+			try {
+				task.getResult();
+			} catch(InterruptedException | ExecutionException ex) {
+				Log.e(getClass().getName(), "error executing the program", ex);
+			}
+		}
+		if(dlgExecution != null) {
+			dlgExecution.dismiss();
+			dlgExecution = null;
+		}
+		super.onDestroy();
+	}
+
 	@Override
 	public void onBackPressed() {
 		DlgConfirmExit.newInstance().show(getFragmentManager(), "confirm-exit-dialog");
@@ -751,16 +780,51 @@ public class DrMIPSActivity extends Activity {
 	}
 	
 	/**
-	 * Executes all the instructions at once.
+	 * Executes all the instructions, in a background thread.
+	 * <p>A dialog, that allows stopping the execution, is shown while the
+	 * program is being executed.</p>
 	 */
 	private void run() {
+		if(execution != null) return;
+		dlgExecution = new ProgressDialog(this);
+		dlgExecution.setMessage(getString(R.string.run));
+		dlgExecution.setIndeterminate(true);
+		dlgExecution.setCancelable(false);
+		dlgExecution.setButton(DialogInterface.BUTTON_NEGATIVE, getString(R.string.stop), new DialogInterface.OnClickListener() {
+			@Override
+			public void onClick(DialogInterface dialog, int which) {
+				if(execution != null) execution.stop();
+			}
+		});
+		dlgExecution.show();
+		execution = new ExecutionTask(getCPU(), DrMIPS.MAX_EXECUTION_CYCLES, DrMIPS.MAX_EXECUTION_TIME, new ExecutionHandler()).start();
+	}
+
+	/**
+	 * Called in the UI thread when the execution started by <tt>run()</tt> ends.
+	 * @param task The execution task.
+	 */
+	private void executionFinished(ExecutionTask task) {
+		ExecutionResult result;
 		try {
-			getCPU().executeAll();
-		}
-		catch(InfiniteLoopException e) {
-			Toast.makeText(this, getString(R.string.possible_infinite_loop).replace("#1", "" + CPU.EXECUTE_ALL_LIMIT_CYCLES), Toast.LENGTH_SHORT).show();
+			result = task.getResult();
+		} catch(InterruptedException | ExecutionException ex) {
+			throw new RuntimeException(ex);
+		} finally {
+			execution = null;
+			if(dlgExecution != null) {
+				dlgExecution.dismiss();
+				dlgExecution = null;
+			}
+			refreshValues();
 		}
-		refreshValues();
+
+		if(result.getStatus() == ExecutionResult.Status.INFINITE_LOOP)
+			Toast.makeText(this, getString(R.string.infinite_loop).replace("#1", "" + result.getLoopStartAddress()).replace("#2", "" + result.getLoopEndAddress()).replace("#3", "" + result.getLoopLength()), Toast.LENGTH_LONG).show();
+		else if(result.getStatus() == ExecutionResult.Status.CYCLE_LIMIT)
+			Toast.makeText(this, getString(R.string.possible_infinite_loop).replace("#1", "" + result.getCycles()), Toast.LENGTH_SHORT).show();
+		else if(result.getStatus() == ExecutionResult.Status.TIME_LIMIT)
+			Toast.makeText(this, getString(R.string.execution_time_limit).replace("#1", "" + result.getTime() / 1000), Toast.LENGTH_SHORT).show();
 	}
 	
 	/**
@@ -817,20 +881,15 @@ public class DrMIPSActivity extends Activity {
 			// Highlight instructions being executed
 			if(i == cpu.getPC().getCurrentInstructionIndex())
 				row.setBackgroundColor(Util.getThemeColor(this, getCPU().isPipeline() ? R.attr.ifColor : R.attr.instColor));
-			else if(cpu.isPipeline()) {
-				if(i == cpu.getIfIdReg().getCurrentInstructionIndex())
-					row.setBackgroundColor(Util.getThemeColor(this, R.attr.idColor));
-				else if(i == cpu.getIdExReg().getCurrentInstructionIndex())
-					row.setBackgroundColor(Util.getThemeColor(this, R.attr.exColor));
-				else if(i == cpu.getExMemReg().getCurrentInstructionIndex())
-					row.setBackgroundColor(Util.getThemeColor(this, R.attr.memColor));
-				else if(i == cpu.getMemWbReg().getCurrentInstructionIndex())
-					row.setBackgroundColor(Util.getThemeColor(this, R.attr.wbColor));
-				else
-					row.setBackgroundResource(0); // remove background color
-			}
-			else
+			else {
 				row.setBackgroundResource(0); // remove background color
+				for(int stage = 1; stage < cpu.getNumberOfStages(); stage++) {
+					if(i == cpu.getStageInstructionIndex(stage)) {
+						row.setBackgroundColor(Util.getStageColor(this, cpu.getStageRole(stage)));
+						break;
+					}
+				}
+			}
 		}
 		
 		tblAssembledCode.requestLayout();
@@ -1084,19 +1143,13 @@ public class DrMIPSActivity extends Activity {
 		TextView lbl;
 		
 		if(getCPU().isPipeline()) {
-			for(int i = 0; i < 5; i++) {
+			for(int i = 0; i < getCPU().getNumberOfStages(); i++) {
 				lbl = new TextView(this);
 				lbl.setGravity(Gravity.CENTER);
 				lbl.setMaxLines(1);
 				lbl.setWidth(0);
 				lbl.setEllipsize(TruncateAt.END);
-				switch (i) {
-					case 0: lbl.setBackgroundColor(Util.getThemeColor(this, R.attr.ifColor)); break;
-					case 1: lbl.setBackgroundColor(Util.getThemeColor(this, R.attr.idColor)); break;
-					case 2: lbl.setBackgroundColor(Util.getThemeColor(this, R.attr.exColor)); break;
-					case 3: lbl.setBackgroundColor(Util.getThemeColor(this, R.attr.memColor)); break;
-					case 4: lbl.setBackgroundColor(Util.getThemeColor(this, R.attr.wbColor)); break;
-				}
+				lbl.setBackgroundColor(Util.getStageColor(this, getCPU().getStageRole(i)));
 				lbl.setOnClickListener(new ExecTableOnClickListener());
 				tblExecRow.addView(lbl);
 			}
@@ -1122,13 +1175,8 @@ public class DrMIPSActivity extends Activity {
 	 */
 	private void refreshExecTableValues() {
 		CPU cpu = getCPU();
-		((TextView)tblExecRow.getChildAt(0)).setText(getInstructionInIndex(cpu.getPC().getCurrentInstructionIndex()));
-		if(cpu.isPipeline()) {
-			((TextView)tblExecRow.getChildAt(1)).setText(getInstructionInIndex(cpu.getIfIdReg().getCurrentInstructionIndex()));
-			((TextView)tblExecRow.getChildAt(2)).setText(getInstructionInIndex(cpu.getIdExReg().getCurrentInstructionIndex()));
-			((TextView)tblExecRow.getChildAt(3)).setText(getInstructionInIndex(cpu.getExMemReg().getCurrentInstructionIndex()));
-			((TextView)tblExecRow.getChildAt(4)).setText(getInstructionInIndex(cpu.getMemWbReg().getCurrentInstructionIndex()));
-		}
+		for(int i = 0; i < cpu.getNumberOfStages(); i++)
+			((TextView)tblExecRow.getChildAt(i)).setText(getInstructionInIndex(cpu.getStageInstructionIndex(i)));
 	}
 	
 	/**
@@ -1240,13 +1288,8 @@ public class DrMIPSActivity extends Activity {
 			AssembledInstruction i = null;
 			CPU cpu = getCPU();
 			
-			switch(index) {
-				case 0: i = cpu.getInstructionMemory().getInstruction(cpu.getPC().getCurrentInstructionIndex()); break;
-				case 1: if(cpu.isPipeline()) i = cpu.getInstructionMemory().getInstruction(cpu.getIfIdReg().getCurrentInstructionIndex()); break;
-				case 2: if(cpu.isPipeline()) i = cpu.getInstructionMemory().getInstruction(cpu.getIdExReg().getCurrentInstructionIndex()); break;
-				case 3: if(cpu.isPipeline()) i = cpu.getInstructionMemory().getInstruction(cpu.getExMemReg().getCurrentInstructionIndex()); break;
-				case 4: if(cpu.isPipeline()) i = cpu.getInstructionMemory().getInstruction(cpu.getMemWbReg().getCurrentInstructionIndex()); break;
-			}
+			if(index >= 0 && index < cpu.getNumberOfStages())
+				i = cpu.getInstructionMemory().getInstruction(cpu.getStageInstructionIndex(index));
 			
 			if(i != null) {
 				String msg = getString(R.string.type_x).replace("#1", i.getInstruction().getType().getId());
@@ -1281,4 +1324,32 @@ public class DrMIPSActivity extends Activity {
 			setSimulationControlsEnabled(false);
 		}
 	}
+
+	/**
+	 * Listener of the execution started by <tt>run()</tt>, that forwards the
+	 * notifications to the UI thread.
+	 */
+	private class ExecutionHandler implements ExecutionTask.Listener {
+		@Override
+		public void executionProgress(final ExecutionTask task, final long cycles) {
+			runOnUiThread(new Runnable() {
+				@Override
+				public void run() {
+					if(task == execution && dlgExecution != null)
+						dlgExecution.setMessage(getString(R.string.executing_cycles).replace("#1", "" + cycles));
+				}
+			});
+		}
+
+		@Override
+		public void executionFinished(final ExecutionTask task) {
+			runOnUiThread(new Runnable() {
+				@Override
+				public void run() {
+					if(task == execution)
+						DrMIPSActivity.this.executionFinished(task);
+				}
+			});
+		}
+	}
 }
@@ -22,6 +22,7 @@ import android.content.Context;
 import android.util.Log;
 import android.util.TypedValue;
 
+import brunonova.drmips.simulator.CPU;
 import brunonova.drmips.simulator.Data;
 
 /**
@@ -77,4 +78,20 @@ public class Util {
 			return 0; // return something in case of failure
 		}
 	}
+
+	/**
+	 * Returns the color of a pipeline stage for the current theme.
+	 * @param context The current Activity/Application context.
+	 * @param role The role of the stage (<tt>CPU.STAGE_IF/CPU.STAGE_ID/CPU.STAGE_EX/CPU.STAGE_MEM/CPU.STAGE_WB</tt>).
+	 * @return The color of the stage.
+	 */
+	public static int getStageColor(Context context, int role) {
+		switch(role) {
+			case CPU.STAGE_ID: return getThemeColor(context, R.attr.idColor);
+			case CPU.STAGE_EX: return getThemeColor(context, R.attr.exColor);
+			case CPU.STAGE_MEM: return getThemeColor(context, R.attr.memColor);
+			case CPU.STAGE_WB: return getThemeColor(context, R.attr.wbColor);
+			default: return getThemeColor(context, R.attr.ifColor);
+		}
+	}
 }
@@ -0,0 +1,57 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.benchmarks;
+
+import brunonova.drmips.simulator.CPU;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the assembler on a small program and on a huge program.
+ *
+ * @author Bruno Nova
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AssemblerBenchmark {
+	/** The size of the program. */
+	@Param({"small", "huge"})
+	public String program;
+
+	/** The CPU where the program is assembled. */
+	private CPU cpu;
+	/** The code of the program. */
+	private String code;
+
+	@Setup
+	public void setup() throws Exception {
+		cpu = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		code = program.equals("huge") ? Programs.HUGE : Programs.SMALL;
+	}
+
+	@Benchmark
+	public int assembleCode() throws Exception {
+		cpu.assembleCode(code);
+		return cpu.getInstructionMemory().getNumberOfInstructions();
+	}
+}
@@ -0,0 +1,70 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.benchmarks;
+
+import brunonova.drmips.simulator.CPU;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the loading of the bundled CPU files and the calculation of
+ * their performance (latencies and critical path).
+ *
+ * @author Bruno Nova
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CPUBenchmark {
+	/** The name of the CPU file, in the <tt>cpu</tt> directory. */
+	@Param({"unicycle", "unicycle-extended", "unicycle-no-jump", "unicycle-no-jump-branch",
+		"pipeline", "pipeline-extended", "pipeline-no-hazard-detection", "pipeline-only-forwarding"})
+	public String cpuName;
+
+	/** CPU loaded from the file, with a program assembled. */
+	private CPU cpu;
+
+	@Setup
+	public void setup() throws Exception {
+		cpu = CPU.createFromJSONFile(path());
+		cpu.assembleCode(Programs.NO_BRANCHES);
+	}
+
+	@Benchmark
+	public CPU createFromJSONFile() throws Exception {
+		return CPU.createFromJSONFile(path());
+	}
+
+	@Benchmark
+	public int calculatePerformance() {
+		cpu.calculatePerformance();
+		return cpu.getClockPeriod();
+	}
+
+	/**
+	 * Returns the path to the CPU file.
+	 * @return Path to the CPU file.
+	 */
+	private String path() {
+		return "cpu/" + cpuName + ".cpu";
+	}
+}
@@ -0,0 +1,69 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.benchmarks;
+
+import brunonova.drmips.simulator.Data;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the formatting of data values, done for every value displayed
+ * in the GUI after each clock cycle.
+ *
+ * @author Bruno Nova
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataBenchmark {
+	/** The size of the data, in bits. */
+	@Param({"5", "32"})
+	public int size;
+
+	/** The data to format. */
+	private Data data;
+
+	@Setup
+	public void setup() {
+		data = new Data(size, 0x12345678);
+	}
+
+	@Benchmark
+	public String toBinary() {
+		return data.toBinary();
+	}
+
+	@Benchmark
+	public String toOctal() {
+		return data.toOctal();
+	}
+
+	@Benchmark
+	public String toHexadecimal() {
+		return data.toHexadecimal();
+	}
+
+	@Benchmark
+	public String toDecimal() {
+		return data.toString();
+	}
+}
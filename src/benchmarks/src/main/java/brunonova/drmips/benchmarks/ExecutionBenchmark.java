@@ -0,0 +1,82 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.benchmarks;
+
+import brunonova.drmips.simulator.CPU;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks the execution of clock cycles and the restoration of previous
+ * cycles ("step back") in each type of CPU.
+ *
+ * @author Bruno Nova
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExecutionBenchmark {
+	/** The number of cycles executed and then restored in each invocation of <tt>restorePreviousCycle</tt>. */
+	private static final int RESTORED_CYCLES = 1000;
+
+	/** The name of the CPU file, in the <tt>cpu</tt> directory. */
+	@Param({"unicycle", "pipeline", "unicycle-extended", "pipeline-extended"})
+	public String cpuName;
+
+	/** CPU running a program that never ends, without history. */
+	private CPU cpu;
+	/** CPU running a program that never ends, with history (to step back). */
+	private CPU cpuWithHistory;
+
+	@Setup
+	public void setup() throws Exception {
+		cpu = CPU.createFromJSONFile("cpu/" + cpuName + ".cpu");
+		cpu.assembleCode(Programs.LOOP);
+		cpu.setHistoryEnabled(false); // the program never ends
+		cpuWithHistory = CPU.createFromJSONFile("cpu/" + cpuName + ".cpu");
+		cpuWithHistory.assembleCode(Programs.LOOP);
+	}
+
+	/**
+	 * Executes the cycles to be restored by <tt>restorePreviousCycle</tt>.
+	 */
+	@Setup(Level.Invocation)
+	public void executeCyclesToRestore() {
+		cpuWithHistory.resetToFirstCycle();
+		for(int i = 0; i < RESTORED_CYCLES; i++)
+			cpuWithHistory.executeCycle();
+	}
+
+	@Benchmark
+	public int executeCycle() {
+		cpu.executeCycle();
+		return cpu.getPC().getAddress().getValue();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(RESTORED_CYCLES)
+	public int restorePreviousCycle() {
+		for(int i = 0; i < RESTORED_CYCLES; i++)
+			cpuWithHistory.restorePreviousCycle();
+		return cpuWithHistory.getPC().getAddress().getValue();
+	}
+}
@@ -0,0 +1,395 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.benchmarks;
+
+import brunonova.drmips.simulator.CPU;
+import brunonova.drmips.simulator.CPUTemplate;
+import brunonova.drmips.simulator.exceptions.SyntaxErrorException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONStringer;
+
+/**
+ * Runs each program of the workload corpus on every compatible CPU and
+ * compares the results with a stored baseline.
+ *
+ * <p>For each workload and CPU, the simulated metrics (clock cycles,
+ * instructions, CPI and execution time of the simulated CPU) and the speed of
+ * the simulator (simulated cycles per second of host time) are measured.
+ * The expected values of the registers of the workload are checked after each
+ * execution.</p>
+ *
+ * <p>A CPU is compatible with a workload if the workload assembles on it and
+ * computes the expected values (on pipelined CPUs without hazard detection or
+ * forwarding it may not). The incompatible CPUs are skipped, unless the
+ * baseline has results for them, in which case the wrong results are errors.</p>
+ *
+ * <p>The simulated metrics are deterministic and are compared with the
+ * baseline with <tt>--tolerance</tt> (exact by default), to catch unintended
+ * changes to the architecture of the CPUs. The speed depends on the host and
+ * is compared with <tt>--speed-tolerance</tt>, to catch performance
+ * regressions of the simulator; it is only compared if the baseline has it.</p>
+ *
+ * <p>Usage: <tt>MacroBenchmark --workloads DIR --cpus DIR [options]</tt>,
+ * run without arguments to see the options. The exit status is 1 if a
+ * workload failed or regressed.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class MacroBenchmark {
+	/** The names of the compared metrics, in the order of <tt>Result.values</tt>. */
+	private static final String[] METRICS = {"cycles", "instructions", "cpi", "execution_time", "cycles_per_second"};
+	/** The index of the speed metric, the only one that depends on the host. */
+	private static final int SPEED = 4;
+
+	/** The directory of the workloads. */
+	private File workloadsDirectory = null;
+	/** The directory of the CPU files. */
+	private File cpusDirectory = null;
+	/** The baseline to compare the results with, or <tt>null</tt>. */
+	private File baselineFile = null;
+	/** The file where the results are saved as a new baseline, or <tt>null</tt>. */
+	private File saveBaselineFile = null;
+	/** The tolerance of the simulated metrics, in percentage. */
+	private double tolerance = 0;
+	/** The tolerance of the speed of the simulator, in percentage. */
+	private double speedTolerance = 10;
+	/** The duration of the warm-up and of the measurement of the speed of each run, in milliseconds. */
+	private long measurementTime = 1000;
+	/** Whether the speed of the simulator is measured. */
+	private boolean measureSpeed = true;
+	/** The maximum number of clock cycles a workload can execute. */
+	private long maxCycles = 100000;
+
+	private MacroBenchmark() {
+	}
+
+	/**
+	 * Runs the workloads.
+	 * @param args The command line arguments.
+	 */
+	public static void main(String[] args) {
+		MacroBenchmark benchmark = new MacroBenchmark();
+		try {
+			benchmark.parseArguments(args);
+		}
+		catch(IllegalArgumentException ex) {
+			System.err.println(ex.getMessage());
+			printUsage();
+			System.exit(2);
+		}
+
+		try {
+			System.exit(benchmark.run() ? 0 : 1);
+		}
+		catch(IOException | JSONException ex) {
+			System.err.println("Error: " + ex.getMessage());
+			System.exit(2);
+		}
+	}
+
+	/**
+	 * Prints the usage information.
+	 */
+	private static void printUsage() {
+		System.err.println("Usage: MacroBenchmark --workloads DIR --cpus DIR [options]\n"
+			+ "  --baseline FILE          compare the results with this baseline\n"
+			+ "  --save-baseline FILE     save the results as a new baseline\n"
+			+ "  --tolerance PCT          tolerance of the simulated metrics (default: 0)\n"
+			+ "  --speed-tolerance PCT    tolerance of the simulator speed (default: 10)\n"
+			+ "  --time MS                warm-up and measurement time of each run (default: 1000)\n"
+			+ "  --max-cycles N           maximum clock cycles of each workload (default: 100000)\n"
+			+ "  --no-speed               don't measure the speed of the simulator");
+	}
+
+	/**
+	 * Parses the command line arguments.
+	 * @param args The arguments.
+	 * @throws IllegalArgumentException If an argument is invalid.
+	 */
+	private void parseArguments(String[] args) throws IllegalArgumentException {
+		for(int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if(arg.equals("--no-speed")) {
+				measureSpeed = false;
+				continue;
+			}
+			if(i + 1 >= args.length)
+				throw new IllegalArgumentException("Missing value of " + arg + "!");
+			String value = args[++i];
+			try {
+				switch(arg) {
+					case "--workloads": workloadsDirectory = new File(value); break;
+					case "--cpus": cpusDirectory = new File(value); break;
+					case "--baseline": baselineFile = new File(value); break;
+					case "--save-baseline": saveBaselineFile = new File(value); break;
+					case "--tolerance": tolerance = Double.parseDouble(value); break;
+					case "--speed-tolerance": speedTolerance = Double.parseDouble(value); break;
+					case "--time": measurementTime = Long.parseLong(value); break;
+					case "--max-cycles": maxCycles = Long.parseLong(value); break;
+					default: throw new IllegalArgumentException("Unknown option " + arg + "!");
+				}
+			}
+			catch(NumberFormatException ex) {
+				throw new IllegalArgumentException("Invalid value of " + arg + ": " + value + "!");
+			}
+		}
+		if(workloadsDirectory == null || cpusDirectory == null)
+			throw new IllegalArgumentException("The workloads and CPUs directories are required!");
+	}
+
+	/**
+	 * Runs all the workloads on all the compatible CPUs, prints the results
+	 * and compares them with the baseline.
+	 * @return <tt>True</tt> if all the workloads succeeded without regressions.
+	 * @throws IOException If a file can't be read or written.
+	 * @throws JSONException If the baseline is malformed.
+	 */
+	private boolean run() throws IOException, JSONException {
+		Workload[] workloads = Workload.readAll(workloadsDirectory);
+		File[] cpuFiles = cpusDirectory.listFiles();
+		if(cpuFiles == null) throw new IOException("Cannot read the directory " + cpusDirectory + "!");
+		Arrays.sort(cpuFiles);
+		JSONObject baseline = baselineFile != null
+			? new JSONObject(new String(Files.readAllBytes(baselineFile.toPath()), StandardCharsets.UTF_8))
+			: null;
+
+		boolean ok = true;
+		List<Result> results = new ArrayList<>();
+		System.out.println(String.format(Locale.ROOT, "%-34s %10s %10s %7s %14s %14s  %s",
+			"workload/cpu", "cycles", "instr", "CPI", "time (ps)", "cycles/s", "status"));
+		for(Workload workload: workloads) {
+			for(File cpuFile: cpuFiles) {
+				if(!cpuFile.getName().endsWith("." + CPU.FILENAME_EXTENSION)) continue;
+				Result result;
+				try {
+					result = run(workload, cpuFile);
+				}
+				catch(Exception ex) {
+					System.out.println(String.format("%-34s %s", key(workload, cpuFile), "ERROR: " + ex.getMessage()));
+					ok = false;
+					continue;
+				}
+				if(result == null) continue; // doesn't assemble on the CPU
+
+				String status;
+				if(result.error != null) {
+					if(baseline != null && baseline.has(result.key)) {
+						status = "WRONG RESULT: " + result.error;
+						ok = false;
+					}
+					else
+						status = "incompatible: " + result.error;
+				}
+				else {
+					status = baseline != null ? compare(result, baseline.optJSONObject(result.key)) : "ok";
+					if(status.startsWith("REGRESSION")) ok = false;
+					results.add(result);
+				}
+				System.out.println(String.format(Locale.ROOT, "%-34s %10d %10d %7.3f %14d %14s  %s", result.key,
+					(long)result.values[0], (long)result.values[1], result.values[2], (long)result.values[3],
+					measureSpeed && result.error == null ? String.format(Locale.ROOT, "%.0f", result.values[SPEED]) : "-", status));
+			}
+		}
+
+		if(saveBaselineFile != null) {
+			try(Writer out = new OutputStreamWriter(Files.newOutputStream(saveBaselineFile.toPath()), StandardCharsets.UTF_8)) {
+				writeBaseline(results, out);
+			}
+		}
+		return ok;
+	}
+
+	/**
+	 * Runs a workload on a CPU.
+	 * @param workload The workload.
+	 * @param cpuFile The CPU file.
+	 * @return The result, or <tt>null</tt> if the workload doesn't assemble on the CPU.
+	 * @throws Exception If the CPU can't be loaded.
+	 */
+	private Result run(Workload workload, File cpuFile) throws Exception {
+		CPUTemplate template = CPUTemplate.getTemplate(cpuFile.getPath());
+		CPU cpu = load(template, workload);
+		if(cpu == null) return null;
+		long cycles = execute(cpu, maxCycles);
+		Result result = new Result(key(workload, cpuFile), cpu, cycles < 0 ? "cycle limit reached" : workload.check(cpu));
+
+		if(measureSpeed && result.error == null) {
+			measureSpeed(template, workload); // warm-up
+			result.values[SPEED] = measureSpeed(template, workload);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a CPU and assembles a workload on it.
+	 * @param template The template of the CPU.
+	 * @param workload The workload.
+	 * @return The CPU, or <tt>null</tt> if the workload doesn't assemble on it.
+	 * @throws Exception If the CPU can't be created.
+	 */
+	private static CPU load(CPUTemplate template, Workload workload) throws Exception {
+		CPU cpu = template.createCPU();
+		cpu.setHistoryEnabled(false);
+		try {
+			cpu.assembleCode(workload.getCode());
+		}
+		catch(SyntaxErrorException ex) { // unsupported instructions
+			return null;
+		}
+		return cpu;
+	}
+
+	/**
+	 * Executes the program of a CPU until the end.
+	 * @param cpu The CPU.
+	 * @param maxCycles The maximum number of cycles to execute.
+	 * @return The number of executed cycles, or -1 if <tt>maxCycles</tt> was reached.
+	 */
+	private static long execute(CPU cpu, long maxCycles) {
+		long cycles = 0;
+		while(!cpu.isProgramFinished()) {
+			if(++cycles > maxCycles) return -1;
+			cpu.executeCycle();
+		}
+		return cycles;
+	}
+
+	/**
+	 * Measures the speed of the simulator executing a workload repeatedly.
+	 * <p>Only the execution is timed, not the creation of the CPU and the
+	 * assembling of the code.</p>
+	 * @param template The template of the CPU.
+	 * @param workload The workload.
+	 * @return The number of simulated clock cycles per second.
+	 * @throws Exception If the CPU can't be created.
+	 */
+	private double measureSpeed(CPUTemplate template, Workload workload) throws Exception {
+		long totalCycles = 0, totalTime = 0;
+		do {
+			CPU cpu = load(template, workload);
+			long start = System.nanoTime();
+			totalCycles += execute(cpu, maxCycles);
+			totalTime += System.nanoTime() - start;
+		} while(totalTime < measurementTime * 1000000L);
+		return totalCycles * 1e9 / totalTime;
+	}
+
+	/**
+	 * Compares a result with its baseline.
+	 * @param result The result.
+	 * @param baseline The baseline of the same workload and CPU, or <tt>null</tt>.
+	 * @return <tt>"ok"</tt>, or a description of the regressions.
+	 */
+	private String compare(Result result, JSONObject baseline) {
+		if(baseline == null) return "ok (no baseline)";
+		StringBuilder regressions = new StringBuilder();
+		for(int i = 0; i < METRICS.length; i++) {
+			if(!baseline.has(METRICS[i])) continue;
+			double expected = baseline.optDouble(METRICS[i]);
+			double value = result.values[i];
+			boolean regressed;
+			if(i == SPEED) // only slower is a regression
+				regressed = measureSpeed && value < expected * (1 - speedTolerance / 100);
+			else
+				regressed = Math.abs(value - expected) > Math.abs(expected) * tolerance / 100 + 1e-9;
+			if(regressed) {
+				regressions.append(regressions.length() == 0 ? "REGRESSION: " : ", ")
+					.append(String.format(Locale.ROOT, "%s %.4g (baseline %.4g)", METRICS[i], value, expected));
+			}
+		}
+		return regressions.length() == 0 ? "ok" : regressions.toString();
+	}
+
+	/**
+	 * Writes the results as a baseline (a JSON object with the metrics of each workload and CPU).
+	 * <p>Each workload and CPU is written in its own line, so that the
+	 * differences between baselines are easy to read.</p>
+	 * @param results The results.
+	 * @param out The output.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private void writeBaseline(List<Result> results, Writer out) throws IOException {
+		try {
+			out.write('{');
+			for(int i = 0; i < results.size(); i++) {
+				Result r = results.get(i);
+				JSONStringer json = new JSONStringer();
+				json.object();
+				json.key(METRICS[0]).value((long)r.values[0]);
+				json.key(METRICS[1]).value((long)r.values[1]);
+				json.key(METRICS[2]).value(r.values[2]);
+				json.key(METRICS[3]).value((long)r.values[3]);
+				if(measureSpeed)
+					json.key(METRICS[SPEED]).value(Math.round(r.values[SPEED]));
+				json.endObject();
+				out.write((i > 0 ? ",\n " : "\n ") + JSONObject.quote(r.key) + ": " + json.toString());
+			}
+			out.write("\n}\n");
+		} catch(JSONException ex) {
+			throw new IOException(ex);
+		}
+	}
+
+	/**
+	 * Returns the key of a workload and CPU in the results and baselines.
+	 * @param workload The workload.
+	 * @param cpuFile The CPU file.
+	 * @return The key (<tt>workload/cpu</tt>).
+	 */
+	private static String key(Workload workload, File cpuFile) {
+		String name = cpuFile.getName();
+		return workload.getName() + "/" + name.substring(0, name.lastIndexOf('.'));
+	}
+
+	/**
+	 * The result of running a workload on a CPU.
+	 */
+	private static final class Result {
+		/** The key of the workload and CPU (<tt>workload/cpu</tt>). */
+		private final String key;
+		/** The values of the metrics, in the order of <tt>METRICS</tt>. */
+		private final double[] values;
+		/** The description of the wrong result, or <tt>null</tt> if correct. */
+		private String error;
+
+		/**
+		 * Constructor.
+		 * @param key The key of the workload and CPU.
+		 * @param cpu The CPU after executing the workload.
+		 * @param error The description of the wrong result, or <tt>null</tt>.
+		 */
+		private Result(String key, CPU cpu, String error) {
+			this.key = key;
+			this.values = new double[] {cpu.getNumberOfExecutedCycles(), cpu.getNumberOfExecutedInstructions(),
+				Math.round(cpu.getCPI() * 10000.0) / 10000.0, cpu.getExecutionTime(), 0};
+			this.error = error;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.benchmarks;
+
+/**
+ * The programs assembled and executed by the benchmarks.
+ *
+ * @author Bruno Nova
+ */
+final class Programs {
+	/** Short program that never ends, with loads, stores, ALU operations and branches. */
+	static final String LOOP = ".data\n"
+		+ "values: .word 1, 2, 3, 4, 5, 6, 7, 8\n"
+		+ ".text\n"
+		+ "start: la $t0, values\n"
+		+ "addi $t1, $zero, 8\n"
+		+ "add $t2, $zero, $zero\n"
+		+ "loop: lw $t3, 0($t0)\n"
+		+ "add $t2, $t2, $t3\n"
+		+ "sw $t2, 0($t0)\n"
+		+ "addi $t0, $t0, 4\n"
+		+ "addi $t1, $t1, -1\n"
+		+ "beq $t1, $zero, start\n"
+		+ "slt $t4, $t2, $t3\n"
+		+ "or $t5, $t4, $t2\n"
+		+ "b loop\n";
+
+	/** Program without jumps or branches, supported by all the bundled CPUs. */
+	static final String NO_BRANCHES = "lw $t0, 0($zero)\n"
+		+ "add $t1, $t0, $t0\n"
+		+ "sw $t1, 4($zero)\n"
+		+ "and $t2, $t1, $t0\n";
+
+	/** Small program, typical of the ones written by students. */
+	static final String SMALL = ".data\n"
+		+ "n: .word 10\n"
+		+ "result: .word 0\n"
+		+ ".text\n"
+		+ "lw $t0, n($zero)\n"
+		+ "li $t1, 1 # result\n"
+		+ "loop: beq $t0, $zero, end\n"
+		+ "add $t1, $t1, $t1\n"
+		+ "subi $t0, $t0, 1\n"
+		+ "b loop\n"
+		+ "end: sw $t1, result($zero)\n";
+
+	/** Huge program, with <tt>HUGE_BLOCKS</tt> blocks of code with labels and pseudo-instructions. */
+	static final String HUGE;
+	/** The number of blocks of code of the huge program. */
+	static final int HUGE_BLOCKS = 2000;
+
+	static {
+		StringBuilder code = new StringBuilder(".data\n");
+		for(int i = 0; i < HUGE_BLOCKS / 8; i++)
+			code.append("data").append(i).append(": .word ").append(i).append(", ").append(-i).append('\n');
+		code.append(".text\n");
+		for(int i = 0; i < HUGE_BLOCKS; i++) {
+			code.append("block").append(i).append(": # block ").append(i).append('\n')
+				.append("li $t0, ").append(i % 1000).append('\n')
+				.append("lw $t1, data").append(i % (HUGE_BLOCKS / 8)).append("($zero)\n")
+				.append("add $t2, $t0, $t1\n")
+				.append("move $t3, $t2\n")
+				.append("bge $t3, $t0, block").append((i + 1) % HUGE_BLOCKS).append('\n')
+				.append("sw $t3, 0($sp)\n")
+				.append("nor $t4, $t3, $t2\n")
+				.append("b block").append((i * 7) % HUGE_BLOCKS).append('\n');
+		}
+		HUGE = code.toString();
+	}
+
+	private Programs() {
+	}
+}
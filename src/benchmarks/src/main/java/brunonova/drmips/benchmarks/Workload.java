@@ -0,0 +1,121 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.benchmarks;
+
+import brunonova.drmips.simulator.CPU;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A program of the workload corpus, with the expected values of some
+ * registers at the end of its execution.
+ *
+ * <p>The expected values are written in comments of the code, like:</p>
+ * <pre># expect $v0 1</pre>
+ * <p>They are checked after every execution, so that a faster but broken
+ * simulator doesn't go unnoticed.</p>
+ *
+ * @author Bruno Nova
+ */
+final class Workload {
+	/** Pattern of the comments with the expected values of registers. */
+	private static final Pattern EXPECT_PATTERN = Pattern.compile("^\\s*#\\s*expect\\s+(\\$\\w+)\\s+(-?\\d+)\\s*$");
+
+	/** The name of the workload (file name without extension). */
+	private final String name;
+	/** The code. */
+	private final String code;
+	/** The expected values of the registers, by register name. */
+	private final Map<String, Integer> expected = new LinkedHashMap<>();
+
+	/**
+	 * Reads a workload from an assembly file.
+	 * @param file The file.
+	 * @throws IOException If the file can't be read.
+	 */
+	Workload(File file) throws IOException {
+		String fileName = file.getName();
+		name = fileName.lastIndexOf('.') > 0 ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+		code = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		for(String line: code.split("\\r?\\n")) {
+			Matcher m = EXPECT_PATTERN.matcher(line);
+			if(m.matches())
+				expected.put(m.group(1), Integer.parseInt(m.group(2)));
+		}
+	}
+
+	/**
+	 * Reads all the workloads (<tt>.asm</tt> files) in a directory.
+	 * @param directory The directory.
+	 * @return The workloads, sorted by name.
+	 * @throws IOException If the directory or a file can't be read.
+	 */
+	static Workload[] readAll(File directory) throws IOException {
+		File[] files = directory.listFiles();
+		if(files == null) throw new IOException("Cannot read the directory " + directory + "!");
+		Arrays.sort(files);
+		int count = 0;
+		Workload[] workloads = new Workload[files.length];
+		for(File f: files) {
+			if(f.isFile() && f.getName().endsWith(".asm"))
+				workloads[count++] = new Workload(f);
+		}
+		return Arrays.copyOf(workloads, count);
+	}
+
+	/**
+	 * Returns the name of the workload.
+	 * @return The name (file name without extension).
+	 */
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the code of the workload.
+	 * @return The assembly code.
+	 */
+	String getCode() {
+		return code;
+	}
+
+	/**
+	 * Checks the values of the registers after the workload was executed.
+	 * @param cpu The CPU where the workload was executed.
+	 * @return A description of the first wrong value, or <tt>null</tt> if all are correct.
+	 */
+	String check(CPU cpu) {
+		for(Map.Entry<String, Integer> e: expected.entrySet()) {
+			int index = cpu.getRegisterIndex(e.getKey());
+			if(index < 0)
+				return "unknown register " + e.getKey();
+			int value = cpu.getRegBank().getRegisterValue(index);
+			if(value != e.getValue())
+				return e.getKey() + " = " + value + " (expected " + e.getValue() + ")";
+		}
+		return null;
+	}
+}
@@ -0,0 +1,46 @@
+# Bubble sort: sorts an array of 16 integers in ascending order, then checks
+# that it is sorted ($v0 = 1) and sums its elements ($v1).
+# expect $v0 1
+# expect $v1 382
+.data
+size:	.word 16
+array:	.word 34, -7, 12, 90, 3, 55, -21, 8, 0, 67, 19, -3, 42, 5, 77, 1
+
+.text
+	lw $s1, size($zero)
+	addi $s1, $s1, -1	# pairs to compare in the next pass
+outer:	beq $s1, $zero, check
+	la $t0, array
+	move $t1, $s1
+	li $t5, 0		# whether elements were swapped in this pass
+inner:	lw $t2, 0($t0)
+	lw $t3, 4($t0)
+	slt $t4, $t3, $t2
+	beq $t4, $zero, noswap
+	sw $t3, 0($t0)
+	sw $t2, 4($t0)
+	li $t5, 1
+noswap:	addi $t0, $t0, 4
+	addi $t1, $t1, -1
+	beq $t1, $zero, passend
+	b inner
+passend: beq $t5, $zero, check	# no swaps: already sorted
+	addi $s1, $s1, -1
+	b outer
+
+check:	lw $t1, size($zero)	# check that the array is sorted and sum it
+	la $t0, array
+	li $v0, 1
+	lw $v1, 0($t0)
+	addi $t1, $t1, -1
+verify:	beq $t1, $zero, end
+	lw $t2, 0($t0)
+	lw $t3, 4($t0)
+	add $v1, $v1, $t3
+	slt $t4, $t3, $t2
+	beq $t4, $zero, ok
+	li $v0, 0
+ok:	addi $t0, $t0, 4
+	addi $t1, $t1, -1
+	b verify
+end:
@@ -0,0 +1,44 @@
+# Checksum: computes the Adler-32 checksum of 80 bytes (stored one per word),
+# 10 times over. The two halves of the checksum are in $v0 (A) and $v1 (B).
+# expect $v0 34720
+# expect $v1 62908
+.data
+mod:	.word 65521
+rounds:	.word 10
+size:	.word 80
+data:
+	.word 11, 48, 85, 122, 159, 196, 233, 14, 51, 88
+	.word 125, 162, 199, 236, 17, 54, 91, 128, 165, 202
+	.word 239, 20, 57, 94, 131, 168, 205, 242, 23, 60
+	.word 97, 134, 171, 208, 245, 26, 63, 100, 137, 174
+	.word 211, 248, 29, 66, 103, 140, 177, 214, 251, 32
+	.word 69, 106, 143, 180, 217, 254, 35, 72, 109, 146
+	.word 183, 220, 1, 38, 75, 112, 149, 186, 223, 4
+	.word 41, 78, 115, 152, 189, 226, 7, 44, 81, 118
+
+.text
+	lw $s0, mod($zero)
+	lw $s1, rounds($zero)
+	li $v0, 1		# A
+	li $v1, 0		# B
+round:	beq $s1, $zero, end
+	la $t0, data
+	lw $t1, size($zero)
+byte:	beq $t1, $zero, nextround
+	lw $t2, 0($t0)
+	add $v0, $v0, $t2	# A = (A + byte) mod 65521
+	slt $t3, $v0, $s0
+	beq $t3, $zero, moda
+	b sumb
+moda:	sub $v0, $v0, $s0
+sumb:	add $v1, $v1, $v0	# B = (B + A) mod 65521
+	slt $t3, $v1, $s0
+	beq $t3, $zero, modb
+	b nextbyte
+modb:	sub $v1, $v1, $s0
+nextbyte: addi $t0, $t0, 4
+	addi $t1, $t1, -1
+	b byte
+nextround: addi $s1, $s1, -1
+	b round
+end:
@@ -0,0 +1,24 @@
+# Fibonacci: computes the first 45 Fibonacci numbers iteratively and stores
+# the first 20 in memory.
+# expect $s1 1134903170
+.data
+n:	.word 45
+fib:	.space 80
+
+.text
+	lw $t0, n($zero)	# numbers left to compute
+	li $s1, 0		# fib(i)
+	li $s0, 1		# fib(i+1)
+	la $t1, fib		# address of the next number to store
+	li $t2, 20		# numbers left to store
+loop:	beq $t0, $zero, end
+	beq $t2, $zero, next
+	sw $s1, 0($t1)
+	addi $t1, $t1, 4
+	addi $t2, $t2, -1
+next:	add $t3, $s1, $s0
+	move $s1, $s0
+	move $s0, $t3
+	addi $t0, $t0, -1
+	b loop
+end:
@@ -0,0 +1,58 @@
+# Matrix multiply: C = A x B, with 5x5 integer matrices (uses mul, from the
+# extended instruction set). Sums the elements of C ($v1) and its trace ($v0).
+# expect $v0 3
+# expect $v1 408
+.data
+n:	.word 5
+A:	.word 1, 2, 3, 4, 5
+	.word 6, 7, 8, 9, 10
+	.word -1, -2, -3, -4, -5
+	.word 2, 0, 2, 0, 2
+	.word 3, 1, 4, 1, 5
+B:	.word 5, 4, 3, 2, 1
+	.word 0, 1, 0, 1, 0
+	.word 2, -2, 2, -2, 2
+	.word 1, 3, 5, 7, 9
+	.word -3, 0, 3, 0, -3
+C:	.space 100
+
+.text
+	lw $s0, n($zero)
+	la $s1, A
+	la $s2, B
+	la $s3, C		# address of the next element of C
+	add $s4, $s0, $s0
+	add $s4, $s4, $s4	# size of a row, in bytes
+	li $v0, 0
+	li $v1, 0
+	li $t0, 0		# i
+rows:	beq $t0, $s0, end
+	li $t1, 0		# j
+cols:	beq $t1, $s0, nextrow
+	mul $t4, $t0, $s4
+	add $t4, $t4, $s1	# address of A[i][0]
+	add $t5, $t1, $t1
+	add $t5, $t5, $t5
+	add $t5, $t5, $s2	# address of B[0][j]
+	li $t2, 0		# k
+	li $t3, 0		# C[i][j]
+dot:	beq $t2, $s0, store
+	lw $t6, 0($t4)
+	lw $t7, 0($t5)
+	mul $t8, $t6, $t7
+	add $t3, $t3, $t8
+	addi $t4, $t4, 4
+	add $t5, $t5, $s4
+	addi $t2, $t2, 1
+	b dot
+store:	sw $t3, 0($s3)
+	addi $s3, $s3, 4
+	add $v1, $v1, $t3
+	beq $t0, $t1, diag
+	b nextcol
+diag:	add $v0, $v0, $t3
+nextcol: addi $t1, $t1, 1
+	b cols
+nextrow: addi $t0, $t0, 1
+	b rows
+end:
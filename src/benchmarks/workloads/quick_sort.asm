@@ -0,0 +1,72 @@
+# Quick sort: sorts an array of 24 integers in ascending order with an
+# iterative quick sort (Lomuto partition and a stack of ranges to sort), then
+# checks that it is sorted ($v0 = 1) and sums its elements ($v1).
+# expect $v0 1
+# expect $v1 580
+.data
+size:	.word 24
+array:	.word 53, -12, 87, 4, 29, -40, 66, 18, 0, 95, -7, 31
+	.word 72, -25, 11, 48, 3, -60, 84, 22, 9, -1, 57, 36
+stack:	.space 200
+
+.text
+	la $s0, array
+	la $s1, stack		# top of the stack of ranges (addresses of the first and last elements)
+	move $s2, $s1		# bottom of the stack
+	lw $t0, size($zero)
+	addi $t0, $t0, -1
+	add $t0, $t0, $t0
+	add $t0, $t0, $t0
+	add $t1, $s0, $t0	# address of the last element
+	sw $s0, 0($s1)
+	sw $t1, 4($s1)
+	addi $s1, $s1, 8
+pop:	beq $s1, $s2, check	# stack empty: sorted
+	addi $s1, $s1, -8
+	lw $a0, 0($s1)		# lo
+	lw $a1, 4($s1)		# hi
+	slt $t0, $a0, $a1
+	beq $t0, $zero, pop	# less than 2 elements
+	lw $t2, 0($a1)		# pivot = a[hi]
+	addi $t3, $a0, -4	# i = lo - 1
+	move $t4, $a0		# j = lo
+part:	beq $t4, $a1, partend
+	lw $t5, 0($t4)
+	slt $t6, $t2, $t5
+	beq $t6, $zero, lesseq	# a[j] <= pivot
+	b nextj
+lesseq:	addi $t3, $t3, 4	# swap a[++i] and a[j]
+	lw $t7, 0($t3)
+	sw $t5, 0($t3)
+	sw $t7, 0($t4)
+nextj:	addi $t4, $t4, 4
+	b part
+partend: addi $t3, $t3, 4	# p = i + 1, swap a[p] and a[hi]
+	lw $t7, 0($t3)
+	sw $t2, 0($t3)
+	sw $t7, 0($a1)
+	addi $t0, $t3, -4	# push (lo, p - 1)
+	sw $a0, 0($s1)
+	sw $t0, 4($s1)
+	addi $t0, $t3, 4	# push (p + 1, hi)
+	sw $t0, 8($s1)
+	sw $a1, 12($s1)
+	addi $s1, $s1, 16
+	b pop
+
+check:	lw $t1, size($zero)	# check that the array is sorted and sum it
+	la $t0, array
+	li $v0, 1
+	lw $v1, 0($t0)
+	addi $t1, $t1, -1
+verify:	beq $t1, $zero, end
+	lw $t2, 0($t0)
+	lw $t3, 4($t0)
+	add $v1, $v1, $t3
+	slt $t4, $t3, $t2
+	beq $t4, $zero, ok
+	li $v0, 0
+ok:	addi $t0, $t0, 4
+	addi $t1, $t1, -1
+	b verify
+end:
@@ -0,0 +1,39 @@
+# String search: counts the occurrences of a pattern in a text with the naive
+# algorithm ($v0). The characters are stored one per word, in ASCII.
+# expect $v0 9
+.data
+textlen: .word 41
+patlen:	.word 4
+text:
+	.word 97, 98, 97, 98, 99, 97, 98, 99, 97, 98
+	.word 97, 98, 97, 98, 99, 97, 98, 99, 97, 98
+	.word 99, 97, 98, 97, 98, 99, 97, 98, 97, 98
+	.word 97, 98, 99, 97, 98, 99, 97, 98, 99, 97
+	.word 98
+pattern: .word 97, 98, 99, 97
+
+.text
+	lw $s0, textlen($zero)
+	lw $s1, patlen($zero)
+	sub $s2, $s0, $s1
+	addi $s2, $s2, 1	# positions to try
+	la $s3, text		# address of the current position
+	li $v0, 0
+try:	beq $s2, $zero, end
+	move $t0, $s3
+	la $t1, pattern
+	move $t2, $s1		# characters left to compare
+cmp:	beq $t2, $zero, found
+	lw $t3, 0($t0)
+	lw $t4, 0($t1)
+	beq $t3, $t4, same
+	b next
+same:	addi $t0, $t0, 4
+	addi $t1, $t1, 4
+	addi $t2, $t2, -1
+	b cmp
+found:	addi $v0, $v0, 1
+next:	addi $s3, $s3, 4
+	addi $s2, $s2, -1
+	b try
+end:
@@ -0,0 +1,46 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * An execution of a program (<tt>CPU.executeAll(long, long, ExecutionListener)</tt>).
+ *
+ * @author Bruno Nova
+ */
+@Name("brunonova.drmips.Execution")
+@Label("Execution")
+@Description("An execution of a program until the end, a breakpoint or a limit")
+@Category({"DrMIPS", "Simulator"})
+class ExecutionEvent extends jdk.jfr.Event {
+	@Label("File")
+	String file;
+
+	@Label("Cycles")
+	long cycles;
+
+	@Label("Instructions")
+	long instructions;
+
+	@Label("Status")
+	String status;
+}
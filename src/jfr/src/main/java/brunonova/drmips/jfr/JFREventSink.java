@@ -0,0 +1,145 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.jfr;
+
+import brunonova.drmips.simulator.EventSink;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Emits the events of the simulator as JDK Flight Recorder events.
+ *
+ * <p>This sink is found automatically by
+ * {@link brunonova.drmips.simulator.SimulatorEvents} when this module is in
+ * the classpath and the JVM supports JFR. The events are recorded with a
+ * normal recording, like:</p>
+ * <pre>java -XX:StartFlightRecording=filename=drmips.jfr -jar DrMIPS.jar</pre>
+ * <p>When nothing is being recorded, <tt>begin*()</tt> return <tt>null</tt>
+ * after a cheap check, so the events have a negligible cost.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class JFREventSink implements EventSink {
+	/**
+	 * Creates the sink.
+	 * @throws IllegalStateException If the Flight Recorder isn't available in this JVM.
+	 */
+	public JFREventSink() {
+		if(!FlightRecorder.isAvailable()) // also fails early if jdk.jfr doesn't exist
+			throw new IllegalStateException("The JDK Flight Recorder is not available");
+	}
+
+	@Override
+	public Object beginCPULoad() {
+		CPULoadEvent event = new CPULoadEvent();
+		if(!event.isEnabled()) return null;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void commitCPULoad(Object event, String file, String phase) {
+		CPULoadEvent e = (CPULoadEvent)event;
+		e.end();
+		if(e.shouldCommit()) {
+			e.file = file;
+			e.phase = phase;
+			e.commit();
+		}
+	}
+
+	@Override
+	public Object beginAssembly() {
+		AssemblyEvent event = new AssemblyEvent();
+		if(!event.isEnabled()) return null;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void commitAssembly(Object event, String phase, int lines, int instructions, int errors) {
+		AssemblyEvent e = (AssemblyEvent)event;
+		e.end();
+		if(e.shouldCommit()) {
+			e.phase = phase;
+			e.lines = lines;
+			e.instructions = instructions;
+			e.errors = errors;
+			e.commit();
+		}
+	}
+
+	@Override
+	public Object beginExecution() {
+		ExecutionEvent event = new ExecutionEvent();
+		if(!event.isEnabled()) return null;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void commitExecution(Object event, String file, long cycles, long instructions, String status) {
+		ExecutionEvent e = (ExecutionEvent)event;
+		e.end();
+		if(e.shouldCommit()) {
+			e.file = file;
+			e.cycles = cycles;
+			e.instructions = instructions;
+			e.status = status;
+			e.commit();
+		}
+	}
+
+	@Override
+	public Object beginRestore() {
+		RestoreEvent event = new RestoreEvent();
+		if(!event.isEnabled()) return null;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void commitRestore(Object event, String operation, long fromCycle, long toCycle) {
+		RestoreEvent e = (RestoreEvent)event;
+		e.end();
+		if(e.shouldCommit()) {
+			e.operation = operation;
+			e.fromCycle = fromCycle;
+			e.toCycle = toCycle;
+			e.commit();
+		}
+	}
+
+	@Override
+	public Object beginGUIRefresh() {
+		GUIRefreshEvent event = new GUIRefreshEvent();
+		if(!event.isEnabled()) return null;
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public void commitGUIRefresh(Object event, String view, long cycle) {
+		GUIRefreshEvent e = (GUIRefreshEvent)event;
+		e.end();
+		if(e.shouldCommit()) {
+			e.view = view;
+			e.cycle = cycle;
+			e.commit();
+		}
+	}
+}
@@ -21,16 +21,24 @@ package brunonova.drmips.pc;
 import brunonova.drmips.simulator.AssembledInstruction;
 import brunonova.drmips.simulator.CPU;
 import brunonova.drmips.simulator.Data;
+import brunonova.drmips.simulator.HazardAnalyzer;
+import brunonova.drmips.simulator.InstructionProfile;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Font;
 import java.awt.event.MouseEvent;
 import javax.swing.JTable;
+import javax.swing.SwingConstants;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 
 /**
  * The table with the assembled instructions.
+ *
+ * <p>Besides the code, the table has "heat" columns with the profile of each
+ * instruction (executions, cycles, stalls caused, forwards received and
+ * flushes, see {@link InstructionProfile}). The background of these cells is
+ * more intense the higher the value is, relative to the other instructions.</p>
  * 
  * @author Bruno Nova
  */
@@ -41,6 +49,22 @@ public class AssembledCodeTable extends JTable {
 	private static final int ASSEMBLED_COLUMN_INDEX = 1;
 	/** The index of the code column. */
 	private static final int CODE_COLUMN_INDEX = 2;
+	/** The index of the first heat column (executions). */
+	private static final int EXECUTIONS_COLUMN_INDEX = 3;
+	/** The index of the cycles column. */
+	private static final int CYCLES_COLUMN_INDEX = 4;
+	/** The index of the stalls column. */
+	private static final int STALLS_COLUMN_INDEX = 5;
+	/** The index of the forwards column. */
+	private static final int FORWARDS_COLUMN_INDEX = 6;
+	/** The index of the flushes column. */
+	private static final int FLUSHES_COLUMN_INDEX = 7;
+	/** The number of columns. */
+	private static final int NUMBER_OF_COLUMNS = 8;
+	/** The preferred width of the heat columns. */
+	private static final int HEAT_COLUMN_WIDTH = 60;
+	/** The color of the hottest cells of the heat columns. */
+	private static final Color HEAT_COLOR = new Color(255, 96, 0);
 	
 	/** The model of the table. */
 	private DefaultTableModel model = null;
@@ -50,18 +74,22 @@ public class AssembledCodeTable extends JTable {
 	private CPU cpu = null;
 	/** The format of the data (<tt>Util.BINARYL_FORMAT_INDEX/Util.DECIMAL_FORMAT_INDEX/Util.HEXADECIMAL_FORMAT_INDEX</tt>). */
 	private int dataFormat = DrMIPS.DEFAULT_DATAPATH_DATA_FORMAT;
+	/** The maximum value of each heat column. */
+	private final int[] maxHeat = new int[NUMBER_OF_COLUMNS];
 
 	/**
 	 * Creates the assembled code table.
 	 */
 	public AssembledCodeTable() {
 		super();
-		model = new DefaultTableModel(0, 3);
+		model = new DefaultTableModel(0, NUMBER_OF_COLUMNS);
 		cellRenderer = new AssembledCodeTableCellRenderer();
 		setDefaultRenderer(Object.class, cellRenderer);
 		setModel(model);
 		setFont(new Font("Courier New", Font.BOLD, 12));
 		getTableHeader().setReorderingAllowed(false);
+		for(int i = EXECUTIONS_COLUMN_INDEX; i < NUMBER_OF_COLUMNS; i++)
+			getColumnModel().getColumn(i).setPreferredWidth(HEAT_COLUMN_WIDTH);
 	}
 	
 	/**
@@ -90,7 +118,7 @@ public class AssembledCodeTable extends JTable {
 		model.setRowCount(0);
 		for(int i = 0; i < cpu.getInstructionMemory().getNumberOfInstructions(); i++) {
 			instruction = cpu.getInstructionMemory().getInstruction(i);
-			data = new Object[3];
+			data = new Object[NUMBER_OF_COLUMNS];
 			data[0] = Util.formatDataAccordingToFormat(new Data(Data.DATA_SIZE, i * (Data.DATA_SIZE / 8)), format);
 			data[1] = Util.formatDataAccordingToFormat(instruction.getData(), format);
 			data[2] = instruction.getLineNumber() + ": ";
@@ -104,11 +132,33 @@ public class AssembledCodeTable extends JTable {
 	}
 	
 	/**
-	 * Refreshes the highlights.
+	 * Refreshes the highlights and the heat columns.
 	 */
 	public void refreshValues() {
+		InstructionProfile profile = cpu.getInstructionProfile();
+		for(int i = EXECUTIONS_COLUMN_INDEX; i < NUMBER_OF_COLUMNS; i++)
+			maxHeat[i] = 0;
+		for(int row = 0; row < model.getRowCount() && row < profile.getNumberOfInstructions(); row++) {
+			setHeat(row, EXECUTIONS_COLUMN_INDEX, profile.getExecutions(row));
+			setHeat(row, CYCLES_COLUMN_INDEX, profile.getCycles(row));
+			setHeat(row, STALLS_COLUMN_INDEX, profile.getStalls(row));
+			setHeat(row, FORWARDS_COLUMN_INDEX, profile.getForwards(row));
+			setHeat(row, FLUSHES_COLUMN_INDEX, profile.getFlushes(row));
+		}
 		repaint();
 	}
+
+	/**
+	 * Updates a cell of a heat column.
+	 * @param row The row.
+	 * @param column The heat column.
+	 * @param value The new value.
+	 */
+	private void setHeat(int row, int column, int value) {
+		if(!Integer.valueOf(value).equals(model.getValueAt(row, column)))
+			model.setValueAt(value, row, column);
+		if(value > maxHeat[column]) maxHeat[column] = value;
+	}
 	
 	/**
 	 * Translates the table.
@@ -117,17 +167,36 @@ public class AssembledCodeTable extends JTable {
 		getTableHeader().getColumnModel().getColumn(ADDRESS_COLUMN_INDEX).setHeaderValue(Lang.t("address"));
 		getTableHeader().getColumnModel().getColumn(ASSEMBLED_COLUMN_INDEX).setHeaderValue(Lang.t("assembled"));
 		getTableHeader().getColumnModel().getColumn(CODE_COLUMN_INDEX).setHeaderValue(Lang.t("code"));
+		getTableHeader().getColumnModel().getColumn(EXECUTIONS_COLUMN_INDEX).setHeaderValue(Lang.t("executions"));
+		getTableHeader().getColumnModel().getColumn(CYCLES_COLUMN_INDEX).setHeaderValue(Lang.t("cycles"));
+		getTableHeader().getColumnModel().getColumn(STALLS_COLUMN_INDEX).setHeaderValue(Lang.t("stalls"));
+		getTableHeader().getColumnModel().getColumn(FORWARDS_COLUMN_INDEX).setHeaderValue(Lang.t("forwards"));
+		getTableHeader().getColumnModel().getColumn(FLUSHES_COLUMN_INDEX).setHeaderValue(Lang.t("flushes"));
 	}
 
 	@Override
 	public String getToolTipText(MouseEvent event) {
-		AssembledInstruction i = cpu.getInstructionMemory().getInstruction(rowAtPoint(event.getPoint()));
+		int row = rowAtPoint(event.getPoint());
+		AssembledInstruction i = cpu.getInstructionMemory().getInstruction(row);
 		if(i != null) {
+			String tip;
 			switch(dataFormat) {
-				case Util.BINARY_FORMAT_INDEX: return "<html><tt><b>" + Lang.t("type_x", i.getInstruction().getType().getId()) + ": " + i.getInstruction().getMnemonic() + "</b> (" + i.toBinaryString() + ")</tt></html>";
-				case Util.HEXADECIMAL_FORMAT_INDEX: return "<html><tt><b>" + Lang.t("type_x", i.getInstruction().getType().getId()) + ": "  + i.getInstruction().getMnemonic() + "</b> (" + i.toHexadecimalString() + ")</tt></html>";	
-				default:return "<html><tt><b>" + Lang.t("type_x", i.getInstruction().getType().getId()) + ": "  + i.getInstruction().getMnemonic() + "</b> (" + i.toString() + ")</tt></html>";
+				case Util.BINARY_FORMAT_INDEX: tip = "<html><tt><b>" + Lang.t("type_x", i.getInstruction().getType().getId()) + ": " + i.getInstruction().getMnemonic() + "</b> (" + i.toBinaryString() + ")</tt>"; break;
+				case Util.HEXADECIMAL_FORMAT_INDEX: tip = "<html><tt><b>" + Lang.t("type_x", i.getInstruction().getType().getId()) + ": "  + i.getInstruction().getMnemonic() + "</b> (" + i.toHexadecimalString() + ")</tt>"; break;
+				default: tip = "<html><tt><b>" + Lang.t("type_x", i.getInstruction().getType().getId()) + ": "  + i.getInstruction().getMnemonic() + "</b> (" + i.toString() + ")</tt>";
+			}
+
+			// Add the predicted hazards of the instruction
+			HazardAnalyzer hazards = cpu.getHazardAnalyzer();
+			if(row < hazards.getNumberOfInstructions()) {
+				if(hazards.getStalls(row) > 0)
+					tip += "<br>" + Lang.t("predicted_stalls", hazards.getStalls(row));
+				if(hazards.getDataHazards(row) > 0)
+					tip += "<br><font color=\"red\">" + Lang.t("predicted_data_hazards", hazards.getDataHazards(row)) + "</font>";
+				if(hazards.isControlHazard(row))
+					tip += "<br><font color=\"red\">" + Lang.t("control_hazard") + "</font>";
 			}
+			return tip + "</html>";
 		}
 		else
 			return null;
@@ -143,26 +212,42 @@ public class AssembledCodeTable extends JTable {
 		public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
 			Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
 			Color background = javax.swing.UIManager.getDefaults().getColor("Table.background"); // get background color from look and feel
+			setHorizontalAlignment(column >= EXECUTIONS_COLUMN_INDEX ? SwingConstants.RIGHT : SwingConstants.LEFT);
 			
+			// Color the heat columns according to the value relative to the maximum
+			if(column >= EXECUTIONS_COLUMN_INDEX) {
+				int max = maxHeat[column];
+				float ratio = (max > 0 && value instanceof Integer) ? (Integer)value / (float)max : 0;
+				setBackground(blend(background, HEAT_COLOR, ratio));
+			}
 			// Highlight instructions being executed
-			if(row == cpu.getPC().getCurrentInstructionIndex())
+			else if(row == cpu.getPC().getCurrentInstructionIndex())
 				setBackground(cpu.isPipeline() ? Util.ifColor : Util.instColor);
-			else if(cpu.isPipeline()) {
-				if(row == cpu.getIfIdReg().getCurrentInstructionIndex())
-					setBackground(Util.idColor);
-				else if(row == cpu.getIdExReg().getCurrentInstructionIndex())
-					setBackground(Util.exColor);
-				else if(row == cpu.getExMemReg().getCurrentInstructionIndex())
-					setBackground(Util.memColor);
-				else if(row == cpu.getMemWbReg().getCurrentInstructionIndex())
-					setBackground(Util.wbColor);
-				else
-					setBackground(background);
-			}
-			else
+			else {
 				setBackground(background);
+				for(int stage = 1; stage < cpu.getNumberOfStages(); stage++) {
+					if(row == cpu.getStageInstructionIndex(stage)) {
+						setBackground(Util.getStageColor(cpu.getStageRole(stage)));
+						break;
+					}
+				}
+			}
 			
 			return c;
 		}
+
+		/**
+		 * Mixes two colors.
+		 * @param from The color when <tt>ratio</tt> is 0.
+		 * @param to The color when <tt>ratio</tt> is 1.
+		 * @param ratio The amount of the second color (0 to 1).
+		 * @return The mixed color.
+		 */
+		private Color blend(Color from, Color to, float ratio) {
+			return new Color(
+				(int)(from.getRed() + (to.getRed() - from.getRed()) * ratio),
+				(int)(from.getGreen() + (to.getGreen() - from.getGreen()) * ratio),
+				(int)(from.getBlue() + (to.getBlue() - from.getBlue()) * ratio));
+		}
 	}
 }
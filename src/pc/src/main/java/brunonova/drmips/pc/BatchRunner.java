@@ -0,0 +1,523 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.pc;
+
+import brunonova.drmips.simulator.CPU;
+import brunonova.drmips.simulator.CPUTemplate;
+import brunonova.drmips.simulator.ExecutionResult;
+import brunonova.drmips.simulator.InstructionProfile;
+import brunonova.drmips.simulator.LocalityAnalyzer;
+import brunonova.drmips.simulator.components.DataMemory;
+import brunonova.drmips.simulator.components.RegBank;
+import brunonova.drmips.simulator.trace.TraceRecorder;
+import brunonova.drmips.simulator.trace.VCDRecorder;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import org.json.JSONException;
+import org.json.JSONWriter;
+
+/**
+ * Runs programs on CPUs without the graphical interface.
+ *
+ * <p>Every code file is assembled and executed on every CPU file, in parallel
+ * on a work-stealing pool. Each CPU file is only parsed once, before the runs
+ * start (see {@link CPUTemplate}). The results are written in the order of the files,
+ * as JSON or CSV, with the statistics of the execution and digests (CRC-32)
+ * of the final values of the registers and of the data memory, so the
+ * results of different runs can be compared easily.</p>
+ *
+ * <p>Each run ends when the program finishes, enters an infinite loop or
+ * reaches the limit of clock cycles or of time, and its status tells which of
+ * these happened (<tt>finished</tt>, <tt>infinite_loop</tt>,
+ * <tt>cycle_limit</tt> or <tt>time_limit</tt>), or is <tt>error</tt> if the
+ * code couldn't be assembled or executed.</p>
+ *
+ * <p>Optionally, the execution of each run is recorded in a trace file (see
+ * {@link TraceRecorder}) and/or in a VCD waveform file (see
+ * {@link VCDRecorder}), and its per-instruction profile (see
+ * {@link InstructionProfile}) is written to a CSV file, in given
+ * directories. These files are named after the number of the run (its
+ * position in the results, starting at 1) and the names of its code and CPU
+ * files, so runs of files with the same name in different directories don't
+ * overwrite each other's files.</p>
+ *
+ * @author Bruno Nova
+ */
+public class BatchRunner {
+	/** The JSON output format. */
+	public static final String FORMAT_JSON = "json";
+	/** The CSV output format. */
+	public static final String FORMAT_CSV = "csv";
+
+	/** The names of the columns/fields of the results. */
+	private static final String[] FIELDS = {"code", "cpu", "status", "cycles", "instructions",
+		"cpi", "forwards", "stalls", "memory_stalls", "branches", "mispredictions", "misprediction_penalty",
+		"execution_time", "registers_digest", "memory_digest", "error"};
+
+	/** The code files to run. */
+	private final List<String> codeFiles;
+	/** The CPU files to run the code on. */
+	private final List<String> cpuFiles;
+	/** The number of parallel threads. */
+	private final int threads;
+	/** The directory where the execution traces are written, or <tt>null</tt>. */
+	private File traceDirectory = null;
+	/** The directory where the VCD waveform files are written, or <tt>null</tt>. */
+	private File vcdDirectory = null;
+	/** The directory where the instruction profiles are written, or <tt>null</tt>. */
+	private File profileDirectory = null;
+	/** The directory where the locality analyses are written, or <tt>null</tt>. */
+	private File localityDirectory = null;
+	/** The size of the blocks of the locality analyses, in bytes. */
+	private int localityBlockSize = LocalityAnalyzer.DEFAULT_BLOCK_SIZE;
+	/** Whether the instructions are scheduled to avoid pipeline hazards. */
+	private boolean scheduling = false;
+	/** The maximum number of clock cycles of each run (no limit if not positive). */
+	private long maxCycles = DrMIPS.DEFAULT_MAX_CYCLES;
+	/** The maximum execution time of each run, in milliseconds (no limit if not positive). */
+	private long maxTime = 0;
+
+	/**
+	 * Constructor.
+	 * @param codeFiles The code files to run.
+	 * @param cpuFiles The CPU files to run the code on.
+	 * @param threads The number of parallel threads.
+	 */
+	public BatchRunner(List<String> codeFiles, List<String> cpuFiles, int threads) {
+		this.codeFiles = codeFiles;
+		this.cpuFiles = cpuFiles;
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the directory where the execution traces are written.
+	 * <p>The trace of each run is written to a file named
+	 * <tt>&lt;run&gt;-&lt;code&gt;-&lt;cpu&gt;.trace</tt>.</p>
+	 * @param traceDirectory The directory, or <tt>null</tt> to not record traces.
+	 */
+	public void setTraceDirectory(File traceDirectory) {
+		this.traceDirectory = traceDirectory;
+	}
+
+	/**
+	 * Sets the directory where the VCD waveform files are written.
+	 * <p>The waveform of each run is written to a file named
+	 * <tt>&lt;run&gt;-&lt;code&gt;-&lt;cpu&gt;.vcd</tt>.</p>
+	 * @param vcdDirectory The directory, or <tt>null</tt> to not record waveforms.
+	 */
+	public void setVCDDirectory(File vcdDirectory) {
+		this.vcdDirectory = vcdDirectory;
+	}
+
+	/**
+	 * Sets the directory where the instruction profiles are written.
+	 * <p>The profile of each run is written to a CSV file named
+	 * <tt>&lt;run&gt;-&lt;code&gt;-&lt;cpu&gt;.csv</tt>.</p>
+	 * @param profileDirectory The directory, or <tt>null</tt> to not write profiles.
+	 */
+	public void setProfileDirectory(File profileDirectory) {
+		this.profileDirectory = profileDirectory;
+	}
+
+	/**
+	 * Sets the directory where the analyses of the locality of the memory accesses are written.
+	 * <p>The analysis of each run is written to a JSON file named
+	 * <tt>&lt;run&gt;-&lt;code&gt;-&lt;cpu&gt;.json</tt> (see {@link LocalityAnalyzer}).</p>
+	 * @param localityDirectory The directory, or <tt>null</tt> to not analyze the locality.
+	 */
+	public void setLocalityDirectory(File localityDirectory) {
+		this.localityDirectory = localityDirectory;
+	}
+
+	/**
+	 * Sets the size of the blocks of the analyses of the locality.
+	 * @param blockSize The size of the blocks, in bytes (a power of 2 not less than 4).
+	 */
+	public void setLocalityBlockSize(int blockSize) {
+		this.localityBlockSize = blockSize;
+	}
+
+	/**
+	 * Sets whether the instructions are scheduled to avoid pipeline hazards
+	 * (see {@link brunonova.drmips.simulator.HazardAnalyzer}).
+	 * @param scheduling Whether to schedule the instructions.
+	 */
+	public void setSchedulingEnabled(boolean scheduling) {
+		this.scheduling = scheduling;
+	}
+
+	/**
+	 * Sets the maximum number of clock cycles of each run.
+	 * @param maxCycles The maximum number of clock cycles (no limit if not positive).
+	 */
+	public void setMaxCycles(long maxCycles) {
+		this.maxCycles = maxCycles;
+	}
+
+	/**
+	 * Sets the maximum execution time of each run.
+	 * @param maxTime The maximum time, in milliseconds (no limit if not positive).
+	 */
+	public void setMaxTime(long maxTime) {
+		this.maxTime = maxTime;
+	}
+
+	/**
+	 * Runs all the combinations of code and CPU files.
+	 * @return The results, in the order of the code files and then of the CPU files.
+	 * @throws InterruptedException If interrupted while waiting for the results.
+	 */
+	public List<Result> run() throws InterruptedException {
+		// Parse each CPU file once (the runs on an invalid file fail with its error)
+		Map<String, Object> templates = new HashMap<>();
+		for(String cpu: cpuFiles) {
+			if(!templates.containsKey(cpu)) {
+				try {
+					templates.put(cpu, CPUTemplate.getTemplate(cpu));
+				} catch(Exception ex) {
+					templates.put(cpu, ex);
+				}
+			}
+		}
+
+		List<Callable<Result>> tasks = new ArrayList<>(codeFiles.size() * cpuFiles.size());
+		int run = 0;
+		for(String code: codeFiles) {
+			for(String cpu: cpuFiles) {
+				run++;
+				tasks.add(new RunTask(code, cpu, templates.get(cpu), outputFile(traceDirectory, run, code, cpu, "trace"), outputFile(vcdDirectory, run, code, cpu, "vcd"),
+					outputFile(profileDirectory, run, code, cpu, "csv"), outputFile(localityDirectory, run, code, cpu, "json"),
+					localityBlockSize, scheduling, maxCycles, maxTime));
+			}
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			List<Result> results = new ArrayList<>(tasks.size());
+			for(Future<Result> f: pool.invokeAll(tasks)) {
+				try {
+					results.add(f.get());
+				} catch(ExecutionException ex) {
+					throw new IllegalStateException(ex.getCause());
+				}
+			}
+			return results;
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Returns a file where the execution of a run is recorded.
+	 * @param directory The directory of the file, or <tt>null</tt> if not recorded.
+	 * @param run The number of the run (its position in the results, starting at 1).
+	 * @param codeFile The code file.
+	 * @param cpuFile The CPU file.
+	 * @param extension The extension of the file.
+	 * @return The file, or <tt>null</tt> if <tt>directory</tt> is <tt>null</tt>.
+	 */
+	private static File outputFile(File directory, int run, String codeFile, String cpuFile, String extension) {
+		if(directory == null) return null;
+		return new File(directory, run + "-" + baseName(codeFile) + "-" + baseName(cpuFile) + "." + extension);
+	}
+
+	/**
+	 * Returns the name of a file without the directory and the extension.
+	 * @param file The path of the file.
+	 * @return The base name.
+	 */
+	private static String baseName(String file) {
+		String name = new File(file).getName();
+		int dot = name.lastIndexOf('.');
+		return dot > 0 ? name.substring(0, dot) : name;
+	}
+
+	/**
+	 * Writes the results in the given format.
+	 * @param results The results to write.
+	 * @param format The format ({@link #FORMAT_JSON} or {@link #FORMAT_CSV}).
+	 * @param out The output.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public static void write(List<Result> results, String format, Writer out) throws IOException {
+		if(FORMAT_CSV.equals(format))
+			writeCSV(results, out);
+		else
+			writeJSON(results, out);
+		out.flush();
+	}
+
+	/**
+	 * Writes the results as a JSON array of objects.
+	 * @param results The results to write.
+	 * @param out The output.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private static void writeJSON(List<Result> results, Writer out) throws IOException {
+		try {
+			JSONWriter json = new JSONWriter(out);
+			json.array();
+			Object[] values;
+			for(Result r: results) {
+				values = r.getValues();
+				json.object();
+				for(int i = 0; i < FIELDS.length; i++) {
+					if(values[i] != null)
+						json.key(FIELDS[i]).value(values[i]);
+				}
+				json.endObject();
+			}
+			json.endArray();
+			out.write('\n');
+		} catch(JSONException ex) {
+			throw new IOException(ex);
+		}
+	}
+
+	/**
+	 * Writes the results as CSV, with a header line.
+	 * @param results The results to write.
+	 * @param out The output.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private static void writeCSV(List<Result> results, Writer out) throws IOException {
+		for(int i = 0; i < FIELDS.length; i++)
+			out.write((i > 0 ? "," : "") + FIELDS[i]);
+		out.write('\n');
+
+		Object[] values;
+		for(Result r: results) {
+			values = r.getValues();
+			for(int i = 0; i < values.length; i++) {
+				if(i > 0) out.write(',');
+				if(values[i] != null) out.write(escapeCSV(values[i].toString()));
+			}
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * Quotes a CSV field, if needed.
+	 * @param value The value of the field.
+	 * @return The escaped field.
+	 */
+	static String escapeCSV(String value) {
+		if(value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0)
+			return "\"" + value.replace("\"", "\"\"") + "\"";
+		else
+			return value;
+	}
+
+	/**
+	 * Returns the CRC-32 digest of the values of the registers.
+	 * @param regbank The register bank.
+	 * @return The digest, in hexadecimal.
+	 */
+	private static String registersDigest(RegBank regbank) {
+		CRC32 crc = new CRC32();
+		for(int i = 0; i < regbank.getNumberOfRegisters(); i++)
+			updateCRC(crc, regbank.getRegister(i).getValue());
+		return String.format("%08x", crc.getValue());
+	}
+
+	/**
+	 * Returns the CRC-32 digest of the values of the data memory.
+	 * @param memory The data memory, or <tt>null</tt>.
+	 * @return The digest, in hexadecimal, or <tt>null</tt> if there is no data memory.
+	 */
+	private static String memoryDigest(DataMemory memory) {
+		if(memory == null) return null;
+		CRC32 crc = new CRC32();
+		for(int i = 0; i < memory.getMemorySize(); i++)
+			updateCRC(crc, memory.getDataInIndex(i));
+		return String.format("%08x", crc.getValue());
+	}
+
+	/**
+	 * Adds a (big-endian) value to a checksum.
+	 * @param crc The checksum.
+	 * @param value The value.
+	 */
+	private static void updateCRC(CRC32 crc, int value) {
+		crc.update(value >>> 24);
+		crc.update(value >>> 16);
+		crc.update(value >>> 8);
+		crc.update(value);
+	}
+
+	/**
+	 * The result of running a code file on a CPU file.
+	 */
+	public static final class Result {
+		/** The values of the fields (<tt>null</tt> if not applicable), in the order of <tt>FIELDS</tt>. */
+		private final Object[] values;
+
+		/**
+		 * Constructor.
+		 * @param codeFile The code file.
+		 * @param cpuFile The CPU file.
+		 * @param cpu The CPU after the execution, or <tt>null</tt> if it failed.
+		 * @param status Why the execution ended, or <tt>null</tt> if it failed.
+		 * @param error The error message if it failed, or <tt>null</tt>.
+		 */
+		private Result(String codeFile, String cpuFile, CPU cpu, ExecutionResult.Status status, String error) {
+			if(cpu == null)
+				values = new Object[] {codeFile, cpuFile, "error", null, null, null, null, null, null, null, null, null, null, null, null, error};
+			else
+				values = new Object[] {codeFile, cpuFile, status.name().toLowerCase(Locale.ROOT), cpu.getNumberOfExecutedCycles(),
+					cpu.getNumberOfExecutedInstructions(), Math.round(cpu.getCPI() * 10000.0) / 10000.0,
+					cpu.getNumberOfForwards(), cpu.getNumberOfStalls(), cpu.getNumberOfMemoryStalls(),
+					cpu.hasBranchPredictor() ? cpu.getNumberOfBranches() : null,
+					cpu.hasBranchPredictor() ? cpu.getNumberOfMispredictions() : null,
+					cpu.hasBranchPredictor() ? cpu.getMispredictionPenalty() : null, cpu.getExecutionTime(),
+					registersDigest(cpu.getRegBank()), memoryDigest(cpu.getDataMemory()), null};
+		}
+
+		/**
+		 * Returns whether the code was executed successfully until the end of the program.
+		 * @return <tt>True</tt> if the program finished.
+		 */
+		public boolean isSuccessful() {
+			return "finished".equals(values[2]);
+		}
+
+		/**
+		 * Returns the values of the fields of the result (<tt>null</tt> if not applicable).
+		 * @return The values, in the order of <tt>FIELDS</tt>.
+		 */
+		private Object[] getValues() {
+			return values;
+		}
+	}
+
+	/**
+	 * Task that runs a code file on a CPU file.
+	 */
+	private static final class RunTask implements Callable<Result> {
+		/** The code file. */
+		private final String codeFile;
+		/** The CPU file. */
+		private final String cpuFile;
+		/** The template of the CPU file, or the exception thrown while parsing it. */
+		private final Object template;
+		/** The trace file, or <tt>null</tt>. */
+		private final File traceFile;
+		/** The VCD waveform file, or <tt>null</tt>. */
+		private final File vcdFile;
+		/** The instruction profile file, or <tt>null</tt>. */
+		private final File profileFile;
+		/** The locality analysis file, or <tt>null</tt>. */
+		private final File localityFile;
+		/** The size of the blocks of the locality analysis, in bytes. */
+		private final int localityBlockSize;
+		/** Whether the instructions are scheduled. */
+		private final boolean scheduling;
+		/** The maximum number of clock cycles. */
+		private final long maxCycles;
+		/** The maximum execution time, in milliseconds. */
+		private final long maxTime;
+
+		/**
+		 * Constructor.
+		 * @param codeFile The code file.
+		 * @param cpuFile The CPU file.
+		 * @param template The template of the CPU file, or the exception thrown while parsing it.
+		 * @param traceFile The file where the trace is written, or <tt>null</tt>.
+		 * @param vcdFile The file where the VCD waveform is written, or <tt>null</tt>.
+		 * @param profileFile The file where the instruction profile is written, or <tt>null</tt>.
+		 * @param localityFile The file where the locality analysis is written, or <tt>null</tt>.
+		 * @param localityBlockSize The size of the blocks of the locality analysis, in bytes.
+		 * @param scheduling Whether the instructions are scheduled.
+		 * @param maxCycles The maximum number of clock cycles (no limit if not positive).
+		 * @param maxTime The maximum execution time, in milliseconds (no limit if not positive).
+		 */
+		public RunTask(String codeFile, String cpuFile, Object template, File traceFile, File vcdFile, File profileFile, File localityFile,
+				int localityBlockSize, boolean scheduling, long maxCycles, long maxTime) {
+			this.codeFile = codeFile;
+			this.cpuFile = cpuFile;
+			this.template = template;
+			this.traceFile = traceFile;
+			this.vcdFile = vcdFile;
+			this.profileFile = profileFile;
+			this.localityFile = localityFile;
+			this.localityBlockSize = localityBlockSize;
+			this.scheduling = scheduling;
+			this.maxCycles = maxCycles;
+			this.maxTime = maxTime;
+		}
+
+		@Override
+		public Result call() {
+			try {
+				String code = new String(Files.readAllBytes(new File(codeFile).toPath()), StandardCharsets.UTF_8);
+				if(template instanceof Exception)
+					throw (Exception)template;
+				CPU cpu = ((CPUTemplate)template).createCPU();
+				cpu.getAssembler().setSchedulingEnabled(scheduling);
+				cpu.assembleCode(code);
+				cpu.setHistoryEnabled(false); // there is no going back in batch mode
+				if(localityFile != null)
+					cpu.setLocalityAnalyzer(new LocalityAnalyzer(localityBlockSize));
+				ExecutionResult result;
+				TraceRecorder trace = null;
+				VCDRecorder vcd = null;
+				try {
+					if(traceFile != null) trace = new TraceRecorder(cpu, traceFile);
+					if(vcdFile != null) vcd = new VCDRecorder(cpu, vcdFile);
+					result = cpu.executeAll(maxCycles, maxTime, null);
+				} finally {
+					try {
+						if(vcd != null) vcd.close();
+					} finally {
+						if(trace != null) trace.close();
+					}
+				}
+				if(profileFile != null) {
+					try (Writer out = new OutputStreamWriter(new FileOutputStream(profileFile), StandardCharsets.UTF_8)) {
+						cpu.getInstructionProfile().writeCSV(out);
+					}
+				}
+				if(localityFile != null) {
+					try (Writer out = new OutputStreamWriter(new FileOutputStream(localityFile), StandardCharsets.UTF_8)) {
+						cpu.getLocalityAnalyzer().writeJSON(out);
+					}
+				}
+				return new Result(codeFile, cpuFile, cpu, result.getStatus(), null);
+			} catch(Exception ex) {
+				return new Result(codeFile, cpuFile, null, null, ex.getClass().getSimpleName() + (ex.getMessage() != null ? ": " + ex.getMessage() : ""));
+			}
+		}
+	}
+}
@@ -21,6 +21,7 @@ package brunonova.drmips.pc;
 import brunonova.drmips.simulator.AppInfo;
 import brunonova.drmips.simulator.CPU;
 import brunonova.drmips.simulator.Data;
+import brunonova.drmips.simulator.trace.TraceIndex;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Font;
@@ -55,6 +56,12 @@ public class DataMemoryTable extends JTable implements MouseListener {
 	private int memorySize = 0;
 	/** The format of the data (<tt>Util.BINARYL_FORMAT_INDEX/Util.DECIMAL_FORMAT_INDEX/Util.HEXADECIMAL_FORMAT_INDEX</tt>). */
 	private int dataFormat = DrMIPS.DEFAULT_DATA_MEMORY_FORMAT;
+	/** The index of the execution with the past clock cycle being displayed, or <tt>null</tt> if displaying the current values. */
+	private TraceIndex displayedIndex = null;
+	/** The past clock cycle being displayed. */
+	private int displayedCycle = 0;
+	/** The values of the data memory in the past clock cycle being displayed. */
+	private int[] displayedValues = new int[0];
 
 	/**
 	 * Creates the data memory table.
@@ -85,8 +92,10 @@ public class DataMemoryTable extends JTable implements MouseListener {
 		
 		// Initialize registers table
 		model.setRowCount(0);
+		setDisplayedCycle(null, 0);
 		if(cpu.hasDataMemory()) {
 			memorySize = cpu.getDataMemory().getMemorySize();
+			displayedValues = new int[memorySize];
 			for(int i = 0; i < memorySize; i++) {
 				Object[] data = new Object[2];
 				data[0] = Util.formatDataAccordingToFormat(new Data(Data.DATA_SIZE, i * (Data.DATA_SIZE / 8)), format);
@@ -106,20 +115,39 @@ public class DataMemoryTable extends JTable implements MouseListener {
 		if(model == null || cpu == null || !cpu.hasDataMemory()) return;
 		this.dataFormat = format;
 		
+		if(displayedIndex != null) // past clock cycle
+			displayedIndex.getMemory(displayedCycle, displayedValues);
+
 		String data;
 		for(int i = 0; i < memorySize; i++) {
+			int value = displayedIndex != null ? displayedValues[i] : cpu.getDataMemory().getDataInIndex(i);
 			model.setValueAt(Util.formatDataAccordingToFormat(new Data(Data.DATA_SIZE, i * (Data.DATA_SIZE / 8)), format), i, ADDRESS_COLUMN_INDEX);
-			model.setValueAt(Util.formatDataAccordingToFormat(new Data(Data.DATA_SIZE, cpu.getDataMemory().getDataInIndex(i)), format), i, VALUE_COLUMN_INDEX);
+			model.setValueAt(Util.formatDataAccordingToFormat(new Data(Data.DATA_SIZE, value), format), i, VALUE_COLUMN_INDEX);
 		}
 		repaint();
 	}
+
+	/**
+	 * Defines the clock cycle whose values are displayed.
+	 * <p>The values of past clock cycles are read from the index of the
+	 * execution and can't be edited. Call <tt>refreshValues()</tt> afterwards
+	 * to display the values.</p>
+	 * @param index The index of the execution, or <tt>null</tt> to display the current values of the CPU.
+	 * @param cycle The clock cycle to display (must be indexed).
+	 */
+	public void setDisplayedCycle(TraceIndex index, int cycle) {
+		displayedIndex = index;
+		displayedCycle = cycle;
+		translate();
+		getTableHeader().repaint();
+	}
 	
 	/**
 	 * Translates the table.
 	 */
 	public void translate() {
 		getTableHeader().getColumnModel().getColumn(ADDRESS_COLUMN_INDEX).setHeaderValue(Lang.t("address"));
-		getTableHeader().getColumnModel().getColumn(VALUE_COLUMN_INDEX).setHeaderValue(Lang.t("value"));
+		getTableHeader().getColumnModel().getColumn(VALUE_COLUMN_INDEX).setHeaderValue(displayedIndex != null ? Lang.t("value_in_cycle", displayedCycle) : Lang.t("value"));
 	}
 	
 	@Override
@@ -134,6 +162,10 @@ public class DataMemoryTable extends JTable implements MouseListener {
 	@Override
 	public void mousePressed(MouseEvent e) {
 		if(e.getClickCount() == 2) {
+			if(displayedIndex != null) {
+				JOptionPane.showMessageDialog(this.getParent(), Lang.t("past_cycle_not_editable"), AppInfo.NAME, JOptionPane.INFORMATION_MESSAGE);
+				return;
+			}
 			int row = rowAtPoint(e.getPoint());
 			String res = (String)JOptionPane.showInputDialog(this.getParent(), Lang.t("edit_value", row * (Data.DATA_SIZE / 8)) + ":", AppInfo.NAME, JOptionPane.QUESTION_MESSAGE, null, null, cpu.getDataMemory().getDataInIndex(row));
 			if(res != null) {
@@ -169,7 +201,17 @@ public class DataMemoryTable extends JTable implements MouseListener {
 			
 			setHorizontalAlignment(column == 1 ? SwingConstants.RIGHT : SwingConstants.LEFT); // align 2nd column to the right
 			
-			if(cpu.hasDataMemory()) { // Highlight memory positions being accessed
+			if(displayedIndex != null) { // highlight the memory position written in the past clock cycle
+				if(row == displayedIndex.getWrittenMemory(displayedCycle)) {
+					setBackground(Util.writeColor);
+					setToolTipText(Lang.t("writing_to_mem"));
+				}
+				else {
+					setBackground(background);
+					setToolTipText(null);
+				}
+			}
+			else if(cpu.hasDataMemory()) { // Highlight memory positions being accessed
 				int index = cpu.getDataMemory().getAddress().getValue() / (Data.DATA_SIZE / 8);
 				boolean read = cpu.getDataMemory().getMemRead().getValue() == 1;
 				boolean write = cpu.getDataMemory().getMemWrite().getValue() == 1;
@@ -25,6 +25,7 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.util.Locale;
 import javax.swing.BorderFactory;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
@@ -170,6 +171,48 @@ public final class DatapathComponent extends JLabel implements MouseListener {
 			tip += "</table></td></tr>";
 		}
 
+		// Statistics if cache
+		if(!datapath.isInPerformanceMode() && component instanceof Cache) {
+			Cache cache = (Cache)component;
+			tip += "<tr><td align='center'><table>";
+			tip += "<tr><td><tt>" + Lang.t("accesses") + ":</tt></td><td align='right'><tt>" + cache.getAccesses() + "</tt></td></tr>";
+			tip += "<tr><td><tt>" + Lang.t("hits") + ":</tt></td><td align='right'><tt>" + cache.getHits() + "</tt></td></tr>";
+			tip += "<tr><td><tt>" + Lang.t("misses") + ":</tt></td><td align='right'><tt>" + cache.getMisses() + "</tt></td></tr>";
+			tip += "<tr><td><tt>" + Lang.t("hit_rate") + ":</tt></td><td align='right'><tt>" + String.format("%.2f%%", cache.getHitRate() * 100) + "</tt></td></tr>";
+			tip += "<tr><td><tt>" + Lang.t("evictions") + ":</tt></td><td align='right'><tt>" + cache.getEvictions() + "</tt></td></tr>";
+			tip += "<tr><td><tt>" + Lang.t("writebacks") + ":</tt></td><td align='right'><tt>" + cache.getWritebacks() + "</tt></td></tr>";
+			tip += "<tr><td><tt>" + Lang.t("stall_cycles") + ":</tt></td><td align='right'><tt>" + cache.getStallCycles() + "</tt></td></tr>";
+			tip += "</table></td></tr>";
+		}
+
+		// Configuration if branch predictor
+		if(!datapath.isInPerformanceMode() && component instanceof BranchPredictor) {
+			BranchPredictor predictor = (BranchPredictor)component;
+			tip += "<tr><td align='center'><table>";
+			tip += "<tr><td><tt>" + Lang.t("prediction_scheme") + ":</tt></td><td align='right'><tt>" + predictor.getScheme().name().toLowerCase(Locale.ROOT) + "</tt></td></tr>";
+			tip += "<tr><td><tt>" + Lang.t("bht_entries") + ":</tt></td><td align='right'><tt>" + predictor.getBhtEntries() + "</tt></td></tr>";
+			tip += "<tr><td><tt>" + Lang.t("btb_entries") + ":</tt></td><td align='right'><tt>" + predictor.getBtbEntries() + "</tt></td></tr>";
+			if(predictor.getScheme() == BranchPredictor.Scheme.GSHARE)
+				tip += "<tr><td><tt>" + Lang.t("history_bits") + ":</tt></td><td align='right'><tt>" + predictor.getHistoryBits() + "</tt></td></tr>";
+			tip += "</table></td></tr>";
+		}
+
+		// Timing model if multi-cycle data memory
+		if(!datapath.isInPerformanceMode() && component instanceof DataMemory && ((DataMemory)component).hasTiming()) {
+			DataMemory memory = (DataMemory)component;
+			tip += "<tr><td align='center'><table>";
+			tip += "<tr><td><tt>" + Lang.t("read_latency") + ":</tt></td><td align='right'><tt>" + memory.getReadLatency() + " " + CPU.LATENCY_UNIT + "</tt></td></tr>";
+			tip += "<tr><td><tt>" + Lang.t("write_latency") + ":</tt></td><td align='right'><tt>" + memory.getWriteLatency() + " " + CPU.LATENCY_UNIT + "</tt></td></tr>";
+			tip += "<tr><td><tt>" + Lang.t("memory_banks") + ":</tt></td><td align='right'><tt>" + memory.getNumberOfBanks() + "</tt></td></tr>";
+			tip += "<tr><td><tt>" + Lang.t("bank_recovery") + ":</tt></td><td align='right'><tt>" + memory.getBankRecovery() + " " + CPU.LATENCY_UNIT + "</tt></td></tr>";
+			if(memory.getBurstLength() > 1) {
+				tip += "<tr><td><tt>" + Lang.t("burst_length") + ":</tt></td><td align='right'><tt>" + memory.getBurstLength() + "</tt></td></tr>";
+				tip += "<tr><td><tt>" + Lang.t("burst_latency") + ":</tt></td><td align='right'><tt>" + memory.getBurstLatency() + " " + CPU.LATENCY_UNIT + "</tt></td></tr>";
+			}
+			tip += "<tr><td><tt>" + Lang.t("stall_cycles") + ":</tt></td><td align='right'><tt>" + memory.getStallCycles() + "</tt></td></tr>";
+			tip += "</table></td></tr>";
+		}
+
 
 		// Latency
 		if(datapath.isInPerformanceMode()) {
@@ -128,12 +128,14 @@ public class DatapathPanel extends JLayeredPane {
 	 * "Refreshes" the datapath with the new values.
 	 */
 	public void refresh() {
+		Object event = SimulatorEvents.beginGUIRefresh();
 		for(DatapathComponent comp: components.values())
 			comp.refresh();
 		for(Wire w: wires)
 			w.refreshTips();
 		repaint();
 		parent.refreshStatistics(); // refresh the statistics dialog
+		SimulatorEvents.commitGUIRefresh(event, "datapath", cpu != null ? cpu.getNumberOfExecutedCycles() : 0);
 	}
 	
 	/**
@@ -0,0 +1,313 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.pc;
+
+import brunonova.drmips.simulator.CPU;
+import brunonova.drmips.simulator.Component;
+import brunonova.drmips.simulator.ComponentProfiler;
+import javax.swing.Timer;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ * Dialog that shows the measurements of the profiler of the components.
+ *
+ * <p>The components are profiled only while the dialog is visible, and the
+ * values are refreshed periodically, even while a program is running.</p>
+ *
+ * @author Bruno Nova
+ */
+public class DlgProfiler extends javax.swing.JDialog {
+	/** Interval between refreshes, in milliseconds. */
+	private static final int REFRESH_INTERVAL = 500;
+	/** The translation keys of the headers of the columns. */
+	private static final String[] COLUMNS = {"component", "type", "execute_calls",
+		"execute_time", "synchronous_calls", "synchronous_time", "latency_calls",
+		"latency_time", "total_time", "max_depth"};
+	/** The classes of the values of the columns (for sorting). */
+	private static final Class<?>[] COLUMN_CLASSES = {String.class, String.class,
+		Double.class, Double.class, Double.class, Double.class, Double.class,
+		Double.class, Double.class, Integer.class};
+
+	/** The model of the table. */
+	private final DefaultTableModel model;
+	/** The timer that refreshes the values. */
+	private final Timer timer;
+	/** The CPU being profiled. */
+	private CPU cpu = null;
+	/** Whether the CPU is executing in the background (the profiling can't be changed then). */
+	private boolean executing = false;
+
+	/**
+	 * Creates new form DlgProfiler
+	 * @param parent The simulator's main window.
+	 */
+	public DlgProfiler(FrmSimulator parent) {
+		super(parent, false);
+		initComponents();
+		model = new DefaultTableModel(0, COLUMNS.length) {
+			@Override
+			public boolean isCellEditable(int row, int column) {
+				return false;
+			}
+
+			@Override
+			public Class<?> getColumnClass(int column) {
+				return COLUMN_CLASSES[column];
+			}
+		};
+		tblComponents.setModel(model);
+		tblComponents.getTableHeader().setReorderingAllowed(false);
+		timer = new Timer(REFRESH_INTERVAL, new java.awt.event.ActionListener() {
+			@Override
+			public void actionPerformed(java.awt.event.ActionEvent e) {
+				refresh();
+			}
+		});
+		translate();
+		getRootPane().setDefaultButton(cmdClose);
+		Util.centerWindow(this);
+		Util.enableCloseWindowWithEscape(this);
+	}
+
+	/**
+	 * This method is called from within the constructor to initialize the form.
+	 * WARNING: Do NOT modify this code. The content of this method is always
+	 * regenerated by the Form Editor.
+	 */
+	@SuppressWarnings("unchecked")
+    // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
+    private void initComponents() {
+
+        jPanel1 = new javax.swing.JPanel();
+        lblProfiledCycles = new javax.swing.JLabel();
+        lblProfiledCyclesVal = new javax.swing.JLabel();
+        lblCyclesPerSecond = new javax.swing.JLabel();
+        lblCyclesPerSecondVal = new javax.swing.JLabel();
+        lblAllocation = new javax.swing.JLabel();
+        lblAllocationVal = new javax.swing.JLabel();
+        lblPropagationDepth = new javax.swing.JLabel();
+        lblPropagationDepthVal = new javax.swing.JLabel();
+        pnlComponents = new javax.swing.JScrollPane();
+        tblComponents = new javax.swing.JTable();
+        jPanel2 = new javax.swing.JPanel();
+        cmdReset = new javax.swing.JButton();
+        cmdClose = new javax.swing.JButton();
+
+        setDefaultCloseOperation(javax.swing.WindowConstants.DO_NOTHING_ON_CLOSE);
+        setMinimumSize(new java.awt.Dimension(400, 300));
+        setPreferredSize(new java.awt.Dimension(900, 500));
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            public void windowClosing(java.awt.event.WindowEvent evt) {
+                formWindowClosing(evt);
+            }
+        });
+
+        jPanel1.setLayout(new java.awt.GridLayout(0, 2, 6, 0));
+
+        lblProfiledCycles.setHorizontalAlignment(javax.swing.SwingConstants.RIGHT);
+        lblProfiledCycles.setText("profiled_cycles");
+        jPanel1.add(lblProfiledCycles);
+
+        lblProfiledCyclesVal.setText("0");
+        jPanel1.add(lblProfiledCyclesVal);
+
+        lblCyclesPerSecond.setHorizontalAlignment(javax.swing.SwingConstants.RIGHT);
+        lblCyclesPerSecond.setText("simulated_cycles_per_second");
+        jPanel1.add(lblCyclesPerSecond);
+
+        lblCyclesPerSecondVal.setText("0");
+        jPanel1.add(lblCyclesPerSecondVal);
+
+        lblAllocation.setHorizontalAlignment(javax.swing.SwingConstants.RIGHT);
+        lblAllocation.setText("allocated_bytes_per_cycle");
+        jPanel1.add(lblAllocation);
+
+        lblAllocationVal.setText("0");
+        jPanel1.add(lblAllocationVal);
+
+        lblPropagationDepth.setHorizontalAlignment(javax.swing.SwingConstants.RIGHT);
+        lblPropagationDepth.setText("propagation_depth");
+        jPanel1.add(lblPropagationDepth);
+
+        lblPropagationDepthVal.setText("0");
+        jPanel1.add(lblPropagationDepthVal);
+
+        getContentPane().add(jPanel1, java.awt.BorderLayout.NORTH);
+
+        tblComponents.setAutoCreateRowSorter(true);
+        pnlComponents.setViewportView(tblComponents);
+
+        getContentPane().add(pnlComponents, java.awt.BorderLayout.CENTER);
+
+        cmdReset.setText("reset");
+        cmdReset.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                cmdResetActionPerformed(evt);
+            }
+        });
+        jPanel2.add(cmdReset);
+
+        cmdClose.setText("close");
+        cmdClose.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                cmdCloseActionPerformed(evt);
+            }
+        });
+        jPanel2.add(cmdClose);
+
+        getContentPane().add(jPanel2, java.awt.BorderLayout.SOUTH);
+
+        pack();
+    }// </editor-fold>//GEN-END:initComponents
+
+    private void cmdCloseActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdCloseActionPerformed
+		close();
+    }//GEN-LAST:event_cmdCloseActionPerformed
+
+    private void formWindowClosing(java.awt.event.WindowEvent evt) {//GEN-FIRST:event_formWindowClosing
+		close();
+    }//GEN-LAST:event_formWindowClosing
+
+    private void cmdResetActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdResetActionPerformed
+		if(cpu != null && cpu.getProfiler() != null)
+			cpu.getProfiler().reset();
+		refresh();
+    }//GEN-LAST:event_cmdResetActionPerformed
+
+	/**
+	 * Closes the window.
+	 */
+	private void close() {
+		setVisible(false);
+	}
+
+	/**
+	 * Shows or hides the dialog, starting or stopping the profiling of the CPU.
+	 * <p>If the CPU is executing in the background, the profiling only starts or
+	 * stops when the execution ends (see {@link #setExecuting(boolean)}).</p>
+	 * @param visible Whether to show the dialog.
+	 */
+	@Override
+	public void setVisible(boolean visible) {
+		if(visible && !isVisible()) {
+			if(cpu != null && !executing) cpu.setProfilingEnabled(true);
+			refresh();
+			timer.start();
+		}
+		else if(!visible && isVisible()) {
+			timer.stop();
+			if(cpu != null && !executing) cpu.setProfilingEnabled(false);
+		}
+		super.setVisible(visible);
+	}
+
+	/**
+	 * Sets whether the CPU is executing in the background.
+	 * <p>The profilers of the components are replaced when the profiling starts
+	 * or stops, which can't be done in the middle of a clock cycle. So the
+	 * profiling is only updated to match the visibility of the dialog when the
+	 * execution ends. The statistics can't be reset while executing either.</p>
+	 * @param executing Whether the CPU is executing.
+	 */
+	protected void setExecuting(boolean executing) {
+		this.executing = executing;
+		cmdReset.setEnabled(!executing);
+		if(!executing && cpu != null && (cpu.getProfiler() != null) != isVisible())
+			cpu.setProfilingEnabled(isVisible());
+	}
+
+	/**
+	 * Translates the dialog's strings.
+	 */
+	protected final void translate() {
+		setTitle(Lang.t("component_profiler"));
+		Lang.tButton(cmdReset, "reset");
+		Lang.tButton(cmdClose, "close");
+		lblProfiledCycles.setText(Lang.t("profiled_cycles") + ":");
+		lblCyclesPerSecond.setText(Lang.t("simulated_cycles_per_second") + ":");
+		lblAllocation.setText(Lang.t("allocated_bytes_per_cycle") + ":");
+		lblPropagationDepth.setText(Lang.t("propagation_depth") + ":");
+		for(int i = 0; i < COLUMNS.length; i++)
+			tblComponents.getColumnModel().getColumn(i).setHeaderValue(Lang.t(COLUMNS[i]));
+		tblComponents.getTableHeader().repaint();
+	}
+
+	/**
+	 * Sets the CPU to profile, profiling it right away if the dialog is visible.
+	 * @param cpu The CPU.
+	 */
+	protected void setCPU(CPU cpu) {
+		if(this.cpu != null && this.cpu != cpu)
+			this.cpu.setProfilingEnabled(false);
+		this.cpu = cpu;
+		model.setRowCount(0);
+		if(isVisible()) {
+			cpu.setProfilingEnabled(true);
+			refresh();
+		}
+	}
+
+	/**
+	 * Refreshes the values.
+	 */
+	private void refresh() {
+		ComponentProfiler profiler = cpu != null ? cpu.getProfiler() : null;
+		if(profiler == null) return;
+		long cycles = profiler.getProfiledCycles();
+		double div = Math.max(1, cycles);
+		lblProfiledCyclesVal.setText(cycles + "");
+		lblCyclesPerSecondVal.setText(String.format("%.0f", profiler.getCyclesPerSecond()));
+		double allocated = profiler.getAllocatedBytesPerCycle();
+		lblAllocationVal.setText(allocated >= 0 ? String.format("%.1f", allocated) : "-");
+		lblPropagationDepthVal.setText(String.format("%d (%.2f)",
+			profiler.getMaxPropagationDepth(), profiler.getAveragePropagationDepth()));
+
+		Component[] components = profiler.getComponents();
+		if(model.getRowCount() != components.length)
+			model.setRowCount(components.length);
+		for(int i = 0; i < components.length; i++) {
+			Object[] row = {components[i].getId(), components[i].getClass().getSimpleName(),
+				profiler.getExecuteCalls(i) / div, profiler.getExecuteTime(i) / div,
+				profiler.getSynchronousCalls(i) / div, profiler.getSynchronousTime(i) / div,
+				profiler.getLatencyCalls(i) / div, profiler.getLatencyTime(i) / div,
+				profiler.getTotalTime(i) / div, profiler.getMaxDepth(i)};
+			for(int j = 0; j < row.length; j++) {
+				if(!row[j].equals(model.getValueAt(i, j)))
+					model.setValueAt(row[j], i, j);
+			}
+		}
+	}
+
+    // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton cmdClose;
+    private javax.swing.JButton cmdReset;
+    private javax.swing.JPanel jPanel1;
+    private javax.swing.JPanel jPanel2;
+    private javax.swing.JLabel lblAllocation;
+    private javax.swing.JLabel lblAllocationVal;
+    private javax.swing.JLabel lblCyclesPerSecond;
+    private javax.swing.JLabel lblCyclesPerSecondVal;
+    private javax.swing.JLabel lblProfiledCycles;
+    private javax.swing.JLabel lblProfiledCyclesVal;
+    private javax.swing.JLabel lblPropagationDepth;
+    private javax.swing.JLabel lblPropagationDepthVal;
+    private javax.swing.JScrollPane pnlComponents;
+    private javax.swing.JTable tblComponents;
+    // End of variables declaration//GEN-END:variables
+}
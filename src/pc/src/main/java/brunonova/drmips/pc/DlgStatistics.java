@@ -19,12 +19,25 @@
 package brunonova.drmips.pc;
 
 import brunonova.drmips.simulator.CPU;
+import brunonova.drmips.simulator.LocalityAnalyzer;
+import javax.swing.table.DefaultTableModel;
 
 /**
  *
  * @author bruno
  */
 public class DlgStatistics extends javax.swing.JDialog {
+	/** The keys of the titles of the columns of the locality table. */
+	private static final String[] LOCALITY_COLUMNS = {"cache_blocks", "cache_bytes",
+		"instruction_miss_ratio", "data_miss_ratio"};
+	/** The number of most frequent strides shown. */
+	private static final int STRIDES = 3;
+
+	/** The model of the locality table. */
+	private final DefaultTableModel localityModel;
+	/** The size of the blocks of the locality analysis shown (for the title). */
+	private int blockSize = LocalityAnalyzer.DEFAULT_BLOCK_SIZE;
+
 	/**
 	 * Creates new form DlgStatistics
 	 * @param parent The simulator's main window.
@@ -32,6 +45,14 @@ public class DlgStatistics extends javax.swing.JDialog {
 	public DlgStatistics(FrmSimulator parent) {
 		super(parent, false);
 		initComponents();
+		localityModel = new DefaultTableModel(0, LOCALITY_COLUMNS.length) {
+			@Override
+			public boolean isCellEditable(int row, int column) {
+				return false;
+			}
+		};
+		tblLocality.setModel(localityModel);
+		tblLocality.getTableHeader().setReorderingAllowed(false);
 		translate();
 		getRootPane().setDefaultButton(cmdClose);
 		Util.centerWindow(this);
@@ -64,6 +85,20 @@ public class DlgStatistics extends javax.swing.JDialog {
         lblForwardsVal = new javax.swing.JLabel();
         lblStalls = new javax.swing.JLabel();
         lblStallsVal = new javax.swing.JLabel();
+        lblMemoryStalls = new javax.swing.JLabel();
+        lblMemoryStallsVal = new javax.swing.JLabel();
+        lblBranches = new javax.swing.JLabel();
+        lblBranchesVal = new javax.swing.JLabel();
+        lblMispredictions = new javax.swing.JLabel();
+        lblMispredictionsVal = new javax.swing.JLabel();
+        lblPredictionAccuracy = new javax.swing.JLabel();
+        lblPredictionAccuracyVal = new javax.swing.JLabel();
+        lblMispredictionPenalty = new javax.swing.JLabel();
+        lblMispredictionPenaltyVal = new javax.swing.JLabel();
+        pnlLocality = new javax.swing.JPanel();
+        lblLocality = new javax.swing.JLabel();
+        scrLocality = new javax.swing.JScrollPane();
+        tblLocality = new javax.swing.JTable();
         jPanel2 = new javax.swing.JPanel();
         cmdClose = new javax.swing.JButton();
 
@@ -115,6 +150,31 @@ public class DlgStatistics extends javax.swing.JDialog {
         lblStallsVal.setHorizontalAlignment(javax.swing.SwingConstants.RIGHT);
         lblStallsVal.setText("0");
 
+        lblMemoryStalls.setText("memory_stalls:");
+
+        lblMemoryStallsVal.setHorizontalAlignment(javax.swing.SwingConstants.RIGHT);
+        lblMemoryStallsVal.setText("0");
+
+        lblBranches.setText("branches:");
+
+        lblBranchesVal.setHorizontalAlignment(javax.swing.SwingConstants.RIGHT);
+        lblBranchesVal.setText("0");
+
+        lblMispredictions.setText("mispredictions:");
+
+        lblMispredictionsVal.setHorizontalAlignment(javax.swing.SwingConstants.RIGHT);
+        lblMispredictionsVal.setText("0");
+
+        lblPredictionAccuracy.setText("prediction_accuracy:");
+
+        lblPredictionAccuracyVal.setHorizontalAlignment(javax.swing.SwingConstants.RIGHT);
+        lblPredictionAccuracyVal.setText("0");
+
+        lblMispredictionPenalty.setText("misprediction_penalty:");
+
+        lblMispredictionPenaltyVal.setHorizontalAlignment(javax.swing.SwingConstants.RIGHT);
+        lblMispredictionPenaltyVal.setText("0");
+
         javax.swing.GroupLayout jPanel1Layout = new javax.swing.GroupLayout(jPanel1);
         jPanel1.setLayout(jPanel1Layout);
         jPanel1Layout.setHorizontalGroup(
@@ -122,6 +182,11 @@ public class DlgStatistics extends javax.swing.JDialog {
             .addGroup(jPanel1Layout.createSequentialGroup()
                 .addContainerGap()
                 .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.TRAILING)
+                    .addComponent(lblMispredictionPenalty, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(lblPredictionAccuracy, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(lblMispredictions, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(lblBranches, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addComponent(lblMemoryStalls, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                     .addComponent(lblStalls, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                     .addComponent(lblForwards, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                     .addComponent(lblCPI, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
@@ -141,7 +206,12 @@ public class DlgStatistics extends javax.swing.JDialog {
                     .addComponent(lblExecutedInstructionsVal, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.DEFAULT_SIZE, 103, Short.MAX_VALUE)
                     .addComponent(lblCPIVal, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.DEFAULT_SIZE, 103, Short.MAX_VALUE)
                     .addComponent(lblForwardsVal, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.DEFAULT_SIZE, 103, Short.MAX_VALUE)
-                    .addComponent(lblStallsVal, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.DEFAULT_SIZE, 103, Short.MAX_VALUE))
+                    .addComponent(lblStallsVal, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.DEFAULT_SIZE, 103, Short.MAX_VALUE)
+                    .addComponent(lblMemoryStallsVal, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.DEFAULT_SIZE, 103, Short.MAX_VALUE)
+                    .addComponent(lblBranchesVal, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.DEFAULT_SIZE, 103, Short.MAX_VALUE)
+                    .addComponent(lblMispredictionsVal, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.DEFAULT_SIZE, 103, Short.MAX_VALUE)
+                    .addComponent(lblPredictionAccuracyVal, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.DEFAULT_SIZE, 103, Short.MAX_VALUE)
+                    .addComponent(lblMispredictionPenaltyVal, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.DEFAULT_SIZE, 103, Short.MAX_VALUE))
                 .addContainerGap())
         );
         jPanel1Layout.setVerticalGroup(
@@ -179,10 +249,43 @@ public class DlgStatistics extends javax.swing.JDialog {
                 .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                     .addComponent(lblStalls)
                     .addComponent(lblStallsVal))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(lblMemoryStalls)
+                    .addComponent(lblMemoryStallsVal))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(lblBranches)
+                    .addComponent(lblBranchesVal))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(lblMispredictions)
+                    .addComponent(lblMispredictionsVal))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(lblPredictionAccuracy)
+                    .addComponent(lblPredictionAccuracyVal))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(jPanel1Layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(lblMispredictionPenalty)
+                    .addComponent(lblMispredictionPenaltyVal))
                 .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
         );
 
-        getContentPane().add(jPanel1, java.awt.BorderLayout.CENTER);
+        getContentPane().add(jPanel1, java.awt.BorderLayout.NORTH);
+
+        pnlLocality.setBorder(javax.swing.BorderFactory.createTitledBorder("memory_locality"));
+        pnlLocality.setLayout(new java.awt.BorderLayout(0, 6));
+
+        lblLocality.setText("locality");
+        pnlLocality.add(lblLocality, java.awt.BorderLayout.NORTH);
+
+        scrLocality.setPreferredSize(new java.awt.Dimension(330, 150));
+        scrLocality.setViewportView(tblLocality);
+
+        pnlLocality.add(scrLocality, java.awt.BorderLayout.CENTER);
+
+        getContentPane().add(pnlLocality, java.awt.BorderLayout.CENTER);
 
         cmdClose.setText("close");
         cmdClose.addActionListener(new java.awt.event.ActionListener() {
@@ -226,6 +329,23 @@ public class DlgStatistics extends javax.swing.JDialog {
 		lblCPI.setText(Lang.t("cpi") + ":");
 		lblForwards.setText(Lang.t("forwards") + ":");
 		lblStalls.setText(Lang.t("stalls") + ":");
+		lblMemoryStalls.setText(Lang.t("memory_stalls") + ":");
+		lblBranches.setText(Lang.t("branches") + ":");
+		lblMispredictions.setText(Lang.t("mispredictions") + ":");
+		lblPredictionAccuracy.setText(Lang.t("prediction_accuracy") + ":");
+		lblMispredictionPenalty.setText(Lang.t("misprediction_penalty") + ":");
+		translateLocalityTitle();
+		for(int i = 0; i < LOCALITY_COLUMNS.length; i++)
+			tblLocality.getColumnModel().getColumn(i).setHeaderValue(Lang.t(LOCALITY_COLUMNS[i]));
+		tblLocality.getTableHeader().repaint();
+	}
+
+	/**
+	 * Translates the title of the locality panel, which includes the size of the blocks.
+	 */
+	private void translateLocalityTitle() {
+		((javax.swing.border.TitledBorder)pnlLocality.getBorder()).setTitle(Lang.t("memory_locality", blockSize));
+		pnlLocality.repaint();
 	}
 	
 	/**
@@ -241,12 +361,82 @@ public class DlgStatistics extends javax.swing.JDialog {
 		lblCPIVal.setText(cpu.getCPIAsString());
 		lblForwardsVal.setText(cpu.getNumberOfForwards() + "");
 		lblStallsVal.setText(cpu.getNumberOfStalls() + "");
+		lblMemoryStallsVal.setText(cpu.getNumberOfMemoryStalls() + "");
+		lblBranchesVal.setText(cpu.getNumberOfBranches() + "");
+		lblMispredictionsVal.setText(cpu.getNumberOfMispredictions() + "");
+		lblPredictionAccuracyVal.setText(String.format("%.2f%%", cpu.getPredictionAccuracy() * 100));
+		lblMispredictionPenaltyVal.setText(cpu.getMispredictionPenalty() + "");
+		refreshLocality(cpu.getLocalityAnalyzer());
+	}
+
+	/**
+	 * Refreshes the analysis of the locality of the memory accesses.
+	 * @param analyzer The analyzer, or <tt>null</tt> to hide the analysis.
+	 */
+	private void refreshLocality(LocalityAnalyzer analyzer) {
+		if(pnlLocality.isVisible() != (analyzer != null)) {
+			pnlLocality.setVisible(analyzer != null);
+			pack();
+		}
+		if(analyzer == null) return;
+		if(analyzer.getBlockSize() != blockSize) {
+			blockSize = analyzer.getBlockSize();
+			translateLocalityTitle();
+		}
+
+		LocalityAnalyzer.AccessStream instructions = analyzer.getInstructionStream();
+		LocalityAnalyzer.AccessStream data = analyzer.getDataStream();
+		lblLocality.setText("<html><table cellspacing=0 cellpadding=1>"
+			+ "<tr><td></td><th align='right'>" + Lang.t("instruction_fetches") + "</th><th align='right'>" + Lang.t("data_accesses") + "</th></tr>"
+			+ "<tr><td>" + Lang.t("accesses") + ":</td><td align='right'>" + instructions.getAccesses() + "</td><td align='right'>" + data.getAccesses() + "</td></tr>"
+			+ "<tr><td>" + Lang.t("footprint") + ":</td><td align='right'>" + instructions.getFootprint() + "</td><td align='right'>" + data.getFootprint() + "</td></tr>"
+			+ "<tr><td>" + Lang.t("spatial_locality") + ":</td><td align='right'>" + formatRatio(instructions.getSpatialLocality())
+				+ "</td><td align='right'>" + formatRatio(data.getSpatialLocality()) + "</td></tr>"
+			+ "<tr><td>" + Lang.t("frequent_strides") + ":</td><td align='right'>" + formatStrides(instructions)
+				+ "</td><td align='right'>" + formatStrides(data) + "</td></tr>"
+			+ "</table></html>");
+
+		int[] instructionSizes = instructions.getCacheSizes(), dataSizes = data.getCacheSizes();
+		int rows = Math.max(instructionSizes.length, dataSizes.length);
+		localityModel.setRowCount(rows);
+		for(int i = 0; i < rows; i++) {
+			int blocks = 1 << i;
+			localityModel.setValueAt(blocks, i, 0);
+			localityModel.setValueAt((long)blocks * blockSize, i, 1);
+			localityModel.setValueAt(formatRatio(instructions.getMissRatio(blocks)), i, 2);
+			localityModel.setValueAt(formatRatio(data.getMissRatio(blocks)), i, 3);
+		}
+	}
+
+	/**
+	 * Formats a ratio as a percentage.
+	 * @param ratio The ratio.
+	 * @return The formatted percentage.
+	 */
+	private static String formatRatio(double ratio) {
+		return String.format("%.2f%%", ratio * 100);
+	}
+
+	/**
+	 * Formats the most frequent strides of a stream.
+	 * @param stream The stream of accesses.
+	 * @return The strides separated by commas, or "-" if there are none.
+	 */
+	private static String formatStrides(LocalityAnalyzer.AccessStream stream) {
+		int[] strides = stream.getMostFrequentStrides(STRIDES);
+		if(strides.length == 0) return "-";
+		String s = "";
+		for(int i = 0; i < strides.length; i++)
+			s += (i > 0 ? ", " : "") + (strides[i] > 0 ? "+" : "") + strides[i];
+		return s;
 	}
 	
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JButton cmdClose;
     private javax.swing.JPanel jPanel1;
     private javax.swing.JPanel jPanel2;
+    private javax.swing.JLabel lblBranches;
+    private javax.swing.JLabel lblBranchesVal;
     private javax.swing.JLabel lblCPI;
     private javax.swing.JLabel lblCPIVal;
     private javax.swing.JLabel lblClockFrequency;
@@ -261,7 +451,19 @@ public class DlgStatistics extends javax.swing.JDialog {
     private javax.swing.JLabel lblExecutionTimeVal;
     private javax.swing.JLabel lblForwards;
     private javax.swing.JLabel lblForwardsVal;
+    private javax.swing.JLabel lblLocality;
+    private javax.swing.JLabel lblMemoryStalls;
+    private javax.swing.JLabel lblMemoryStallsVal;
+    private javax.swing.JLabel lblMispredictionPenalty;
+    private javax.swing.JLabel lblMispredictionPenaltyVal;
+    private javax.swing.JLabel lblMispredictions;
+    private javax.swing.JLabel lblMispredictionsVal;
+    private javax.swing.JLabel lblPredictionAccuracy;
+    private javax.swing.JLabel lblPredictionAccuracyVal;
     private javax.swing.JLabel lblStalls;
     private javax.swing.JLabel lblStallsVal;
+    private javax.swing.JPanel pnlLocality;
+    private javax.swing.JScrollPane scrLocality;
+    private javax.swing.JTable tblLocality;
     // End of variables declaration//GEN-END:variables
 }
@@ -0,0 +1,378 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.pc;
+
+import brunonova.drmips.simulator.AppInfo;
+import brunonova.drmips.simulator.CPU;
+import brunonova.drmips.simulator.CPUTemplate;
+import brunonova.drmips.simulator.TimingReport;
+import java.awt.Cursor;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ * Dialog that shows the static timing report of the CPU (see {@link TimingReport}).
+ *
+ * <p>The report is generated with the current latencies of the components
+ * when the dialog is shown or refreshed.</p>
+ *
+ * @author Bruno Nova
+ */
+public class DlgTimingReport extends javax.swing.JDialog {
+	/** The translation keys of the headers of the columns of the stages table. */
+	private static final String[] STAGE_COLUMNS = {"stage", "latency", "critical_path"};
+	/** The classes of the values of the columns of the stages table (for sorting). */
+	private static final Class<?>[] STAGE_COLUMN_CLASSES = {String.class, Integer.class, String.class};
+	/** The translation keys of the headers of the fixed columns of the instructions table. */
+	private static final String[] INSTRUCTION_COLUMNS = {"instruction", "code", "latency", "critical_stage", "critical_path"};
+	/** The classes of the values of the fixed columns of the instructions table (for sorting). */
+	private static final Class<?>[] INSTRUCTION_COLUMN_CLASSES = {String.class, String.class, Integer.class, String.class, String.class};
+	/** Class logger. */
+	private static final Logger LOG = Logger.getLogger(DlgTimingReport.class.getName());
+
+	/** The model of the stages table. */
+	private final DefaultTableModel stagesModel;
+	/** The model of the instructions table. */
+	private final InstructionsTableModel instructionsModel;
+	/** The file chooser to export the report. */
+	private JFileChooser fileChooser = null;
+	/** The CPU. */
+	private CPU cpu = null;
+	/** The current report, or <tt>null</tt>. */
+	private TimingReport report = null;
+
+	/**
+	 * Creates new form DlgTimingReport
+	 * @param parent The simulator's main window.
+	 */
+	public DlgTimingReport(FrmSimulator parent) {
+		super(parent, false);
+		initComponents();
+		stagesModel = new DefaultTableModel(0, STAGE_COLUMNS.length) {
+			@Override
+			public boolean isCellEditable(int row, int column) {
+				return false;
+			}
+
+			@Override
+			public Class<?> getColumnClass(int column) {
+				return STAGE_COLUMN_CLASSES[column];
+			}
+		};
+		instructionsModel = new InstructionsTableModel();
+		tblStages.setModel(stagesModel);
+		tblStages.getTableHeader().setReorderingAllowed(false);
+		tblInstructions.setModel(instructionsModel);
+		tblInstructions.getTableHeader().setReorderingAllowed(false);
+		translate();
+		getRootPane().setDefaultButton(cmdClose);
+		Util.centerWindow(this);
+		Util.enableCloseWindowWithEscape(this);
+	}
+
+	/**
+	 * This method is called from within the constructor to initialize the form.
+	 * WARNING: Do NOT modify this code. The content of this method is always
+	 * regenerated by the Form Editor.
+	 */
+	@SuppressWarnings("unchecked")
+    // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
+    private void initComponents() {
+
+        jPanel1 = new javax.swing.JPanel();
+        lblClockPeriod = new javax.swing.JLabel();
+        lblClockPeriodVal = new javax.swing.JLabel();
+        lblBottleneck = new javax.swing.JLabel();
+        lblBottleneckVal = new javax.swing.JLabel();
+        splitPane = new javax.swing.JSplitPane();
+        pnlStages = new javax.swing.JScrollPane();
+        tblStages = new javax.swing.JTable();
+        pnlInstructions = new javax.swing.JScrollPane();
+        tblInstructions = new javax.swing.JTable();
+        jPanel2 = new javax.swing.JPanel();
+        cmdRefresh = new javax.swing.JButton();
+        cmdExport = new javax.swing.JButton();
+        cmdClose = new javax.swing.JButton();
+
+        setDefaultCloseOperation(javax.swing.WindowConstants.DO_NOTHING_ON_CLOSE);
+        setMinimumSize(new java.awt.Dimension(400, 300));
+        setPreferredSize(new java.awt.Dimension(900, 600));
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            public void windowClosing(java.awt.event.WindowEvent evt) {
+                formWindowClosing(evt);
+            }
+        });
+
+        jPanel1.setLayout(new java.awt.GridLayout(0, 2, 6, 0));
+
+        lblClockPeriod.setHorizontalAlignment(javax.swing.SwingConstants.RIGHT);
+        lblClockPeriod.setText("clock_period");
+        jPanel1.add(lblClockPeriod);
+
+        lblClockPeriodVal.setText("0");
+        jPanel1.add(lblClockPeriodVal);
+
+        lblBottleneck.setHorizontalAlignment(javax.swing.SwingConstants.RIGHT);
+        lblBottleneck.setText("bottleneck_stage");
+        jPanel1.add(lblBottleneck);
+
+        lblBottleneckVal.setText("-");
+        jPanel1.add(lblBottleneckVal);
+
+        getContentPane().add(jPanel1, java.awt.BorderLayout.NORTH);
+
+        splitPane.setOrientation(javax.swing.JSplitPane.VERTICAL_SPLIT);
+        splitPane.setResizeWeight(0.3);
+
+        tblStages.setAutoCreateRowSorter(true);
+        pnlStages.setViewportView(tblStages);
+
+        splitPane.setTopComponent(pnlStages);
+
+        tblInstructions.setAutoCreateRowSorter(true);
+        pnlInstructions.setViewportView(tblInstructions);
+
+        splitPane.setBottomComponent(pnlInstructions);
+
+        getContentPane().add(splitPane, java.awt.BorderLayout.CENTER);
+
+        cmdRefresh.setText("refresh");
+        cmdRefresh.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                cmdRefreshActionPerformed(evt);
+            }
+        });
+        jPanel2.add(cmdRefresh);
+
+        cmdExport.setText("export_json");
+        cmdExport.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                cmdExportActionPerformed(evt);
+            }
+        });
+        jPanel2.add(cmdExport);
+
+        cmdClose.setText("close");
+        cmdClose.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                cmdCloseActionPerformed(evt);
+            }
+        });
+        jPanel2.add(cmdClose);
+
+        getContentPane().add(jPanel2, java.awt.BorderLayout.SOUTH);
+
+        pack();
+    }// </editor-fold>//GEN-END:initComponents
+
+    private void cmdCloseActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdCloseActionPerformed
+		close();
+    }//GEN-LAST:event_cmdCloseActionPerformed
+
+    private void formWindowClosing(java.awt.event.WindowEvent evt) {//GEN-FIRST:event_formWindowClosing
+		close();
+    }//GEN-LAST:event_formWindowClosing
+
+    private void cmdRefreshActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdRefreshActionPerformed
+		refresh();
+    }//GEN-LAST:event_cmdRefreshActionPerformed
+
+    private void cmdExportActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdExportActionPerformed
+		export();
+    }//GEN-LAST:event_cmdExportActionPerformed
+
+	/**
+	 * Closes the window.
+	 */
+	private void close() {
+		setVisible(false);
+	}
+
+	/**
+	 * Shows or hides the dialog, generating the report when shown.
+	 * @param visible Whether to show the dialog.
+	 */
+	@Override
+	public void setVisible(boolean visible) {
+		if(visible && !isVisible())
+			refresh();
+		super.setVisible(visible);
+	}
+
+	/**
+	 * Translates the dialog's strings.
+	 */
+	protected final void translate() {
+		setTitle(Lang.t("timing_report"));
+		Lang.tButton(cmdRefresh, "refresh");
+		Lang.tButton(cmdExport, "export_json");
+		Lang.tButton(cmdClose, "close");
+		lblClockPeriod.setText(Lang.t("clock_period") + ":");
+		lblBottleneck.setText(Lang.t("bottleneck_stage") + ":");
+		for(int i = 0; i < STAGE_COLUMNS.length; i++)
+			tblStages.getColumnModel().getColumn(i).setHeaderValue(Lang.t(STAGE_COLUMNS[i]));
+		tblStages.getTableHeader().repaint();
+		instructionsModel.fireTableStructureChanged();
+		fileChooser = new JFileChooser();
+		fileChooser.setDialogTitle(Lang.t("export_timing_report_to_file"));
+		fileChooser.setFileFilter(new FileNameExtensionFilter(Lang.t("json_files"), "json"));
+	}
+
+	/**
+	 * Sets the CPU, generating its report right away if the dialog is visible.
+	 * @param cpu The CPU.
+	 */
+	protected void setCPU(CPU cpu) {
+		this.cpu = cpu;
+		report = null;
+		if(isVisible())
+			refresh();
+		else
+			updateTables();
+	}
+
+	/**
+	 * Generates the report with the current latencies and shows it.
+	 */
+	private void refresh() {
+		if(cpu == null) return;
+		setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+		try {
+			report = TimingReport.generate(CPUTemplate.getTemplate(cpu.getFile().getPath()), cpu,
+				Runtime.getRuntime().availableProcessors());
+		} catch(Exception ex) {
+			report = null;
+			JOptionPane.showMessageDialog(this, Lang.t("error_generating_timing_report") + "\n" + ex.getMessage(), AppInfo.NAME, JOptionPane.ERROR_MESSAGE);
+			LOG.log(Level.WARNING, "error generating the timing report", ex);
+		} finally {
+			setCursor(Cursor.getDefaultCursor());
+		}
+		updateTables();
+	}
+
+	/**
+	 * Updates the labels and tables with the current report.
+	 */
+	private void updateTables() {
+		cmdExport.setEnabled(report != null);
+		if(report == null) {
+			lblClockPeriodVal.setText("-");
+			lblBottleneckVal.setText("-");
+			stagesModel.setRowCount(0);
+		}
+		else {
+			lblClockPeriodVal.setText(report.getClockPeriod() + " " + CPU.LATENCY_UNIT);
+			lblBottleneckVal.setText(report.getStageName(report.getBottleneckStage()));
+			stagesModel.setRowCount(report.getNumberOfStages());
+			for(int s = 0; s < report.getNumberOfStages(); s++) {
+				TimingReport.Path path = report.getStagePath(s);
+				stagesModel.setValueAt(report.getStageName(s), s, 0);
+				stagesModel.setValueAt(path != null ? path.getLatency() : 0, s, 1);
+				stagesModel.setValueAt(path != null ? path.toString() : "", s, 2);
+			}
+		}
+		instructionsModel.fireTableStructureChanged();
+	}
+
+	/**
+	 * Asks the user for a file and exports the report to it, as JSON.
+	 */
+	private void export() {
+		if(report == null) return;
+		if(fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+			File f = fileChooser.getSelectedFile();
+			if(f.getName().lastIndexOf(".") == -1)
+				f = new File(f.getPath() + ".json"); // append extension if missing
+			if(f.exists() && JOptionPane.showConfirmDialog(this, Lang.t("confirm_replace", f.getName()), AppInfo.NAME, JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE) != JOptionPane.OK_OPTION)
+				return;
+			try(BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), "UTF8"))) {
+				report.writeJSON(writer);
+			}
+			catch(IOException ex) {
+				JOptionPane.showMessageDialog(this, Lang.t("error_saving_file", f.getName()) + "\n" + ex.getMessage(), AppInfo.NAME, JOptionPane.ERROR_MESSAGE);
+				LOG.log(Level.WARNING, "error exporting the timing report to \"" + f.getName() + "\"", ex);
+			}
+		}
+	}
+
+	/**
+	 * Model of the instructions table, with a column for the latency in each stage.
+	 */
+	private class InstructionsTableModel extends javax.swing.table.AbstractTableModel {
+		@Override
+		public int getRowCount() {
+			return report != null ? report.getNumberOfInstructions() : 0;
+		}
+
+		@Override
+		public int getColumnCount() {
+			return INSTRUCTION_COLUMNS.length + (report != null && report.getNumberOfStages() > 1 ? report.getNumberOfStages() : 0);
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return column < INSTRUCTION_COLUMNS.length ? Lang.t(INSTRUCTION_COLUMNS[column]) : report.getStageName(column - INSTRUCTION_COLUMNS.length);
+		}
+
+		@Override
+		public Class<?> getColumnClass(int column) {
+			return column < INSTRUCTION_COLUMNS.length ? INSTRUCTION_COLUMN_CLASSES[column] : Integer.class;
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			TimingReport.InstructionTiming t = report.getInstruction(row);
+			switch(column) {
+				case 0: return t.getMnemonic();
+				case 1: return t.getCode();
+				case 2: return t.isValid() ? t.getLatency() : null;
+				case 3: return t.isValid() ? report.getStageName(t.getCriticalStage()) : "";
+				case 4:
+					if(!t.isValid()) return t.getError();
+					return t.getCriticalPath() != null ? t.getCriticalPath().toString() : "";
+				default: return t.isValid() ? t.getStageLatency(column - INSTRUCTION_COLUMNS.length) : null;
+			}
+		}
+	}
+
+    // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JButton cmdClose;
+    private javax.swing.JButton cmdExport;
+    private javax.swing.JButton cmdRefresh;
+    private javax.swing.JPanel jPanel1;
+    private javax.swing.JPanel jPanel2;
+    private javax.swing.JLabel lblBottleneck;
+    private javax.swing.JLabel lblBottleneckVal;
+    private javax.swing.JLabel lblClockPeriod;
+    private javax.swing.JLabel lblClockPeriodVal;
+    private javax.swing.JScrollPane pnlInstructions;
+    private javax.swing.JScrollPane pnlStages;
+    private javax.swing.JSplitPane splitPane;
+    private javax.swing.JTable tblInstructions;
+    private javax.swing.JTable tblStages;
+    // End of variables declaration//GEN-END:variables
+}
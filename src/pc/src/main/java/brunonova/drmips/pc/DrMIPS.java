@@ -19,8 +19,17 @@
 package brunonova.drmips.pc;
 
 import brunonova.drmips.simulator.AppInfo;
+import brunonova.drmips.simulator.CPUTemplate;
+import brunonova.drmips.simulator.DesignSpaceExplorer;
+import brunonova.drmips.simulator.LocalityAnalyzer;
+import brunonova.drmips.simulator.TimingReport;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
@@ -74,6 +83,7 @@ public class DrMIPS {
 	public static final String DATA_MEMORY_TAB_SIDE_PREF = "data_mem_tab_side";
 	public static final String DIVIDER_LOCATION_PREF = "div_location";
 	public static final String ASSEMBLE_RESET_PREF = "assemble_reset";
+	public static final String ASSEMBLE_SCHEDULE_PREF = "assemble_schedule";
 	public static final String DARK_THEME_PREF = "dark_theme";
 	public static final String INTERNAL_WINDOWS_PREF = "internal_windows";
 	public static final String SHOW_CONTROL_PATH_PREF = "show_control_path";
@@ -92,6 +102,8 @@ public class DrMIPS {
 	public static final String SCALE_PREF = "scale";
 	public static final String AUTO_SCALE_PREF = "auto_scale";
 	public static final String OPENGL_PREF = "use_opengl";
+	public static final String MAX_CYCLES_PREF = "max_cycles";
+	public static final String MAX_TIME_PREF = "max_time";
 
 	// Default values of the preferences
 	public static final int DEFAULT_REGISTER_FORMAT = Util.DECIMAL_FORMAT_INDEX;
@@ -105,6 +117,7 @@ public class DrMIPS {
 	public static final int DEFAULT_ASSEMBLED_CODE_TAB_SIDE = Util.LEFT;
 	public static final int DEFAULT_DATA_MEMORY_TAB_SIDE = Util.LEFT;
 	public static final boolean DEFAULT_ASSEMBLE_RESET = true;
+	public static final boolean DEFAULT_ASSEMBLE_SCHEDULE = false;
 	public static final boolean DEFAULT_DARK_THEME = false;
 	public static final boolean DEFAULT_INTERNAL_WINDOWS = false;
 	public static final boolean DEFAULT_SHOW_CONTROL_PATH = true;
@@ -121,6 +134,8 @@ public class DrMIPS {
 	public static final double DEFAULT_SCALE = 1.0;
 	public static final boolean DEFAULT_AUTO_SCALE = false;
 	public static final boolean DEFAULT_OPENGL = false;
+	public static final long DEFAULT_MAX_CYCLES = 100000;
+	public static final long DEFAULT_MAX_TIME = 30; // seconds
 
 	/** "Loading" dialog. */
 	private static DlgLoading dlgLoading = null;
@@ -128,6 +143,40 @@ public class DrMIPS {
 	private static FrmSimulator frmSim = null;
 	/** Optional filename to open. */
 	private static String filename = null;
+	/** Whether to run the given code files without the graphical interface. */
+	private static boolean batch = false;
+	/** The code files to run in batch mode. */
+	private static List<String> batchFiles = null;
+	/** The CPU files to run the code on in batch mode. */
+	private static List<String> batchCPUs = null;
+	/** The output format of the batch mode. */
+	private static String batchFormat = BatchRunner.FORMAT_JSON;
+	/** The output file of the batch mode, or <tt>null</tt> for the standard output. */
+	private static String batchOutput = null;
+	/** The number of parallel threads of the batch mode. */
+	private static int batchThreads = Runtime.getRuntime().availableProcessors();
+	/** The directory where the execution traces of the batch mode are written, or <tt>null</tt>. */
+	private static String batchTrace = null;
+	/** The directory where the VCD waveform files of the batch mode are written, or <tt>null</tt>. */
+	private static String batchVCD = null;
+	/** The directory where the instruction profiles of the batch mode are written, or <tt>null</tt>. */
+	private static String batchProfile = null;
+	/** The directory where the locality analyses of the batch mode are written, or <tt>null</tt>. */
+	private static String batchLocality = null;
+	/** The size of the blocks of the locality analyses of the batch mode, in bytes. */
+	private static int batchBlockSize = LocalityAnalyzer.DEFAULT_BLOCK_SIZE;
+	/** Whether the instructions are scheduled in the batch mode. */
+	private static boolean batchSchedule = false;
+	/** The maximum number of clock cycles of each execution of the batch mode (no limit if not positive). */
+	private static long batchMaxCycles = DEFAULT_MAX_CYCLES;
+	/** The maximum time of each execution of the batch mode, in seconds (no limit if not positive). */
+	private static long batchMaxTime = 0;
+	/** Whether to explore the latencies of the components without the graphical interface. */
+	private static boolean explore = false;
+	/** The latencies to explore, in the format <tt>component=latencies</tt>. */
+	private static List<String> exploreLatencies = null;
+	/** Whether to write the timing report of the CPU without the graphical interface. */
+	private static boolean timing = false;
 	/** Class logger. */
 	private static final Logger LOG = Logger.getLogger(DrMIPS.class.getName());
 
@@ -181,6 +230,34 @@ public class DrMIPS {
 			parser.accepts("opengl", "enable OpenGL hardware acceleration");
 			parser.accepts("no-opengl", "disable OpenGL hardware acceleration");
 			parser.accepts("reset", "reset all settings to their defaults");
+			parser.accepts("batch", "run the given code files on the CPUs without the graphical interface");
+			OptionSpec<String> cpuOpt = parser.accepts("cpu", "CPU file to run the code on in batch mode (can be repeated)")
+											  .withRequiredArg().describedAs("file");
+			OptionSpec<String> formatOpt = parser.accepts("format", "output format of the batch mode (json or csv)")
+												 .withRequiredArg().defaultsTo(BatchRunner.FORMAT_JSON);
+			OptionSpec<String> outputOpt = parser.accepts("output", "output file of the batch mode (default: standard output)")
+												 .withRequiredArg().describedAs("file");
+			OptionSpec<Integer> threadsOpt = parser.accepts("threads", "number of parallel threads of the batch mode")
+												   .withRequiredArg().ofType(Integer.class).defaultsTo(batchThreads);
+			OptionSpec<String> traceOpt = parser.accepts("trace", "directory where the execution traces of the batch mode are written")
+												.withRequiredArg().describedAs("dir");
+			OptionSpec<String> vcdOpt = parser.accepts("vcd", "directory where the VCD waveform files of the batch mode are written")
+											  .withRequiredArg().describedAs("dir");
+			OptionSpec<String> profileOpt = parser.accepts("profile", "directory where the instruction profiles (CSV) of the batch mode are written")
+												  .withRequiredArg().describedAs("dir");
+			OptionSpec<String> localityOpt = parser.accepts("locality", "directory where the analyses of the locality of the memory accesses (JSON) of the batch mode are written")
+												   .withRequiredArg().describedAs("dir");
+			OptionSpec<Integer> blockSizeOpt = parser.accepts("block-size", "size of the blocks, in bytes, of the locality analyses of the batch mode")
+													 .withRequiredArg().ofType(Integer.class).defaultsTo(batchBlockSize);
+			parser.accepts("schedule", "schedule the instructions to avoid pipeline hazards in the batch mode");
+			OptionSpec<Long> maxCyclesOpt = parser.accepts("max-cycles", "maximum number of clock cycles of each execution of the batch mode or of the exploration (0 for no limit)")
+												  .withRequiredArg().ofType(Long.class).defaultsTo(batchMaxCycles);
+			OptionSpec<Long> maxTimeOpt = parser.accepts("max-time", "maximum time, in seconds, of each execution of the batch mode (0 for no limit)")
+												.withRequiredArg().ofType(Long.class).defaultsTo(batchMaxTime);
+			parser.accepts("explore", "explore the combinations of latencies of the components of the CPU on the given code file, without the graphical interface");
+			parser.accepts("timing", "write the timing report (JSON) of the CPU without the graphical interface");
+			OptionSpec<String> latencyOpt = parser.accepts("latency", "latencies of a component to explore (from:to:step or a,b,c; can be repeated)")
+												  .withRequiredArg().describedAs("component=latencies");
 
 			OptionSet options = parser.parse(args);
 			List<String> otherArgs = options.valuesOf(fileArg);
@@ -199,7 +276,63 @@ public class DrMIPS {
 				useOpenGl = true;
 				prefs.putBoolean(OPENGL_PREF, useOpenGl);
 			}
-			if(!otherArgs.isEmpty()) {
+			if(options.has("timing")) {
+				timing = true;
+				batchCPUs = options.valuesOf(cpuOpt);
+				batchOutput = options.valueOf(outputOpt);
+				batchThreads = options.valueOf(threadsOpt);
+				if(batchCPUs.size() > 1) {
+					System.err.println("Only one CPU file can be supplied!");
+					System.exit(1);
+				}
+				if(batchThreads < 1) {
+					System.err.println("The number of threads must be positive!");
+					System.exit(1);
+				}
+			}
+			else if(options.has("batch") || options.has("explore")) {
+				batch = true;
+				explore = options.has("explore");
+				exploreLatencies = options.valuesOf(latencyOpt);
+				batchFiles = otherArgs;
+				batchCPUs = options.valuesOf(cpuOpt);
+				batchFormat = options.valueOf(formatOpt).toLowerCase();
+				batchOutput = options.valueOf(outputOpt);
+				batchThreads = options.valueOf(threadsOpt);
+				batchTrace = options.valueOf(traceOpt);
+				batchVCD = options.valueOf(vcdOpt);
+				batchProfile = options.valueOf(profileOpt);
+				batchLocality = options.valueOf(localityOpt);
+				batchBlockSize = options.valueOf(blockSizeOpt);
+				batchSchedule = options.has("schedule");
+				batchMaxCycles = options.valueOf(maxCyclesOpt);
+				batchMaxTime = options.valueOf(maxTimeOpt);
+				if(batchFiles.isEmpty()) {
+					System.err.println("No code files supplied!");
+					System.exit(1);
+				}
+				if(!batchFormat.equals(BatchRunner.FORMAT_JSON) && !batchFormat.equals(BatchRunner.FORMAT_CSV)) {
+					System.err.println("Unknown output format " + batchFormat + "!");
+					System.exit(1);
+				}
+				if(batchThreads < 1) {
+					System.err.println("The number of threads must be positive!");
+					System.exit(1);
+				}
+				if(batchBlockSize < 4 || Integer.bitCount(batchBlockSize) != 1) {
+					System.err.println("The block size must be a power of 2 not less than 4!");
+					System.exit(1);
+				}
+				if(explore && (batchFiles.size() != 1 || batchCPUs.size() > 1)) {
+					System.err.println("Only one code file and one CPU file can be explored!");
+					System.exit(1);
+				}
+				if(explore && exploreLatencies.isEmpty()) {
+					System.err.println("No component latencies to explore supplied!");
+					System.exit(1);
+				}
+			}
+			else if(!otherArgs.isEmpty()) {
 				if(otherArgs.size() == 1)
 					filename = otherArgs.get(0);
 				else {
@@ -213,7 +346,7 @@ public class DrMIPS {
 		}
 
 		// Try to enable OpenGL hardware acceleration, unless requested not to
-		if(useOpenGl)
+		if(useOpenGl && !batch && !timing)
 			enableOpenGl();
 
 		// Find the path to the program
@@ -232,8 +365,128 @@ public class DrMIPS {
 			LOG.log(Level.WARNING, "error finding the path of the program", ex);
 		}
 
-		// Start the GUI
-		SwingUtilities.invokeLater(new StartGUIRunnable());
+		// Run in batch mode or start the GUI
+		if(timing)
+			runTimingReport();
+		else if(explore)
+			runExploration();
+		else if(batch)
+			runBatch();
+		else
+			SwingUtilities.invokeLater(new StartGUIRunnable());
+	}
+
+	/**
+	 * Runs the code files on the CPU files without the GUI, writes the results and exits.
+	 * <p>The exit status is 2 if any of the runs failed or didn't finish.</p>
+	 */
+	private static void runBatch() {
+		if(batchCPUs.isEmpty())
+			batchCPUs = Arrays.asList(path + File.separator + DEFAULT_CPU);
+
+		try {
+			BatchRunner runner = new BatchRunner(batchFiles, batchCPUs, batchThreads);
+			if(batchTrace != null)
+				runner.setTraceDirectory(createBatchDirectory(batchTrace));
+			if(batchVCD != null)
+				runner.setVCDDirectory(createBatchDirectory(batchVCD));
+			if(batchProfile != null)
+				runner.setProfileDirectory(createBatchDirectory(batchProfile));
+			if(batchLocality != null)
+				runner.setLocalityDirectory(createBatchDirectory(batchLocality));
+			runner.setLocalityBlockSize(batchBlockSize);
+			runner.setSchedulingEnabled(batchSchedule);
+			runner.setMaxCycles(batchMaxCycles);
+			runner.setMaxTime(batchMaxTime * 1000);
+			List<BatchRunner.Result> results = runner.run();
+			if(batchOutput == null)
+				BatchRunner.write(results, batchFormat, new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+			else {
+				try (Writer out = new OutputStreamWriter(new FileOutputStream(batchOutput), StandardCharsets.UTF_8)) {
+					BatchRunner.write(results, batchFormat, out);
+				}
+			}
+
+			for(BatchRunner.Result r: results) {
+				if(!r.isSuccessful())
+					System.exit(2);
+			}
+			System.exit(0);
+		} catch(Exception ex) {
+			System.err.println("Error running batch: " + ex);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Explores the latencies of the components of the CPU file on the code file
+	 * without the GUI, writes the result and exits.
+	 */
+	private static void runExploration() {
+		String cpuFile = batchCPUs.isEmpty() ? path + File.separator + DEFAULT_CPU : batchCPUs.get(0);
+
+		try {
+			DesignSpaceExplorer explorer = new DesignSpaceExplorer(CPUTemplate.getTemplate(cpuFile));
+			for(String latency: exploreLatencies) {
+				int eq = latency.indexOf('=');
+				if(eq <= 0) {
+					System.err.println("Invalid component latencies " + latency + " (expected component=latencies)!");
+					System.exit(1);
+				}
+				explorer.addComponent(latency.substring(0, eq).trim(), DesignSpaceExplorer.parseLatencies(latency.substring(eq + 1)));
+			}
+			explorer.setSchedulingEnabled(batchSchedule);
+			String code = new String(Files.readAllBytes(new File(batchFiles.get(0)).toPath()), StandardCharsets.UTF_8);
+			DesignSpaceExplorer.Exploration result = explorer.explore(code, batchMaxCycles, batchThreads);
+
+			if(batchOutput == null)
+				ExplorationWriter.write(result, batchFormat, new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+			else {
+				try (Writer out = new OutputStreamWriter(new FileOutputStream(batchOutput), StandardCharsets.UTF_8)) {
+					ExplorationWriter.write(result, batchFormat, out);
+				}
+			}
+			System.exit(0);
+		} catch(Exception ex) {
+			System.err.println("Error exploring latencies: " + ex);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Writes the timing report of the CPU file without the GUI and exits.
+	 */
+	private static void runTimingReport() {
+		String cpuFile = batchCPUs.isEmpty() ? path + File.separator + DEFAULT_CPU : batchCPUs.get(0);
+
+		try {
+			TimingReport report = TimingReport.generate(CPUTemplate.getTemplate(cpuFile), batchThreads);
+			if(batchOutput == null)
+				report.writeJSON(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+			else {
+				try (Writer out = new OutputStreamWriter(new FileOutputStream(batchOutput), StandardCharsets.UTF_8)) {
+					report.writeJSON(out);
+				}
+			}
+			System.exit(0);
+		} catch(Exception ex) {
+			System.err.println("Error generating the timing report: " + ex);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Creates an output directory of the batch mode, if it doesn't exist, or exits on failure.
+	 * @param path The path of the directory.
+	 * @return The directory.
+	 */
+	private static File createBatchDirectory(String path) {
+		File dir = new File(path);
+		if(!dir.isDirectory() && !dir.mkdirs()) {
+			System.err.println("Cannot create the directory " + path + "!");
+			System.exit(1);
+		}
+		return dir;
 	}
 
 	private static class StartGUIRunnable implements Runnable {
@@ -68,9 +68,7 @@ public class ExecTable extends JTable {
 		// Set the columns
 		model.setRowCount(0);
 		model.setColumnCount(0);
-		if(cpu.isPipeline())
-			for(int i = 0; i < 5; i++) model.addColumn(null);
-		else
+		for(int i = 0; i < cpu.getNumberOfStages(); i++)
 			model.addColumn(null);
 		
 		model.setRowCount(1); // add 1 row
@@ -93,13 +91,8 @@ public class ExecTable extends JTable {
 		if(model == null || cpu == null) return;
 		dataFormat = format;
 		
-		model.setValueAt(getInstructionInIndex(cpu.getPC().getCurrentInstructionIndex()), 0, 0);
-		if(cpu.isPipeline()) {
-			model.setValueAt(getInstructionInIndex(cpu.getIfIdReg().getCurrentInstructionIndex()), 0, 1);
-			model.setValueAt(getInstructionInIndex(cpu.getIdExReg().getCurrentInstructionIndex()), 0, 2);
-			model.setValueAt(getInstructionInIndex(cpu.getExMemReg().getCurrentInstructionIndex()), 0, 3);
-			model.setValueAt(getInstructionInIndex(cpu.getMemWbReg().getCurrentInstructionIndex()), 0, 4);
-		}
+		for(int i = 0; i < cpu.getNumberOfStages(); i++)
+			model.setValueAt(getInstructionInIndex(cpu.getStageInstructionIndex(i)), 0, i);
 		
 		repaint();
 	}
@@ -119,13 +112,9 @@ public class ExecTable extends JTable {
 		if(cpu == null || model == null) return null;
 		AssembledInstruction i = null;
 		
-		switch(columnAtPoint(event.getPoint())) {
-			case 0: i = cpu.getInstructionMemory().getInstruction(cpu.getPC().getCurrentInstructionIndex()); break;
-			case 1: i = cpu.getInstructionMemory().getInstruction(cpu.getIfIdReg().getCurrentInstructionIndex()); break;
-			case 2: i = cpu.getInstructionMemory().getInstruction(cpu.getIdExReg().getCurrentInstructionIndex()); break;
-			case 3: i = cpu.getInstructionMemory().getInstruction(cpu.getExMemReg().getCurrentInstructionIndex()); break;
-			case 4: i = cpu.getInstructionMemory().getInstruction(cpu.getMemWbReg().getCurrentInstructionIndex()); break;
-		}
+		int column = columnAtPoint(event.getPoint());
+		if(column >= 0 && column < cpu.getNumberOfStages())
+			i = cpu.getInstructionMemory().getInstruction(cpu.getStageInstructionIndex(column));
 		
 		if(i != null) {
 			switch(dataFormat) {
@@ -151,15 +140,8 @@ public class ExecTable extends JTable {
 
 			if(getColumnCount() == 1)
 				setBackground(Util.instColor);
-			else {
-				switch(column) {
-					case 0: setBackground(Util.ifColor); break;
-					case 1: setBackground(Util.idColor); break;
-					case 2: setBackground(Util.exColor); break;
-					case 3: setBackground(Util.memColor); break;
-					case 4: setBackground(Util.wbColor); break;
-				}
-			}
+			else
+				setBackground(Util.getStageColor(cpu.getStageRole(column)));
 			
 			return c;
 		}
@@ -0,0 +1,119 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.pc;
+
+import brunonova.drmips.simulator.DesignSpaceExplorer;
+import java.io.IOException;
+import java.io.Writer;
+import org.json.JSONException;
+import org.json.JSONWriter;
+
+/**
+ * Writes the result of a design-space exploration (see {@link DesignSpaceExplorer}).
+ *
+ * <p>The JSON format contains the statistics of the execution, the components
+ * ranked by sensitivity and the combinations in the Pareto frontier. The CSV
+ * format contains one line per combination, with a column that tells whether
+ * it is in the Pareto frontier.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class ExplorationWriter {
+	/**
+	 * Private constructor (static methods only).
+	 */
+	private ExplorationWriter() { }
+
+	/**
+	 * Writes the result of an exploration in the given format.
+	 * @param result The result to write.
+	 * @param format The format ({@link BatchRunner#FORMAT_JSON} or {@link BatchRunner#FORMAT_CSV}).
+	 * @param out The output.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public static void write(DesignSpaceExplorer.Exploration result, String format, Writer out) throws IOException {
+		if(BatchRunner.FORMAT_CSV.equals(format))
+			writeCSV(result, out);
+		else
+			writeJSON(result, out);
+		out.flush();
+	}
+
+	/**
+	 * Writes the result as a JSON object.
+	 * @param result The result to write.
+	 * @param out The output.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private static void writeJSON(DesignSpaceExplorer.Exploration result, Writer out) throws IOException {
+		try {
+			JSONWriter json = new JSONWriter(out);
+			json.object();
+			if(!result.isCyclesLatencyDependent())
+				json.key("cycles").value(result.getCycles(0));
+			json.key("instructions").value(result.getInstructions())
+				.key("combinations").value(result.getNumberOfCombinations());
+
+			json.key("sensitivity").array();
+			for(int k: result.getSensitivityRanking()) {
+				json.object()
+					.key("component").value(result.getComponentId(k))
+					.key("execution_time_increase").value(result.getSensitivity(k))
+					.endObject();
+			}
+			json.endArray();
+
+			json.key("pareto").array();
+			for(int c: result.getParetoFrontier()) {
+				json.object().key("latencies").object();
+				for(int k = 0; k < result.getNumberOfComponents(); k++)
+					json.key(result.getComponentId(k)).value(result.getLatency(c, k));
+				json.endObject()
+					.key("clock_period").value(result.getClockPeriod(c))
+					.key("cycles").value(result.getCycles(c))
+					.key("execution_time").value(result.getExecutionTime(c))
+					.endObject();
+			}
+			json.endArray();
+
+			json.endObject();
+			out.write('\n');
+		} catch(JSONException ex) {
+			throw new IOException(ex);
+		}
+	}
+
+	/**
+	 * Writes the result as CSV, with a header line.
+	 * @param result The result to write.
+	 * @param out The output.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private static void writeCSV(DesignSpaceExplorer.Exploration result, Writer out) throws IOException {
+		for(int k = 0; k < result.getNumberOfComponents(); k++)
+			out.write(BatchRunner.escapeCSV(result.getComponentId(k)) + ",");
+		out.write("clock_period,cycles,execution_time,pareto\n");
+
+		for(int c = 0; c < result.getNumberOfCombinations(); c++) {
+			for(int k = 0; k < result.getNumberOfComponents(); k++)
+				out.write(result.getLatency(c, k) + ",");
+			out.write(result.getClockPeriod(c) + "," + result.getCycles(c) + "," + result.getExecutionTime(c) + ","
+				+ result.isInParetoFrontier(c) + "\n");
+		}
+	}
+}
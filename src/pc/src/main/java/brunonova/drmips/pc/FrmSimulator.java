@@ -20,7 +20,13 @@ package brunonova.drmips.pc;
 
 import brunonova.drmips.simulator.AppInfo;
 import brunonova.drmips.simulator.CPU;
+import brunonova.drmips.simulator.ExecutionResult;
+import brunonova.drmips.simulator.ExecutionTask;
+import brunonova.drmips.simulator.LocalityAnalyzer;
+import brunonova.drmips.simulator.SimulatorEvents;
 import brunonova.drmips.simulator.exceptions.*;
+import brunonova.drmips.simulator.trace.TraceIndex;
+import brunonova.drmips.simulator.trace.VCDRecorder;
 import java.awt.BorderLayout;
 import java.awt.Desktop;
 import java.awt.Image;
@@ -39,6 +45,7 @@ import java.io.OutputStreamWriter;
 import java.net.URI;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.ImageIcon;
@@ -49,7 +56,10 @@ import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JRadioButtonMenuItem;
+import javax.swing.JSpinner;
 import javax.swing.JTabbedPane;
+import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingUtilities;
 import javax.swing.event.CaretEvent;
 import javax.swing.event.CaretListener;
@@ -87,8 +97,24 @@ public class FrmSimulator extends javax.swing.JFrame {
 	private DlgSupportedInstructions dlgSupportedInstructions = null;
 	/** The statistics dialog. */
 	private DlgStatistics dlgStatistics = null; // statistics refreshed in DatapathPanel.refresh()
+	/** The component profiler dialog. */
+	private DlgProfiler dlgProfiler = null;
+	/** The timing report dialog. */
+	private DlgTimingReport dlgTimingReport = null;
 	/** The selected tab when it was right-clicked. */
 	private Tab selectedTab = null;
+	/** The execution started by <tt>run()</tt>, or <tt>null</tt> if no program is being executed. */
+	private ExecutionTask execution = null;
+	/** The index of the execution of the assembled program, used to display past clock cycles. */
+	private TraceIndex traceIndex = null;
+	/** The recorder of the waveform of the CPU's wires, or <tt>null</tt> if not recording. */
+	private VCDRecorder vcdRecorder = null;
+	/** The file where the waveform is being recorded, or <tt>null</tt>. */
+	private File vcdFile = null;
+	/** The file chooser to save a waveform file. */
+	private JFileChooser vcdFileChooser = null;
+	/** The file chooser to export the profile of the instructions. */
+	private JFileChooser profileFileChooser = null;
 
 	/** Information of the code tab. */
 	private Tab tabCode;
@@ -132,6 +158,8 @@ public class FrmSimulator extends javax.swing.JFrame {
 		dlgFindReplace = new DlgFindReplace(this);
 		dlgSupportedInstructions = new DlgSupportedInstructions(this);
 		dlgStatistics = new DlgStatistics(this);
+		dlgProfiler = new DlgProfiler(this);
+		dlgTimingReport = new DlgTimingReport(this);
 		refreshTabSides();
 		updateRecentFiles();
 		loadFirstCPU();
@@ -144,6 +172,7 @@ public class FrmSimulator extends javax.swing.JFrame {
 
 		mnuOpenLastFileAtStartup.setSelected(DrMIPS.prefs.getBoolean(DrMIPS.OPEN_LAST_FILE_AT_STARTUP_PREF, DrMIPS.DEFAULT_OPEN_LAST_FILE_AT_STARTUP));
 		mnuResetDataBeforeAssembling.setSelected(DrMIPS.prefs.getBoolean(DrMIPS.ASSEMBLE_RESET_PREF, DrMIPS.DEFAULT_ASSEMBLE_RESET));
+		mnuScheduleInstructions.setSelected(DrMIPS.prefs.getBoolean(DrMIPS.ASSEMBLE_SCHEDULE_PREF, DrMIPS.DEFAULT_ASSEMBLE_SCHEDULE));
 		mnuSwitchTheme.setSelected(DrMIPS.prefs.getBoolean(DrMIPS.DARK_THEME_PREF, DrMIPS.DEFAULT_DARK_THEME));
 		mnuInternalWindows.setSelected(DrMIPS.prefs.getBoolean(DrMIPS.INTERNAL_WINDOWS_PREF, DrMIPS.DEFAULT_INTERNAL_WINDOWS));
 		if(mnuInternalWindows.isSelected()) switchToInternalWindows();
@@ -229,6 +258,7 @@ public class FrmSimulator extends javax.swing.JFrame {
         cmdBackStep = new javax.swing.JButton();
         cmdStep = new javax.swing.JButton();
         cmdRun = new javax.swing.JButton();
+        cmdStop = new javax.swing.JButton();
         jSeparator12 = new javax.swing.JToolBar.Separator();
         cmdStatistics = new javax.swing.JButton();
         cmdSupportedInstructions = new javax.swing.JButton();
@@ -330,16 +360,25 @@ public class FrmSimulator extends javax.swing.JFrame {
         mnuRemoveLatencies = new javax.swing.JMenuItem();
         jSeparator15 = new javax.swing.JPopupMenu.Separator();
         mnuStatistics = new javax.swing.JMenuItem();
+        mnuProfiler = new javax.swing.JMenuItem();
+        mnuTimingReport = new javax.swing.JMenuItem();
         mnuExecute = new javax.swing.JMenu();
         mnuAssemble = new javax.swing.JMenuItem();
         jSeparator3 = new javax.swing.JPopupMenu.Separator();
         mnuRestart = new javax.swing.JMenuItem();
         mnuBackStep = new javax.swing.JMenuItem();
+        mnuGoToCycle = new javax.swing.JMenuItem();
+        mnuRecordWaveform = new javax.swing.JMenuItem();
+        mnuExportProfile = new javax.swing.JMenuItem();
         mnuStep = new javax.swing.JMenuItem();
         mnuRun = new javax.swing.JMenuItem();
+        mnuStop = new javax.swing.JMenuItem();
         mnuBreak = new javax.swing.JMenuItem();
+        mnuClearBreakpoints = new javax.swing.JMenuItem();
+        mnuExecutionLimits = new javax.swing.JMenuItem();
         jSeparator10 = new javax.swing.JPopupMenu.Separator();
         mnuResetDataBeforeAssembling = new javax.swing.JCheckBoxMenuItem();
+        mnuScheduleInstructions = new javax.swing.JCheckBoxMenuItem();
         mnuCPU = new javax.swing.JMenu();
         mnuLoadCPU = new javax.swing.JMenuItem();
         mnuLoadRecentCPU = new javax.swing.JMenu();
@@ -564,6 +603,18 @@ public class FrmSimulator extends javax.swing.JFrame {
             }
         });
         pnlToolBar.add(cmdRun);
+
+        cmdStop.setIcon(new javax.swing.ImageIcon(getClass().getResource("/res/icons/x24/stop.png"))); // NOI18N
+        cmdStop.setEnabled(false);
+        cmdStop.setFocusable(false);
+        cmdStop.setHorizontalTextPosition(javax.swing.SwingConstants.CENTER);
+        cmdStop.setVerticalTextPosition(javax.swing.SwingConstants.BOTTOM);
+        cmdStop.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                cmdStopActionPerformed(evt);
+            }
+        });
+        pnlToolBar.add(cmdStop);
         pnlToolBar.add(jSeparator12);
 
         cmdStatistics.setIcon(new javax.swing.ImageIcon(getClass().getResource("/res/icons/x24/statistics.png"))); // NOI18N
@@ -1179,6 +1230,22 @@ public class FrmSimulator extends javax.swing.JFrame {
         });
         mnuDatapath.add(mnuStatistics);
 
+        mnuProfiler.setText("component_profiler");
+        mnuProfiler.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                mnuProfilerActionPerformed(evt);
+            }
+        });
+        mnuDatapath.add(mnuProfiler);
+
+        mnuTimingReport.setText("timing_report");
+        mnuTimingReport.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                mnuTimingReportActionPerformed(evt);
+            }
+        });
+        mnuDatapath.add(mnuTimingReport);
+
         mnuBar.add(mnuDatapath);
 
         mnuExecute.setText("execute");
@@ -1216,6 +1283,33 @@ public class FrmSimulator extends javax.swing.JFrame {
         });
         mnuExecute.add(mnuBackStep);
 
+        mnuGoToCycle.setText("go_to_cycle");
+        mnuGoToCycle.setEnabled(false);
+        mnuGoToCycle.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                mnuGoToCycleActionPerformed(evt);
+            }
+        });
+        mnuExecute.add(mnuGoToCycle);
+
+        mnuRecordWaveform.setText("record_waveform");
+        mnuRecordWaveform.setEnabled(false);
+        mnuRecordWaveform.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                mnuRecordWaveformActionPerformed(evt);
+            }
+        });
+        mnuExecute.add(mnuRecordWaveform);
+
+        mnuExportProfile.setText("export_instruction_profile");
+        mnuExportProfile.setEnabled(false);
+        mnuExportProfile.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                mnuExportProfileActionPerformed(evt);
+            }
+        });
+        mnuExecute.add(mnuExportProfile);
+
         mnuStep.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_F7, 0));
         mnuStep.setIcon(new javax.swing.ImageIcon(getClass().getResource("/res/icons/x16/step.png"))); // NOI18N
         mnuStep.setText("step");
@@ -1238,7 +1332,18 @@ public class FrmSimulator extends javax.swing.JFrame {
         });
         mnuExecute.add(mnuRun);
 
-        mnuBreak.setText("add breakpoint");
+        mnuStop.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_F5, java.awt.event.InputEvent.SHIFT_MASK));
+        mnuStop.setIcon(new javax.swing.ImageIcon(getClass().getResource("/res/icons/x16/stop.png"))); // NOI18N
+        mnuStop.setText("stop");
+        mnuStop.setEnabled(false);
+        mnuStop.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                mnuStopActionPerformed(evt);
+            }
+        });
+        mnuExecute.add(mnuStop);
+
+        mnuBreak.setText("add_breakpoint");
         mnuBreak.setEnabled(false);
         mnuBreak.addActionListener(new java.awt.event.ActionListener() {
             public void actionPerformed(java.awt.event.ActionEvent evt) {
@@ -1246,6 +1351,22 @@ public class FrmSimulator extends javax.swing.JFrame {
             }
         });
         mnuExecute.add(mnuBreak);
+
+        mnuClearBreakpoints.setText("clear_breakpoints");
+        mnuClearBreakpoints.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                mnuClearBreakpointsActionPerformed(evt);
+            }
+        });
+        mnuExecute.add(mnuClearBreakpoints);
+
+        mnuExecutionLimits.setText("execution_limits");
+        mnuExecutionLimits.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                mnuExecutionLimitsActionPerformed(evt);
+            }
+        });
+        mnuExecute.add(mnuExecutionLimits);
         mnuExecute.add(jSeparator10);
 
         mnuResetDataBeforeAssembling.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_R, java.awt.event.InputEvent.CTRL_MASK));
@@ -1254,6 +1375,9 @@ public class FrmSimulator extends javax.swing.JFrame {
         mnuResetDataBeforeAssembling.setIcon(new javax.swing.ImageIcon(getClass().getResource("/res/icons/x16/reset_data.png"))); // NOI18N
         mnuExecute.add(mnuResetDataBeforeAssembling);
 
+        mnuScheduleInstructions.setText("schedule_instructions");
+        mnuExecute.add(mnuScheduleInstructions);
+
         mnuBar.add(mnuExecute);
 
         mnuCPU.setText("cpu");
@@ -1575,6 +1699,37 @@ public class FrmSimulator extends javax.swing.JFrame {
         addBreakpoint();
     }//GEN-LAST:event_mnuBreakActionPerformed
 
+    private void mnuClearBreakpointsActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mnuClearBreakpointsActionPerformed
+		cpu.getBreakpoints().clear();
+    }//GEN-LAST:event_mnuClearBreakpointsActionPerformed
+
+    private void cmdStopActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdStopActionPerformed
+		stop();
+    }//GEN-LAST:event_cmdStopActionPerformed
+
+    private void mnuStopActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mnuStopActionPerformed
+		stop();
+    }//GEN-LAST:event_mnuStopActionPerformed
+
+    private void mnuExecutionLimitsActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mnuExecutionLimitsActionPerformed
+		setExecutionLimits();
+    }//GEN-LAST:event_mnuExecutionLimitsActionPerformed
+
+    private void mnuGoToCycleActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mnuGoToCycleActionPerformed
+		goToCycle();
+    }//GEN-LAST:event_mnuGoToCycleActionPerformed
+
+    private void mnuRecordWaveformActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mnuRecordWaveformActionPerformed
+		if(vcdRecorder == null)
+			startRecordingWaveform();
+		else
+			stopRecordingWaveform();
+    }//GEN-LAST:event_mnuRecordWaveformActionPerformed
+
+    private void mnuExportProfileActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mnuExportProfileActionPerformed
+		exportInstructionProfile();
+    }//GEN-LAST:event_mnuExportProfileActionPerformed
+
     private void mnuDocsActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mnuDocsActionPerformed
 		openDocDir();
     }//GEN-LAST:event_mnuDocsActionPerformed
@@ -1600,6 +1755,14 @@ public class FrmSimulator extends javax.swing.JFrame {
 		dlgStatistics.setVisible(true);
     }//GEN-LAST:event_mnuStatisticsActionPerformed
 
+    private void mnuProfilerActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mnuProfilerActionPerformed
+		dlgProfiler.setVisible(true);
+    }//GEN-LAST:event_mnuProfilerActionPerformed
+
+    private void mnuTimingReportActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_mnuTimingReportActionPerformed
+		dlgTimingReport.setVisible(true);
+    }//GEN-LAST:event_mnuTimingReportActionPerformed
+
     private void cmdStatisticsActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_cmdStatisticsActionPerformed
 		dlgStatistics.setVisible(true);
     }//GEN-LAST:event_cmdStatisticsActionPerformed
@@ -2016,14 +2179,21 @@ public class FrmSimulator extends javax.swing.JFrame {
 		Lang.tButton(mnuAssemble, "assemble");
 		Lang.tButton(mnuRestart, "restart");
 		Lang.tButton(mnuBackStep, "back_step");
+		Lang.tButton(mnuGoToCycle, "go_to_cycle");
+		Lang.tButton(mnuRecordWaveform, vcdRecorder == null ? "record_waveform" : "stop_recording_waveform");
+		Lang.tButton(mnuExportProfile, "export_instruction_profile");
 		Lang.tButton(mnuStep, "step");
 		Lang.tButton(mnuRun, "run");
-		Lang.tButton(mnuBreak, "add breakpoint");
+		Lang.tButton(mnuStop, "stop");
+		Lang.tButton(mnuExecutionLimits, "execution_limits");
+		Lang.tButton(mnuBreak, "add_breakpoint");
+		Lang.tButton(mnuClearBreakpoints, "clear_breakpoints");
 		Lang.tButton(mnuZoomIn, "zoom_in");
 		Lang.tButton(mnuZoomOut, "zoom_out");
 		Lang.tButton(mnuZoomNormal, "normal");
 		Lang.tButton(mnuZoomAutoAdjust, "adjust_automatically");
 		Lang.tButton(mnuResetDataBeforeAssembling, "reset_data_before_assembling");
+		Lang.tButton(mnuScheduleInstructions, "schedule_instructions");
 		Lang.tButton(mnuCPU, "cpu");
 		Lang.tButton(mnuLoadCPU, "load");
 		Lang.tButton(mnuLoadRecentCPU, "load_recent");
@@ -2031,6 +2201,8 @@ public class FrmSimulator extends javax.swing.JFrame {
 		Lang.tButton(mnuRestoreLatencies, "restore_latencies");
 		Lang.tButton(mnuRemoveLatencies, "remove_latencies");
 		Lang.tButton(mnuStatistics, "statistics");
+		Lang.tButton(mnuProfiler, "component_profiler");
+		Lang.tButton(mnuTimingReport, "timing_report");
 		Lang.tButton(mnuLanguage, "language");
 		Lang.tButton(mnuHelp, "help");
 		Lang.tButton(mnuDocs, "documentation");
@@ -2064,9 +2236,17 @@ public class FrmSimulator extends javax.swing.JFrame {
 		cpuFileChooser.setFileFilter(new FileNameExtensionFilter(Lang.t("cpu_files"), CPU.FILENAME_EXTENSION));
 		codeFileChooser = new JFileChooser();
 		codeFileChooser.setFileFilter(codeFileFilter = new FileNameExtensionFilter(Lang.t("assembly_files"), "asm", "s"));
+		vcdFileChooser = new JFileChooser();
+		vcdFileChooser.setDialogTitle(Lang.t("record_waveform_to_file"));
+		vcdFileChooser.setFileFilter(new FileNameExtensionFilter(Lang.t("vcd_files"), "vcd"));
+		profileFileChooser = new JFileChooser();
+		profileFileChooser.setDialogTitle(Lang.t("export_instruction_profile_to_file"));
+		profileFileChooser.setFileFilter(new FileNameExtensionFilter(Lang.t("csv_files"), "csv"));
 		dlgFindReplace.translate();
 		dlgSupportedInstructions.translate();
 		dlgStatistics.translate();
+		dlgProfiler.translate();
+		dlgTimingReport.translate();
 
 		cmdNew.setToolTipText(Lang.t("new"));
 		cmdOpen.setToolTipText(Lang.t("open"));
@@ -2077,6 +2257,7 @@ public class FrmSimulator extends javax.swing.JFrame {
 		cmdBackStep.setToolTipText(Lang.t("back_step"));
 		cmdStep.setToolTipText(Lang.t("step"));
 		cmdRun.setToolTipText(Lang.t("run"));
+		cmdStop.setToolTipText(Lang.t("stop"));
 		cmdStatistics.setToolTipText(Lang.t("statistics"));
 		cmdSupportedInstructions.setToolTipText(Lang.t("supported_instructions"));
 		cmdHelp.setToolTipText(Lang.t("documentation"));
@@ -2176,6 +2357,8 @@ public class FrmSimulator extends javax.swing.JFrame {
 		}
 
 		if(exit) {
+			stopRecordingWaveform();
+
 			// Save some preferences
 			DrMIPS.prefs.putInt(DrMIPS.REGISTER_FORMAT_PREF, cmbRegFormat.getSelectedIndex());
 			DrMIPS.prefs.putInt(DrMIPS.DATAPATH_DATA_FORMAT_PREF, cmbDatapathDataFormat.getSelectedIndex());
@@ -2183,6 +2366,7 @@ public class FrmSimulator extends javax.swing.JFrame {
 			DrMIPS.prefs.putInt(DrMIPS.DATA_MEMORY_FORMAT_PREF, cmbDataMemoryFormat.getSelectedIndex());
 			DrMIPS.prefs.putInt(DrMIPS.PERFORMANCE_TYPE_PREF, cmbDatapathPerformance.getSelectedIndex());
 			DrMIPS.prefs.putBoolean(DrMIPS.ASSEMBLE_RESET_PREF, mnuResetDataBeforeAssembling.isSelected());
+			DrMIPS.prefs.putBoolean(DrMIPS.ASSEMBLE_SCHEDULE_PREF, mnuScheduleInstructions.isSelected());
 			boolean maximized = getExtendedState() == MAXIMIZED_BOTH;
 			DrMIPS.prefs.putBoolean(DrMIPS.MAXIMIZED_PREF, maximized);
 			if(!maximized) {
@@ -2211,6 +2395,7 @@ public class FrmSimulator extends javax.swing.JFrame {
 	private void setSimulationControlsEnabled(boolean enabled) {
 		if(!enabled) {
 			mnuBackStep.setEnabled(false);
+			mnuGoToCycle.setEnabled(false);
 			mnuRestart.setEnabled(false);
 			mnuStep.setEnabled(false);
 			mnuRun.setEnabled(false);
@@ -2244,6 +2429,7 @@ public class FrmSimulator extends javax.swing.JFrame {
 	private void updateStepBackEnabled() {
 		boolean enable = cpu.hasPreviousCycle();
 		mnuBackStep.setEnabled(enable);
+		mnuGoToCycle.setEnabled(traceIndex != null && traceIndex.getLastCycle() > traceIndex.getFirstCycle());
 		mnuRestart.setEnabled(enable);
 		cmdBackStep.setEnabled(enable);
 		cmdRestart.setEnabled(enable);
@@ -2255,8 +2441,14 @@ public class FrmSimulator extends javax.swing.JFrame {
 	 */
 	private void loadCPU(String path) throws IOException, JSONException, InvalidCPUException, ArrayIndexOutOfBoundsException, InvalidInstructionSetException, NumberFormatException {
 		setSimulationControlsEnabled(false);
+		if(traceIndex != null) { // stop indexing the previous CPU
+			traceIndex.stop();
+			traceIndex = null;
+		}
+		stopRecordingWaveform();
 		cpu = CPU.createFromJSONFile(path); // load CPU from file
 		cpu.setPerformanceInstructionDependent(cmbDatapathPerformance.getSelectedIndex() == Util.INSTRUCTION_PERFORMANCE_TYPE_INDEX);
+		cpu.setLocalityAnalyzer(new LocalityAnalyzer(LocalityAnalyzer.DEFAULT_BLOCK_SIZE)); // shown in the statistics
 		DrMIPS.prefs.put(DrMIPS.LAST_CPU_PREF, path); // save CPU path in preferences
 		tblRegisters.setCPU(cpu, datapath, tblExec, cmbRegFormat.getSelectedIndex()); // display the CPU's register table
 		datapath.setCPU(cpu); // display datapath in the respective tab
@@ -2266,6 +2458,8 @@ public class FrmSimulator extends javax.swing.JFrame {
 		lblFileName.setText(cpu.getFile().getName());
 		lblFileName.setToolTipText(cpu.getFile().getAbsolutePath());
 		dlgSupportedInstructions.setCPU(cpu);
+		dlgProfiler.setCPU(cpu);
+		dlgTimingReport.setCPU(cpu);
 		addRecentCPU(new File(path));
 		txtCode.setCPU(cpu);
 		datapath.setControlPathVisible(mnuControlPath.isSelected());
@@ -2304,9 +2498,12 @@ public class FrmSimulator extends javax.swing.JFrame {
 	 * and scrolls the assembled code table to make the current instruction visible.
 	 */
 	private void refreshValues() {
+		Object event = SimulatorEvents.beginGUIRefresh();
 		updateStepBackEnabled();
 		updateStepEnabled();
 
+		tblRegisters.setDisplayedCycle(null, 0);
+		tblDataMemory.setDisplayedCycle(null, 0);
 		tblRegisters.refreshValues(cmbRegFormat.getSelectedIndex());
 		tblDataMemory.refreshValues(cmbDataMemoryFormat.getSelectedIndex());
 		tblAssembledCode.refreshValues();
@@ -2317,6 +2514,7 @@ public class FrmSimulator extends javax.swing.JFrame {
 		int index = cpu.getPC().getCurrentInstructionIndex();
 		if(index >= 0)
 			tblAssembledCode.scrollRectToVisible(tblAssembledCode.getCellRect(index, 0, true));
+		SimulatorEvents.commitGUIRefresh(event, "values", cpu.getNumberOfExecutedCycles());
 	}
 
 	/**
@@ -2344,46 +2542,205 @@ public class FrmSimulator extends javax.swing.JFrame {
 	}
 
 	/**
-	 * Executes all the instructions at once.
+	 * Executes all the instructions, in a background thread.
+	 * <p>The execution stops at the end of the program, at the breakpoint, when
+	 * the execution limits are reached or when the user stops it.</p>
 	 */
 	private void run() {
+		if(execution != null) return;
+		long maxCycles = DrMIPS.prefs.getLong(DrMIPS.MAX_CYCLES_PREF, DrMIPS.DEFAULT_MAX_CYCLES);
+		long maxTime = DrMIPS.prefs.getLong(DrMIPS.MAX_TIME_PREF, DrMIPS.DEFAULT_MAX_TIME);
+		setExecuting(true);
+		execution = new ExecutionTask(cpu, maxCycles, maxTime * 1000, new ExecutionHandler()).start();
+	}
+
+	/**
+	 * Stops the execution started by <tt>run()</tt>, if any.
+	 */
+	private void stop() {
+		if(execution != null)
+			execution.stop();
+	}
+
+	/**
+	 * Called in the event dispatch thread when the execution started by <tt>run()</tt> ends.
+	 * @param task The execution task.
+	 */
+	private void executionFinished(ExecutionTask task) {
+		ExecutionResult result;
 		try {
-			cpu.executeAll();
+			result = task.getResult();
+		} catch(InterruptedException | ExecutionException ex) {
+			throw new RuntimeException(ex);
+		} finally {
+			execution = null;
+			setExecuting(false);
+			refreshValues();
 		}
-		catch(InfiniteLoopException e) {
-			JOptionPane.showMessageDialog(this, Lang.t("possible_infinite_loop", CPU.EXECUTE_ALL_LIMIT_CYCLES), AppInfo.NAME, JOptionPane.ERROR_MESSAGE);
+
+		if(result.getStatus() == ExecutionResult.Status.INFINITE_LOOP)
+			JOptionPane.showMessageDialog(this, Lang.t("infinite_loop", result.getLoopStartAddress(), result.getLoopEndAddress(), result.getLoopLength()), AppInfo.NAME, JOptionPane.ERROR_MESSAGE);
+		else if(result.getStatus() == ExecutionResult.Status.CYCLE_LIMIT)
+			JOptionPane.showMessageDialog(this, Lang.t("possible_infinite_loop", result.getCycles()), AppInfo.NAME, JOptionPane.ERROR_MESSAGE);
+		else if(result.getStatus() == ExecutionResult.Status.TIME_LIMIT)
+			JOptionPane.showMessageDialog(this, Lang.t("execution_time_limit", result.getTime() / 1000), AppInfo.NAME, JOptionPane.ERROR_MESSAGE);
+	}
+
+	/**
+	 * Enables or disables the controls that can't be used while a program is being executed.
+	 * @param executing Whether a program is being executed.
+	 */
+	private void setExecuting(boolean executing) {
+		setSimulationControlsEnabled(!executing);
+		mnuAssemble.setEnabled(!executing);
+		cmdAssemble.setEnabled(!executing);
+		mnuLoadCPU.setEnabled(!executing);
+		mnuLoadRecentCPU.setEnabled(!executing);
+		mnuPerformanceMode.setEnabled(!executing);
+		cmbDatapathPerformance.setEnabled(!executing);
+		mnuRemoveLatencies.setEnabled(!executing && mnuPerformanceMode.isSelected());
+		mnuRestoreLatencies.setEnabled(!executing && mnuPerformanceMode.isSelected());
+		tblRegisters.setEnabled(!executing);
+		tblDataMemory.setEnabled(!executing);
+		mnuRecordWaveform.setEnabled(!executing); // the recorder is written by the execution thread
+		dlgProfiler.setExecuting(executing);
+		mnuStop.setEnabled(executing);
+		cmdStop.setEnabled(executing);
+		cmdStop.setToolTipText(Lang.t("stop"));
+	}
+
+	/**
+	 * Asks the user for the execution limits used by <tt>run()</tt>.
+	 */
+	private void setExecutionLimits() {
+		JSpinner spnCycles = new JSpinner(new SpinnerNumberModel(DrMIPS.prefs.getLong(DrMIPS.MAX_CYCLES_PREF, DrMIPS.DEFAULT_MAX_CYCLES), 0L, Long.MAX_VALUE, 1000L));
+		JSpinner spnTime = new JSpinner(new SpinnerNumberModel(DrMIPS.prefs.getLong(DrMIPS.MAX_TIME_PREF, DrMIPS.DEFAULT_MAX_TIME), 0L, Long.MAX_VALUE, 1L));
+		Object[] message = {Lang.t("max_cycles"), spnCycles, Lang.t("max_time"), spnTime};
+
+		if(JOptionPane.showConfirmDialog(this, message, AppInfo.NAME, JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE) == JOptionPane.OK_OPTION) {
+			DrMIPS.prefs.putLong(DrMIPS.MAX_CYCLES_PREF, ((Number)spnCycles.getValue()).longValue());
+			DrMIPS.prefs.putLong(DrMIPS.MAX_TIME_PREF, ((Number)spnTime.getValue()).longValue());
 		}
-		refreshValues();
 	}
 
 	/**
-	 * Add a breakpoint.
+	 * Asks the user for a past clock cycle and displays the values of the
+	 * registers and data memory in that cycle.
+	 * <p>The values are read from the index of the execution, so the CPU's
+	 * state isn't changed. The current values are displayed again on the next
+	 * step, back step, etc.</p>
 	 */
-	private void addBreakpoint() {
+	private void goToCycle() {
+		if(traceIndex == null) return;
+		int first = traceIndex.getFirstCycle(), last = traceIndex.getLastCycle();
+		int current = Math.max(first, Math.min(cpu.getNumberOfExecutedCycles(), last));
+		JSpinner spnCycle = new JSpinner(new SpinnerNumberModel(current, first, last, 1));
+		Object[] message = {Lang.t("cycle_to_show", first, last), spnCycle};
 
-		String inputValue = JOptionPane.showInputDialog(this, "Set breakpoint address (empty for disable)", AppInfo.NAME, JOptionPane.QUESTION_MESSAGE);
-		if (inputValue == "") {
-			cpu.setBreakpointAddr(-1);
-			return;
+		if(JOptionPane.showConfirmDialog(this, message, AppInfo.NAME, JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE) == JOptionPane.OK_OPTION) {
+			int cycle = ((Number)spnCycle.getValue()).intValue();
+			Object event = SimulatorEvents.beginGUIRefresh();
+			tblRegisters.setDisplayedCycle(traceIndex, cycle);
+			tblDataMemory.setDisplayedCycle(traceIndex, cycle);
+			tblRegisters.refreshValues(cmbRegFormat.getSelectedIndex());
+			tblDataMemory.refreshValues(cmbDataMemoryFormat.getSelectedIndex());
+			SimulatorEvents.commitGUIRefresh(event, "go to cycle", cycle);
 		}
+	}
 
-		boolean err = false;
+	/**
+	 * Asks the user for a file and starts recording the values of all the
+	 * CPU's wires, from the current clock cycle, to that file in VCD format.
+	 * <p>The waveform can then be viewed in a waveform viewer like GTKWave.</p>
+	 */
+	private void startRecordingWaveform() {
+		if(vcdFileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+			File f = vcdFileChooser.getSelectedFile();
+			if(f.getName().lastIndexOf(".") == -1)
+				f = new File(f.getPath() + ".vcd"); // append extension if missing
+			if(f.exists() && JOptionPane.showConfirmDialog(this, Lang.t("confirm_replace", f.getName()), AppInfo.NAME, JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE) != JOptionPane.OK_OPTION)
+				return;
+			try {
+				vcdRecorder = new VCDRecorder(cpu, f);
+				vcdFile = f;
+				Lang.tButton(mnuRecordWaveform, "stop_recording_waveform");
+			}
+			catch(IOException ex) {
+				JOptionPane.showMessageDialog(this, Lang.t("error_saving_file", f.getName()), AppInfo.NAME, JOptionPane.ERROR_MESSAGE);
+			}
+		}
+	}
 
+	/**
+	 * Stops recording the waveform, if it is being recorded, and closes the file.
+	 */
+	private void stopRecordingWaveform() {
+		if(vcdRecorder == null) return;
 		try {
-			int addr = Integer.parseInt(inputValue);
-			if ((addr < 0) || ((addr % 4) != 0)) {
-				err = true;
+			vcdRecorder.close();
+		}
+		catch(IOException ex) {
+			JOptionPane.showMessageDialog(this, Lang.t("error_saving_file", vcdFile.getName()), AppInfo.NAME, JOptionPane.ERROR_MESSAGE);
+		}
+		vcdRecorder = null;
+		vcdFile = null;
+		Lang.tButton(mnuRecordWaveform, "record_waveform");
+	}
+
+	/**
+	 * Asks the user for a file and exports the profile of the instructions of
+	 * the program (executions, cycles, stalls, etc.) to it in CSV format.
+	 */
+	private void exportInstructionProfile() {
+		if(profileFileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+			File f = profileFileChooser.getSelectedFile();
+			if(f.getName().lastIndexOf(".") == -1)
+				f = new File(f.getPath() + ".csv"); // append extension if missing
+			if(f.exists() && JOptionPane.showConfirmDialog(this, Lang.t("confirm_replace", f.getName()), AppInfo.NAME, JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE) != JOptionPane.OK_OPTION)
+				return;
+			try(BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), "UTF8"))) {
+				cpu.getInstructionProfile().writeCSV(writer);
 			}
-			else {
-				cpu.setBreakpointAddr(addr);
+			catch(IOException ex) {
+				JOptionPane.showMessageDialog(this, Lang.t("error_saving_file", f.getName()) + "\n" + ex.getMessage(), AppInfo.NAME, JOptionPane.ERROR_MESSAGE);
+				LOG.log(Level.WARNING, "error exporting the instruction profile to \"" + f.getName() + "\"", ex);
 			}
 		}
-		catch(NumberFormatException ex) {
-			err = true;
-		}
+	}
+
+	/**
+	 * Asks the user for a new breakpoint or watchpoint and adds it to the CPU.
+	 * <p>Breakpoints stop the execution at an instruction address, and
+	 * watchpoints when a register or memory position is written. Both can have
+	 * a condition and a hit count.</p>
+	 */
+	private void addBreakpoint() {
+		JComboBox<String> cmbType = new JComboBox<>(new String[] {Lang.t("breakpoint_instruction"), Lang.t("watchpoint_register"), Lang.t("watchpoint_memory")});
+		JTextField txtTarget = new JTextField();
+		JTextField txtCondition = new JTextField();
+		JSpinner spnHitCount = new JSpinner(new SpinnerNumberModel(1, 1, Integer.MAX_VALUE, 1));
+		Object[] message = {Lang.t("breakpoint_type"), cmbType, Lang.t("breakpoint_target"), txtTarget,
+			Lang.t("breakpoint_condition"), txtCondition, Lang.t("breakpoint_hit_count"), spnHitCount};
+
+		if(JOptionPane.showConfirmDialog(this, message, AppInfo.NAME, JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE) != JOptionPane.OK_OPTION)
+			return;
 
-		if (err)
-			JOptionPane.showMessageDialog(this, "Breakpoint address must positive and a multiple of 4", AppInfo.NAME, JOptionPane.ERROR_MESSAGE);
+		String target = txtTarget.getText().trim();
+		String condition = txtCondition.getText();
+		int hitCount = ((Number)spnHitCount.getValue()).intValue();
+		try {
+			switch(cmbType.getSelectedIndex()) {
+				case 0: cpu.getBreakpoints().addInstructionBreakpoint(Long.decode(target).intValue(), condition, hitCount); break;
+				case 1: cpu.getBreakpoints().addRegisterWatchpoint(cpu.getRegisterIndex(target), condition, hitCount); break;
+				default: cpu.getBreakpoints().addMemoryWatchpoint(Long.decode(target).intValue(), condition, hitCount); break;
+			}
+		}
+		catch(InvalidConditionException ex) {
+			JOptionPane.showMessageDialog(this, Lang.t("invalid_breakpoint_condition", ex.getMessage()), AppInfo.NAME, JOptionPane.ERROR_MESSAGE);
+		}
+		catch(IllegalArgumentException ex) { // invalid number, address or register
+			JOptionPane.showMessageDialog(this, Lang.t("invalid_breakpoint_target", target), AppInfo.NAME, JOptionPane.ERROR_MESSAGE);
+		}
 	}
 
 	/**
@@ -2392,8 +2749,13 @@ public class FrmSimulator extends javax.swing.JFrame {
 	private void assemble() {
 		txtCode.clearErrorIcons();
 		if(mnuResetDataBeforeAssembling.isSelected()) cpu.resetData();
+		cpu.getAssembler().setSchedulingEnabled(mnuScheduleInstructions.isSelected());
 		try {
 			cpu.assembleCode(txtCode.getText());
+			if(traceIndex != null) traceIndex.stop();
+			traceIndex = TraceIndex.record(cpu); // index the execution, to display past clock cycles
+			mnuRecordWaveform.setEnabled(true);
+			mnuExportProfile.setEnabled(true);
 			setSimulationControlsEnabled(true);
 			tblAssembledCode.refresh(cmbAssembledCodeFormat.getSelectedIndex());
 			refreshValues();
@@ -2570,6 +2932,8 @@ public class FrmSimulator extends javax.swing.JFrame {
 		if(dlgFindReplace != null) SwingUtilities.updateComponentTreeUI(dlgFindReplace);
 		if(dlgSupportedInstructions != null) SwingUtilities.updateComponentTreeUI(dlgSupportedInstructions);
 		if(dlgStatistics != null) SwingUtilities.updateComponentTreeUI(dlgStatistics);
+		if(dlgProfiler != null) SwingUtilities.updateComponentTreeUI(dlgProfiler);
+		if(dlgTimingReport != null) SwingUtilities.updateComponentTreeUI(dlgTimingReport);
 		if(cpuFileChooser != null) cpuFileChooser.updateUI();
 		if(codeFileChooser != null) codeFileChooser.updateUI();
 		datapath.setCPU(cpu);
@@ -2867,6 +3231,7 @@ public class FrmSimulator extends javax.swing.JFrame {
     private javax.swing.JButton cmdSaveAs;
     private javax.swing.JButton cmdStatistics;
     private javax.swing.JButton cmdStep;
+    private javax.swing.JButton cmdStop;
     private javax.swing.JButton cmdSupportedInstructions;
     private javax.swing.JButton cmdZoomIn;
     private javax.swing.JButton cmdZoomNormal;
@@ -2922,6 +3287,7 @@ public class FrmSimulator extends javax.swing.JFrame {
     private javax.swing.JMenuBar mnuBar;
     private javax.swing.JMenu mnuCPU;
     private javax.swing.JMenuItem mnuCascadeWindows;
+    private javax.swing.JMenuItem mnuClearBreakpoints;
     private javax.swing.JCheckBoxMenuItem mnuControlPath;
     private javax.swing.JMenuItem mnuCopy;
     private javax.swing.JMenuItem mnuCopyP;
@@ -2932,7 +3298,11 @@ public class FrmSimulator extends javax.swing.JFrame {
     private javax.swing.JMenu mnuEdit;
     private javax.swing.JPopupMenu mnuEditP;
     private javax.swing.JMenu mnuExecute;
+    private javax.swing.JMenuItem mnuExecutionLimits;
+    private javax.swing.JMenuItem mnuGoToCycle;
+    private javax.swing.JMenuItem mnuRecordWaveform;
     private javax.swing.JMenuItem mnuExit;
+    private javax.swing.JMenuItem mnuExportProfile;
     private javax.swing.JMenuItem mnuFindReplace;
     private javax.swing.JMenuItem mnuFindReplaceP;
     private javax.swing.JMenu mnuHelp;
@@ -2954,6 +3324,7 @@ public class FrmSimulator extends javax.swing.JFrame {
     private javax.swing.JMenuItem mnuPasteP;
     private javax.swing.JCheckBoxMenuItem mnuPerformanceMode;
     private javax.swing.JMenuItem mnuPrint;
+    private javax.swing.JMenuItem mnuProfiler;
     private javax.swing.JMenuItem mnuRedo;
     private javax.swing.JMenuItem mnuRedoP;
     private javax.swing.JMenuItem mnuRemoveLatencies;
@@ -2964,15 +3335,18 @@ public class FrmSimulator extends javax.swing.JFrame {
     private javax.swing.JMenuItem mnuBreak;
     private javax.swing.JMenuItem mnuSave;
     private javax.swing.JMenuItem mnuSaveAs;
+    private javax.swing.JCheckBoxMenuItem mnuScheduleInstructions;
     private javax.swing.JMenuItem mnuSelectAll;
     private javax.swing.JMenuItem mnuSelectAllP;
     private javax.swing.JMenuItem mnuStatistics;
     private javax.swing.JMenuItem mnuStep;
+    private javax.swing.JMenuItem mnuStop;
     private javax.swing.JMenuItem mnuSupportedInstructions;
     private javax.swing.JMenuItem mnuSwitchSide;
     private javax.swing.JCheckBoxMenuItem mnuSwitchTheme;
     private javax.swing.JPopupMenu mnuTabSide;
     private javax.swing.JMenuItem mnuTileWindows;
+    private javax.swing.JMenuItem mnuTimingReport;
     private javax.swing.JMenuItem mnuUndo;
     private javax.swing.JMenuItem mnuUndoP;
     private javax.swing.JMenu mnuView;
@@ -3202,4 +3576,31 @@ public class FrmSimulator extends javax.swing.JFrame {
 			updateCaretPosition();
 		}
 	}
+
+	/**
+	 * Listener of the execution started by <tt>run()</tt>, that forwards the
+	 * notifications to the event dispatch thread.
+	 */
+	private class ExecutionHandler implements ExecutionTask.Listener {
+		@Override
+		public void executionProgress(final ExecutionTask task, final long cycles) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					if(task == execution)
+						cmdStop.setToolTipText(Lang.t("stop") + " - " + Lang.t("executing_cycles", cycles));
+				}
+			});
+		}
+
+		@Override
+		public void executionFinished(final ExecutionTask task) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					executionFinished(task);
+				}
+			});
+		}
+	}
 }
@@ -22,6 +22,7 @@ import brunonova.drmips.simulator.AppInfo;
 import brunonova.drmips.simulator.CPU;
 import brunonova.drmips.simulator.Data;
 import brunonova.drmips.simulator.components.PC;
+import brunonova.drmips.simulator.trace.TraceIndex;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Font;
@@ -60,6 +61,12 @@ public class RegistersTable extends JTable implements MouseListener {
 	private int pcIndex = 0;
 	/** The format of the data (<tt>Util.BINARYL_FORMAT_INDEX/Util.DECIMAL_FORMAT_INDEX/Util.HEXADECIMAL_FORMAT_INDEX</tt>). */
 	private int dataFormat = DrMIPS.DEFAULT_DATAPATH_DATA_FORMAT;
+	/** The index of the execution with the past clock cycle being displayed, or <tt>null</tt> if displaying the current values. */
+	private TraceIndex displayedIndex = null;
+	/** The past clock cycle being displayed. */
+	private int displayedCycle = 0;
+	/** The values of the registers in the past clock cycle being displayed. */
+	private int[] displayedValues = new int[0];
 
 	/**
 	 * Creates the registers table.
@@ -93,6 +100,8 @@ public class RegistersTable extends JTable implements MouseListener {
 		// Initialize registers table
 		model.setRowCount(0);
 		numRegs = cpu.getRegBank().getNumberOfRegisters();
+		displayedValues = new int[numRegs];
+		setDisplayedCycle(null, 0);
 		for(int i = 0; i < numRegs; i++) {
 			Object[] data = new Object[2];
 			data[0] = i + ": " + cpu.getRegisterName(i);
@@ -115,6 +124,15 @@ public class RegistersTable extends JTable implements MouseListener {
 		if(model == null || cpu == null) return;
 		this.dataFormat = format;
 
+		if(displayedIndex != null) { // past clock cycle
+			displayedIndex.getRegisters(displayedCycle, displayedValues);
+			for(int i = 0; i < numRegs; i++)
+				model.setValueAt(Util.formatDataAccordingToFormat(new Data(Data.DATA_SIZE, displayedValues[i]), format), i, VALUE_COLUMN_INDEX);
+			model.setValueAt(Util.formatDataAccordingToFormat(new Data(Data.DATA_SIZE, displayedIndex.getPCAddress(displayedCycle)), format), pcIndex, VALUE_COLUMN_INDEX);
+			repaint();
+			return;
+		}
+
 		String data;
 		for(int i = 0; i < numRegs; i++) // registers
 			model.setValueAt(Util.formatDataAccordingToFormat(cpu.getRegBank().getRegister(i), format), i, VALUE_COLUMN_INDEX);
@@ -124,6 +142,21 @@ public class RegistersTable extends JTable implements MouseListener {
 		repaint();
 	}
 
+	/**
+	 * Defines the clock cycle whose values are displayed.
+	 * <p>The values of past clock cycles are read from the index of the
+	 * execution and can't be edited. Call <tt>refreshValues()</tt> afterwards
+	 * to display the values.</p>
+	 * @param index The index of the execution, or <tt>null</tt> to display the current values of the CPU.
+	 * @param cycle The clock cycle to display (must be indexed).
+	 */
+	public void setDisplayedCycle(TraceIndex index, int cycle) {
+		displayedIndex = index;
+		displayedCycle = cycle;
+		translate();
+		getTableHeader().repaint();
+	}
+
 	/**
 	 * Returns the name of the register in the indicated row.
 	 * @param row Row of the register in the table.
@@ -195,7 +228,7 @@ public class RegistersTable extends JTable implements MouseListener {
 	 */
 	public void translate() {
 		getTableHeader().getColumnModel().getColumn(REGISTER_COLUMN_INDEX).setHeaderValue(Lang.t("register"));
-		getTableHeader().getColumnModel().getColumn(VALUE_COLUMN_INDEX).setHeaderValue(Lang.t("value"));
+		getTableHeader().getColumnModel().getColumn(VALUE_COLUMN_INDEX).setHeaderValue(displayedIndex != null ? Lang.t("value_in_cycle", displayedCycle) : Lang.t("value"));
 	}
 
 	@Override
@@ -211,7 +244,9 @@ public class RegistersTable extends JTable implements MouseListener {
 	public void mousePressed(MouseEvent e) {
 		if(e.getClickCount() == 2) {
 			int row = rowAtPoint(e.getPoint());
-			if(isRegisterEditable(row)) {
+			if(displayedIndex != null)
+				JOptionPane.showMessageDialog(this.getParent(), Lang.t("past_cycle_not_editable"), AppInfo.NAME, JOptionPane.INFORMATION_MESSAGE);
+			else if(isRegisterEditable(row)) {
 				String res = (String)JOptionPane.showInputDialog(this.getParent(), Lang.t("edit_value", getRegisterName(row)) + ":", AppInfo.NAME, JOptionPane.QUESTION_MESSAGE, null, null, getRegisterData(row).getValue());
 				if(res != null) {
 					try {
@@ -247,6 +282,18 @@ public class RegistersTable extends JTable implements MouseListener {
 
 			setHorizontalAlignment(column == 1 ? SwingConstants.RIGHT : SwingConstants.LEFT); // align 2nd column to the right
 
+			if(displayedIndex != null) { // highlight the register written in the past clock cycle
+				if(row == displayedIndex.getWrittenRegister(displayedCycle)) {
+					setBackground(Util.writeColor);
+					setToolTipText(Lang.t("writing_to_reg"));
+				}
+				else {
+					setBackground(background);
+					setToolTipText(null);
+				}
+				return c;
+			}
+
 			// Highlight registers being accessed
 			int reg1 = cpu.getRegBank().getReadReg1().getValue();
 			int reg2 = cpu.getRegBank().getReadReg2().getValue();
@@ -18,6 +18,7 @@
 
 package brunonova.drmips.pc;
 
+import brunonova.drmips.simulator.CPU;
 import brunonova.drmips.simulator.Data;
 import com.jtattoo.plaf.hifi.HiFiLookAndFeel;
 import com.jtattoo.plaf.mint.MintLookAndFeel;
@@ -143,6 +144,21 @@ public class Util {
 		}
 	}
 	
+	/**
+	 * Returns the color of a pipeline stage.
+	 * @param role The role of the stage (<tt>CPU.STAGE_IF/CPU.STAGE_ID/CPU.STAGE_EX/CPU.STAGE_MEM/CPU.STAGE_WB</tt>).
+	 * @return The color of the stage.
+	 */
+	public static Color getStageColor(int role) {
+		switch(role) {
+			case CPU.STAGE_ID: return idColor;
+			case CPU.STAGE_EX: return exColor;
+			case CPU.STAGE_MEM: return memColor;
+			case CPU.STAGE_WB: return wbColor;
+			default: return ifColor;
+		}
+	}
+	
 	/**
 	 * Sets the program's light look and feel.
 	 */
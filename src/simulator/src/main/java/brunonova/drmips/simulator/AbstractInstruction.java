@@ -21,6 +21,7 @@ package brunonova.drmips.simulator;
 import brunonova.drmips.simulator.exceptions.InvalidInstructionSetException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents an abstract instruction, which is either an instruction or a pseudo-instruction.
@@ -41,6 +42,8 @@ public abstract class AbstractInstruction {
 	private final List<ArgumentType> arguments;
 	/** The short description of the instruction. */
 	private String description = null;
+	/** The not yet loaded description (if the instruction set was loaded from a binary file). */
+	private BinaryCPUFile.Descriptions lazyDescription = null;
 
 	/**
 	 * Creates a new instruction.
@@ -77,6 +80,27 @@ public abstract class AbstractInstruction {
 	 */
 	public void setDescription(String description) {
 		this.description = description;
+		lazyDescription = null;
+	}
+
+	/**
+	 * Sets the description that should only be loaded when needed.
+	 * @param descriptions The descriptions section of the binary instruction set file.
+	 */
+	final void setLazyDescription(BinaryCPUFile.Descriptions descriptions) {
+		lazyDescription = descriptions;
+	}
+
+	/**
+	 * Loads the description of the instruction if it wasn't loaded yet.
+	 */
+	private void loadLazyDescription() {
+		if(lazyDescription != null) {
+			Map<String, String> desc = lazyDescription.get(mnemonic);
+			lazyDescription = null;
+			if(desc != null)
+				description = desc.get("default");
+		}
 	}
 
 	/**
@@ -84,6 +108,7 @@ public abstract class AbstractInstruction {
 	 * @return The short description of the instruction.
 	 */
 	public String getDescription() {
+		loadLazyDescription();
 		return description;
 	}
 
@@ -92,6 +117,7 @@ public abstract class AbstractInstruction {
 	 * @return <tt>True</tt> if the instruction has a description.
 	 */
 	public boolean hasDescription() {
+		loadLazyDescription();
 		return description != null;
 	}
 
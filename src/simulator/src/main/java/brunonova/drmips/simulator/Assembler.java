@@ -46,6 +46,8 @@ public class Assembler {
 	private Map<String, Integer> textLabels;
 	/** The data segment labels in the code and their addresses. */
 	private Map<String, Integer> dataLabels;
+	/** Whether the instructions are scheduled to avoid pipeline hazards. */
+	private boolean schedulingEnabled = false;
 	
 	/**
 	 * Creates the assembler.
@@ -72,6 +74,7 @@ public class Assembler {
 		dataLabels = new TreeMap<>();
 		Segment currentSegment = Segment.TEXT;
 		List<SyntaxErrorException> errors = new LinkedList<>();
+		Object event = SimulatorEvents.beginAssembly();
 		
 		// Parse each line
 		for(int i = 0; i < codeLines.length; i++) {
@@ -158,7 +161,11 @@ public class Assembler {
 			}
 		}
 		
+		SimulatorEvents.commitAssembly(event, SimulatorEvents.ASSEMBLY_PASS_1, codeLines.length, lines.size(), errors.size());
+		
 		// Assemble the instructions
+		event = SimulatorEvents.beginAssembly();
+		int pass1Errors = errors.size();
 		for(int i = 0; i < lines.size(); i++) {
 			try {
 				instructions.add(assembleInstruction(lines.get(i).line, i, lines.get(i).number));
@@ -173,6 +180,7 @@ public class Assembler {
 			if(e.getValue() >= 0 && e.getValue() < instructions.size())
 				instructions.get(e.getValue()).addLabel(e.getKey());
 		}
+		SimulatorEvents.commitAssembly(event, SimulatorEvents.ASSEMBLY_PASS_2, lines.size(), instructions.size(), errors.size() - pass1Errors);
 		
 		if(!errors.isEmpty()) {
 			SyntaxErrorException first = errors.get(0);
@@ -180,7 +188,85 @@ public class Assembler {
 			throw first;
 		}
 		
+		if(schedulingEnabled) {
+			event = SimulatorEvents.beginAssembly();
+			int[] order = new HazardAnalyzer(cpu, instructions).schedule();
+			lines = reorderLines(lines, order);
+			instructions = assembleInstructions(lines);
+			SimulatorEvents.commitAssembly(event, SimulatorEvents.ASSEMBLY_SCHEDULE, lines.size(), instructions.size(), 0);
+		}
+		
+		event = SimulatorEvents.beginAssembly();
 		cpu.loadProgram(instructions);
+		SimulatorEvents.commitAssembly(event, SimulatorEvents.ASSEMBLY_LOAD, lines.size(), instructions.size(), 0);
+	}
+	
+	/**
+	 * Enables or disables the scheduling of the instructions.
+	 * <p>If enabled, the instructions of each basic block are reordered to
+	 * avoid pipeline stalls and hazards, and the <tt>nop</tt>s needed by CPUs
+	 * without hazard detection are inserted (see {@link HazardAnalyzer}).</p>
+	 * @param enabled Whether to schedule the instructions.
+	 */
+	public void setSchedulingEnabled(boolean enabled) {
+		schedulingEnabled = enabled;
+	}
+	
+	/**
+	 * Returns whether the instructions are scheduled to avoid pipeline hazards.
+	 * @return <tt>True</tt> if scheduling is enabled.
+	 */
+	public boolean isSchedulingEnabled() {
+		return schedulingEnabled;
+	}
+	
+	/**
+	 * Reorders the lines of code, and the text labels, as scheduled.
+	 * <p>Each label is moved to the first instruction of its basic block.</p>
+	 * @param lines The lines of code of the instructions.
+	 * @param order The order returned by <tt>HazardAnalyzer.schedule()</tt>.
+	 * @return The reordered lines.
+	 */
+	private List<CodeLine> reorderLines(List<CodeLine> lines, int[] order) {
+		List<CodeLine> reordered = new ArrayList<>(order.length);
+		int lineNumber = lines.isEmpty() ? 1 : lines.get(0).number;
+		for(int i: order) {
+			if(i == HazardAnalyzer.NOP)
+				reordered.add(new CodeLine(HazardAnalyzer.NOP_MNEMONIC, lineNumber));
+			else {
+				reordered.add(lines.get(i));
+				lineNumber = lines.get(i).number;
+			}
+		}
+		
+		for(Map.Entry<String, Integer> e: textLabels.entrySet()) {
+			int index = order.length;
+			for(int k = 0; k < order.length; k++) {
+				if(order[k] >= e.getValue()) {
+					index = k;
+					break;
+				}
+			}
+			e.setValue(index);
+		}
+		return reordered;
+	}
+	
+	/**
+	 * Assembles the instructions again, after being reordered.
+	 * @param lines The lines of code of the instructions.
+	 * @return The assembled instructions, with their labels.
+	 * @throws SyntaxErrorException If the code has a syntax error (shouldn't happen).
+	 */
+	private List<AssembledInstruction> assembleInstructions(List<CodeLine> lines) throws SyntaxErrorException {
+		List<AssembledInstruction> instructions = new ArrayList<>(lines.size());
+		for(int i = 0; i < lines.size(); i++)
+			instructions.add(assembleInstruction(lines.get(i).line, i, lines.get(i).number));
+		for(Map.Entry<String, Integer> e: textLabels.entrySet()) {
+			if(e.getValue() >= 0 && e.getValue() < instructions.size())
+				instructions.get(e.getValue()).addLabel(e.getKey());
+		}
+		return instructions;
 	}
 	
 	/**
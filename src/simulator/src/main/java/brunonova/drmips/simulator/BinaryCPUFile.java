@@ -0,0 +1,831 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.exceptions.InvalidCPUException;
+import brunonova.drmips.simulator.exceptions.InvalidInstructionSetException;
+import brunonova.drmips.simulator.util.Point;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Precompiled (binary) versions of the CPU and instruction set files.
+ *
+ * <p>Parsing the JSON files is the slowest part of loading a CPU. A binary
+ * file stores the same information already parsed: all the strings are
+ * stored once in a table and referenced by index, the built-in component
+ * types are stored as numbers (see {@link ComponentRegistry#BUILT_IN_TYPES}),
+ * the wires reference their components by index and the custom descriptions
+ * of the components (or the descriptions of the instructions) are stored in a
+ * separate section at the end, which is only decoded when a description is
+ * first needed.</p>
+ *
+ * <p>The binary file of {@code file.cpu} is {@code file.cpu.bin}, in the same
+ * directory. It also stores the size, modification time and checksum of the
+ * file it was compiled from, and is ignored if the JSON file was changed
+ * since, so the JSON file is always the authoritative one. The freshness is
+ * checked from the size and modification time, without reading the JSON
+ * file. Only if the modification time is different (the files were copied,
+ * for example) is the JSON file read to compare the checksum. {@link CPUTemplate} (and thus
+ * {@link CPU#createFromJSONFile(String)}) uses the binary files automatically
+ * when they are available and up to date.</p>
+ *
+ * <p>The files can be compiled with {@link #compile(File, File)} or by running
+ * this class (used by the <tt>compileCPUFiles</tt> Gradle task).</p>
+ *
+ * @author Bruno Nova
+ */
+public final class BinaryCPUFile {
+	/** The extension that is appended to the name of a JSON file to get the name of its binary file. */
+	public static final String EXTENSION = ".bin";
+
+	/** The "magic number" at the start of the binary files ("DRMB"). */
+	private static final int MAGIC = 0x44524D42;
+	/** The version of the format (must be incremented whenever it changes). */
+	private static final int VERSION = 3;
+	/** The kind of a binary CPU file. */
+	private static final int KIND_CPU = 1;
+	/** The kind of a binary instruction set file. */
+	private static final int KIND_INSTRUCTION_SET = 2;
+
+	/** The tag of a <tt>null</tt> JSON value. */
+	private static final int TAG_NULL = 0;
+	/** The tag of a <tt>false</tt> JSON value. */
+	private static final int TAG_FALSE = 1;
+	/** The tag of a <tt>true</tt> JSON value. */
+	private static final int TAG_TRUE = 2;
+	/** The tag of an integer JSON value (zigzag encoded). */
+	private static final int TAG_INTEGER = 3;
+	/** The tag of a floating point JSON value. */
+	private static final int TAG_DOUBLE = 4;
+	/** The tag of any other number, stored as text. */
+	private static final int TAG_NUMBER = 5;
+	/** The tag of a string JSON value. */
+	private static final int TAG_STRING = 6;
+	/** The tag of a JSON array. */
+	private static final int TAG_ARRAY = 7;
+	/** The tag of a JSON object. */
+	private static final int TAG_OBJECT = 8;
+
+	/** Flag of a wire with a start point. */
+	private static final int FLAG_START = 1;
+	/** Flag of a wire with an end point. */
+	private static final int FLAG_END = 2;
+
+	/**
+	 * This class is not instantiable.
+	 */
+	private BinaryCPUFile() { }
+
+	/**
+	 * Compiles the given CPU and instruction set files to the binary format.
+	 * <p>Usage: <tt>BinaryCPUFile OUTPUT_DIR FILE...</tt></p>
+	 * @param args The output directory followed by the files to compile.
+	 * @throws Exception If a file is invalid or could not be written.
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length < 2) {
+			System.err.println("Usage: BinaryCPUFile OUTPUT_DIR FILE...");
+			System.exit(1);
+		}
+
+		File dir = new File(args[0]);
+		if(!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Failed to create the directory " + dir + "!");
+		File source;
+		for(int i = 1; i < args.length; i++) {
+			source = new File(args[i]);
+			compile(source, new File(dir, source.getName() + EXTENSION));
+		}
+	}
+
+	/**
+	 * Returns the binary file of the given JSON file.
+	 * @param source The JSON file.
+	 * @return The binary file (that may not exist).
+	 */
+	public static File getBinaryFile(File source) {
+		return new File(source.getPath() + EXTENSION);
+	}
+
+	/**
+	 * Compiles a CPU or instruction set file to the binary format.
+	 * <p>The file is validated first. CPU files are validated by loading them,
+	 * so their instruction set file (and custom components) must exist.</p>
+	 * @param source The JSON file to compile.
+	 * @param target The binary file to write.
+	 * @throws IOException If a file doesn't exist or an I/O error occurs.
+	 * @throws JSONException If the JSON file is malformed.
+	 * @throws InvalidCPUException If the CPU is invalid or incomplete.
+	 * @throws InvalidInstructionSetException If the instruction set is invalid.
+	 * @throws ArrayIndexOutOfBoundsException If an array index is invalid somewhere.
+	 * @throws NumberFormatException If an opcode is not a number.
+	 */
+	public static void compile(File source, File target) throws IOException, JSONException, InvalidCPUException, InvalidInstructionSetException, ArrayIndexOutOfBoundsException, NumberFormatException {
+		byte[] contents = readBytes(source);
+		JSONObject json = new JSONObject(new String(contents, "UTF-8"));
+		Encoder encoder = new Encoder();
+		int kind;
+
+		if(json.has("components")) {
+			new CPUTemplate(source.getPath());
+			kind = KIND_CPU;
+			encoder.writeCPU(json);
+		}
+		else {
+			new InstructionSet(json);
+			kind = KIND_INSTRUCTION_SET;
+			encoder.writeInstructionSet(json);
+		}
+
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(target));
+		try {
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeByte(kind);
+			out.writeLong(contents.length);
+			out.writeLong(source.lastModified());
+			out.writeLong(checksum(contents));
+			writeVarInt(out, encoder.strings.size());
+			for(String s: encoder.strings)
+				out.writeUTF(s);
+			encoder.body.writeTo(out);
+			out.writeInt(encoder.descriptions.size());
+			encoder.descriptions.writeTo(out);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads the binary file of the given CPU file, if it exists and is up to date.
+	 * @param source The JSON file of the CPU.
+	 * @param directory The directory of the CPU file (where the custom components are).
+	 * @return The contents of the binary file, or <tt>null</tt> if there is no up to date binary file.
+	 * @throws IOException If the binary file is corrupted or an I/O error occurs.
+	 * @throws InvalidCPUException If a component type doesn't exist.
+	 */
+	static CPUData readCPU(File source, File directory) throws IOException, InvalidCPUException {
+		DataInputStream in = open(source, KIND_CPU);
+		if(in == null) return null;
+		String[] strings = readStrings(in);
+
+		try {
+			CPUData data = new CPUData();
+			data.instructions = readString(in, strings);
+			int n = readVarInt(in);
+			if(n > 0) {
+				data.registerNames = new JSONArray();
+				for(int i = 0; i < n - 1; i++)
+					data.registerNames.put(readValue(in, strings));
+			}
+
+			// Components
+			n = readVarInt(in);
+			List<String> ids = new ArrayList<>(n);
+			String id, type;
+			int typeId;
+			JSONObject json;
+			for(int i = 0; i < n; i++) {
+				id = readString(in, strings);
+				typeId = readVarInt(in);
+				if(typeId > ComponentRegistry.BUILT_IN_TYPES.length)
+					throw new IOException("Invalid component type " + typeId + "!");
+				type = typeId == 0 ? readString(in, strings) : ComponentRegistry.BUILT_IN_TYPES[typeId - 1];
+				json = readObject(in, strings);
+				json.put("type", type);
+				ids.add(id);
+				data.components.add(new CPUTemplate.ComponentSpec(id, json, ComponentRegistry.getFactory(type, directory)));
+			}
+
+			// Wires
+			n = readVarInt(in);
+			CPUTemplate.WireSpec wire;
+			String from, out;
+			int flags;
+			for(int i = 0; i < n; i++) {
+				from = ids.get(readVarInt(in));
+				out = readString(in, strings);
+				wire = new CPUTemplate.WireSpec(from, out, ids.get(readVarInt(in)), readString(in, strings));
+				for(int p = readVarInt(in); p > 0; p--)
+					wire.points.add(readPoint(in));
+				flags = in.readUnsignedByte();
+				if((flags & FLAG_START) != 0)
+					wire.start = readPoint(in);
+				if((flags & FLAG_END) != 0)
+					wire.end = readPoint(in);
+				data.wires.add(wire);
+			}
+
+			data.descriptions = readDescriptions(in);
+			return data;
+		}
+		catch(IndexOutOfBoundsException | JSONException ex) {
+			throw new IOException("Corrupted binary file " + getBinaryFile(source) + "!", ex);
+		}
+	}
+
+	/**
+	 * Reads the binary file of the given instruction set file, if it exists and is up to date.
+	 * @param source The JSON file of the instruction set.
+	 * @return The loaded instruction set, or <tt>null</tt> if there is no up to date binary file.
+	 * @throws IOException If the binary file is corrupted or an I/O error occurs.
+	 * @throws JSONException If the instruction set is malformed.
+	 * @throws InvalidInstructionSetException If the instruction set is invalid.
+	 * @throws ArrayIndexOutOfBoundsException If an array index is invalid somewhere.
+	 * @throws NumberFormatException If an opcode is not a number.
+	 */
+	static InstructionSet readInstructionSet(File source) throws IOException, JSONException, InvalidInstructionSetException, ArrayIndexOutOfBoundsException, NumberFormatException {
+		DataInputStream in = open(source, KIND_INSTRUCTION_SET);
+		if(in == null) return null;
+		String[] strings = readStrings(in);
+		Object json;
+		Descriptions descriptions;
+		try {
+			json = readValue(in, strings);
+			descriptions = readDescriptions(in);
+		}
+		catch(IndexOutOfBoundsException | JSONException ex) {
+			throw new IOException("Corrupted binary file " + getBinaryFile(source) + "!", ex);
+		}
+		if(!(json instanceof JSONObject))
+			throw new IOException("Corrupted binary file " + getBinaryFile(source) + "!");
+
+		InstructionSet set = new InstructionSet((JSONObject)json);
+		if(descriptions != null) {
+			for(Instruction instruction: set.getInstructions())
+				instruction.setLazyDescription(descriptions);
+			for(PseudoInstruction pseudo: set.getPseudoInstructions())
+				pseudo.setLazyDescription(descriptions);
+		}
+		return set;
+	}
+
+	/**
+	 * Reads the descriptions section, which is only decoded when needed.
+	 * @param in The input.
+	 * @return The descriptions, or <tt>null</tt> if there are none.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private static Descriptions readDescriptions(DataInput in) throws IOException {
+		int n = in.readInt();
+		if(n <= 0) return null;
+		byte[] desc = new byte[n];
+		in.readFully(desc);
+		return new Descriptions(desc);
+	}
+
+	/**
+	 * Opens the binary file of the given JSON file, if it exists and is up to date.
+	 * @param source The JSON file.
+	 * @param kind The expected kind of the binary file.
+	 * @return The stream positioned after the header, or <tt>null</tt> if there is no up to date binary file.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private static DataInputStream open(File source, int kind) throws IOException {
+		File file = getBinaryFile(source);
+		if(!file.isFile()) return null;
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(readBytes(file)));
+		if(file.length() < 30 || in.readInt() != MAGIC || in.readUnsignedByte() != VERSION || in.readUnsignedByte() != kind)
+			return null;
+		long length = in.readLong();
+		long lastModified = in.readLong();
+		long checksum = in.readLong();
+		if(source.exists()) {
+			if(source.length() != length)
+				return null; // the JSON file was changed
+			if(source.lastModified() != lastModified && checksum(readBytes(source)) != checksum)
+				return null; // changed with the same size
+		}
+		return in;
+	}
+
+	/**
+	 * Reads the whole contents of the given file.
+	 * @param file The file to read.
+	 * @return The contents of the file.
+	 * @throws IOException If the file doesn't exist or an I/O error occurs.
+	 */
+	private static byte[] readBytes(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] data = new byte[(int)file.length()];
+			int n, offset = 0;
+			while(offset < data.length && (n = in.read(data, offset, data.length - offset)) != -1)
+				offset += n;
+			return offset == data.length ? data : Arrays.copyOf(data, offset);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the CRC-32 checksum of the given data.
+	 * @param data The data.
+	 * @return The checksum.
+	 */
+	private static long checksum(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return crc.getValue();
+	}
+
+	/**
+	 * Writes an unsigned variable length integer (7 bits per byte).
+	 * @param out The output.
+	 * @param value The (non negative) value.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private static void writeVarInt(DataOutput out, long value) throws IOException {
+		while((value & ~0x7FL) != 0) {
+			out.writeByte((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+
+	/**
+	 * Writes a signed variable length integer (zigzag encoded).
+	 * @param out The output.
+	 * @param value The value.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private static void writeSignedVarInt(DataOutput out, long value) throws IOException {
+		writeVarInt(out, (value << 1) ^ (value >> 63));
+	}
+
+	/**
+	 * Reads an unsigned variable length integer.
+	 * @param in The input.
+	 * @return The value.
+	 * @throws IOException If the integer is too big or an I/O error occurs.
+	 */
+	private static long readVarLong(DataInput in) throws IOException {
+		long value = 0;
+		int b;
+		for(int shift = 0; shift < 64; shift += 7) {
+			b = in.readUnsignedByte();
+			value |= (long)(b & 0x7F) << shift;
+			if((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Invalid variable length integer!");
+	}
+
+	/**
+	 * Reads an unsigned variable length integer that must fit in an <tt>int</tt>.
+	 * @param in The input.
+	 * @return The value.
+	 * @throws IOException If the integer is too big or an I/O error occurs.
+	 */
+	private static int readVarInt(DataInput in) throws IOException {
+		long value = readVarLong(in);
+		if(value > Integer.MAX_VALUE)
+			throw new IOException("Invalid variable length integer!");
+		return (int)value;
+	}
+
+	/**
+	 * Reads a signed variable length integer.
+	 * @param in The input.
+	 * @return The value.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private static long readSignedVarLong(DataInput in) throws IOException {
+		long value = readVarLong(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Reads the table of strings.
+	 * @param in The input.
+	 * @return The strings.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private static String[] readStrings(DataInput in) throws IOException {
+		String[] strings = new String[readVarInt(in)];
+		for(int i = 0; i < strings.length; i++)
+			strings[i] = in.readUTF();
+		return strings;
+	}
+
+	/**
+	 * Reads a reference to a string in the table of strings.
+	 * @param in The input.
+	 * @param strings The table of strings.
+	 * @return The string.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private static String readString(DataInput in, String[] strings) throws IOException {
+		return strings[readVarInt(in)];
+	}
+
+	/**
+	 * Reads a point.
+	 * @param in The input.
+	 * @return The point.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private static Point readPoint(DataInput in) throws IOException {
+		int x = (int)readSignedVarLong(in);
+		return new Point(x, (int)readSignedVarLong(in));
+	}
+
+	/**
+	 * Reads the entries of a JSON object (without the tag).
+	 * @param in The input.
+	 * @param strings The table of strings.
+	 * @return The JSON object.
+	 * @throws IOException If an I/O error occurs.
+	 * @throws JSONException If a value is invalid.
+	 */
+	private static JSONObject readObject(DataInput in, String[] strings) throws IOException, JSONException {
+		JSONObject json = new JSONObject();
+		String key;
+		for(int n = readVarInt(in); n > 0; n--) {
+			key = readString(in, strings);
+			json.put(key, readValue(in, strings));
+		}
+		return json;
+	}
+
+	/**
+	 * Reads a JSON value.
+	 * @param in The input.
+	 * @param strings The table of strings.
+	 * @return The value.
+	 * @throws IOException If an I/O error occurs.
+	 * @throws JSONException If a value is invalid.
+	 */
+	private static Object readValue(DataInput in, String[] strings) throws IOException, JSONException {
+		int tag = in.readUnsignedByte();
+		switch(tag) {
+			case TAG_NULL: return JSONObject.NULL;
+			case TAG_FALSE: return Boolean.FALSE;
+			case TAG_TRUE: return Boolean.TRUE;
+			case TAG_INTEGER:
+				long value = readSignedVarLong(in);
+				if(value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+					return (int)value;
+				else
+					return value;
+			case TAG_DOUBLE: return in.readDouble();
+			case TAG_NUMBER: return JSONObject.stringToValue(readString(in, strings));
+			case TAG_STRING: return readString(in, strings);
+			case TAG_ARRAY:
+				JSONArray array = new JSONArray();
+				for(int n = readVarInt(in); n > 0; n--)
+					array.put(readValue(in, strings));
+				return array;
+			case TAG_OBJECT: return readObject(in, strings);
+			default: throw new IOException("Invalid value tag " + tag + "!");
+		}
+	}
+
+	/**
+	 * The contents of a binary CPU file.
+	 */
+	static final class CPUData {
+		/** The name of the instruction set file. */
+		String instructions;
+		/** The names of the registers, or <tt>null</tt>. */
+		JSONArray registerNames = null;
+		/** The components of the CPU. */
+		final List<CPUTemplate.ComponentSpec> components = new ArrayList<>();
+		/** The wires of the CPU. */
+		final List<CPUTemplate.WireSpec> wires = new ArrayList<>();
+		/** The custom descriptions of the components, or <tt>null</tt> if there are none. */
+		Descriptions descriptions = null;
+	}
+
+	/**
+	 * The custom descriptions of the components of a binary CPU file, or the
+	 * descriptions of the instructions of a binary instruction set file, decoded
+	 * only the first time they are needed.
+	 * <p>The same instance is shared by all the components of all the CPUs
+	 * created from the file. The description of an instruction is stored as
+	 * its <tt>default</tt> language.</p>
+	 */
+	static final class Descriptions {
+		/** The encoded descriptions, or <tt>null</tt> after being decoded. */
+		private byte[] data;
+		/** The decoded descriptions, indexed by component and then by language. */
+		private Map<String, Map<String, String>> descriptions = null;
+
+		/**
+		 * Constructor.
+		 * @param data The encoded descriptions.
+		 */
+		private Descriptions(byte[] data) {
+			this.data = data;
+		}
+
+		/**
+		 * Returns the custom descriptions of the given component or instruction.
+		 * @param id The identifier of the component or the mnemonic of the instruction.
+		 * @return The descriptions indexed by language, or <tt>null</tt> if it has none.
+		 */
+		public synchronized Map<String, String> get(String id) {
+			if(descriptions == null) {
+				descriptions = new HashMap<>();
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+				try {
+					String component;
+					Map<String, String> desc;
+					for(int n = readVarInt(in); n > 0; n--) {
+						component = in.readUTF();
+						desc = new TreeMap<>();
+						for(int l = readVarInt(in); l > 0; l--)
+							desc.put(in.readUTF(), in.readUTF());
+						descriptions.put(component, Collections.unmodifiableMap(desc));
+					}
+				}
+				catch(IOException ex) {
+					// corrupted section, the descriptions read so far are kept
+				}
+				data = null;
+			}
+			return descriptions.get(id);
+		}
+	}
+
+	/**
+	 * Encodes the contents of a binary file.
+	 */
+	private static final class Encoder {
+		/** The table of strings. */
+		private final List<String> strings = new ArrayList<>();
+		/** The indexes of the strings in the table. */
+		private final Map<String, Integer> indexes = new HashMap<>();
+		/** The encoded body of the file. */
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		/** The encoded descriptions section. */
+		private final ByteArrayOutputStream descriptions = new ByteArrayOutputStream();
+		/** The output to the body. */
+		private final DataOutputStream out = new DataOutputStream(body);
+
+		/**
+		 * Encodes a CPU.
+		 * @param json The JSON object of the CPU.
+		 * @throws IOException If an I/O error occurs.
+		 * @throws JSONException If the JSON object is malformed.
+		 * @throws InvalidCPUException If a wire references an unknown component.
+		 */
+		public void writeCPU(JSONObject json) throws IOException, JSONException, InvalidCPUException {
+			writeString(json.getString("instructions"));
+			if(json.has("reg_names")) {
+				JSONArray names = json.getJSONArray("reg_names");
+				writeVarInt(out, names.length() + 1);
+				for(int i = 0; i < names.length(); i++)
+					writeValue(names.get(i));
+			}
+			else
+				writeVarInt(out, 0);
+
+			// Components
+			JSONObject components = json.getJSONObject("components");
+			Map<String, Integer> ids = new HashMap<>();
+			List<String> withDesc = new ArrayList<>();
+			JSONObject component;
+			String id, type, key;
+			int typeId;
+			writeVarInt(out, components.length());
+			Iterator<String> i = components.keys();
+			while(i.hasNext()) {
+				id = i.next();
+				component = components.getJSONObject(id);
+				type = component.getString("type");
+				typeId = Arrays.asList(ComponentRegistry.BUILT_IN_TYPES).indexOf(type) + 1;
+				ids.put(id, ids.size());
+				writeString(id);
+				writeVarInt(out, typeId);
+				if(typeId == 0) writeString(type);
+
+				writeVarInt(out, component.length() - 1 - (component.has("desc") ? 1 : 0));
+				Iterator<String> k = component.keys();
+				while(k.hasNext()) {
+					key = k.next();
+					if(key.equals("desc")) {
+						if(component.optJSONObject(key) != null)
+							withDesc.add(id);
+					}
+					else if(!key.equals("type")) {
+						writeString(key);
+						writeValue(component.get(key));
+					}
+				}
+			}
+
+			// Wires
+			JSONArray wires = json.getJSONArray("wires");
+			JSONObject wire, start, end;
+			JSONArray points;
+			writeVarInt(out, wires.length());
+			for(int w = 0; w < wires.length(); w++) {
+				wire = wires.getJSONObject(w);
+				writeVarInt(out, componentIndex(ids, wire.getString("from")));
+				writeString(wire.getString("out"));
+				writeVarInt(out, componentIndex(ids, wire.getString("to")));
+				writeString(wire.getString("in"));
+				points = wire.optJSONArray("points");
+				writeVarInt(out, points != null ? points.length() : 0);
+				for(int p = 0; points != null && p < points.length(); p++)
+					writePoint(points.getJSONObject(p));
+				start = wire.optJSONObject("start");
+				end = wire.optJSONObject("end");
+				out.writeByte((start != null ? FLAG_START : 0) | (end != null ? FLAG_END : 0));
+				if(start != null) writePoint(start);
+				if(end != null) writePoint(end);
+			}
+
+			// Descriptions
+			Map<String, Map<String, String>> desc = new TreeMap<>();
+			JSONObject d;
+			for(String c: withDesc) {
+				d = components.getJSONObject(c).getJSONObject("desc");
+				Map<String, String> languages = new TreeMap<>();
+				Iterator<String> l = d.keys();
+				while(l.hasNext()) {
+					key = l.next();
+					languages.put(key, d.getString(key));
+				}
+				desc.put(c, languages);
+			}
+			writeDescriptions(desc);
+		}
+
+		/**
+		 * Encodes an instruction set.
+		 * <p>The descriptions of the instructions and pseudo-instructions are
+		 * removed from the JSON object and encoded in the descriptions section.</p>
+		 * @param json The JSON object of the instruction set.
+		 * @throws IOException If an I/O error occurs.
+		 * @throws JSONException If the JSON object is malformed.
+		 */
+		public void writeInstructionSet(JSONObject json) throws IOException, JSONException {
+			Map<String, Map<String, String>> desc = new TreeMap<>();
+			JSONObject instructions, instruction;
+			String mnemonic;
+			for(String section: new String[] {"instructions", "pseudo"}) {
+				instructions = json.optJSONObject(section);
+				if(instructions == null) continue;
+				Iterator<String> i = instructions.keys();
+				while(i.hasNext()) {
+					mnemonic = i.next();
+					instruction = instructions.getJSONObject(mnemonic);
+					if(instruction.has("desc"))
+						desc.put(mnemonic, Collections.singletonMap("default", instruction.remove("desc").toString()));
+				}
+			}
+			writeValue(json);
+			writeDescriptions(desc);
+		}
+
+		/**
+		 * Encodes the descriptions section.
+		 * @param desc The descriptions indexed by component (or mnemonic) and then by language.
+		 * @throws IOException If an I/O error occurs.
+		 */
+		private void writeDescriptions(Map<String, Map<String, String>> desc) throws IOException {
+			if(desc.isEmpty()) return;
+			DataOutputStream d = new DataOutputStream(descriptions);
+			writeVarInt(d, desc.size());
+			for(Map.Entry<String, Map<String, String>> e: desc.entrySet()) {
+				d.writeUTF(e.getKey());
+				writeVarInt(d, e.getValue().size());
+				for(Map.Entry<String, String> l: e.getValue().entrySet()) {
+					d.writeUTF(l.getKey());
+					d.writeUTF(l.getValue());
+				}
+			}
+		}
+
+		/**
+		 * Encodes a JSON value.
+		 * @param value The value.
+		 * @throws IOException If an I/O error occurs.
+		 * @throws JSONException If the value is invalid.
+		 */
+		public void writeValue(Object value) throws IOException, JSONException {
+			if(value == null || JSONObject.NULL.equals(value))
+				out.writeByte(TAG_NULL);
+			else if(value instanceof Boolean)
+				out.writeByte((Boolean)value ? TAG_TRUE : TAG_FALSE);
+			else if(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+				out.writeByte(TAG_INTEGER);
+				writeSignedVarInt(out, ((Number)value).longValue());
+			}
+			else if(value instanceof Double || value instanceof Float) {
+				out.writeByte(TAG_DOUBLE);
+				out.writeDouble(((Number)value).doubleValue());
+			}
+			else if(value instanceof Number) {
+				out.writeByte(TAG_NUMBER);
+				writeString(value.toString());
+			}
+			else if(value instanceof JSONArray) {
+				JSONArray array = (JSONArray)value;
+				out.writeByte(TAG_ARRAY);
+				writeVarInt(out, array.length());
+				for(int i = 0; i < array.length(); i++)
+					writeValue(array.get(i));
+			}
+			else if(value instanceof JSONObject) {
+				JSONObject object = (JSONObject)value;
+				String key;
+				out.writeByte(TAG_OBJECT);
+				writeVarInt(out, object.length());
+				Iterator<String> i = object.keys();
+				while(i.hasNext()) {
+					key = i.next();
+					writeString(key);
+					writeValue(object.get(key));
+				}
+			}
+			else {
+				out.writeByte(TAG_STRING);
+				writeString(value.toString());
+			}
+		}
+
+		/**
+		 * Encodes a reference to a string, adding it to the table if needed.
+		 * @param s The string.
+		 * @throws IOException If an I/O error occurs.
+		 */
+		private void writeString(String s) throws IOException {
+			Integer index = indexes.get(s);
+			if(index == null) {
+				index = strings.size();
+				strings.add(s);
+				indexes.put(s, index);
+			}
+			writeVarInt(out, index);
+		}
+
+		/**
+		 * Encodes a point.
+		 * @param point The JSON object of the point.
+		 * @throws IOException If an I/O error occurs.
+		 * @throws JSONException If the point is invalid.
+		 */
+		private void writePoint(JSONObject point) throws IOException, JSONException {
+			writeSignedVarInt(out, point.getInt("x"));
+			writeSignedVarInt(out, point.getInt("y"));
+		}
+
+		/**
+		 * Returns the index of the component with the given identifier.
+		 * @param ids The indexes of the components.
+		 * @param id The identifier of the component.
+		 * @return The index of the component.
+		 * @throws InvalidCPUException If the component doesn't exist.
+		 */
+		private static int componentIndex(Map<String, Integer> ids, String id) throws InvalidCPUException {
+			Integer index = ids.get(id);
+			if(index == null)
+				throw new InvalidCPUException("Unknown ID " + id + "!");
+			return index;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+/**
+ * A breakpoint or watchpoint.
+ *
+ * <p>A breakpoint stops the execution when the PC reaches an instruction. A
+ * watchpoint stops the execution when a register or a memory position is
+ * written. Either can have a condition, that must be true to count as a hit,
+ * and a hit count, that is the number of hits needed to stop the execution.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class Breakpoint {
+	/** The types of breakpoints. */
+	public enum Type {
+		/** Breakpoint on the address of an instruction. */
+		INSTRUCTION,
+		/** Watchpoint on writes to a register. */
+		REGISTER,
+		/** Watchpoint on writes to a memory position. */
+		MEMORY
+	}
+
+	/** The type of the breakpoint. */
+	private final Type type;
+	/** The address of the instruction or memory position, or the index of the register. */
+	private final int target;
+	/** The condition, or <tt>null</tt>. */
+	private final BreakpointCondition condition;
+	/** The number of hits needed to stop the execution. */
+	private final int hitCount;
+	/** The number of hits so far. */
+	private int hits = 0;
+
+	/**
+	 * Constructor.
+	 * @param type The type of the breakpoint.
+	 * @param target The address of the instruction or memory position, or the index of the register.
+	 * @param condition The condition, or <tt>null</tt>.
+	 * @param hitCount The number of hits needed to stop the execution (at least 1).
+	 */
+	Breakpoint(Type type, int target, BreakpointCondition condition, int hitCount) {
+		this.type = type;
+		this.target = target;
+		this.condition = condition;
+		this.hitCount = Math.max(hitCount, 1);
+	}
+
+	/**
+	 * Registers a possible hit.
+	 * @param cpu The CPU.
+	 * @return <tt>True</tt> if the execution should stop.
+	 */
+	boolean hit(CPU cpu) {
+		if(condition != null && !condition.evaluate(cpu))
+			return false;
+		return ++hits >= hitCount;
+	}
+
+	/**
+	 * Returns the type of the breakpoint.
+	 * @return The type of the breakpoint.
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the target of the breakpoint.
+	 * @return The address of the instruction or memory position, or the index of the register.
+	 */
+	public int getTarget() {
+		return target;
+	}
+
+	/**
+	 * Returns the condition of the breakpoint.
+	 * @return The condition, or <tt>null</tt> if none.
+	 */
+	public BreakpointCondition getCondition() {
+		return condition;
+	}
+
+	/**
+	 * Returns the number of hits needed to stop the execution.
+	 * @return The hit count.
+	 */
+	public int getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns the number of times the breakpoint was hit (with the condition true).
+	 * @return The number of hits.
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Undoes a hit (when the clock cycle where it was hit is undone).
+	 */
+	void undoHit() {
+		if(hits > 0) hits--;
+	}
+
+	/**
+	 * Resets the number of hits to 0.
+	 */
+	public void resetHits() {
+		hits = 0;
+	}
+
+	@Override
+	public String toString() {
+		String s = type + " " + target;
+		if(condition != null) s += " if " + condition;
+		if(hitCount > 1) s += " (" + hits + "/" + hitCount + ")";
+		return s;
+	}
+}
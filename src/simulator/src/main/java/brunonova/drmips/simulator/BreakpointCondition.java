@@ -0,0 +1,365 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.exceptions.InvalidConditionException;
+
+/**
+ * The condition of a breakpoint, compiled to a small stack-based bytecode.
+ *
+ * <p>Conditions are expressions like <tt>$t0 == 5 &amp;&amp; mem[$sp + 4] &gt; 0</tt>,
+ * that are compiled once and then evaluated after each clock cycle without
+ * allocating objects. The supported operands are integers (decimal or
+ * hexadecimal), registers (<tt>$t0</tt>, <tt>$8</tt>), the address in the
+ * PC (<tt>$pc</tt>) and memory positions (<tt>mem[address]</tt>). The
+ * supported operators are, from the highest to the lowest precedence:
+ * <tt>! -</tt> (unary), <tt>+ -</tt>, <tt>== != &lt; &lt;= &gt; &gt;=</tt>,
+ * <tt>&amp;&amp;</tt> and <tt>||</tt>. Any non-zero value is true.</p>
+ *
+ * <p>The evaluation uses an internal stack, so a condition must not be
+ * evaluated by multiple threads at the same time.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class BreakpointCondition {
+	/** Pushes the constant in the next word. */
+	private static final int CONST = 0;
+	/** Pushes the value of the register whose index is in the next word. */
+	private static final int REG = 1;
+	/** Pushes the address in the PC. */
+	private static final int PC = 2;
+	/** Replaces the address on the top of the stack with the value in that memory position. */
+	private static final int MEM = 3;
+	/** Negates the value on the top of the stack. */
+	private static final int NEG = 4;
+	/** Logical negation of the value on the top of the stack. */
+	private static final int NOT = 5;
+	// Binary operators (pop two values and push the result)
+	private static final int ADD = 6;
+	private static final int SUB = 7;
+	private static final int EQ = 8;
+	private static final int NE = 9;
+	private static final int LT = 10;
+	private static final int LE = 11;
+	private static final int GT = 12;
+	private static final int GE = 13;
+	private static final int AND = 14;
+	private static final int OR = 15;
+
+	/** The source expression. */
+	private final String expression;
+	/** The compiled bytecode. */
+	private final int[] code;
+	/** The evaluation stack. */
+	private final int[] stack;
+
+	/**
+	 * Constructor.
+	 * @param expression The source expression.
+	 * @param code The compiled bytecode.
+	 * @param stackSize The maximum depth of the evaluation stack.
+	 */
+	private BreakpointCondition(String expression, int[] code, int stackSize) {
+		this.expression = expression;
+		this.code = code;
+		this.stack = new int[stackSize];
+	}
+
+	/**
+	 * Compiles a condition.
+	 * @param expression The condition.
+	 * @param cpu The CPU where the condition will be evaluated (to resolve the names of the registers).
+	 * @return The compiled condition.
+	 * @throws InvalidConditionException If the condition is invalid.
+	 */
+	public static BreakpointCondition compile(String expression, CPU cpu) throws InvalidConditionException {
+		Compiler c = new Compiler(expression, cpu);
+		c.parseOr();
+		c.skipSpaces();
+		if(c.pos < expression.length())
+			throw new InvalidConditionException("Unexpected \"" + expression.charAt(c.pos) + "\"", c.pos);
+		int[] code = new int[c.size];
+		System.arraycopy(c.code, 0, code, 0, c.size);
+		return new BreakpointCondition(expression.trim(), code, c.maxDepth);
+	}
+
+	/**
+	 * Evaluates the condition on the current state of the CPU.
+	 * @param cpu The CPU.
+	 * @return <tt>True</tt> if the condition is true.
+	 */
+	public boolean evaluate(CPU cpu) {
+		int[] s = stack;
+		int sp = -1;
+		for(int i = 0; i < code.length; i++) {
+			switch(code[i]) {
+				case CONST: s[++sp] = code[++i]; break;
+				case REG: s[++sp] = cpu.getRegBank().getRegisterValue(code[++i]); break;
+				case PC: s[++sp] = cpu.getPC().getAddress().getValue(); break;
+				case MEM: s[sp] = cpu.hasDataMemory() ? cpu.getDataMemory().getData(s[sp]) : 0; break;
+				case NEG: s[sp] = -s[sp]; break;
+				case NOT: s[sp] = s[sp] == 0 ? 1 : 0; break;
+				case ADD: sp--; s[sp] = s[sp] + s[sp + 1]; break;
+				case SUB: sp--; s[sp] = s[sp] - s[sp + 1]; break;
+				case EQ: sp--; s[sp] = s[sp] == s[sp + 1] ? 1 : 0; break;
+				case NE: sp--; s[sp] = s[sp] != s[sp + 1] ? 1 : 0; break;
+				case LT: sp--; s[sp] = s[sp] < s[sp + 1] ? 1 : 0; break;
+				case LE: sp--; s[sp] = s[sp] <= s[sp + 1] ? 1 : 0; break;
+				case GT: sp--; s[sp] = s[sp] > s[sp + 1] ? 1 : 0; break;
+				case GE: sp--; s[sp] = s[sp] >= s[sp + 1] ? 1 : 0; break;
+				case AND: sp--; s[sp] = s[sp] != 0 && s[sp + 1] != 0 ? 1 : 0; break;
+				case OR: sp--; s[sp] = s[sp] != 0 || s[sp + 1] != 0 ? 1 : 0; break;
+				default: throw new IllegalStateException("Invalid opcode " + code[i]);
+			}
+		}
+		return s[0] != 0;
+	}
+
+	/**
+	 * Returns the source expression of the condition.
+	 * @return The condition.
+	 */
+	public String getExpression() {
+		return expression;
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+
+	/**
+	 * Recursive descent parser that generates the bytecode.
+	 */
+	private static final class Compiler {
+		/** The expression being compiled. */
+		private final String expr;
+		/** The CPU, to resolve the names of the registers. */
+		private final CPU cpu;
+		/** The current position in the expression. */
+		private int pos = 0;
+		/** The generated bytecode. */
+		private int[] code = new int[16];
+		/** The number of words in the bytecode. */
+		private int size = 0;
+		/** The current depth of the evaluation stack. */
+		private int depth = 0;
+		/** The maximum depth of the evaluation stack. */
+		private int maxDepth = 0;
+
+		/**
+		 * Constructor.
+		 * @param expr The expression to compile.
+		 * @param cpu The CPU, to resolve the names of the registers.
+		 */
+		public Compiler(String expr, CPU cpu) {
+			this.expr = expr;
+			this.cpu = cpu;
+		}
+
+		/**
+		 * Parses a <tt>||</tt> expression.
+		 * @throws InvalidConditionException If the expression is invalid.
+		 */
+		public void parseOr() throws InvalidConditionException {
+			parseAnd();
+			while(accept("||")) {
+				parseAnd();
+				emit(OR, -1);
+			}
+		}
+
+		/**
+		 * Parses a <tt>&amp;&amp;</tt> expression.
+		 * @throws InvalidConditionException If the expression is invalid.
+		 */
+		private void parseAnd() throws InvalidConditionException {
+			parseComparison();
+			while(accept("&&")) {
+				parseComparison();
+				emit(AND, -1);
+			}
+		}
+
+		/**
+		 * Parses a comparison.
+		 * @throws InvalidConditionException If the expression is invalid.
+		 */
+		private void parseComparison() throws InvalidConditionException {
+			parseSum();
+			int op;
+			if(accept("==")) op = EQ;
+			else if(accept("!=")) op = NE;
+			else if(accept("<=")) op = LE;
+			else if(accept(">=")) op = GE;
+			else if(accept("<")) op = LT;
+			else if(accept(">")) op = GT;
+			else return;
+			parseSum();
+			emit(op, -1);
+		}
+
+		/**
+		 * Parses an addition or subtraction.
+		 * @throws InvalidConditionException If the expression is invalid.
+		 */
+		private void parseSum() throws InvalidConditionException {
+			parseUnary();
+			while(true) {
+				if(accept("+")) {
+					parseUnary();
+					emit(ADD, -1);
+				}
+				else if(accept("-")) {
+					parseUnary();
+					emit(SUB, -1);
+				}
+				else
+					break;
+			}
+		}
+
+		/**
+		 * Parses an unary operation.
+		 * @throws InvalidConditionException If the expression is invalid.
+		 */
+		private void parseUnary() throws InvalidConditionException {
+			if(accept("!")) {
+				parseUnary();
+				emit(NOT, 0);
+			}
+			else if(accept("-")) {
+				parseUnary();
+				emit(NEG, 0);
+			}
+			else
+				parseOperand();
+		}
+
+		/**
+		 * Parses an operand.
+		 * @throws InvalidConditionException If the expression is invalid.
+		 */
+		private void parseOperand() throws InvalidConditionException {
+			skipSpaces();
+			int start = pos;
+			if(accept("(")) {
+				parseOr();
+				expect(")");
+			}
+			else if(pos < expr.length() && expr.charAt(pos) == CPU.REGISTER_PREFIX) {
+				pos++;
+				String name = readWord();
+				if(name.equalsIgnoreCase("pc"))
+					emit(PC, 1);
+				else {
+					int index = cpu.getRegisterIndex(CPU.REGISTER_PREFIX + name);
+					if(index < 0) throw new InvalidConditionException("Unknown register " + CPU.REGISTER_PREFIX + name, start);
+					emit(REG, 1);
+					emitWord(index);
+				}
+			}
+			else if(pos < expr.length() && Character.isDigit(expr.charAt(pos))) {
+				String number = readWord();
+				try {
+					emit(CONST, 1);
+					emitWord(Long.decode(number).intValue());
+				}
+				catch(NumberFormatException ex) {
+					throw new InvalidConditionException("Invalid number " + number, start);
+				}
+			}
+			else if(readWord().equalsIgnoreCase("mem")) {
+				expect("[");
+				parseOr();
+				expect("]");
+				emit(MEM, 0);
+			}
+			else
+				throw new InvalidConditionException("Operand expected", start);
+		}
+
+		/**
+		 * Skips the whitespace at the current position.
+		 */
+		private void skipSpaces() {
+			while(pos < expr.length() && Character.isWhitespace(expr.charAt(pos)))
+				pos++;
+		}
+
+		/**
+		 * Reads a word (letters and digits) at the current position.
+		 * @return The word (may be empty).
+		 */
+		private String readWord() {
+			int start = pos;
+			while(pos < expr.length() && Character.isLetterOrDigit(expr.charAt(pos)))
+				pos++;
+			return expr.substring(start, pos);
+		}
+
+		/**
+		 * Consumes the given token if it is at the current position.
+		 * @param token The token.
+		 * @return <tt>True</tt> if the token was consumed.
+		 */
+		private boolean accept(String token) {
+			skipSpaces();
+			if(expr.startsWith(token, pos)) {
+				pos += token.length();
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Consumes the given token, that must be at the current position.
+		 * @param token The token.
+		 * @throws InvalidConditionException If the token isn't at the current position.
+		 */
+		private void expect(String token) throws InvalidConditionException {
+			if(!accept(token))
+				throw new InvalidConditionException("\"" + token + "\" expected", pos);
+		}
+
+		/**
+		 * Adds an instruction to the bytecode.
+		 * @param opcode The opcode of the instruction.
+		 * @param stackChange How many values the instruction adds to (or removes from) the stack.
+		 */
+		private void emit(int opcode, int stackChange) {
+			emitWord(opcode);
+			depth += stackChange;
+			if(depth > maxDepth) maxDepth = depth;
+		}
+
+		/**
+		 * Adds a word to the bytecode.
+		 * @param word The word.
+		 */
+		private void emitWord(int word) {
+			if(size == code.length) {
+				int[] c = new int[code.length * 2];
+				System.arraycopy(code, 0, c, 0, size);
+				code = c;
+			}
+			code[size++] = word;
+		}
+	}
+}
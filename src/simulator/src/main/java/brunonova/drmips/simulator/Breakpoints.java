@@ -0,0 +1,334 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.components.DataMemory;
+import brunonova.drmips.simulator.components.RegBank;
+import brunonova.drmips.simulator.exceptions.InvalidConditionException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The breakpoints and watchpoints of a CPU.
+ *
+ * <p>The breakpoints on instructions are kept in a bitset indexed by the index
+ * of the instruction, and the watchpoints in bitsets indexed by the index of
+ * the register or memory position. The watchpoints are notified from the write
+ * path of the register bank and data memory (see {@link WriteListener}), and
+ * only evaluated after the clock cycle. So checking the breakpoints after each
+ * clock cycle takes constant time and doesn't allocate objects.</p>
+ *
+ * <p>A breakpoint on an instruction is only hit in the clock cycles that fetch
+ * the instruction, not in the cycles that the PC keeps its address because the
+ * pipeline or the memory stalled. The hits are saved with the history of the
+ * clock cycles (if enabled), so stepping back also undoes them.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class Breakpoints implements WriteListener {
+	/** The CPU. */
+	private final CPU cpu;
+	/** The indexes of the instructions with breakpoints. */
+	private final BitSet instructions = new BitSet();
+	/** The breakpoints on instructions, by instruction index. */
+	private Breakpoint[] instructionBreakpoints = new Breakpoint[0];
+	/** The indexes of the watched registers. */
+	private final BitSet registers = new BitSet();
+	/** The watchpoints on registers, by register index. */
+	private Breakpoint[] registerWatchpoints = new Breakpoint[0];
+	/** The indexes of the watched memory positions. */
+	private final BitSet memory = new BitSet();
+	/** The watchpoints on memory positions, by memory index. */
+	private Breakpoint[] memoryWatchpoints = new Breakpoint[0];
+	/** The index of the watched register written in the current clock cycle, or -1. */
+	private int writtenRegister = -1;
+	/** The index of the watched memory position written in the current clock cycle, or -1. */
+	private int writtenMemory = -1;
+	/** The breakpoint that stopped the execution the last time, or <tt>null</tt>. */
+	private Breakpoint lastHit = null;
+	/** The breakpoints hit in the saved clock cycles, in order. */
+	private final List<Breakpoint> hitHistory = new ArrayList<>();
+	/** The clock cycle of each hit in <tt>hitHistory</tt>. */
+	private final List<Integer> hitCycles = new ArrayList<>();
+
+	/**
+	 * Constructor.
+	 * @param cpu The CPU.
+	 */
+	Breakpoints(CPU cpu) {
+		this.cpu = cpu;
+	}
+
+	/**
+	 * Adds (or replaces) a breakpoint on an instruction.
+	 * @param address The address of the instruction.
+	 * @param condition The condition, or <tt>null</tt> or empty if none.
+	 * @param hitCount The number of hits needed to stop the execution.
+	 * @return The new breakpoint.
+	 * @throws InvalidConditionException If the condition is invalid.
+	 * @throws IllegalArgumentException If the address is invalid.
+	 */
+	public Breakpoint addInstructionBreakpoint(int address, String condition, int hitCount) throws InvalidConditionException {
+		if(address < 0 || address % (Data.DATA_SIZE / 8) != 0)
+			throw new IllegalArgumentException("Invalid instruction address " + address + "!");
+		Breakpoint b = new Breakpoint(Breakpoint.Type.INSTRUCTION, address, compile(condition), hitCount);
+		int index = address / (Data.DATA_SIZE / 8);
+		instructionBreakpoints = put(instructionBreakpoints, index, b);
+		instructions.set(index);
+		return b;
+	}
+
+	/**
+	 * Adds (or replaces) a watchpoint on writes to a register.
+	 * @param register The index of the register.
+	 * @param condition The condition, or <tt>null</tt> or empty if none.
+	 * @param hitCount The number of hits needed to stop the execution.
+	 * @return The new watchpoint.
+	 * @throws InvalidConditionException If the condition is invalid.
+	 * @throws IllegalArgumentException If the register doesn't exist.
+	 */
+	public Breakpoint addRegisterWatchpoint(int register, String condition, int hitCount) throws InvalidConditionException {
+		if(register < 0 || register >= cpu.getRegBank().getNumberOfRegisters())
+			throw new IllegalArgumentException("Invalid register " + register + "!");
+		Breakpoint b = new Breakpoint(Breakpoint.Type.REGISTER, register, compile(condition), hitCount);
+		registerWatchpoints = put(registerWatchpoints, register, b);
+		registers.set(register);
+		return b;
+	}
+
+	/**
+	 * Adds (or replaces) a watchpoint on writes to a memory position.
+	 * @param address The address of the memory position.
+	 * @param condition The condition, or <tt>null</tt> or empty if none.
+	 * @param hitCount The number of hits needed to stop the execution.
+	 * @return The new watchpoint.
+	 * @throws InvalidConditionException If the condition is invalid.
+	 * @throws IllegalArgumentException If the CPU has no data memory or the address is invalid.
+	 */
+	public Breakpoint addMemoryWatchpoint(int address, String condition, int hitCount) throws InvalidConditionException {
+		int index = cpu.hasDataMemory() ? cpu.getDataMemory().getIndexOfAddress(address) : -1;
+		if(index < 0 || address % (Data.DATA_SIZE / 8) != 0)
+			throw new IllegalArgumentException("Invalid memory address " + address + "!");
+		Breakpoint b = new Breakpoint(Breakpoint.Type.MEMORY, address, compile(condition), hitCount);
+		memoryWatchpoints = put(memoryWatchpoints, index, b);
+		memory.set(index);
+		return b;
+	}
+
+	/**
+	 * Removes a breakpoint or watchpoint.
+	 * @param breakpoint The breakpoint to remove.
+	 */
+	public void remove(Breakpoint breakpoint) {
+		int index;
+		switch(breakpoint.getType()) {
+			case INSTRUCTION:
+				index = breakpoint.getTarget() / (Data.DATA_SIZE / 8);
+				if(instructions.get(index) && instructionBreakpoints[index] == breakpoint) {
+					instructions.clear(index);
+					instructionBreakpoints[index] = null;
+				}
+				break;
+			case REGISTER:
+				index = breakpoint.getTarget();
+				if(registers.get(index) && registerWatchpoints[index] == breakpoint) {
+					registers.clear(index);
+					registerWatchpoints[index] = null;
+				}
+				break;
+			case MEMORY:
+				index = cpu.getDataMemory().getIndexOfAddress(breakpoint.getTarget());
+				if(memory.get(index) && memoryWatchpoints[index] == breakpoint) {
+					memory.clear(index);
+					memoryWatchpoints[index] = null;
+				}
+				break;
+		}
+	}
+
+	/**
+	 * Removes all the breakpoints on instructions.
+	 */
+	public void clearInstructionBreakpoints() {
+		instructions.clear();
+		instructionBreakpoints = new Breakpoint[0];
+	}
+
+	/**
+	 * Removes all the breakpoints and watchpoints.
+	 */
+	public void clear() {
+		clearInstructionBreakpoints();
+		registers.clear();
+		registerWatchpoints = new Breakpoint[0];
+		memory.clear();
+		memoryWatchpoints = new Breakpoint[0];
+		lastHit = null;
+	}
+
+	/**
+	 * Returns whether there are no breakpoints nor watchpoints.
+	 * @return <tt>True</tt> if empty.
+	 */
+	public boolean isEmpty() {
+		return instructions.isEmpty() && registers.isEmpty() && memory.isEmpty();
+	}
+
+	/**
+	 * Returns all the breakpoints and watchpoints.
+	 * @return List with the breakpoints, then the register watchpoints and then the memory watchpoints.
+	 */
+	public List<Breakpoint> getAll() {
+		List<Breakpoint> list = new ArrayList<>();
+		for(int i = instructions.nextSetBit(0); i >= 0; i = instructions.nextSetBit(i + 1))
+			list.add(instructionBreakpoints[i]);
+		for(int i = registers.nextSetBit(0); i >= 0; i = registers.nextSetBit(i + 1))
+			list.add(registerWatchpoints[i]);
+		for(int i = memory.nextSetBit(0); i >= 0; i = memory.nextSetBit(i + 1))
+			list.add(memoryWatchpoints[i]);
+		return list;
+	}
+
+	/**
+	 * Resets the number of hits of all the breakpoints and watchpoints to 0.
+	 */
+	public void resetHits() {
+		for(Breakpoint b: getAll())
+			b.resetHits();
+		clearHitHistory();
+	}
+
+	/**
+	 * Undoes the hits of the clock cycles after the given one (after a step back).
+	 * @param cycle The number of the current clock cycle.
+	 */
+	void undoHits(int cycle) {
+		int last = hitCycles.size() - 1;
+		while(last >= 0 && hitCycles.get(last) > cycle) {
+			hitHistory.remove(last).undoHit();
+			hitCycles.remove(last--);
+		}
+	}
+
+	/**
+	 * Forgets the hits of the saved clock cycles (when they are discarded).
+	 */
+	void clearHitHistory() {
+		hitHistory.clear();
+		hitCycles.clear();
+	}
+
+	/**
+	 * Returns the breakpoint or watchpoint that stopped the execution the last time.
+	 * @return The last breakpoint hit, or <tt>null</tt>.
+	 */
+	public Breakpoint getLastHit() {
+		return lastHit;
+	}
+
+	@Override
+	public void stateWritten(Component component, int index) {
+		if(component instanceof RegBank) {
+			if(registers.get(index)) writtenRegister = index;
+		}
+		else if(component instanceof DataMemory) {
+			if(memory.get(index)) writtenMemory = index;
+		}
+	}
+
+	/**
+	 * Forgets the watched positions written before (outside of <tt>CPU.executeAll(long, long, ExecutionListener)</tt>).
+	 */
+	void clearWrites() {
+		writtenRegister = writtenMemory = -1;
+	}
+
+	/**
+	 * Checks the breakpoints and watchpoints after a clock cycle.
+	 * @param fetched Whether the clock cycle wrote the PC (fetching the instruction at its new address).
+	 * @return <tt>True</tt> if the execution should stop.
+	 */
+	boolean check(boolean fetched) {
+		Breakpoint hit = null;
+		int address = cpu.getPC().getAddress().getValue();
+		if(fetched && address >= 0) {
+			int index = address / (Data.DATA_SIZE / 8);
+			if(instructions.get(index) && hit(instructionBreakpoints[index]))
+				hit = instructionBreakpoints[index];
+		}
+		if(writtenRegister >= 0) {
+			if(hit(registerWatchpoints[writtenRegister]))
+				hit = registerWatchpoints[writtenRegister];
+			writtenRegister = -1;
+		}
+		if(writtenMemory >= 0) {
+			if(hit(memoryWatchpoints[writtenMemory]))
+				hit = memoryWatchpoints[writtenMemory];
+			writtenMemory = -1;
+		}
+		if(hit != null) lastHit = hit;
+		return hit != null;
+	}
+
+	/**
+	 * Hits a breakpoint or watchpoint, saving the hit with the history of the clock cycles.
+	 * @param breakpoint The breakpoint.
+	 * @return <tt>True</tt> if the execution should stop.
+	 */
+	private boolean hit(Breakpoint breakpoint) {
+		int hits = breakpoint.getHits();
+		boolean stop = breakpoint.hit(cpu);
+		if(breakpoint.getHits() != hits && cpu.isHistoryEnabled()) {
+			hitHistory.add(breakpoint);
+			hitCycles.add(cpu.getNumberOfExecutedCycles());
+		}
+		return stop;
+	}
+
+	/**
+	 * Compiles a condition.
+	 * @param condition The condition, or <tt>null</tt> or empty if none.
+	 * @return The compiled condition, or <tt>null</tt>.
+	 * @throws InvalidConditionException If the condition is invalid.
+	 */
+	private BreakpointCondition compile(String condition) throws InvalidConditionException {
+		if(condition == null || condition.trim().isEmpty())
+			return null;
+		else
+			return BreakpointCondition.compile(condition, cpu);
+	}
+
+	/**
+	 * Puts a breakpoint in an array, growing it if needed.
+	 * @param array The array.
+	 * @param index The index.
+	 * @param breakpoint The breakpoint.
+	 * @return The array (or a new, bigger one).
+	 */
+	private static Breakpoint[] put(Breakpoint[] array, int index, Breakpoint breakpoint) {
+		if(index >= array.length) {
+			Breakpoint[] a = new Breakpoint[Math.max(index + 1, array.length * 2)];
+			System.arraycopy(array, 0, a, 0, array.length);
+			array = a;
+		}
+		array[index] = breakpoint;
+		return array;
+	}
+}
@@ -22,24 +22,18 @@ import brunonova.drmips.simulator.components.*;
 import brunonova.drmips.simulator.exceptions.*;
 import brunonova.drmips.simulator.util.Dimension;
 import brunonova.drmips.simulator.util.Point;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.lang.reflect.InvocationTargetException;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 
 /**
  * Class that represents and manipulates a simulated MIPS CPU.
@@ -63,8 +57,24 @@ public class CPU {
 	public static final String LATENCY_UNIT = "ps";
 	/** The exponent (e), that multiplied by 10 and the latency gives the real latency in seconds (ps * 10 ^ e). */
 	public static final int LATENCY_EXPONENT = -12;
-	/** The number of clock cycles executed in <tt>executeAll()</tt> after which it throws an exception. */
+	/** The number of clock cycles executed in the deprecated <tt>executeAll()</tt> after which it throws an exception. */
 	public static final int EXECUTE_ALL_LIMIT_CYCLES = 1000;
+	/** The minimum number of pipeline registers of a pipelined CPU (5 stages). */
+	public static final int MINIMUM_PIPELINE_REGISTERS = 4;
+	/** The maximum number of pipeline registers of a pipelined CPU. */
+	public static final int MAXIMUM_PIPELINE_REGISTERS = 15;
+	/** The role of the instruction fetch stages. */
+	public static final int STAGE_IF = 0;
+	/** The role of the instruction decode stages. */
+	public static final int STAGE_ID = 1;
+	/** The role of the execute stages. */
+	public static final int STAGE_EX = 2;
+	/** The role of the memory access stages. */
+	public static final int STAGE_MEM = 3;
+	/** The role of the write back stage. */
+	public static final int STAGE_WB = 4;
+	/** The number of clock cycles between progress notifications and time limit checks in <tt>executeAll(long, long, ExecutionListener)</tt>. */
+	public static final int EXECUTION_PROGRESS_INTERVAL = 1024;
 
 	/** The file of the CPU. */
 	private File file = null;
@@ -72,6 +82,8 @@ public class CPU {
 	private Map<String, Component> components;
 	/** The components that are synchronous (convenience list). */
 	private List<Component> synchronousComponents;
+	/** The caches in front of the memories (convenience list). */
+	private List<Cache> caches;
 	/** The names of the registers (without the prefix). */
 	private List<String> registerNames = null;
 	/** The loaded instruction set. */
@@ -96,13 +108,21 @@ public class CPU {
 	private ForwardingUnit forwardingUnit = null;
 	/** The hazard detection unit (set automatically in <tt>addComponent()</tt>. */
 	private HazardDetectionUnit hazardDetectionUnit = null;
-	/** The IF/ID register, if the CPU is pipelined. */
+	/** The branch predictor (set automatically in <tt>addComponent()</tt>. */
+	private BranchPredictor branchPredictor = null;
+	/** The pipeline registers, in the order of the stages (empty if not pipelined). */
+	private final List<PipelineRegister> pipelineRegisters = new ArrayList<>();
+	/** The names of the stages (set in <tt>checkRequiredComponents()</tt>). */
+	private String[] stageNames = null;
+	/** The role of each stage in the classic pipeline (<tt>STAGE_*</tt>). */
+	private int[] stageRoles = null;
+	/** The IF/ID register (at the end of the fetch stages), if the CPU is pipelined. */
 	private PipelineRegister ifIdReg = null;
-	/** The ID/EX register, if the CPU is pipelined. */
+	/** The ID/EX register (at the start of the execute stages), if the CPU is pipelined. */
 	private PipelineRegister idExReg = null;
-	/** The EX/MEM register, if the CPU is pipelined. */
+	/** The EX/MEM register (at the start of the memory access stages), if the CPU is pipelined. */
 	private PipelineRegister exMemReg = null;
-	/** The MEM/WB register, if the CPU is pipelined. */
+	/** The MEM/WB register (the last one), if the CPU is pipelined. */
 	private PipelineRegister memWbReg = null;
 
 	/** Clock period in LATENCY_UNIT unit. */
@@ -117,10 +137,39 @@ public class CPU {
 	private int forwards = 0;
 	/** Number of stalls. */
 	private int stalls = 0;
+	/** Number of clock cycles spent waiting for the memory (cache misses). */
+	private int memoryStalls = 0;
+	/** Number of branches resolved by the branch predictor. */
+	private int branches = 0;
+	/** Number of mispredicted branches. */
+	private int mispredictions = 0;
+	/** Number of pipeline stages flushed because of mispredicted branches. */
+	private int mispredictionPenalty = 0;
+	/** The statistics of each instruction of the loaded program. */
+	private InstructionProfile instructionProfile = null;
+	/** The predicted hazards of the loaded program. */
+	private HazardAnalyzer hazardAnalyzer = null;
+	/** The analyzer of the locality of the memory accesses, or <tt>null</tt> if disabled. */
+	private LocalityAnalyzer localityAnalyzer = null;
 	/** Whether the latencies and critical path should depend on the current instruction. */
 	private boolean performanceInstructionDependent = false;
-	/** Breakpoint addr . */
-	private int breakpointAddr = -1;
+	/** The breakpoints and watchpoints. */
+	private final Breakpoints breakpoints = new Breakpoints(this);
+	/** The listeners notified of each clock cycle (an array to iterate without allocations). */
+	private volatile CycleListener[] cycleListeners = new CycleListener[0];
+	/** Whether the state of each clock cycle is saved, to allow "step back". */
+	private boolean historyEnabled = true;
+	/** The profiler of the components, or <tt>null</tt> if profiling is disabled. */
+	private ComponentProfiler profiler = null;
+	/** Forwards the writes to the registers and data memory to the breakpoints and cycle listeners. */
+	private final WriteListener writeDispatcher = new WriteListener() {
+		@Override
+		public void stateWritten(Component component, int index) {
+			breakpoints.stateWritten(component, index);
+			for(CycleListener l: cycleListeners)
+				l.stateWritten(component, index);
+		}
+	};
 
 	/**
 	 * Constructor that should by called by other constructors.
@@ -128,6 +177,7 @@ public class CPU {
 	protected CPU() {
 		components = new TreeMap<>();
 		synchronousComponents = new LinkedList<>();
+		caches = new ArrayList<>();
 		assembler = new Assembler(this);
 	}
 
@@ -143,6 +193,8 @@ public class CPU {
 	/**
 	 * Creates a CPU from a JSON file.
 	 * <p><b>Don't forget to call <tt>setPerformanceInstructionDependent()</tt> on the CPU!</b></p>.
+	 * <p>The file is always read and parsed again. Use {@link CPUTemplate#getTemplate}
+	 * to create many CPUs from the same file.</p>
 	 * @param path Path to the JSON file.
 	 * @return CPU created from the file.
 	 * @throws IOException If the file doesn't exist or an I/O error occurs.
@@ -153,46 +205,46 @@ public class CPU {
 	 * @throws NumberFormatException If an opcode is not a number.
 	 */
 	public static CPU createFromJSONFile(String path) throws IOException, JSONException, InvalidCPUException, ArrayIndexOutOfBoundsException, InvalidInstructionSetException, NumberFormatException {
-		CPU cpu = new CPU(new File(path));
-		BufferedReader reader = null;
-		String file = "", line, parentPath = ".";
+		return new CPUTemplate(path).createCPU();
+	}
 
-		// Read file to String
-		try {
-			File f = new File(path);
-			parentPath = f.getParentFile().getAbsolutePath();
-			reader = new BufferedReader(new InputStreamReader(new FileInputStream(f), "UTF8"));
-			while((line = reader.readLine()) != null)
-				file += line + "\n";
-			reader.close();
-		}
-		catch(IOException e) {
-			throw e;
-		}
-		finally {
-			if(reader != null) reader.close();
-		}
+	/**
+	 * Connects the components that depend on the register bank and the instruction set.
+	 * <p>Called by {@link CPUTemplate} after all the components have been added.</p>
+	 * @param instructionSet The instruction set of the CPU.
+	 * @throws InvalidCPUException If the CPU is invalid or incomplete.
+	 */
+	final void setInstructionSet(InstructionSet instructionSet) throws InvalidCPUException {
+		checkRequiredComponents();
+		if(hasForwardingUnit()) forwardingUnit.setRegbank(getRegBank());
+		if(hasHazardDetectionUnit()) hazardDetectionUnit.setRegbank(getRegBank());
+		this.instructionSet = instructionSet;
+		controlUnit.setControl(instructionSet.getControl(), instructionSet.getOpCodeSize());
+		if(hasALUControl()) aluControl.setControlALU(instructionSet.getControlALU());
+		if(hasALU()) alu.setControlALU(instructionSet.getControlALU());
+	}
 
-		// Parse the JSON file
-		JSONObject json = new JSONObject(file);
-		parseJSONComponents(cpu, json.getJSONObject("components"), parentPath);
-		cpu.checkRequiredComponents();
-		if(cpu.hasForwardingUnit()) cpu.forwardingUnit.setRegbank(cpu.getRegBank());
-		if(cpu.hasHazardDetectionUnit()) cpu.hazardDetectionUnit.setRegbank(cpu.getRegBank());
-		if(json.has("reg_names")) parseJSONRegNames(cpu, json.getJSONArray("reg_names"));
-		cpu.instructionSet = new InstructionSet(parentPath + File.separator + json.getString("instructions"));
-		cpu.controlUnit.setControl(cpu.getInstructionSet().getControl(), cpu.getInstructionSet().getOpCodeSize());
-		if(cpu.hasALUControl()) cpu.aluControl.setControlALU(cpu.getInstructionSet().getControlALU());
-		if(cpu.hasALU()) cpu.alu.setControlALU(cpu.getInstructionSet().getControlALU());
-		parseJSONWires(cpu, json.getJSONArray("wires"));
-		cpu.determineControlPath();
+	/**
+	 * Sets the names of the registers, which must have been validated already.
+	 * @param registerNames The names of the registers (without the prefix), or <tt>null</tt>.
+	 */
+	final void setRegisterNames(List<String> registerNames) {
+		this.registerNames = registerNames;
+	}
 
-		for(Component c: cpu.getComponents()) // "execute" all components (initialize all outputs/inputs)
-			c.execute();
+	/**
+	 * Initializes the values and the performance of a CPU whose wires have all been connected.
+	 * <p>Called by {@link CPUTemplate} as the last step of the creation of a CPU.</p>
+	 */
+	final void initialize() {
+		determineControlPath();
+		instructionProfile = new InstructionProfile(this);
+		hazardAnalyzer = new HazardAnalyzer(this, new ArrayList<AssembledInstruction>());
 
-		cpu.calculatePerformance();
+		for(Component c: getComponents()) // "execute" all components (initialize all outputs/inputs)
+			c.callExecute();
 
-		return cpu;
+		calculatePerformance();
 	}
 
 	private void checkRequiredComponents() throws InvalidCPUException {
@@ -201,12 +253,80 @@ public class CPU {
 		if(instructionMemory == null) throw new InvalidCPUException("The instruction memory is required!");
 		if(controlUnit == null) throw new InvalidCPUException("The control unit is required!");
 
-		// Check number of pipeline registers (must be 0 or 4)
-		int count = 0;
-		for(Component c: getComponents())
-			if(c instanceof PipelineRegister) count++;
-		if(count > 0 && count != 4)
-			throw new InvalidCPUException("Pipelined CPUs must have exactly 4 pipeline registers (5 stages)!");
+		if(isPipeline()) orderPipelineRegisters();
+		else stageNames = new String[] {TimingReport.UNICYCLE_STAGE};
+	}
+
+	/**
+	 * Sorts the pipeline registers by their position in the pipeline, names the
+	 * stages and determines the roles of the stages in the classic pipeline.
+	 * <p>The stage after a register is named after the text after the slash in its
+	 * identifier (<tt>EX/MEM</tt> starts the <tt>MEM</tt> stage), and the first
+	 * stage after the text before the slash of the first register. A stage whose
+	 * name starts with the name of a stage of the classic pipeline has its role,
+	 * and the other ones the role of the previous stage. If the names don't
+	 * identify the roles, the last registers are the ID/EX, EX/MEM and MEM/WB
+	 * registers.</p>
+	 * @throws InvalidCPUException If the positions of the registers are invalid.
+	 */
+	private void orderPipelineRegisters() throws InvalidCPUException {
+		int n = pipelineRegisters.size();
+		if(n < MINIMUM_PIPELINE_REGISTERS || n > MAXIMUM_PIPELINE_REGISTERS)
+			throw new InvalidCPUException("Pipelined CPUs must have between " + MINIMUM_PIPELINE_REGISTERS + " and " + MAXIMUM_PIPELINE_REGISTERS + " pipeline registers (" + (MINIMUM_PIPELINE_REGISTERS + 1) + " to " + (MAXIMUM_PIPELINE_REGISTERS + 1) + " stages)!");
+
+		// Sort the registers
+		List<String> standard = Arrays.asList("IF/ID", "ID/EX", "EX/MEM", "MEM/WB");
+		PipelineRegister[] ordered = new PipelineRegister[n];
+		for(PipelineRegister reg: pipelineRegisters) {
+			int stage = reg.getStage();
+			if(stage == 0) stage = standard.indexOf(reg.getId().trim().toUpperCase()) + 1;
+			if(stage == 0)
+				throw new InvalidCPUException("A pipeline register's identifier must be one of {IF/ID, ID/EX, EX/MEM, MEM/WB}, or its stage must be set!");
+			if(stage > n)
+				throw new InvalidCPUException("Invalid stage of pipeline register " + reg.getId() + "! Must be between 1 and " + n + ".");
+			if(ordered[stage - 1] != null)
+				throw new InvalidCPUException("Only one pipeline register allowed in stage " + stage + " (" + ordered[stage - 1].getId() + " and " + reg.getId() + ")!");
+			ordered[stage - 1] = reg;
+		}
+		pipelineRegisters.clear();
+		pipelineRegisters.addAll(Arrays.asList(ordered));
+
+		// Name the stages
+		stageNames = new String[n + 1];
+		for(int i = 0; i < n; i++) {
+			String id = ordered[i].getId().trim();
+			int slash = id.indexOf('/');
+			if(i == 0) stageNames[0] = slash > 0 ? id.substring(0, slash) : TimingReport.PIPELINE_STAGES[STAGE_IF];
+			stageNames[i + 1] = (slash >= 0 && slash < id.length() - 1) ? id.substring(slash + 1) : id;
+		}
+
+		// Find the first stage of each role
+		int[] first = {0, -1, -1, -1, n};
+		int role = STAGE_IF;
+		for(int stage = 1; stage <= n; stage++) {
+			String name = stageNames[stage].toUpperCase();
+			for(int r = role + 1; r < STAGE_WB; r++) {
+				if(name.startsWith(TimingReport.PIPELINE_STAGES[r])) {
+					role = r;
+					first[r] = stage;
+				}
+			}
+		}
+		for(int r = STAGE_MEM; r > STAGE_IF; r--) { // by position, if not identified
+			if(first[r] < 0 || first[r] >= first[r + 1])
+				first[r] = first[r + 1] - 1;
+		}
+		for(int r = STAGE_ID; r < STAGE_WB; r++)
+			first[r] = Math.max(first[r], first[r - 1] + 1);
+		stageRoles = new int[n + 1];
+		for(int stage = 0; stage <= n; stage++) {
+			for(int r = STAGE_ID; r <= STAGE_WB; r++)
+				if(first[r] <= stage) stageRoles[stage] = r;
+		}
+		ifIdReg = ordered[first[STAGE_ID] - 1];
+		idExReg = ordered[first[STAGE_EX] - 1];
+		exMemReg = ordered[first[STAGE_MEM] - 1];
+		memWbReg = ordered[n - 1];
 	}
 
 	/**
@@ -221,6 +341,18 @@ public class CPU {
 		determineCriticalPath();
 	}
 
+	/**
+	 * Calculates only the clock period of the CPU, without determining the critical path.
+	 * <p>Used to evaluate many combinations of latencies quickly. The critical
+	 * path is invalid until <tt>calculatePerformance()</tt> is called.</p>
+	 * @return The new clock period.
+	 */
+	final int calculateClockPeriod() {
+		calculateAccumulatedLatencies(false);
+		determineClockPeriodAndFrequency();
+		return clockPeriod;
+	}
+
 	/**
 	 * Calculates the latency in each component and input and determines the critical path of the instruction.
 	 */
@@ -240,7 +372,7 @@ public class CPU {
 			c.resetPerformance();
 
 		for(Component c: synchronousComponents) // calculate latencies
-			c.updateAccumulatedLatency(instructionDependent);
+			c.callUpdateAccumulatedLatency(instructionDependent);
 	}
 
 	/**
@@ -313,6 +445,7 @@ public class CPU {
 	 */
 	private void determineClockPeriodAndFrequency() {
 		clockPeriod = findHighestAccumulatedLatency();
+		if(dataMemory != null) dataMemory.setClockPeriod(clockPeriod);
 		if(clockPeriod > 0)
 			clockFrequency = 1.0 / (clockPeriod * Math.pow(10, LATENCY_EXPONENT));
 		else
@@ -424,6 +557,88 @@ public class CPU {
 		return stalls;
 	}
 
+	/**
+	 * Returns the number of clock cycles spent waiting for the memory.
+	 * <p>These are the stall cycles caused by the accesses to the caches and
+	 * to a data memory with a multi-cycle timing model (see
+	 * {@link #isStalledByMemory()}), which are included in the number of
+	 * executed cycles.</p>
+	 * @return Number of memory stall cycles.
+	 */
+	public int getNumberOfMemoryStalls() {
+		return memoryStalls;
+	}
+
+	/**
+	 * Returns the number of branches resolved by the branch predictor.
+	 * @return Number of branches (0 if there is no branch predictor).
+	 */
+	public int getNumberOfBranches() {
+		return branches;
+	}
+
+	/**
+	 * Returns the number of branches mispredicted by the branch predictor.
+	 * @return Number of mispredictions.
+	 */
+	public int getNumberOfMispredictions() {
+		return mispredictions;
+	}
+
+	/**
+	 * Returns the number of pipeline stages flushed because of mispredicted branches.
+	 * <p>Each flushed stage is a clock cycle lost.</p>
+	 * @return The misprediction penalty, in clock cycles.
+	 */
+	public int getMispredictionPenalty() {
+		return mispredictionPenalty;
+	}
+
+	/**
+	 * Returns the fraction of the resolved branches that were correctly predicted.
+	 * @return The accuracy of the branch predictor, between 0 and 1 (0 if there were no branches).
+	 */
+	public double getPredictionAccuracy() {
+		return branches > 0 ? (double)(branches - mispredictions) / branches : 0.0;
+	}
+
+	/**
+	 * Returns the statistics of each instruction of the loaded program.
+	 * <p>The profile is replaced when a new program is loaded.</p>
+	 * @return The profile of the instructions.
+	 */
+	public InstructionProfile getInstructionProfile() {
+		return instructionProfile;
+	}
+
+	/**
+	 * Returns the predicted pipeline stalls and hazards of the loaded program.
+	 * <p>The analysis is replaced when a new program is loaded.</p>
+	 * @return The hazard analysis of the program.
+	 */
+	public HazardAnalyzer getHazardAnalyzer() {
+		return hazardAnalyzer;
+	}
+
+	/**
+	 * Returns the analyzer of the locality of the memory accesses.
+	 * @return The analyzer, or <tt>null</tt> if none is attached.
+	 */
+	public LocalityAnalyzer getLocalityAnalyzer() {
+		return localityAnalyzer;
+	}
+
+	/**
+	 * Attaches an analyzer of the locality of the memory accesses.
+	 * <p>The analyzer starts empty and is reset with the other statistics
+	 * (when a program is loaded, for example).</p>
+	 * @param analyzer The analyzer, or <tt>null</tt> to disable the analysis.
+	 */
+	public void setLocalityAnalyzer(LocalityAnalyzer analyzer) {
+		localityAnalyzer = analyzer;
+		if(analyzer != null) analyzer.reset(this);
+	}
+
 	/**
 	 * Returns whether the latencies and critical path depend on the current instruction.
 	 * @return <tt>true</tt> if the performance depends on the current instruction.
@@ -440,6 +655,12 @@ public class CPU {
 		executedInstructions = 0;
 		forwards = 0;
 		stalls = 0;
+		memoryStalls = 0;
+		branches = 0;
+		mispredictions = 0;
+		mispredictionPenalty = 0;
+		if(instructionProfile != null) instructionProfile.reset();
+		if(localityAnalyzer != null) localityAnalyzer.reset(this);
 	}
 
 	/**
@@ -493,6 +714,10 @@ public class CPU {
 		if(aluControl != null) aluControl.setInControlPath();
 		if(forwardingUnit != null) forwardingUnit.setInControlPath();
 		if(hazardDetectionUnit != null) hazardDetectionUnit.setInControlPath();
+		if(branchPredictor != null) {
+			branchPredictor.getPrediction().setInControlPath();
+			branchPredictor.getMispredict().setInControlPath();
+		}
 	}
 
 	/**
@@ -500,7 +725,7 @@ public class CPU {
 	 * @return <tt>True</tt> if the CPU is pipelined.
 	 */
 	public boolean isPipeline() {
-		return ifIdReg != null;
+		return !pipelineRegisters.isEmpty();
 	}
 
 	/**
@@ -578,15 +803,18 @@ public class CPU {
 	 */
 	protected void loadProgram(List<AssembledInstruction> instructions) {
 		getInstructionMemory().setInstructions(instructions); // load instructions to memory
+		instructionProfile = new InstructionProfile(this);
+		hazardAnalyzer = new HazardAnalyzer(this, instructions);
 		clearPreviousCycles(); // clear all components' saved states
+		for(Cache c: caches) // start with cold caches
+			c.reset();
+		if(branchPredictor != null) branchPredictor.reset();
+		if(dataMemory != null) dataMemory.resetTiming();
 		setPCAddress(0); // reset PC
-		if(isPipeline()) { // clears the current instruction index in the pipeline registers
-			getIfIdReg().setCurrentInstructionIndex(-1);
-			getIdExReg().setCurrentInstructionIndex(-1);
-			getExMemReg().setCurrentInstructionIndex(-1);
-			getMemWbReg().setCurrentInstructionIndex(-1);
-		}
+		for(PipelineRegister reg: pipelineRegisters) // clears the current instruction index in the pipeline registers
+			reg.setCurrentInstructionIndex(-1);
 		resetStatistics();
+		breakpoints.resetHits();
 
 		calculateInstructionPerformance(); // Refresh critical path
 	}
@@ -596,45 +824,144 @@ public class CPU {
 	 * @return <tt>True</tt> it the program has finished.
 	 */
 	public boolean isProgramFinished() {
-		if(isPipeline())
-			return pc.getCurrentInstructionIndex() == -1 && ifIdReg.getCurrentInstructionIndex() == -1
-				&& idExReg.getCurrentInstructionIndex() == -1 && exMemReg.getCurrentInstructionIndex() == -1
-				&& memWbReg.getCurrentInstructionIndex() == -1;
-		else
-			return pc.getCurrentInstructionIndex() == -1;
+		if(isStalledByMemory() || pc.getCurrentInstructionIndex() != -1)
+			return false;
+		for(PipelineRegister reg: pipelineRegisters) {
+			if(reg.getCurrentInstructionIndex() != -1)
+				return false;
+		}
+		return true;
 	}
 
 	/**
 	 * Executes the currently loaded program until the end.
 	 * Or until we hit the breakpoint
-	 * @throws InfiniteLoopException If the <tt>EXECUTE_ALL_LIMIT_CYCLES</tt> limit has been reached (possible infinite loop).
+	 * @throws InfiniteLoopException If an infinite loop was detected or the <tt>EXECUTE_ALL_LIMIT_CYCLES</tt> limit has been reached (possible infinite loop).
+	 * @deprecated The fixed limit stops long programs. Use {@link #executeAll(long, long, ExecutionListener)}
+	 * with an explicit budget instead.
 	 */
+	@Deprecated
 	public void executeAll() throws InfiniteLoopException {
-		int cycles = 0;
-		while(!isProgramFinished()) {
-			if(cycles++ > EXECUTE_ALL_LIMIT_CYCLES) // prevent possible infinite cycles
-				throw new InfiniteLoopException();
-			executeCycle();
-
-			// check if we have hit the breakpoint
-			if (getPC().getAddress().getValue() == breakpointAddr)
-			{
-				break;
+		ExecutionResult result = executeAll(EXECUTE_ALL_LIMIT_CYCLES + 1, 0, null);
+		if(result.getStatus() == ExecutionResult.Status.INFINITE_LOOP)
+			throw new InfiniteLoopException(result.getLoopStartAddress(), result.getLoopEndAddress());
+		else if(result.getStatus() == ExecutionResult.Status.CYCLE_LIMIT)
+			throw new InfiniteLoopException(); // prevent possible infinite cycles
+	}
+
+	/**
+	 * Executes the currently loaded program until the end, the breakpoint or one of the limits.
+	 * <p>The limits are checked, and the listener notified, every
+	 * <tt>EXECUTION_PROGRESS_INTERVAL</tt> clock cycles. Use an {@link ExecutionTask}
+	 * to execute the program in a background thread.</p>
+	 * <p>If the state of the CPU is hashable (see {@link #isStateHashable()}),
+	 * the execution also stops as soon as the state repeats, because that means
+	 * the program is in an infinite loop.</p>
+	 * @param maxCycles The maximum number of clock cycles to execute (no limit if not positive).
+	 * @param maxTime The maximum execution time, in milliseconds (no limit if not positive).
+	 * @param listener The listener that is notified of the progress and can stop the execution, or <tt>null</tt>.
+	 * @return The result of the execution.
+	 */
+	public ExecutionResult executeAll(long maxCycles, long maxTime, ExecutionListener listener) {
+		Object event = SimulatorEvents.beginExecution();
+		long start = System.nanoTime();
+		long instructions = executedInstructions;
+		long cycles = 0;
+		ExecutionResult.Status status = null;
+		LoopDetector loop = isStateHashable() ? new LoopDetector(getStateHash(), getPC().getAddress().getValue()) : null;
+		breakpoints.clearWrites();
+
+		while(status == null) {
+			if(isProgramFinished())
+				status = ExecutionResult.Status.FINISHED;
+			else if(maxCycles > 0 && cycles >= maxCycles)
+				status = ExecutionResult.Status.CYCLE_LIMIT;
+			else {
+				boolean fetched = !isStalledByMemory() && pc.isWritingState();
+				executeCycle();
+				cycles++;
+
+				// check if we have hit a breakpoint or watchpoint
+				if(breakpoints.check(fetched))
+					status = ExecutionResult.Status.BREAKPOINT;
+				else if(loop != null && loop.update(getStateHash(), getPC().getAddress().getValue()))
+					status = ExecutionResult.Status.INFINITE_LOOP;
+				else if(cycles % EXECUTION_PROGRESS_INTERVAL == 0) {
+					if(maxTime > 0 && (System.nanoTime() - start) / 1000000 >= maxTime)
+						status = ExecutionResult.Status.TIME_LIMIT;
+					else if(listener != null && !listener.executionProgress(cycles))
+						status = ExecutionResult.Status.STOPPED;
+				}
 			}
 		}
+
+		SimulatorEvents.commitExecution(event, file != null ? file.getPath() : null, cycles, executedInstructions - instructions, status.name());
+		return new ExecutionResult(this, status, cycles, (System.nanoTime() - start) / 1000000, loop);
+	}
+
+	/**
+	 * Returns whether a hash of the whole state of the CPU can be computed.
+	 * @return <tt>True</tt> if all synchronous components are {@link StateHashable}.
+	 */
+	public boolean isStateHashable() {
+		for(Component c: synchronousComponents) {
+			if(!(c instanceof StateHashable))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the hash of the state of the CPU (PC, registers, data memory, pipeline registers, etc.).
+	 * <p>Equal states have equal hashes. Only the synchronous components that
+	 * are {@link StateHashable} are included.</p>
+	 * @return The hash of the state.
+	 */
+	public long getStateHash() {
+		long hash = 0;
+		for(Component c: synchronousComponents) {
+			if(c instanceof StateHashable)
+				hash ^= ((StateHashable)c).getStateHash();
+		}
+		return hash;
 	}
 
 	/**
 	 * Sets the breakpoint address.
+	 * <p>Replaces all the breakpoints on instructions with an unconditional
+	 * breakpoint on the given address. Use {@link #getBreakpoints()} to
+	 * manage multiple and conditional breakpoints and watchpoints.</p>
+	 * @param addr The address of the instruction, or -1 to remove the breakpoint.
 	 */
 	public void setBreakpointAddr(int addr) {
-		breakpointAddr = addr;
+		breakpoints.clearInstructionBreakpoints();
+		if(addr >= 0) {
+			try {
+				breakpoints.addInstructionBreakpoint(addr, null, 1);
+			} catch(InvalidConditionException ex) { // can't happen without a condition
+				throw new IllegalStateException(ex);
+			}
+		}
+	}
+
+	/**
+	 * Returns the breakpoints and watchpoints of the CPU.
+	 * <p>They are checked after each clock cycle in {@link #executeAll(long, long, ExecutionListener)}.</p>
+	 * @return The breakpoints and watchpoints.
+	 */
+	public Breakpoints getBreakpoints() {
+		return breakpoints;
 	}
 
 	/**
 	 * "Executes" a clock cycle (a step).
 	 */
 	public void executeCycle() {
+		if(isStalledByMemory()) {
+			executeMemoryStallCycle();
+			return;
+		}
+
 		executedCycles++;
 		if(!isPipeline() || memWbReg.getCurrentInstructionIndex() >= 0)
 			executedInstructions++;
@@ -644,29 +971,154 @@ public class CPU {
 		}
 		if(hasHazardDetectionUnit() && getHazardDetectionUnit().getStall().getValue() != 0)
 			stalls++;
+		updateBranchStatistics(1);
+		instructionProfile.update(1);
+		if(localityAnalyzer != null) localityAnalyzer.update(this);
 
-		saveCycleState();
+		if(historyEnabled) saveCycleState();
 		for(Component c: synchronousComponents) // execute synchronous actions without propagating output changes
-			((Synchronous)c).executeSynchronous();
+			c.callExecuteSynchronous();
 
 		// Store index(es) of the instruction(s) being executed
 		int index = getPC().getAddress().getValue() / (Data.DATA_SIZE / 8);
 		if(index < 0 || index >= getInstructionMemory().getNumberOfInstructions())
 			index = -1;
 		if(isPipeline()) { // save other instructions in pipeline
-			updatePipelineRegisterCurrentInstruction(memWbReg, exMemReg.getCurrentInstructionIndex());
-			updatePipelineRegisterCurrentInstruction(exMemReg, idExReg.getCurrentInstructionIndex());
-			updatePipelineRegisterCurrentInstruction(idExReg, ifIdReg.getCurrentInstructionIndex());
-			updatePipelineRegisterCurrentInstruction(ifIdReg, pc.getCurrentInstructionIndex());
+			for(int i = pipelineRegisters.size() - 1; i > 0; i--)
+				updatePipelineRegisterCurrentInstruction(pipelineRegisters.get(i), pipelineRegisters.get(i - 1).getCurrentInstructionIndex());
+			updatePipelineRegisterCurrentInstruction(pipelineRegisters.get(0), pc.getCurrentInstructionIndex());
 		}
 		getPC().setCurrentInstructionIndex(index);
 
 		for(Component c: synchronousComponents) // execute normal actions, propagating output changes
-			c.execute();
+			c.callExecute();
 		for(Component c: getComponents()) // "execute" all components, just to be safe
-			c.execute();
+			c.callExecute();
 
 		calculateInstructionPerformance(); // Refresh critical path
+
+		for(CycleListener l: cycleListeners)
+			l.cycleExecuted(this);
+	}
+
+	/**
+	 * Adds (or removes) the branch resolved in the current clock cycle to the statistics.
+	 * @param delta 1 to add the branch, or -1 to remove it.
+	 */
+	private void updateBranchStatistics(int delta) {
+		if(hasBranchPredictor() && branchPredictor.getBranch().getValue() == 1) {
+			branches += delta;
+			if(branchPredictor.getMispredict().getValue() == 1) {
+				mispredictions += delta;
+				for(PipelineRegister reg: pipelineRegisters) {
+					if(reg.getFlush().getValue() == 1) mispredictionPenalty += delta;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Executes a clock cycle in which the CPU waits for the memory.
+	 * <p>The state of the CPU doesn't change, except for the remaining stall
+	 * cycles of the caches.</p>
+	 */
+	private void executeMemoryStallCycle() {
+		executedCycles++;
+		memoryStalls++;
+		instructionProfile.updateMemoryStall(1);
+
+		if(historyEnabled) saveCycleState();
+		for(Cache c: caches)
+			c.consumeStallCycle();
+		if(dataMemory != null) dataMemory.consumeStallCycle();
+
+		for(CycleListener l: cycleListeners)
+			l.cycleExecuted(this);
+	}
+
+	/**
+	 * Returns whether the CPU is waiting for the memory in the current clock cycle.
+	 * <p>This happens after an access to a cache (a miss, for example) or to a
+	 * data memory with a multi-cycle timing model that took more than one clock
+	 * cycle. In these cycles the whole CPU is stalled.</p>
+	 * @return <tt>True</tt> if any cache or the data memory has remaining stall cycles.
+	 */
+	public boolean isStalledByMemory() {
+		for(int i = 0; i < caches.size(); i++) {
+			if(caches.get(i).getStallCycles() > 0)
+				return true;
+		}
+		return dataMemory != null && dataMemory.getStallCycles() > 0;
+	}
+
+	/**
+	 * Adds a listener that is notified of each clock cycle executed.
+	 * @param listener The listener.
+	 */
+	public synchronized void addCycleListener(CycleListener listener) {
+		CycleListener[] l = Arrays.copyOf(cycleListeners, cycleListeners.length + 1);
+		l[cycleListeners.length] = listener;
+		cycleListeners = l;
+	}
+
+	/**
+	 * Removes a listener that was notified of each clock cycle executed.
+	 * @param listener The listener.
+	 */
+	public synchronized void removeCycleListener(CycleListener listener) {
+		List<CycleListener> l = new ArrayList<>(Arrays.asList(cycleListeners));
+		l.remove(listener);
+		cycleListeners = l.toArray(new CycleListener[l.size()]);
+	}
+
+	/**
+	 * Returns whether the state of each clock cycle is saved, to allow "step back".
+	 * @return <tt>True</tt> if the history is enabled (the default).
+	 */
+	public boolean isHistoryEnabled() {
+		return historyEnabled;
+	}
+
+	/**
+	 * Sets whether the state of each clock cycle is saved, to allow "step back".
+	 * <p>The saved states take memory proportional to the number of clock
+	 * cycles executed, so the history should be disabled, before executing the
+	 * program, for very long executions that don't need to go back.</p>
+	 * @param enabled Whether to save the state of each clock cycle.
+	 */
+	public void setHistoryEnabled(boolean enabled) {
+		historyEnabled = enabled;
+	}
+
+	/**
+	 * Returns whether the components are being profiled.
+	 * @return <tt>True</tt> if profiling is enabled.
+	 */
+	public boolean isProfilingEnabled() {
+		return profiler != null;
+	}
+
+	/**
+	 * Enables or disables the profiling of the components.
+	 * <p>While enabled, the calls to the components and the time spent in them
+	 * are measured by the {@link ComponentProfiler} returned by
+	 * {@link #getProfiler()}. Enabling it again resets the measurements.</p>
+	 * @param enabled Whether to profile the components.
+	 */
+	public void setProfilingEnabled(boolean enabled) {
+		if(profiler != null) removeCycleListener(profiler);
+		profiler = enabled ? new ComponentProfiler(getComponents()) : null;
+		for(Component c: getComponents())
+			c.setProfiler(profiler);
+		if(profiler != null) addCycleListener(profiler);
+	}
+
+	/**
+	 * Returns the profiler of the components.
+	 * @return The profiler, or <tt>null</tt> if profiling is disabled.
+	 */
+	public ComponentProfiler getProfiler() {
+		return profiler;
 	}
 
 	/**
@@ -709,24 +1161,37 @@ public class CPU {
 	 */
 	public void restorePreviousCycle() {
 		if(hasPreviousCycle()) {
+			Object event = SimulatorEvents.beginRestore();
+			long fromCycle = executedCycles;
 			for(Component c: synchronousComponents) // restore previous states
 				((Synchronous)c).popState();
 			for(Component c: synchronousComponents) // execute normal actions, propagating output changes
-				c.execute();
+				c.callExecute();
 			for(Component c: getComponents()) // "execute" all components
-				c.execute();
+				c.callExecute();
 
 			executedCycles--;
-			if(!isPipeline() || memWbReg.getCurrentInstructionIndex() >= 0)
-				executedInstructions--;
-			if(hasForwardingUnit()) {
-				if(getForwardingUnit().getForwardA().getValue() != 0) forwards--;
-				if(getForwardingUnit().getForwardB().getValue() != 0) forwards--;
+			breakpoints.undoHits(executedCycles);
+			if(isStalledByMemory()) { // the CPU was waiting for the memory
+				memoryStalls--;
+				instructionProfile.updateMemoryStall(-1);
+			}
+			else {
+				if(!isPipeline() || memWbReg.getCurrentInstructionIndex() >= 0)
+					executedInstructions--;
+				if(hasForwardingUnit()) {
+					if(getForwardingUnit().getForwardA().getValue() != 0) forwards--;
+					if(getForwardingUnit().getForwardB().getValue() != 0) forwards--;
+				}
+				if(hasHazardDetectionUnit() && getHazardDetectionUnit().getStall().getValue() != 0)
+					stalls--;
+				updateBranchStatistics(-1);
+				instructionProfile.update(-1);
+				if(localityAnalyzer != null) localityAnalyzer.undo();
 			}
-			if(hasHazardDetectionUnit() && getHazardDetectionUnit().getStall().getValue() != 0)
-				stalls--;
 
 			calculateInstructionPerformance(); // Refresh critical path
+			SimulatorEvents.commitRestore(event, SimulatorEvents.RESTORE_PREVIOUS_CYCLE, fromCycle, executedCycles);
 		}
 	}
 
@@ -747,6 +1212,8 @@ public class CPU {
 	public void clearPreviousCycles() {
 		for(Component c: synchronousComponents)
 			((Synchronous)c).clearSavedStates();
+		if(localityAnalyzer != null) localityAnalyzer.clearHistory();
+		breakpoints.clearHitHistory();
 	}
 
 	/**
@@ -754,15 +1221,19 @@ public class CPU {
 	 */
 	public void resetToFirstCycle() {
 		if(hasPreviousCycle()) {
+			Object event = SimulatorEvents.beginRestore();
+			long fromCycle = executedCycles;
 			for(Component c: synchronousComponents) // restore first state
 				((Synchronous)c).resetFirstState();
 			for(Component c: synchronousComponents) // execute normal actions, propagating output changes
-				c.execute();
+				c.callExecute();
 			for(Component c: getComponents()) // "execute" all components
-				c.execute();
+				c.callExecute();
 			resetStatistics();
+			breakpoints.resetHits();
 
 			calculateInstructionPerformance(); // Refresh critical path
+			SimulatorEvents.commitRestore(event, SimulatorEvents.RESTORE_FIRST_CYCLE, fromCycle, executedCycles);
 		}
 	}
 
@@ -855,6 +1326,7 @@ public class CPU {
 		else if(component instanceof RegBank) {
 			if(regbank != null) throw new InvalidCPUException("Only one register bank allowed!");
 			regbank = (RegBank)component;
+			regbank.setWriteListener(writeDispatcher);
 		}
 		else if(component instanceof InstructionMemory) {
 			if(instructionMemory != null) throw new InvalidCPUException("Only one instruction memory allowed!");
@@ -875,6 +1347,7 @@ public class CPU {
 		else if(component instanceof DataMemory) {
 			if(dataMemory != null) throw new InvalidCPUException("Only one data memory allowed!");
 			dataMemory = (DataMemory)component;
+			dataMemory.setWriteListener(writeDispatcher);
 		}
 		else if(component instanceof ForwardingUnit) {
 			if(forwardingUnit != null) throw new InvalidCPUException("Only one forwarding unit allowed!");
@@ -884,28 +1357,15 @@ public class CPU {
 			if(hazardDetectionUnit != null) throw new InvalidCPUException("Only one hazard detection unit allowed!");
 			hazardDetectionUnit = (HazardDetectionUnit)component;
 		}
+		else if(component instanceof BranchPredictor) {
+			if(branchPredictor != null) throw new InvalidCPUException("Only one branch predictor allowed!");
+			branchPredictor = (BranchPredictor)component;
+		}
+		else if(component instanceof Cache) {
+			caches.add((Cache)component);
+		}
 		else if(component instanceof PipelineRegister) {
-			String id = component.getId().trim().toUpperCase();
-			switch (id) {
-				case "IF/ID":
-					if(ifIdReg != null) throw new InvalidCPUException("Only one IF/ID pipeline register allowed!");
-					ifIdReg = (PipelineRegister)component;
-					break;
-				case "ID/EX":
-					if(idExReg != null) throw new InvalidCPUException("Only one ID/EX pipeline register allowed!");
-					idExReg = (PipelineRegister)component;
-					break;
-				case "EX/MEM":
-					if(exMemReg != null) throw new InvalidCPUException("Only one EX/MEM pipeline register allowed!");
-					exMemReg = (PipelineRegister)component;
-					break;
-				case "MEM/WB":
-					if(memWbReg != null) throw new InvalidCPUException("Only one MEM/WB pipeline register allowed!");
-					memWbReg = (PipelineRegister)component;
-					break;
-				default:
-					throw new InvalidCPUException("A pipeline register's identifier must be one of {IF/ID, ID/EX, EX/MEM, MEM/WB}!");
-			}
+			pipelineRegisters.add((PipelineRegister)component); // sorted in checkRequiredComponents()
 		}
 	}
 
@@ -997,6 +1457,22 @@ public class CPU {
 		return dataMemory != null;
 	}
 
+	/**
+	 * Returns the caches in front of the memories.
+	 * @return Array with the caches (empty if there are none).
+	 */
+	public final Cache[] getCaches() {
+		return caches.toArray(new Cache[caches.size()]);
+	}
+
+	/**
+	 * Returns whether the CPU contains caches.
+	 * @return <tt>True</tt> if at least one cache exists.
+	 */
+	public final boolean hasCaches() {
+		return !caches.isEmpty();
+	}
+
 	/**
 	 * Returns the forwarding unit.
 	 * @return Forwarding unit.
@@ -1029,8 +1505,26 @@ public class CPU {
 		return hazardDetectionUnit != null;
 	}
 
+	/**
+	 * Returns the branch predictor.
+	 * @return Branch predictor, or <tt>null</tt> if there is none.
+	 */
+	public final BranchPredictor getBranchPredictor() {
+		return branchPredictor;
+	}
+
+	/**
+	 * Returns whether the CPU contains a branch predictor.
+	 * @return <tt>True</tt> if a branch predictor exists.
+	 */
+	public final boolean hasBranchPredictor() {
+		return branchPredictor != null;
+	}
+
 	/**
 	 * Returns the IF/ID pipeline register.
+	 * <p>In pipelines with more stages, this is the register at the end of
+	 * the last instruction fetch stage.</p>
 	 * @return IF/ID pipeline register, or <tt>null</tt> if not pipeline.
 	 */
 	public final PipelineRegister getIfIdReg() {
@@ -1039,6 +1533,8 @@ public class CPU {
 
 	/**
 	 * Returns the ID/EX pipeline register.
+	 * <p>In pipelines with more stages, this is the register at the start of
+	 * the first execute stage.</p>
 	 * @return ID/EX pipeline register, or <tt>null</tt> if not pipeline.
 	 */
 	public final PipelineRegister getIdExReg() {
@@ -1047,6 +1543,8 @@ public class CPU {
 
 	/**
 	 * Returns the EX/MEM pipeline register.
+	 * <p>In pipelines with more stages, this is the register at the start of
+	 * the first memory access stage.</p>
 	 * @return EX/MEM pipeline register, or <tt>null</tt> if not pipeline.
 	 */
 	public final PipelineRegister getExMemReg() {
@@ -1055,12 +1553,72 @@ public class CPU {
 
 	/**
 	 * Returns the MEM/WB pipeline register.
+	 * <p>This is always the last pipeline register.</p>
 	 * @return MEM/WB pipeline register, or <tt>null</tt> if not pipeline.
 	 */
 	public final PipelineRegister getMemWbReg() {
 		return memWbReg;
 	}
 
+	/**
+	 * Returns the pipeline registers, in the order of the stages.
+	 * @return The pipeline registers (empty if not pipeline).
+	 */
+	public final List<PipelineRegister> getPipelineRegisters() {
+		return Collections.unmodifiableList(pipelineRegisters);
+	}
+
+	/**
+	 * Returns the number of stages of the CPU.
+	 * @return The number of stages (the number of pipeline registers plus 1, or 1 if not pipeline).
+	 */
+	public final int getNumberOfStages() {
+		return pipelineRegisters.size() + 1;
+	}
+
+	/**
+	 * Returns the name of a stage.
+	 * @param stage The index of the stage (0 is the first one).
+	 * @return The name of the stage (<tt>TimingReport.UNICYCLE_STAGE</tt> if not pipeline).
+	 * @throws ArrayIndexOutOfBoundsException If the stage is invalid.
+	 */
+	public final String getStageName(int stage) throws ArrayIndexOutOfBoundsException {
+		return stageNames[stage];
+	}
+
+	/**
+	 * Returns the role of a stage in the classic 5-stage pipeline.
+	 * <p>A deeper pipeline splits some of the classic stages in several ones,
+	 * which have the same role.</p>
+	 * @param stage The index of the stage (0 is the first one).
+	 * @return The role of the stage (<tt>STAGE_IF/STAGE_ID/STAGE_EX/STAGE_MEM/STAGE_WB</tt>; <tt>STAGE_IF</tt> if not pipeline).
+	 * @throws ArrayIndexOutOfBoundsException If the stage is invalid.
+	 */
+	public final int getStageRole(int stage) throws ArrayIndexOutOfBoundsException {
+		return isPipeline() ? stageRoles[stage] : STAGE_IF;
+	}
+
+	/**
+	 * Returns the stage that starts in a component.
+	 * @param component The component.
+	 * @return The index of the stage, or <tt>-1</tt> if the component is not the PC or a pipeline register.
+	 */
+	public final int getStageStartedBy(Component component) {
+		if(component == pc) return 0;
+		int i = component instanceof PipelineRegister ? pipelineRegisters.indexOf(component) : -1;
+		return i >= 0 ? i + 1 : -1;
+	}
+
+	/**
+	 * Returns the index of the instruction in a stage.
+	 * @param stage The index of the stage (0 is the first one, the instruction in the PC).
+	 * @return The index of the instruction, or -1 if none.
+	 * @throws IndexOutOfBoundsException If the stage is invalid.
+	 */
+	public final int getStageInstructionIndex(int stage) throws IndexOutOfBoundsException {
+		return stage == 0 ? pc.getCurrentInstructionIndex() : pipelineRegisters.get(stage - 1).getCurrentInstructionIndex();
+	}
+
 	/**
 	 * Returns the index/address of the register with the specified name.
 	 * @param name Name of the register (with prefix).
@@ -1118,114 +1676,6 @@ public class CPU {
 		return assembler;
 	}
 
-	/**
-	 * Parses and creates the components from the given JSON array.
-	 * @param cpu The CPU to add the components to.
-	 * @param components JSONObject that contains the components array.
-	 * @param parentPath Path to the cpu file's parent directory.
-	 * @throws JSONException If the JSON file is malformed.
-	 * @throws InvalidCPUException If the CPU is invalid or incomplete.
-	 */
-	private static void parseJSONComponents(CPU cpu, JSONObject components, String parentPath) throws JSONException, InvalidCPUException {
-		JSONObject json;
-		String type, id;
-		Class cl;
-		Component comp;
-
-		// ClassLoader to load the built-in components
-		ClassLoader loader = CPU.class.getClassLoader();
-
-		// ClassLoader to load custom components
-		File parentDir = new File(parentPath + File.separator);
-		ClassLoader customLoader;
-		try {
-			URL[] urls = new URL[] {parentDir.toURI().toURL()};
-			customLoader = new URLClassLoader(urls);
-		} catch(Exception ex) {
-			customLoader = null;
-		}
-
-		// Parse the components
-		Iterator<String> i = components.keys();
-		while(i.hasNext()) {
-			id = i.next();
-			json = components.getJSONObject(id);
-			type = json.getString("type");
-
-			// Load the class with the name specified by "type"
-			try {
-				// Search in the built-in classes first
-				cl = loader.loadClass("brunonova.drmips.simulator.components." + type);
-			} catch(ClassNotFoundException ex) {
-				// Search in the custom components second
-				if(customLoader != null) {
-					try {
-						cl = customLoader.loadClass(type);
-					} catch(ClassNotFoundException ex2) {
-						ex2.initCause(ex);
-						throw new InvalidCPUException("Unknown component type " + type + "!", ex2);
-					}
-				} else {
-					throw new InvalidCPUException("Unknown component type " + type + "!", ex);
-				}
-			}
-
-			// Create the component with the (String, JSONObject) contructor
-			// and add it to the CPU
-			try {
-				comp = (Component)cl.asSubclass(Component.class)
-				                    .getConstructor(String.class, JSONObject.class)
-				                    .newInstance(id, json);
-				cpu.addComponent(comp);
-			} catch(ClassCastException ex) {
-				throw new InvalidCPUException("The " + type + " class is not a subclass of Component!", ex);
-			} catch(NoSuchMethodException ex) {
-				throw new InvalidCPUException("The " + type + " class is missing the (String, JSONObject) constructor!", ex);
-			} catch(InvocationTargetException ex) {
-				Throwable target = ex.getCause();
-				if(target instanceof InvalidCPUException) {
-					throw (InvalidCPUException)target;
-				} else if(target instanceof JSONException) {
-					throw (JSONException)target;
-				} else {
-					throw new InvalidCPUException("Failed to create the component " + id + "!", ex);
-				}
-			} catch(InstantiationException | IllegalAccessException | IllegalArgumentException ex) {
-				throw new InvalidCPUException("Failed to create the component " + id + "!", ex);
-			}
-		}
-	}
-
-	/**
-	 * Parses wires from the given JSON array and connects the components.
-	 * @param cpu The CPU to add wires to.
-	 * @param wires JSONArray that contains the wires array.
-	 * @throws JSONException If the JSON file is malformed.
-	 * @throws InvalidCPUException If the output or the input are already connected or have different sizes or doesn't exist.
-	 */
-	private static void parseJSONWires(CPU cpu, JSONArray wires) throws JSONException, InvalidCPUException {
-		JSONObject wire, point, start, end;
-		JSONArray points;
-		Output out;
-
-		for(int i = 0; i < wires.length(); i++) {
-			wire = wires.getJSONObject(i);
-			out = cpu.connectComponents(wire.getString("from"), wire.getString("out"),
-				wire.getString("to"), wire.getString("in"));
-			points = wire.optJSONArray("points");
-			if(points != null) {
-				for(int x = 0; x < points.length(); x++) {
-					point = points.getJSONObject(x);
-					out.addIntermediatePoint(new Point(point.getInt("x"), point.getInt("y")));
-				}
-			}
-			if((start = wire.optJSONObject("start")) != null)
-				out.setPosition(new Point(start.getInt("x"), start.getInt("y")));
-			if((end = wire.optJSONObject("end")) != null)
-				out.getConnectedInput().setPosition(new Point(end.getInt("x"), end.getInt("y")));
-		}
-	}
-
 	/**
 	 * Parses and sets the identifiers of the registers.
 	 * @param cpu The CPU to set the registers informations.
@@ -1233,7 +1683,7 @@ public class CPU {
 	 * @throws JSONException If the JSON file is malformed.
 	 * @throws InvalidCPUException If not all registers are specified or a register is invalid.
 	 */
-	private static void parseJSONRegNames(CPU cpu, JSONArray regs) throws JSONException, InvalidCPUException {
+	static void parseJSONRegNames(CPU cpu, JSONArray regs) throws JSONException, InvalidCPUException {
 		if(regs.length() != cpu.getRegBank().getNumberOfRegisters())
 			throw new InvalidCPUException("Not all registers have been specified in the registers block!");
 		cpu.registerNames = new ArrayList<>(cpu.getRegBank().getNumberOfRegisters());
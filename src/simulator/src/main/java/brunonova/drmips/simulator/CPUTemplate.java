@@ -0,0 +1,436 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.exceptions.InvalidCPUException;
+import brunonova.drmips.simulator.exceptions.InvalidInstructionSetException;
+import brunonova.drmips.simulator.util.Point;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A CPU file that has already been read, parsed and validated, from which
+ * independent CPUs can be created quickly.
+ *
+ * <p>The file, the instruction set and the factories of the components (see
+ * {@link ComponentRegistry}) are only loaded once, when the template is created. Each call to {@link #createCPU()}
+ * then just instantiates the components (which read their properties from the
+ * JSON objects parsed when the template was created), connects the wires and
+ * initializes the new CPU, without reading or parsing any file.</p>
+ *
+ * <p>Templates are immutable and can be shared between threads. The
+ * {@link #getTemplate(String)} method keeps a cache of the
+ * <tt>MAX_CACHED_TEMPLATES</tt> most recently used templates, indexed by the
+ * path of the CPU file, that is refreshed when the CPU file or its
+ * instruction set file are modified.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class CPUTemplate {
+	/** The maximum number of templates kept in the cache. */
+	public static final int MAX_CACHED_TEMPLATES = 16;
+
+	/** The cached templates, indexed by the canonical path of their files, from the least to the most recently used. */
+	private static final Map<String, CPUTemplate> cache = new LinkedHashMap<String, CPUTemplate>(MAX_CACHED_TEMPLATES, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CPUTemplate> eldest) {
+			return size() > MAX_CACHED_TEMPLATES;
+		}
+	};
+
+	/** The file of the CPU. */
+	private final File file;
+	/** The file of the instruction set. */
+	private final File instructionSetFile;
+	/** The modification time of the CPU file when it was loaded. */
+	private final long lastModified;
+	/** The modification time of the instruction set file when it was loaded. */
+	private final long instructionSetLastModified;
+	/** The components of the CPU, in the order they are declared in the file. */
+	private final List<ComponentSpec> components;
+	/** The wires of the CPU, in the order they are declared in the file. */
+	private final List<WireSpec> wires;
+	/** The validated names of the registers (without the prefix), or <tt>null</tt>. */
+	private final List<String> registerNames;
+	/** The loaded instruction set (shared by all the created CPUs). */
+	private final InstructionSet instructionSet;
+	/** The lazily loaded custom descriptions of the components, if loaded from a binary file. */
+	private final BinaryCPUFile.Descriptions descriptions;
+
+	/**
+	 * Creates a template from a JSON file.
+	 * <p>If the file has an up to date binary version (see {@link BinaryCPUFile}),
+	 * that is loaded instead. The same applies to the instruction set file.</p>
+	 * @param path Path to the JSON file.
+	 * @throws IOException If the file doesn't exist or an I/O error occurs.
+	 * @throws JSONException If the JSON file is malformed.
+	 * @throws InvalidCPUException If the CPU is invalid or incomplete
+	 * @throws ArrayIndexOutOfBoundsException If an array index is invalid somewhere (like an invalid register).
+	 * @throws InvalidInstructionSetException If the instruction set is invalid.
+	 * @throws NumberFormatException If an opcode is not a number.
+	 */
+	public CPUTemplate(String path) throws IOException, JSONException, InvalidCPUException, ArrayIndexOutOfBoundsException, InvalidInstructionSetException, NumberFormatException {
+		file = new File(path);
+		lastModified = file.lastModified();
+		File parentDir = file.getAbsoluteFile().getParentFile();
+		JSONArray regNames;
+		String instructions;
+
+		Object event = SimulatorEvents.beginCPULoad();
+		BinaryCPUFile.CPUData data;
+		try {
+			data = BinaryCPUFile.readCPU(file, parentDir);
+		} catch(IOException ex) {
+			data = null; // corrupted binary file, load the JSON file instead
+		}
+		if(data != null) {
+			components = data.components;
+			wires = data.wires;
+			instructions = data.instructions;
+			regNames = data.registerNames;
+			descriptions = data.descriptions;
+		}
+		else {
+			// Parse the JSON file
+			JSONObject json = new JSONObject(readFile(file));
+			components = parseJSONComponents(json.getJSONObject("components"), parentDir);
+			wires = parseJSONWires(json.getJSONArray("wires"));
+			instructions = json.getString("instructions");
+			regNames = json.has("reg_names") ? json.getJSONArray("reg_names") : null;
+			descriptions = null;
+		}
+		SimulatorEvents.commitCPULoad(event, path, SimulatorEvents.CPU_LOAD_READ);
+		event = SimulatorEvents.beginCPULoad();
+		instructionSetFile = new File(parentDir, instructions);
+		instructionSetLastModified = instructionSetFile.lastModified();
+		instructionSet = loadInstructionSet(instructionSetFile);
+		SimulatorEvents.commitCPULoad(event, path, SimulatorEvents.CPU_LOAD_INSTRUCTION_SET);
+
+		// Create the first CPU, which validates the whole file
+		CPU cpu = createCPU(null);
+		if(regNames != null) {
+			CPU.parseJSONRegNames(cpu, regNames);
+			List<String> names = new ArrayList<>(cpu.getRegBank().getNumberOfRegisters());
+			for(int i = 0; i < cpu.getRegBank().getNumberOfRegisters(); i++)
+				names.add(cpu.getRegisterName(i).substring(1));
+			registerNames = names;
+		}
+		else
+			registerNames = null;
+	}
+
+	/**
+	 * Returns the template of the given CPU file, from the cache if possible.
+	 * <p>The template is loaded again if either the CPU file or its instruction
+	 * set file were modified since it was cached.</p>
+	 * @param path Path to the JSON file.
+	 * @return The template of the CPU file.
+	 * @throws IOException If the file doesn't exist or an I/O error occurs.
+	 * @throws JSONException If the JSON file is malformed.
+	 * @throws InvalidCPUException If the CPU is invalid or incomplete
+	 * @throws ArrayIndexOutOfBoundsException If an array index is invalid somewhere (like an invalid register).
+	 * @throws InvalidInstructionSetException If the instruction set is invalid.
+	 * @throws NumberFormatException If an opcode is not a number.
+	 */
+	public static CPUTemplate getTemplate(String path) throws IOException, JSONException, InvalidCPUException, ArrayIndexOutOfBoundsException, InvalidInstructionSetException, NumberFormatException {
+		String key = new File(path).getCanonicalPath();
+		CPUTemplate template;
+		synchronized(cache) {
+			template = cache.get(key);
+		}
+
+		if(template == null || template.isOutdated()) {
+			if(template != null) {
+				synchronized(cache) {
+					cache.remove(key); // don't keep the old version if the new one fails to load
+				}
+			}
+			template = new CPUTemplate(path);
+			synchronized(cache) {
+				cache.put(key, template);
+			}
+		}
+		return template;
+	}
+
+	/**
+	 * Removes all the templates from the cache.
+	 */
+	public static void clearCache() {
+		synchronized(cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Creates a new CPU from this template.
+	 * <p>The CPU is completely independent from any other created CPU, except
+	 * for the (read-only) instruction set, which is shared.</p>
+	 * <p><b>Don't forget to call <tt>setPerformanceInstructionDependent()</tt> on the CPU!</b></p>.
+	 * @return The new CPU.
+	 * @throws InvalidCPUException If a component could not be created.
+	 * @throws JSONException If a component's JSON is invalid.
+	 */
+	public CPU createCPU() throws InvalidCPUException, JSONException {
+		return createCPU(registerNames);
+	}
+
+	/**
+	 * Creates a new CPU from this template.
+	 * @param registerNames The names of the registers to set in the CPU, or <tt>null</tt>.
+	 * @return The new CPU.
+	 * @throws InvalidCPUException If a component could not be created or the CPU is invalid.
+	 * @throws JSONException If a component's JSON is invalid.
+	 */
+	private CPU createCPU(List<String> registerNames) throws InvalidCPUException, JSONException {
+		String path = file.getPath();
+		Object event = SimulatorEvents.beginCPULoad();
+		CPU cpu = new CPU(file);
+		Component component;
+		for(ComponentSpec c: components) {
+			component = c.create();
+			if(descriptions != null)
+				component.setLazyDescriptions(descriptions);
+			cpu.addComponent(component);
+		}
+		cpu.setRegisterNames(registerNames);
+		cpu.setInstructionSet(instructionSet);
+		SimulatorEvents.commitCPULoad(event, path, SimulatorEvents.CPU_LOAD_COMPONENTS);
+
+		event = SimulatorEvents.beginCPULoad();
+		Output out;
+		for(WireSpec w: wires) {
+			out = cpu.connectComponents(w.from, w.out, w.to, w.in);
+			for(Point p: w.points)
+				out.addIntermediatePoint(new Point(p));
+			if(w.start != null)
+				out.setPosition(new Point(w.start));
+			if(w.end != null)
+				out.getConnectedInput().setPosition(new Point(w.end));
+		}
+		SimulatorEvents.commitCPULoad(event, path, SimulatorEvents.CPU_LOAD_WIRES);
+
+		event = SimulatorEvents.beginCPULoad();
+		cpu.initialize();
+		SimulatorEvents.commitCPULoad(event, path, SimulatorEvents.CPU_LOAD_INITIALIZE);
+		return cpu;
+	}
+
+	/**
+	 * Returns whether the CPU file or the instruction set file were modified since this template was created.
+	 * @return <tt>True</tt> if one of the files was modified.
+	 */
+	public boolean isOutdated() {
+		return file.lastModified() != lastModified || instructionSetFile.lastModified() != instructionSetLastModified;
+	}
+
+	/**
+	 * Returns the file of the CPU.
+	 * @return The file of the CPU.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the loaded instruction set, shared by all the CPUs created from this template.
+	 * @return The instruction set.
+	 */
+	public InstructionSet getInstructionSet() {
+		return instructionSet;
+	}
+
+	/**
+	 * Reads the whole contents of the given UTF-8 file.
+	 * @param f The file to read.
+	 * @return The contents of the file.
+	 * @throws IOException If the file doesn't exist or an I/O error occurs.
+	 */
+	private static String readFile(File f) throws IOException {
+		StringBuilder contents = new StringBuilder((int)Math.min(f.length(), Integer.MAX_VALUE - 1) + 1);
+		char[] buffer = new char[8192];
+		int n;
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(f), "UTF8"));
+			while((n = reader.read(buffer)) != -1)
+				contents.append(buffer, 0, n);
+		}
+		finally {
+			if(reader != null) reader.close();
+		}
+		return contents.toString();
+	}
+
+	/**
+	 * Loads the instruction set from its binary file if it is up to date, or from the JSON file otherwise.
+	 * @param f The JSON file of the instruction set.
+	 * @return The loaded instruction set.
+	 * @throws IOException If the file doesn't exist or an I/O error occurs.
+	 * @throws JSONException If the JSON file is malformed.
+	 * @throws InvalidInstructionSetException If the instruction set is invalid.
+	 * @throws ArrayIndexOutOfBoundsException If an array index is invalid somewhere.
+	 * @throws NumberFormatException If an opcode is not a number.
+	 */
+	private static InstructionSet loadInstructionSet(File f) throws IOException, JSONException, InvalidInstructionSetException, ArrayIndexOutOfBoundsException, NumberFormatException {
+		InstructionSet set;
+		try {
+			set = BinaryCPUFile.readInstructionSet(f);
+		} catch(IOException ex) {
+			set = null; // corrupted binary file, load the JSON file instead
+		}
+		return set != null ? set : new InstructionSet(f.getPath());
+	}
+
+	/**
+	 * Parses the components from the given JSON object and resolves their factories.
+	 * @param components JSONObject that contains the components array.
+	 * @param parentDir The cpu file's parent directory.
+	 * @return The parsed components.
+	 * @throws JSONException If the JSON file is malformed.
+	 * @throws InvalidCPUException If the CPU is invalid or incomplete.
+	 */
+	private static List<ComponentSpec> parseJSONComponents(JSONObject components, File parentDir) throws JSONException, InvalidCPUException {
+		List<ComponentSpec> specs = new ArrayList<>(components.length());
+		JSONObject json;
+		String id;
+
+		// Parse the components
+		Iterator<String> i = components.keys();
+		while(i.hasNext()) {
+			id = i.next();
+			json = components.getJSONObject(id);
+			specs.add(new ComponentSpec(id, json, ComponentRegistry.getFactory(json.getString("type"), parentDir)));
+		}
+
+		return specs;
+	}
+
+	/**
+	 * Parses the wires from the given JSON array.
+	 * @param wires JSONArray that contains the wires array.
+	 * @return The parsed wires.
+	 * @throws JSONException If the JSON file is malformed.
+	 */
+	private static List<WireSpec> parseJSONWires(JSONArray wires) throws JSONException {
+		List<WireSpec> specs = new ArrayList<>(wires.length());
+		JSONObject wire, point, start, end;
+		JSONArray points;
+		WireSpec w;
+
+		for(int i = 0; i < wires.length(); i++) {
+			wire = wires.getJSONObject(i);
+			w = new WireSpec(wire.getString("from"), wire.getString("out"), wire.getString("to"), wire.getString("in"));
+			points = wire.optJSONArray("points");
+			if(points != null) {
+				for(int x = 0; x < points.length(); x++) {
+					point = points.getJSONObject(x);
+					w.points.add(new Point(point.getInt("x"), point.getInt("y")));
+				}
+			}
+			if((start = wire.optJSONObject("start")) != null)
+				w.start = new Point(start.getInt("x"), start.getInt("y"));
+			if((end = wire.optJSONObject("end")) != null)
+				w.end = new Point(end.getInt("x"), end.getInt("y"));
+			specs.add(w);
+		}
+
+		return specs;
+	}
+
+	/**
+	 * A component declared in the CPU file, with its class already resolved.
+	 */
+	static final class ComponentSpec {
+		/** The identifier of the component. */
+		private final String id;
+		/** The JSON object of the component (only read by the constructor). */
+		private final JSONObject json;
+		/** The factory of the component's type. */
+		private final ComponentFactory factory;
+
+		/**
+		 * Constructor.
+		 * @param id The identifier of the component.
+		 * @param json The JSON object of the component.
+		 * @param factory The factory of the component's type.
+		 */
+		public ComponentSpec(String id, JSONObject json, ComponentFactory factory) {
+			this.id = id;
+			this.json = json;
+			this.factory = factory;
+		}
+
+		/**
+		 * Creates a new instance of the component.
+		 * @return The new component.
+		 * @throws InvalidCPUException If the component has invalid parameters or could not be created.
+		 * @throws JSONException If the JSON object is invalid or incomplete.
+		 */
+		public Component create() throws InvalidCPUException, JSONException {
+			return factory.create(id, json);
+		}
+	}
+
+	/**
+	 * A wire declared in the CPU file.
+	 */
+	static final class WireSpec {
+		/** The identifier of the output component. */
+		private final String from;
+		/** The identifier of the output of the output component. */
+		private final String out;
+		/** The identifier of the input component. */
+		private final String to;
+		/** The identifier of the input of the input component. */
+		private final String in;
+		/** The intermediate points of the wire. */
+		final List<Point> points = new ArrayList<>();
+		/** The start point of the wire, if defined. */
+		Point start = null;
+		/** The end point of the wire, if defined. */
+		Point end = null;
+
+		/**
+		 * Constructor.
+		 * @param from The identifier of the output component.
+		 * @param out The identifier of the output of the output component.
+		 * @param to The identifier of the input component.
+		 * @param in The identifier of the input of the input component.
+		 */
+		public WireSpec(String from, String out, String to, String in) {
+			this.from = from;
+			this.out = out;
+			this.to = to;
+			this.in = in;
+		}
+	}
+}
@@ -54,7 +54,9 @@ import org.json.JSONObject;
  * <p>Adding a new component to the simulator should be as simple as adding
  * its class to the {@code brunonova.drmips.simulator.components} package
  * (it <b>must</b> be in that package), unless it requires changes to other
- * classes (like the RegBank does).</p>
+ * classes (like the RegBank does). It should also be added to the built-in
+ * types of the {@link ComponentRegistry}, so that it is created without
+ * reflection.</p>
  *
  * <h3>Custom components</h3>
  * <p>It is also possible to provide custom components along with a CPU file.
@@ -94,8 +96,14 @@ public abstract class Component {
 	private int accumulatedLatency = 0;
 	/** The component's custom description, if any, for each language. */
 	private Map<String, String> customDescriptions = null;
+	/** The not yet loaded custom descriptions (if the CPU was loaded from a binary file). */
+	private BinaryCPUFile.Descriptions lazyDescriptions = null;
 	/** Whether this component is in the control path. */
 	private boolean inControlPath = false;
+	/** The profiler of the CPU, or <tt>null</tt> if the CPU isn't being profiled. */
+	private ComponentProfiler profiler = null;
+	/** The index of the component in the profiler. */
+	private int profilerIndex = -1;
 
 	/**
 	 * Component constructor that must be called by subclasses.
@@ -156,6 +164,48 @@ public abstract class Component {
 	 */
 	public abstract void execute();
 
+	/**
+	 * Executes the normal action of the component, measuring it if the CPU is being profiled.
+	 * <p>The simulator calls this method instead of {@link #execute()}.</p>
+	 */
+	final void callExecute() {
+		if(profiler == null)
+			execute();
+		else
+			profiler.execute(this, profilerIndex);
+	}
+
+	/**
+	 * Executes the synchronous action of the component, measuring it if the CPU is being profiled.
+	 * <p>The component must implement {@link Synchronous}.</p>
+	 */
+	final void callExecuteSynchronous() {
+		if(profiler == null)
+			((Synchronous)this).executeSynchronous();
+		else
+			profiler.executeSynchronous((Synchronous)this, profilerIndex);
+	}
+
+	/**
+	 * Updates the component's accumulated latency, measuring it if the CPU is being profiled.
+	 * @param instructionDependent Whether the performance should depend on the current instruction or not.
+	 */
+	final void callUpdateAccumulatedLatency(boolean instructionDependent) {
+		if(profiler == null)
+			updateAccumulatedLatency(instructionDependent);
+		else
+			profiler.updateAccumulatedLatency(this, profilerIndex, instructionDependent);
+	}
+
+	/**
+	 * Sets the profiler that measures this component.
+	 * @param profiler The profiler, or <tt>null</tt> to stop profiling.
+	 */
+	final void setProfiler(ComponentProfiler profiler) {
+		this.profiler = profiler;
+		this.profilerIndex = profiler != null ? profiler.indexOf(this) : -1;
+	}
+
 	/**
 	 * Adds a custom description to the component for the specified language.
 	 * <p>The language is the language code (like en, pt, pt_PT) or "default" for
@@ -168,11 +218,34 @@ public abstract class Component {
 		customDescriptions.put(language.trim().toLowerCase(), description);
 	}
 
+	/**
+	 * Sets the custom descriptions that should only be loaded when needed.
+	 * @param descriptions The descriptions section of the binary CPU file.
+	 */
+	final void setLazyDescriptions(BinaryCPUFile.Descriptions descriptions) {
+		lazyDescriptions = descriptions;
+	}
+
+	/**
+	 * Adds the custom descriptions of the component that weren't loaded yet, if any.
+	 */
+	private void loadLazyDescriptions() {
+		if(lazyDescriptions != null) {
+			Map<String, String> desc = lazyDescriptions.get(getId());
+			lazyDescriptions = null;
+			if(desc != null) {
+				for(Map.Entry<String, String> e: desc.entrySet())
+					addCustomDescriptions(e.getKey(), e.getValue());
+			}
+		}
+	}
+
 	/**
 	 * Returns whether the component has custom descriptions.
 	 * @return <tt>True</tt> if the component has custom descriptions.
 	 */
 	public final boolean hasCustomDescription() {
+		loadLazyDescriptions();
 		return customDescriptions != null && customDescriptions.containsKey("default");
 	}
 
@@ -182,6 +255,7 @@ public abstract class Component {
 	 * @return The custom description, or <tt>null</tt> if the component doesn't have custom descriptions or doesn't have neither the given language or the default one.
 	 */
 	public final String getCustomDescription(String language) {
+		loadLazyDescriptions();
 		if(customDescriptions == null)
 			return null;
 		else {
@@ -0,0 +1,425 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Measures how much each component of a CPU costs to simulate.
+ *
+ * <p>Counts, for each component, the calls to {@link Component#execute()},
+ * {@link Synchronous#executeSynchronous()} and to the update of its
+ * accumulated latency, and the time spent in each of them (excluding the time
+ * spent in the other components they propagate to). It also measures the
+ * depth of the propagation of the changes of the outputs, the number of
+ * simulated clock cycles per second and the memory allocated per cycle.</p>
+ *
+ * <p>The profiler is enabled with {@link CPU#setProfilingEnabled(boolean)}.
+ * When disabled, the only overhead is a <tt>null</tt> check per call.
+ * Like the CPU, the profiler is not thread-safe: the values read from another
+ * thread while the CPU is executing are approximate.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class ComponentProfiler implements CycleListener {
+	/** The minimum interval between updates of the simulated cycles per second, in nanoseconds. */
+	private static final long SPEED_INTERVAL = 500000000L;
+
+	/** The profiled components. */
+	private final Component[] components;
+	/** The index of each component in the arrays. */
+	private final Map<Component, Integer> indexes = new IdentityHashMap<>();
+
+	/** The number of calls to <tt>execute()</tt> of each component. */
+	private final long[] executeCalls;
+	/** The time spent in <tt>execute()</tt> of each component, in nanoseconds. */
+	private final long[] executeTime;
+	/** The number of calls to <tt>executeSynchronous()</tt> of each component. */
+	private final long[] synchronousCalls;
+	/** The time spent in <tt>executeSynchronous()</tt> of each component, in nanoseconds. */
+	private final long[] synchronousTime;
+	/** The number of updates of the accumulated latency of each component. */
+	private final long[] latencyCalls;
+	/** The time spent updating the accumulated latency of each component, in nanoseconds. */
+	private final long[] latencyTime;
+	/** The maximum propagation depth at which each component was executed. */
+	private final int[] maxDepth;
+
+	/** The current depth of the propagation of changes (nested <tt>execute()</tt> calls). */
+	private int depth = 0;
+	/** The time spent in the nested calls of the current call, in nanoseconds. */
+	private long nestedTime = 0;
+	/** The maximum propagation depth in the current cycle. */
+	private int cycleMaxDepth = 0;
+	/** The maximum propagation depth. */
+	private int totalMaxDepth = 0;
+	/** The sum of the maximum propagation depths of all the profiled cycles. */
+	private long depthSum = 0;
+	/** The number of profiled clock cycles. */
+	private long cycles = 0;
+
+	/** The allocated bytes counter, or <tt>null</tt> if not supported by the JVM. */
+	private final AllocationCounter allocationCounter;
+	/** The bytes allocated in the cycles where the allocations were measured. */
+	private long allocatedBytes = 0;
+	/** The number of cycles where the allocations were measured. */
+	private long allocationCycles = 0;
+	/** The value of the allocated bytes counter at the end of the last cycle, or -1 if unknown. */
+	private long lastAllocated = -1;
+	/** The thread that executed the last cycle. */
+	private Thread lastThread = null;
+
+	/** The start of the current interval of measurement of the speed, in nanoseconds. */
+	private long speedStartTime = 0;
+	/** The number of cycles executed in the current interval of measurement of the speed. */
+	private long speedCycles = 0;
+	/** The simulated cycles per second in the last interval of measurement. */
+	private volatile double cyclesPerSecond = 0;
+
+	/**
+	 * Creates a profiler for the given components.
+	 * @param components The components to profile.
+	 */
+	ComponentProfiler(Component[] components) {
+		this.components = components.clone();
+		for(int i = 0; i < components.length; i++)
+			indexes.put(components[i], i);
+		int n = components.length;
+		executeCalls = new long[n];
+		executeTime = new long[n];
+		synchronousCalls = new long[n];
+		synchronousTime = new long[n];
+		latencyCalls = new long[n];
+		latencyTime = new long[n];
+		maxDepth = new int[n];
+		allocationCounter = createAllocationCounter();
+	}
+
+	/**
+	 * Creates the counter of allocated bytes, if the JVM supports it.
+	 * @return The counter, or <tt>null</tt> if not supported.
+	 */
+	private static AllocationCounter createAllocationCounter() {
+		try {
+			return AllocationCounter.create();
+		}
+		catch(LinkageError ex) { // com.sun.management not available
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the index of a component in the arrays of the profiler.
+	 * @param component The component.
+	 * @return The index, or -1 if the component isn't profiled.
+	 */
+	int indexOf(Component component) {
+		Integer index = indexes.get(component);
+		return index != null ? index : -1;
+	}
+
+	/**
+	 * Executes the normal action of a component, measuring it.
+	 * @param component The component.
+	 * @param index The index of the component.
+	 */
+	void execute(Component component, int index) {
+		if(++depth > cycleMaxDepth) cycleMaxDepth = depth;
+		if(depth > maxDepth[index]) maxDepth[index] = depth;
+		long outerNested = nestedTime;
+		nestedTime = 0;
+		long start = System.nanoTime();
+		try {
+			component.execute();
+		}
+		finally {
+			long elapsed = System.nanoTime() - start;
+			executeCalls[index]++;
+			executeTime[index] += elapsed - nestedTime;
+			nestedTime = outerNested + elapsed;
+			depth--;
+		}
+	}
+
+	/**
+	 * Executes the synchronous action of a component, measuring it.
+	 * @param component The component.
+	 * @param index The index of the component.
+	 */
+	void executeSynchronous(Synchronous component, int index) {
+		long outerNested = nestedTime;
+		nestedTime = 0;
+		long start = System.nanoTime();
+		try {
+			component.executeSynchronous();
+		}
+		finally {
+			long elapsed = System.nanoTime() - start;
+			synchronousCalls[index]++;
+			synchronousTime[index] += elapsed - nestedTime;
+			nestedTime = outerNested + elapsed;
+		}
+	}
+
+	/**
+	 * Updates the accumulated latency of a component, measuring it.
+	 * @param component The component.
+	 * @param index The index of the component.
+	 * @param instructionDependent Whether the performance depends on the current instruction.
+	 */
+	void updateAccumulatedLatency(Component component, int index, boolean instructionDependent) {
+		long outerNested = nestedTime;
+		nestedTime = 0;
+		long start = System.nanoTime();
+		try {
+			component.updateAccumulatedLatency(instructionDependent);
+		}
+		finally {
+			long elapsed = System.nanoTime() - start;
+			latencyCalls[index]++;
+			latencyTime[index] += elapsed - nestedTime;
+			nestedTime = outerNested + elapsed;
+		}
+	}
+
+	@Override
+	public void stateWritten(Component component, int index) {
+	}
+
+	@Override
+	public void cycleExecuted(CPU cpu) {
+		cycles++;
+		depthSum += cycleMaxDepth;
+		if(cycleMaxDepth > totalMaxDepth) totalMaxDepth = cycleMaxDepth;
+		cycleMaxDepth = 0;
+
+		if(allocationCounter != null) { // the counter is per thread, so ignore the cycles after a change of thread
+			Thread thread = Thread.currentThread();
+			long allocated = allocationCounter.getAllocatedBytes();
+			if(thread == lastThread && lastAllocated >= 0 && allocated >= lastAllocated) {
+				allocatedBytes += allocated - lastAllocated;
+				allocationCycles++;
+			}
+			lastThread = thread;
+			lastAllocated = allocated;
+		}
+
+		long now = System.nanoTime();
+		speedCycles++;
+		if(speedStartTime == 0)
+			speedStartTime = now;
+		else if(now - speedStartTime >= SPEED_INTERVAL) {
+			cyclesPerSecond = speedCycles * 1e9 / (now - speedStartTime);
+			speedStartTime = now;
+			speedCycles = 0;
+		}
+	}
+
+	/**
+	 * Resets all the measurements.
+	 */
+	public void reset() {
+		for(int i = 0; i < components.length; i++) {
+			executeCalls[i] = executeTime[i] = 0;
+			synchronousCalls[i] = synchronousTime[i] = 0;
+			latencyCalls[i] = latencyTime[i] = 0;
+			maxDepth[i] = 0;
+		}
+		cycleMaxDepth = totalMaxDepth = 0;
+		depthSum = cycles = 0;
+		allocatedBytes = allocationCycles = 0;
+		lastAllocated = -1;
+		lastThread = null;
+		speedStartTime = speedCycles = 0;
+		cyclesPerSecond = 0;
+	}
+
+	/**
+	 * Returns the profiled components.
+	 * <p>The indexes of the components in the returned array are the ones
+	 * used in the other methods.</p>
+	 * @return The components.
+	 */
+	public Component[] getComponents() {
+		return components.clone();
+	}
+
+	/**
+	 * Returns the number of clock cycles executed while profiling.
+	 * @return The number of profiled cycles.
+	 */
+	public long getProfiledCycles() {
+		return cycles;
+	}
+
+	/**
+	 * Returns the number of calls to <tt>execute()</tt> of a component.
+	 * @param index The index of the component.
+	 * @return The number of calls.
+	 */
+	public long getExecuteCalls(int index) {
+		return executeCalls[index];
+	}
+
+	/**
+	 * Returns the time spent in <tt>execute()</tt> of a component, excluding the components it propagated to.
+	 * @param index The index of the component.
+	 * @return The time, in nanoseconds.
+	 */
+	public long getExecuteTime(int index) {
+		return executeTime[index];
+	}
+
+	/**
+	 * Returns the number of calls to <tt>executeSynchronous()</tt> of a component.
+	 * @param index The index of the component.
+	 * @return The number of calls.
+	 */
+	public long getSynchronousCalls(int index) {
+		return synchronousCalls[index];
+	}
+
+	/**
+	 * Returns the time spent in <tt>executeSynchronous()</tt> of a component.
+	 * @param index The index of the component.
+	 * @return The time, in nanoseconds.
+	 */
+	public long getSynchronousTime(int index) {
+		return synchronousTime[index];
+	}
+
+	/**
+	 * Returns the number of updates of the accumulated latency of a component.
+	 * @param index The index of the component.
+	 * @return The number of updates.
+	 */
+	public long getLatencyCalls(int index) {
+		return latencyCalls[index];
+	}
+
+	/**
+	 * Returns the time spent updating the accumulated latency of a component, excluding the components it propagated to.
+	 * @param index The index of the component.
+	 * @return The time, in nanoseconds.
+	 */
+	public long getLatencyTime(int index) {
+		return latencyTime[index];
+	}
+
+	/**
+	 * Returns the total time spent in a component.
+	 * @param index The index of the component.
+	 * @return The time, in nanoseconds.
+	 */
+	public long getTotalTime(int index) {
+		return executeTime[index] + synchronousTime[index] + latencyTime[index];
+	}
+
+	/**
+	 * Returns the maximum propagation depth at which a component was executed.
+	 * <p>The components executed directly by the CPU have depth 1, the
+	 * components executed because an input changed have the depth of the
+	 * component that changed it plus 1.</p>
+	 * @param index The index of the component.
+	 * @return The maximum depth.
+	 */
+	public int getMaxDepth(int index) {
+		return maxDepth[index];
+	}
+
+	/**
+	 * Returns the maximum propagation depth reached in a clock cycle.
+	 * @return The maximum depth.
+	 */
+	public int getMaxPropagationDepth() {
+		return totalMaxDepth;
+	}
+
+	/**
+	 * Returns the average of the maximum propagation depths of the clock cycles.
+	 * @return The average depth.
+	 */
+	public double getAveragePropagationDepth() {
+		return cycles > 0 ? (double)depthSum / cycles : 0;
+	}
+
+	/**
+	 * Returns the number of clock cycles simulated per second, measured recently.
+	 * @return The simulated cycles per second, or 0 if not measured yet.
+	 */
+	public double getCyclesPerSecond() {
+		return cyclesPerSecond;
+	}
+
+	/**
+	 * Returns the average number of bytes allocated per clock cycle by the thread that executes the CPU.
+	 * @return The allocated bytes per cycle, or -1 if the JVM doesn't support measuring it.
+	 */
+	public double getAllocatedBytesPerCycle() {
+		if(allocationCounter == null) return -1;
+		return allocationCycles > 0 ? (double)allocatedBytes / allocationCycles : 0;
+	}
+
+	/**
+	 * Counts the bytes allocated by the current thread, if the JVM supports it.
+	 * <p>In a separate class so that the profiler works in JVMs without the
+	 * <tt>com.sun.management</tt> API (like Android's).</p>
+	 */
+	private static final class AllocationCounter {
+		/** The thread management bean. */
+		private final com.sun.management.ThreadMXBean bean;
+
+		/**
+		 * Constructor.
+		 * @param bean The thread management bean.
+		 */
+		private AllocationCounter(com.sun.management.ThreadMXBean bean) {
+			this.bean = bean;
+		}
+
+		/**
+		 * Creates the counter.
+		 * @return The counter, or <tt>null</tt> if not supported.
+		 */
+		static AllocationCounter create() {
+			try {
+				java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+				if(bean instanceof com.sun.management.ThreadMXBean) {
+					com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+					if(sunBean.isThreadAllocatedMemorySupported()) {
+						sunBean.setThreadAllocatedMemoryEnabled(true);
+						return new AllocationCounter(sunBean);
+					}
+				}
+			}
+			catch(RuntimeException ex) { // not supported
+			}
+			return null;
+		}
+
+		/**
+		 * Returns the number of bytes allocated by the current thread.
+		 * @return The number of bytes, or -1 if unknown.
+		 */
+		long getAllocatedBytes() {
+			return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+	}
+}
@@ -0,0 +1,295 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.components.*;
+import brunonova.drmips.simulator.exceptions.InvalidCPUException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Map;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Registry of the factories that create the components of each type.
+ *
+ * <p>The built-in components (the ones in the
+ * {@code brunonova.drmips.simulator.components} package) are registered
+ * beforehand and are created directly, without reflection.</p>
+ *
+ * <p>The classes of the other component types are searched for the first time
+ * they are needed, and their {@code (String id, JSONObject json)} constructors
+ * are cached. Custom components are loaded with a
+ * class loader for the directory of the CPU file, which is also cached, so
+ * reloading a CPU with custom components doesn't load their classes again.
+ * The {@link #clearCache()} method discards these cached class loaders
+ * (useful if the custom components' classes were modified).</p>
+ *
+ * @author Bruno Nova
+ */
+public final class ComponentRegistry {
+	/** The package of the built-in components, with the trailing dot. */
+	public static final String BUILT_IN_PACKAGE = "brunonova.drmips.simulator.components.";
+
+	/** The factories of the built-in components, and of the other components found in their package. */
+	private static final Map<String, ComponentFactory> builtIn = new HashMap<>();
+	/** The factories of the custom components, indexed by directory and then by type. */
+	private static final Map<String, Map<String, ComponentFactory>> custom = new HashMap<>();
+	/** The class loaders of the custom components, indexed by directory. */
+	private static final Map<String, ClassLoader> loaders = new HashMap<>();
+
+	/**
+	 * The types of the built-in components.
+	 * <p>The index of each type (plus one) is its numeric identifier in the
+	 * binary CPU files (see {@link BinaryCPUFile}), so new types must be added
+	 * at the end.</p>
+	 */
+	static final String[] BUILT_IN_TYPES = {"ALU", "ALUControl", "Add", "And", "Concatenator",
+		"Constant", "ControlUnit", "DataMemory", "Distributor", "ExtendedALU", "Fork",
+		"ForwardingUnit", "HazardDetectionUnit", "InstructionMemory", "Multiplexer", "Not",
+		"Or", "PC", "PipelineRegister", "RegBank", "ShiftLeft", "SignExtend", "Xor", "ZeroExtend", "Cache", "BranchPredictor"};
+
+	static {
+		for(final String type: BUILT_IN_TYPES)
+			builtIn.put(type, new BuiltInFactory(type));
+	}
+
+	/**
+	 * This class is not instantiable.
+	 */
+	private ComponentRegistry() { }
+
+	/**
+	 * Registers the factory of a component type.
+	 * <p>Registered types take precedence over the custom components and replace
+	 * any previously registered factory with the same type.</p>
+	 * @param type The type of the component, as used in the CPU files.
+	 * @param factory The factory that creates the components.
+	 */
+	public static void register(String type, ComponentFactory factory) {
+		synchronized(builtIn) {
+			builtIn.put(type, factory);
+		}
+	}
+
+	/**
+	 * Returns the factory of the given component type.
+	 * <p>The built-in components are searched first, followed by the custom
+	 * components in the given directory.</p>
+	 * @param type The type of the component, as used in the CPU files.
+	 * @param directory The directory of the CPU file (where the custom components are), or <tt>null</tt>.
+	 * @return The factory of the component type.
+	 * @throws InvalidCPUException If the type doesn't exist or isn't a valid component.
+	 */
+	public static ComponentFactory getFactory(String type, File directory) throws InvalidCPUException {
+		ComponentFactory factory;
+		ClassNotFoundException notFound;
+
+		// Search in the built-in classes first
+		synchronized(builtIn) {
+			factory = builtIn.get(type);
+			if(factory != null) return factory;
+			try {
+				factory = createFactory(type, Class.forName(BUILT_IN_PACKAGE + type, true, ComponentRegistry.class.getClassLoader()));
+				builtIn.put(type, factory);
+				return factory;
+			} catch(ClassNotFoundException ex) {
+				notFound = ex;
+			}
+		}
+
+		// Search in the custom components second
+		if(directory == null)
+			throw new InvalidCPUException("Unknown component type " + type + "!", notFound);
+		synchronized(custom) {
+			String dir = canonicalPath(directory);
+			Map<String, ComponentFactory> factories = custom.get(dir);
+			if(factories == null) {
+				factories = new HashMap<>();
+				custom.put(dir, factories);
+			}
+			else if((factory = factories.get(type)) != null)
+				return factory;
+
+			ClassLoader loader = getClassLoader(dir);
+			if(loader == null)
+				throw new InvalidCPUException("Unknown component type " + type + "!", notFound);
+			try {
+				factory = createFactory(type, loader.loadClass(type));
+			} catch(ClassNotFoundException ex) {
+				throw new InvalidCPUException("Unknown component type " + type + "!", ex);
+			}
+			factories.put(type, factory);
+			return factory;
+		}
+	}
+
+	/**
+	 * Discards the cached custom components and their class loaders.
+	 */
+	public static void clearCache() {
+		synchronized(custom) {
+			custom.clear();
+			loaders.clear();
+		}
+	}
+
+	/**
+	 * Returns the (cached) class loader of the custom components in the given directory.
+	 * @param dir The canonical path of the directory.
+	 * @return The class loader, or <tt>null</tt> if it couldn't be created.
+	 */
+	private static ClassLoader getClassLoader(String dir) {
+		ClassLoader loader = loaders.get(dir);
+		if(loader == null && !loaders.containsKey(dir)) {
+			try {
+				URL[] urls = new URL[] {new File(dir + File.separator).toURI().toURL()};
+				loader = new URLClassLoader(urls);
+			} catch(Exception ex) {
+				loader = null;
+			}
+			loaders.put(dir, loader);
+		}
+		return loader;
+	}
+
+	/**
+	 * Returns the canonical path of the given directory, or its absolute path on error.
+	 * @param directory The directory.
+	 * @return The path of the directory.
+	 */
+	private static String canonicalPath(File directory) {
+		try {
+			return directory.getCanonicalPath();
+		} catch(IOException ex) {
+			return directory.getAbsolutePath();
+		}
+	}
+
+	/**
+	 * Creates the factory of the given component class, which uses its
+	 * {@code (String, JSONObject)} constructor.
+	 * @param type The type of the component.
+	 * @param cl The class of the component.
+	 * @return The factory.
+	 * @throws InvalidCPUException If the class isn't a valid component.
+	 */
+	private static ComponentFactory createFactory(String type, Class<?> cl) throws InvalidCPUException {
+		Class<? extends Component> componentClass;
+		try {
+			componentClass = cl.asSubclass(Component.class);
+		} catch(ClassCastException ex) {
+			throw new InvalidCPUException("The " + type + " class is not a subclass of Component!", ex);
+		}
+		return new ConstructorFactory(type, componentClass);
+	}
+
+	/**
+	 * Factory of the built-in components, which calls their constructors directly.
+	 */
+	private static final class BuiltInFactory implements ComponentFactory {
+		/** The type of the components. */
+		private final String type;
+
+		/**
+		 * Constructor.
+		 * @param type The type of the components.
+		 */
+		public BuiltInFactory(String type) {
+			this.type = type;
+		}
+
+		@Override
+		public Component create(String id, JSONObject json) throws InvalidCPUException, JSONException {
+			switch(type) {
+				case "ALU":                 return new ALU(id, json);
+				case "ALUControl":          return new ALUControl(id, json);
+				case "Add":                 return new Add(id, json);
+				case "And":                 return new And(id, json);
+				case "Concatenator":        return new Concatenator(id, json);
+				case "Constant":            return new Constant(id, json);
+				case "ControlUnit":         return new ControlUnit(id, json);
+				case "DataMemory":          return new DataMemory(id, json);
+				case "Distributor":         return new Distributor(id, json);
+				case "ExtendedALU":         return new ExtendedALU(id, json);
+				case "Fork":                return new Fork(id, json);
+				case "ForwardingUnit":      return new ForwardingUnit(id, json);
+				case "HazardDetectionUnit": return new HazardDetectionUnit(id, json);
+				case "InstructionMemory":   return new InstructionMemory(id, json);
+				case "Multiplexer":         return new Multiplexer(id, json);
+				case "Not":                 return new Not(id, json);
+				case "Or":                  return new Or(id, json);
+				case "PC":                  return new PC(id, json);
+				case "PipelineRegister":    return new PipelineRegister(id, json);
+				case "RegBank":             return new RegBank(id, json);
+				case "ShiftLeft":           return new ShiftLeft(id, json);
+				case "SignExtend":          return new SignExtend(id, json);
+				case "Xor":                 return new Xor(id, json);
+				case "ZeroExtend":          return new ZeroExtend(id, json);
+				case "Cache":               return new Cache(id, json);
+				case "BranchPredictor":     return new BranchPredictor(id, json);
+				default: throw new InvalidCPUException("Unknown component type " + type + "!");
+			}
+		}
+	}
+
+	/**
+	 * Factory that calls the cached {@code (String, JSONObject)} constructor of a class.
+	 */
+	private static final class ConstructorFactory implements ComponentFactory {
+		/** The {@code (String, JSONObject)} constructor. */
+		private final Constructor<? extends Component> constructor;
+
+		/**
+		 * Constructor.
+		 * @param type The type of the components.
+		 * @param cl The class of the components.
+		 * @throws InvalidCPUException If the class doesn't have a public {@code (String, JSONObject)} constructor.
+		 */
+		public ConstructorFactory(String type, Class<? extends Component> cl) throws InvalidCPUException {
+			try {
+				constructor = cl.getConstructor(String.class, JSONObject.class);
+			} catch(NoSuchMethodException ex) {
+				throw new InvalidCPUException("The " + type + " class is missing the (String, JSONObject) constructor!", ex);
+			}
+		}
+
+		@Override
+		public Component create(String id, JSONObject json) throws InvalidCPUException, JSONException {
+			try {
+				return constructor.newInstance(id, json);
+			} catch(InvocationTargetException ex) {
+				Throwable target = ex.getCause();
+				if(target instanceof InvalidCPUException)
+					throw (InvalidCPUException)target;
+				else if(target instanceof JSONException)
+					throw (JSONException)target;
+				else
+					throw new InvalidCPUException("Failed to create the component " + id + "!", ex);
+			} catch(InstantiationException | IllegalAccessException | IllegalArgumentException ex) {
+				throw new InvalidCPUException("Failed to create the component " + id + "!", ex);
+			}
+		}
+	}
+}
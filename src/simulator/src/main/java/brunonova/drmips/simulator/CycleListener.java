@@ -0,0 +1,39 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+/**
+ * Interface of the objects that observe the execution of a CPU cycle by cycle.
+ *
+ * <p>Listeners are registered with {@link CPU#addCycleListener(CycleListener)}.
+ * They are notified of the writes to the registers and data memory during each
+ * clock transition (see {@link WriteListener}) and after each clock cycle is
+ * executed. The notifications are made in the thread that executes the CPU,
+ * inside the simulation loop, so they should be fast.</p>
+ *
+ * @author Bruno Nova
+ */
+public interface CycleListener extends WriteListener {
+	/**
+	 * Called after a clock cycle is executed (in <tt>CPU.executeCycle()</tt>),
+	 * when the values of all the outputs have been updated.
+	 * @param cpu The CPU.
+	 */
+	public void cycleExecuted(CPU cpu);
+}
@@ -0,0 +1,615 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.exceptions.InfiniteLoopException;
+import brunonova.drmips.simulator.exceptions.InvalidCPUException;
+import brunonova.drmips.simulator.exceptions.SyntaxErrorException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.json.JSONException;
+
+/**
+ * Explores the performance of a CPU over combinations of latencies of some of
+ * its components.
+ *
+ * <p>Each component is given a list of latencies to try, and every combination
+ * of them is evaluated, in parallel, on CPUs created from the same template.
+ * For each combination, the explorer computes the clock period, the number of
+ * clock cycles and the execution time of a program.</p>
+ *
+ * <p>The execution time of each combination is its number of clock cycles
+ * multiplied by its clock period. Usually, the simulation doesn't depend on the
+ * latencies, so the program is executed only once. The exception is a data
+ * memory with a multi-cycle timing model, whose accesses take a number of
+ * cycles that depends on the clock period. In that case, the program is
+ * executed once for each distinct clock period of the combinations.</p>
+ *
+ * <p>The result ({@link Exploration}) includes the Pareto frontier, where a
+ * lower execution time is better and a higher total latency (slower, cheaper
+ * components) is better, and the sensitivity of the execution time to the
+ * latency of each component.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class DesignSpaceExplorer {
+	/** The maximum number of combinations that can be explored. */
+	public static final int MAX_COMBINATIONS = 10000000;
+	/** The number of chunks of combinations evaluated by each thread, to balance the load. */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/** The template of the CPU. */
+	private final CPUTemplate template;
+	/** The identifiers of the explored components. */
+	private final List<String> ids = new ArrayList<>();
+	/** The latencies to try for each explored component. */
+	private final List<int[]> latencies = new ArrayList<>();
+	/** Whether the instructions are scheduled to avoid pipeline hazards. */
+	private boolean scheduling = false;
+
+	/**
+	 * Constructor.
+	 * @param template The template of the CPU to explore.
+	 */
+	public DesignSpaceExplorer(CPUTemplate template) {
+		this.template = template;
+	}
+
+	/**
+	 * Adds a component to explore.
+	 * @param id The identifier of the component.
+	 * @param values The latencies to try (not empty, not negative).
+	 * @throws IllegalArgumentException If the component was already added or the latencies are invalid.
+	 */
+	public void addComponent(String id, int[] values) throws IllegalArgumentException {
+		if(ids.contains(id))
+			throw new IllegalArgumentException("Component " + id + " added more than once!");
+		if(values.length == 0)
+			throw new IllegalArgumentException("No latencies given for component " + id + "!");
+		for(int v: values) {
+			if(v < 0)
+				throw new IllegalArgumentException("Invalid latency " + v + " for component " + id + "!");
+		}
+		ids.add(id);
+		latencies.add(values.clone());
+	}
+
+	/**
+	 * Parses a list of latencies.
+	 * <p>The list can be a range in the format <tt>from:to:step</tt> (inclusive),
+	 * values separated by commas (<tt>a,b,c</tt>) or a single value.</p>
+	 * @param spec The list of latencies.
+	 * @return The latencies.
+	 * @throws IllegalArgumentException If the list is invalid.
+	 */
+	public static int[] parseLatencies(String spec) throws IllegalArgumentException {
+		String[] parts;
+		if(spec.contains(":")) {
+			parts = spec.split(":");
+			if(parts.length != 3)
+				throw new IllegalArgumentException("Invalid latency range " + spec + " (expected from:to:step)!");
+			int from = Integer.parseInt(parts[0].trim());
+			int to = Integer.parseInt(parts[1].trim());
+			int step = Integer.parseInt(parts[2].trim());
+			if(step <= 0 || from > to)
+				throw new IllegalArgumentException("Invalid latency range " + spec + "!");
+			int[] values = new int[(to - from) / step + 1];
+			for(int i = 0; i < values.length; i++)
+				values[i] = from + i * step;
+			return values;
+		}
+		else {
+			parts = spec.split(",");
+			int[] values = new int[parts.length];
+			for(int i = 0; i < parts.length; i++)
+				values[i] = Integer.parseInt(parts[i].trim());
+			return values;
+		}
+	}
+
+	/**
+	 * Sets whether the instructions are scheduled to avoid pipeline hazards
+	 * (see {@link HazardAnalyzer}).
+	 * @param scheduling Whether to schedule the instructions.
+	 */
+	public void setSchedulingEnabled(boolean scheduling) {
+		this.scheduling = scheduling;
+	}
+
+	/**
+	 * Returns the number of combinations of latencies to explore.
+	 * @return The number of combinations.
+	 */
+	public long getNumberOfCombinations() {
+		long n = 1;
+		for(int[] v: latencies)
+			n *= v.length;
+		return n;
+	}
+
+	/**
+	 * Executes the program and evaluates all the combinations of latencies.
+	 * @param code The code of the program.
+	 * @param maxCycles The maximum number of clock cycles of the execution (no limit if not positive).
+	 * @param threads The number of parallel threads.
+	 * @return The result of the exploration.
+	 * @throws IllegalArgumentException If a component doesn't exist or there are too many combinations.
+	 * @throws InvalidCPUException If the CPU could not be created.
+	 * @throws JSONException If a component's JSON is invalid.
+	 * @throws SyntaxErrorException If the code has errors.
+	 * @throws InfiniteLoopException If the program doesn't terminate within <tt>maxCycles</tt> clock cycles.
+	 * @throws InterruptedException If interrupted while waiting for the evaluations.
+	 */
+	public Exploration explore(String code, long maxCycles, int threads) throws IllegalArgumentException, InvalidCPUException, JSONException, SyntaxErrorException, InfiniteLoopException, InterruptedException {
+		long n = getNumberOfCombinations();
+		if(n > MAX_COMBINATIONS)
+			throw new IllegalArgumentException("Too many combinations (" + n + ", the maximum is " + MAX_COMBINATIONS + ")!");
+
+		// Execute the program with the latencies of the CPU file
+		CPU cpu = template.createCPU();
+		for(String id: ids) {
+			if(!cpu.hasComponent(id))
+				throw new IllegalArgumentException("Unknown component " + id + "!");
+		}
+		cpu.getAssembler().setSchedulingEnabled(scheduling);
+		cpu.assembleCode(code);
+		cpu.setHistoryEnabled(false);
+		execute(cpu, maxCycles);
+
+		final Exploration result = new Exploration(ids.toArray(new String[ids.size()]),
+			latencies.toArray(new int[latencies.size()][]), cpu.getNumberOfExecutedCycles(),
+			cpu.getNumberOfExecutedInstructions());
+
+		// Evaluate the clock periods of the combinations in chunks, each one on its own CPU
+		int chunks = Math.max(1, Math.min((int)n, threads * CHUNKS_PER_THREAD));
+		List<Callable<Void>> tasks = new ArrayList<>(chunks);
+		for(int i = 0; i < chunks; i++)
+			tasks.add(new EvaluateTask(result, (int)(n * i / chunks), (int)(n * (i + 1) / chunks)));
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			for(Future<Void> f: pool.invokeAll(tasks))
+				get(f);
+
+			// The wait states of the data memory depend on the clock period,
+			// so execute the program again for each distinct clock period
+			if(cpu.hasDataMemory() && cpu.getDataMemory().hasTiming()) {
+				Map<Integer, Integer> combinations = new TreeMap<>(); // clock period -> first combination
+				for(int c = 0; c < n; c++) {
+					int period = result.getClockPeriod(c);
+					if(period != cpu.getClockPeriod() && !combinations.containsKey(period))
+						combinations.put(period, c);
+				}
+				List<Callable<Integer>> runs = new ArrayList<>(combinations.size());
+				for(int c: combinations.values())
+					runs.add(new SimulateTask(result, c, code, maxCycles));
+
+				Map<Integer, Integer> cycles = new TreeMap<>(); // clock period -> cycles
+				cycles.put(cpu.getClockPeriod(), cpu.getNumberOfExecutedCycles());
+				List<Future<Integer>> futures = pool.invokeAll(runs);
+				int i = 0;
+				for(int period: combinations.keySet())
+					cycles.put(period, get(futures.get(i++)));
+				result.setCycles(cycles);
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		result.analyze();
+		return result;
+	}
+
+	/**
+	 * Executes the program loaded in the CPU until the end.
+	 * @param cpu The CPU.
+	 * @param maxCycles The maximum number of clock cycles (no limit if not positive).
+	 * @throws InfiniteLoopException If the program doesn't terminate within <tt>maxCycles</tt> clock cycles.
+	 */
+	private static void execute(CPU cpu, long maxCycles) throws InfiniteLoopException {
+		ExecutionResult result = cpu.executeAll(maxCycles, 0, null);
+		if(result.getStatus() == ExecutionResult.Status.INFINITE_LOOP)
+			throw new InfiniteLoopException(result.getLoopStartAddress(), result.getLoopEndAddress());
+		else if(result.getStatus() != ExecutionResult.Status.FINISHED)
+			throw new InfiniteLoopException();
+	}
+
+	/**
+	 * Waits for the result of a task, rethrowing its exception.
+	 * @param <T> The type of the result.
+	 * @param future The result of the task.
+	 * @return The result.
+	 * @throws InvalidCPUException If the CPU could not be created.
+	 * @throws JSONException If a component's JSON is invalid.
+	 * @throws SyntaxErrorException If the code has errors.
+	 * @throws InfiniteLoopException If the program doesn't terminate.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	private static <T> T get(Future<T> future) throws InvalidCPUException, JSONException, SyntaxErrorException, InfiniteLoopException, InterruptedException {
+		try {
+			return future.get();
+		} catch(ExecutionException ex) {
+			if(ex.getCause() instanceof InvalidCPUException)
+				throw (InvalidCPUException)ex.getCause();
+			else if(ex.getCause() instanceof JSONException)
+				throw (JSONException)ex.getCause();
+			else if(ex.getCause() instanceof SyntaxErrorException)
+				throw (SyntaxErrorException)ex.getCause();
+			else if(ex.getCause() instanceof InfiniteLoopException)
+				throw (InfiniteLoopException)ex.getCause();
+			else
+				throw new IllegalStateException(ex.getCause());
+		}
+	}
+
+	/**
+	 * Task that executes the program with the latencies of a combination, on a new CPU.
+	 */
+	private final class SimulateTask implements Callable<Integer> {
+		/** The result with the latencies of the combinations. */
+		private final Exploration result;
+		/** The combination. */
+		private final int combination;
+		/** The code of the program. */
+		private final String code;
+		/** The maximum number of clock cycles. */
+		private final long maxCycles;
+
+		/**
+		 * Constructor.
+		 * @param result The result with the latencies of the combinations.
+		 * @param combination The combination.
+		 * @param code The code of the program.
+		 * @param maxCycles The maximum number of clock cycles (no limit if not positive).
+		 */
+		public SimulateTask(Exploration result, int combination, String code, long maxCycles) {
+			this.result = result;
+			this.combination = combination;
+			this.code = code;
+			this.maxCycles = maxCycles;
+		}
+
+		@Override
+		public Integer call() throws InvalidCPUException, JSONException, SyntaxErrorException, InfiniteLoopException {
+			CPU cpu = template.createCPU();
+			for(int k = 0; k < ids.size(); k++)
+				cpu.getComponent(ids.get(k)).setLatency(result.getLatency(combination, k));
+			cpu.calculatePerformance();
+			cpu.getAssembler().setSchedulingEnabled(scheduling);
+			cpu.assembleCode(code);
+			cpu.setHistoryEnabled(false);
+			execute(cpu, maxCycles);
+			return cpu.getNumberOfExecutedCycles();
+		}
+	}
+
+	/**
+	 * Task that evaluates a range of combinations on a new CPU.
+	 */
+	private final class EvaluateTask implements Callable<Void> {
+		/** The result where the clock periods are stored. */
+		private final Exploration result;
+		/** The first combination (inclusive). */
+		private final int start;
+		/** The last combination (exclusive). */
+		private final int end;
+
+		/**
+		 * Constructor.
+		 * @param result The result where the clock periods are stored.
+		 * @param start The first combination (inclusive).
+		 * @param end The last combination (exclusive).
+		 */
+		public EvaluateTask(Exploration result, int start, int end) {
+			this.result = result;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public Void call() throws InvalidCPUException, JSONException {
+			CPU cpu = template.createCPU();
+			Component[] components = new Component[ids.size()];
+			for(int k = 0; k < components.length; k++)
+				components[k] = cpu.getComponent(ids.get(k));
+
+			for(int c = start; c < end; c++) {
+				for(int k = 0; k < components.length; k++)
+					components[k].setLatency(result.getLatency(c, k));
+				result.clockPeriods[c] = cpu.calculateClockPeriod();
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * The result of an exploration.
+	 * <p>The combinations are numbered like the digits of a number, where the
+	 * last component changes the fastest.</p>
+	 */
+	public static final class Exploration {
+		/** The identifiers of the explored components. */
+		private final String[] ids;
+		/** The latencies tried for each component. */
+		private final int[][] latencies;
+		/** The distance between combinations that differ only in the latency of each component. */
+		private final int[] strides;
+		/** The number of executed clock cycles. */
+		private final int cycles;
+		/** The number of clock cycles of each combination, or <tt>null</tt> if they are all equal to <tt>cycles</tt>. */
+		private int[] combinationCycles = null;
+		/** The number of executed instructions. */
+		private final int instructions;
+		/** The clock period of each combination. */
+		private final int[] clockPeriods;
+		/** The combinations in the Pareto frontier, by increasing execution time. */
+		private int[] paretoFrontier;
+		/** Whether each combination is in the Pareto frontier. */
+		private boolean[] inParetoFrontier;
+		/** The sensitivity of the execution time to each component. */
+		private double[] sensitivities;
+		/** The components sorted by decreasing sensitivity. */
+		private int[] sensitivityRanking;
+
+		/**
+		 * Constructor.
+		 * @param ids The identifiers of the explored components.
+		 * @param latencies The latencies tried for each component.
+		 * @param cycles The number of executed clock cycles (with the latencies of the CPU file).
+		 * @param instructions The number of executed instructions.
+		 */
+		private Exploration(String[] ids, int[][] latencies, int cycles, int instructions) {
+			this.ids = ids;
+			this.latencies = latencies;
+			this.cycles = cycles;
+			this.instructions = instructions;
+			strides = new int[ids.length];
+			int n = 1;
+			for(int k = ids.length - 1; k >= 0; k--) {
+				strides[k] = n;
+				n *= latencies[k].length;
+			}
+			clockPeriods = new int[n];
+		}
+
+		/**
+		 * Sets the number of clock cycles of each combination, when it depends on the clock period.
+		 * @param cyclesByClockPeriod The number of clock cycles of each clock period of the combinations.
+		 */
+		private void setCycles(Map<Integer, Integer> cyclesByClockPeriod) {
+			combinationCycles = new int[clockPeriods.length];
+			for(int c = 0; c < clockPeriods.length; c++)
+				combinationCycles[c] = cyclesByClockPeriod.get(clockPeriods[c]);
+		}
+
+		/**
+		 * Determines the Pareto frontier and the sensitivities after all the combinations are evaluated.
+		 */
+		private void analyze() {
+			// Pareto frontier: sort by execution time (and decreasing total latency on ties)
+			Integer[] order = new Integer[clockPeriods.length];
+			for(int c = 0; c < order.length; c++)
+				order[c] = c;
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					if(getExecutionTime(a) != getExecutionTime(b))
+						return getExecutionTime(a) < getExecutionTime(b) ? -1 : 1;
+					else
+						return Long.compare(getTotalLatency(b), getTotalLatency(a));
+				}
+			});
+			List<Integer> frontier = new ArrayList<>();
+			long best = -1;
+			for(int c: order) {
+				if(getTotalLatency(c) > best) { // not dominated by a faster combination
+					frontier.add(c);
+					best = getTotalLatency(c);
+				}
+			}
+			paretoFrontier = new int[frontier.size()];
+			inParetoFrontier = new boolean[clockPeriods.length];
+			for(int i = 0; i < paretoFrontier.length; i++) {
+				paretoFrontier[i] = frontier.get(i);
+				inParetoFrontier[paretoFrontier[i]] = true;
+			}
+
+			// Sensitivity: average increase of the execution time from the lowest to the highest latency
+			sensitivities = new double[ids.length];
+			for(int k = 0; k < ids.length; k++)
+				sensitivities[k] = calculateSensitivity(k);
+			Integer[] ranking = new Integer[ids.length];
+			for(int k = 0; k < ranking.length; k++)
+				ranking[k] = k;
+			Arrays.sort(ranking, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return Double.compare(sensitivities[b], sensitivities[a]);
+				}
+			});
+			sensitivityRanking = new int[ranking.length];
+			for(int k = 0; k < ranking.length; k++)
+				sensitivityRanking[k] = ranking[k];
+		}
+
+		/**
+		 * Calculates the sensitivity of the execution time to a component.
+		 * @param k The index of the component.
+		 * @return The average increase of the execution time.
+		 */
+		private double calculateSensitivity(int k) {
+			int min = 0, max = 0;
+			for(int i = 1; i < latencies[k].length; i++) {
+				if(latencies[k][i] < latencies[k][min]) min = i;
+				if(latencies[k][i] > latencies[k][max]) max = i;
+			}
+			if(min == max) return 0;
+
+			// For each combination of the other components, compare the lowest and highest latency
+			long sum = 0;
+			int count = 0;
+			int offset = (max - min) * strides[k];
+			for(int c = 0; c < clockPeriods.length; c++) {
+				if((c / strides[k]) % latencies[k].length == min) {
+					sum += getExecutionTime(c + offset) - getExecutionTime(c);
+					count++;
+				}
+			}
+			return (double)sum / count;
+		}
+
+		/**
+		 * Returns the number of explored components.
+		 * @return The number of components.
+		 */
+		public int getNumberOfComponents() {
+			return ids.length;
+		}
+
+		/**
+		 * Returns the identifier of an explored component.
+		 * @param k The index of the component.
+		 * @return The identifier of the component.
+		 */
+		public String getComponentId(int k) {
+			return ids[k];
+		}
+
+		/**
+		 * Returns the number of evaluated combinations.
+		 * @return The number of combinations.
+		 */
+		public int getNumberOfCombinations() {
+			return clockPeriods.length;
+		}
+
+		/**
+		 * Returns the latency of a component in a combination.
+		 * @param c The index of the combination.
+		 * @param k The index of the component.
+		 * @return The latency.
+		 */
+		public int getLatency(int c, int k) {
+			return latencies[k][(c / strides[k]) % latencies[k].length];
+		}
+
+		/**
+		 * Returns the sum of the latencies of the explored components in a combination.
+		 * @param c The index of the combination.
+		 * @return The total latency.
+		 */
+		public long getTotalLatency(int c) {
+			long total = 0;
+			for(int k = 0; k < ids.length; k++)
+				total += getLatency(c, k);
+			return total;
+		}
+
+		/**
+		 * Returns whether the number of clock cycles depends on the latencies
+		 * (when the data memory has a multi-cycle timing model).
+		 * @return <tt>True</tt> if the combinations can have different numbers of clock cycles.
+		 */
+		public boolean isCyclesLatencyDependent() {
+			return combinationCycles != null;
+		}
+
+		/**
+		 * Returns the number of executed clock cycles of a combination.
+		 * @param c The index of the combination.
+		 * @return The number of cycles.
+		 */
+		public int getCycles(int c) {
+			return combinationCycles != null ? combinationCycles[c] : cycles;
+		}
+
+		/**
+		 * Returns the number of executed instructions.
+		 * @return The number of instructions.
+		 */
+		public int getInstructions() {
+			return instructions;
+		}
+
+		/**
+		 * Returns the clock period of a combination.
+		 * @param c The index of the combination.
+		 * @return The clock period (in LATENCY_UNIT unit).
+		 */
+		public int getClockPeriod(int c) {
+			return clockPeriods[c];
+		}
+
+		/**
+		 * Returns the execution time of a combination.
+		 * @param c The index of the combination.
+		 * @return The execution time (in LATENCY_UNIT unit).
+		 */
+		public long getExecutionTime(int c) {
+			return (long)getCycles(c) * (long)clockPeriods[c];
+		}
+
+		/**
+		 * Returns the combinations that are not dominated by any other.
+		 * <p>A combination dominates another if it is not slower and its total
+		 * latency is not lower, being better in at least one of them.</p>
+		 * @return The indexes of the combinations, by increasing execution time.
+		 */
+		public int[] getParetoFrontier() {
+			return paretoFrontier.clone();
+		}
+
+		/**
+		 * Returns whether a combination is in the Pareto frontier.
+		 * @param c The index of the combination.
+		 * @return <tt>True</tt> if the combination is in the frontier.
+		 */
+		public boolean isInParetoFrontier(int c) {
+			return inParetoFrontier[c];
+		}
+
+		/**
+		 * Returns the sensitivity of the execution time to the latency of a component.
+		 * <p>It is the average increase of the execution time when the latency of
+		 * the component changes from the lowest to the highest tried value, over
+		 * all the combinations of the other components.</p>
+		 * @param k The index of the component.
+		 * @return The sensitivity (in LATENCY_UNIT unit).
+		 */
+		public double getSensitivity(int k) {
+			return sensitivities[k];
+		}
+
+		/**
+		 * Returns the components sorted by decreasing sensitivity.
+		 * @return The indexes of the components.
+		 */
+		public int[] getSensitivityRanking() {
+			return sensitivityRanking.clone();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+/**
+ * Receiver of the events of the simulator, like an event recorder or profiler.
+ *
+ * <p>Each event is started by a <tt>begin</tt> method, which returns an
+ * opaque object (or <tt>null</tt> if that kind of event isn't being recorded),
+ * and is ended by the matching <tt>commit</tt> method, which receives that
+ * object and the values of the event's fields. The duration of the event is
+ * the time between the two calls.</p>
+ *
+ * <p>The sink is found with {@link java.util.ServiceLoader}, so an
+ * implementation is installed by adding it to the classpath with a
+ * <tt>META-INF/services/brunonova.drmips.simulator.EventSink</tt> file. The
+ * events are emitted through {@link SimulatorEvents}.</p>
+ *
+ * @author Bruno Nova
+ */
+public interface EventSink {
+	/**
+	 * Starts a phase of the loading of a CPU.
+	 * @return The event, or <tt>null</tt> if these events aren't being recorded.
+	 */
+	public Object beginCPULoad();
+
+	/**
+	 * Ends a phase of the loading of a CPU.
+	 * @param event The event returned by <tt>beginCPULoad()</tt>.
+	 * @param file The path of the CPU file.
+	 * @param phase The phase (one of the <tt>SimulatorEvents.CPU_LOAD_*</tt> constants).
+	 */
+	public void commitCPULoad(Object event, String file, String phase);
+
+	/**
+	 * Starts a phase of the assembly of a program.
+	 * @return The event, or <tt>null</tt> if these events aren't being recorded.
+	 */
+	public Object beginAssembly();
+
+	/**
+	 * Ends a phase of the assembly of a program.
+	 * @param event The event returned by <tt>beginAssembly()</tt>.
+	 * @param phase The phase (one of the <tt>SimulatorEvents.ASSEMBLY_*</tt> constants).
+	 * @param lines The number of lines processed.
+	 * @param instructions The number of instructions (or lines of code for the first pass).
+	 * @param errors The number of syntax errors found.
+	 */
+	public void commitAssembly(Object event, String phase, int lines, int instructions, int errors);
+
+	/**
+	 * Starts an execution of a program (<tt>CPU.executeAll(long, long, ExecutionListener)</tt>).
+	 * @return The event, or <tt>null</tt> if these events aren't being recorded.
+	 */
+	public Object beginExecution();
+
+	/**
+	 * Ends an execution of a program.
+	 * @param event The event returned by <tt>beginExecution()</tt>.
+	 * @param file The path of the CPU file, or <tt>null</tt>.
+	 * @param cycles The number of clock cycles executed.
+	 * @param instructions The number of instructions executed.
+	 * @param status Why the execution stopped.
+	 */
+	public void commitExecution(Object event, String file, long cycles, long instructions, String status);
+
+	/**
+	 * Starts a restoration of a previous state of the CPU.
+	 * @return The event, or <tt>null</tt> if these events aren't being recorded.
+	 */
+	public Object beginRestore();
+
+	/**
+	 * Ends a restoration of a previous state of the CPU.
+	 * @param event The event returned by <tt>beginRestore()</tt>.
+	 * @param operation The operation (one of the <tt>SimulatorEvents.RESTORE_*</tt> constants).
+	 * @param fromCycle The clock cycle before the restoration, which is also the size of the history.
+	 * @param toCycle The clock cycle after the restoration.
+	 */
+	public void commitRestore(Object event, String operation, long fromCycle, long toCycle);
+
+	/**
+	 * Starts a refresh of the user interface.
+	 * @return The event, or <tt>null</tt> if these events aren't being recorded.
+	 */
+	public Object beginGUIRefresh();
+
+	/**
+	 * Ends a refresh of the user interface.
+	 * @param event The event returned by <tt>beginGUIRefresh()</tt>.
+	 * @param view The refreshed view.
+	 * @param cycle The displayed clock cycle.
+	 */
+	public void commitGUIRefresh(Object event, String view, long cycle);
+}
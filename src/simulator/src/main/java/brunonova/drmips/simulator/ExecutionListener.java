@@ -0,0 +1,36 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+/**
+ * Listener that is notified periodically while a CPU executes a program with
+ * {@link CPU#executeAll(long, long, ExecutionListener)}, and that can stop the
+ * execution.
+ *
+ * @author Bruno Nova
+ */
+public interface ExecutionListener {
+	/**
+	 * Called every {@link CPU#EXECUTION_PROGRESS_INTERVAL} executed clock cycles.
+	 * <p>This method is called in the thread that is executing the program.</p>
+	 * @param cycles The number of clock cycles executed so far in this execution.
+	 * @return <tt>True</tt> to continue the execution, or <tt>false</tt> to stop it.
+	 */
+	public boolean executionProgress(long cycles);
+}
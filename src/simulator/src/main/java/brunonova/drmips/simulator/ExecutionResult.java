@@ -0,0 +1,202 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+/**
+ * The result of executing a program with {@link CPU#executeAll(long, long, ExecutionListener)},
+ * with a snapshot of the state of the CPU when the execution ended.
+ *
+ * @author Bruno Nova
+ */
+public final class ExecutionResult {
+	/** The reasons why an execution ended. */
+	public enum Status {
+		/** The program finished. */
+		FINISHED,
+		/** The breakpoint was reached. */
+		BREAKPOINT,
+		/** The maximum number of clock cycles was executed (possible infinite loop). */
+		CYCLE_LIMIT,
+		/** The state of the CPU repeated (certain infinite loop). */
+		INFINITE_LOOP,
+		/** The maximum execution time was exceeded. */
+		TIME_LIMIT,
+		/** The execution was stopped by the listener. */
+		STOPPED
+	}
+
+	/** Why the execution ended. */
+	private final Status status;
+	/** The number of clock cycles executed. */
+	private final long cycles;
+	/** The time spent executing, in milliseconds. */
+	private final long time;
+	/** The total number of clock cycles executed by the CPU. */
+	private final int totalCycles;
+	/** The total number of instructions executed by the CPU. */
+	private final int totalInstructions;
+	/** The address in the PC. */
+	private final int pcAddress;
+	/** The values of the registers. */
+	private final int[] registers;
+	/** The number of clock cycles of an iteration of the infinite loop (0 if none). */
+	private final long loopLength;
+	/** The lowest address of the instructions in the infinite loop. */
+	private final int loopStartAddress;
+	/** The highest address of the instructions in the infinite loop. */
+	private final int loopEndAddress;
+
+	/**
+	 * Constructor that takes the snapshot of the CPU.
+	 * @param cpu The CPU that executed the program.
+	 * @param status Why the execution ended.
+	 * @param cycles The number of clock cycles executed.
+	 * @param time The time spent executing, in milliseconds.
+	 */
+	ExecutionResult(CPU cpu, Status status, long cycles, long time) {
+		this(cpu, status, cycles, time, null);
+	}
+
+	/**
+	 * Constructor that takes the snapshot of the CPU.
+	 * @param cpu The CPU that executed the program.
+	 * @param status Why the execution ended.
+	 * @param cycles The number of clock cycles executed.
+	 * @param time The time spent executing, in milliseconds.
+	 * @param loop The detector of infinite loops used in the execution, or <tt>null</tt>.
+	 */
+	ExecutionResult(CPU cpu, Status status, long cycles, long time, LoopDetector loop) {
+		this.status = status;
+		this.cycles = cycles;
+		this.time = time;
+		totalCycles = cpu.getNumberOfExecutedCycles();
+		totalInstructions = cpu.getNumberOfExecutedInstructions();
+		pcAddress = cpu.getPC().getAddress().getValue();
+		registers = new int[cpu.getRegBank().getNumberOfRegisters()];
+		for(int i = 0; i < registers.length; i++)
+			registers[i] = cpu.getRegBank().getRegister(i).getValue();
+		if(loop != null && loop.isLoopFound()) {
+			loopLength = loop.getLoopLength();
+			loopStartAddress = loop.getStartAddress();
+			loopEndAddress = loop.getEndAddress();
+		}
+		else {
+			loopLength = 0;
+			loopStartAddress = loopEndAddress = -1;
+		}
+	}
+
+	/**
+	 * Returns why the execution ended.
+	 * @return Why the execution ended.
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns whether the execution ended because a limit was reached.
+	 * @return <tt>True</tt> if the cycle or time limit was reached.
+	 */
+	public boolean isLimitReached() {
+		return status == Status.CYCLE_LIMIT || status == Status.TIME_LIMIT;
+	}
+
+	/**
+	 * Returns the number of clock cycles of an iteration of the infinite loop.
+	 * @return The length of the loop, or 0 if the status isn't <tt>INFINITE_LOOP</tt>.
+	 */
+	public long getLoopLength() {
+		return loopLength;
+	}
+
+	/**
+	 * Returns the lowest address of the instructions in the infinite loop.
+	 * @return The lowest address, or -1 if the status isn't <tt>INFINITE_LOOP</tt>.
+	 */
+	public int getLoopStartAddress() {
+		return loopStartAddress;
+	}
+
+	/**
+	 * Returns the highest address of the instructions in the infinite loop.
+	 * @return The highest address, or -1 if the status isn't <tt>INFINITE_LOOP</tt>.
+	 */
+	public int getLoopEndAddress() {
+		return loopEndAddress;
+	}
+
+	/**
+	 * Returns the number of clock cycles executed in this execution.
+	 * @return The number of clock cycles executed.
+	 */
+	public long getCycles() {
+		return cycles;
+	}
+
+	/**
+	 * Returns the time spent executing.
+	 * @return The time spent executing, in milliseconds.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns the total number of clock cycles executed by the CPU when the execution ended.
+	 * @return The total number of clock cycles.
+	 */
+	public int getTotalCycles() {
+		return totalCycles;
+	}
+
+	/**
+	 * Returns the total number of instructions executed by the CPU when the execution ended.
+	 * @return The total number of instructions.
+	 */
+	public int getTotalInstructions() {
+		return totalInstructions;
+	}
+
+	/**
+	 * Returns the address in the PC when the execution ended.
+	 * @return The address in the PC.
+	 */
+	public int getPCAddress() {
+		return pcAddress;
+	}
+
+	/**
+	 * Returns the value of a register when the execution ended.
+	 * @param index The index of the register.
+	 * @return The value of the register.
+	 * @throws ArrayIndexOutOfBoundsException If the index is invalid.
+	 */
+	public int getRegister(int index) throws ArrayIndexOutOfBoundsException {
+		return registers[index];
+	}
+
+	/**
+	 * Returns the number of registers in the snapshot.
+	 * @return The number of registers.
+	 */
+	public int getNumberOfRegisters() {
+		return registers.length;
+	}
+}
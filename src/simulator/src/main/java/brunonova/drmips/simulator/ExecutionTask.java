@@ -0,0 +1,184 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executes the program loaded in a CPU in a background thread.
+ *
+ * <p>The execution runs until the program finishes, the breakpoint is reached,
+ * one of the limits (clock cycles or time) is reached or {@link #stop()} is
+ * called. The listener is notified of the progress and when the execution
+ * ends, in the executing thread, so graphical interfaces must forward the
+ * notifications to their own thread. The result, with a snapshot of the CPU's
+ * final state, is returned by {@link #getResult()}.</p>
+ *
+ * <p><b>The CPU must not be used by other threads until the execution ends.</b></p>
+ *
+ * @author Bruno Nova
+ */
+public class ExecutionTask {
+	/** The default executor, created when first needed. */
+	private static ExecutorService defaultExecutor = null;
+
+	/** The listener, or <tt>null</tt>. */
+	private final Listener listener;
+	/** The underlying task. */
+	private final FutureTask<ExecutionResult> task;
+	/** Whether the execution was asked to stop. */
+	private volatile boolean stopRequested = false;
+	/** The number of clock cycles executed so far. */
+	private volatile long cycles = 0;
+
+	/**
+	 * Constructor.
+	 * @param cpu The CPU with the program to execute.
+	 * @param maxCycles The maximum number of clock cycles to execute (no limit if not positive).
+	 * @param maxTime The maximum execution time, in milliseconds (no limit if not positive).
+	 * @param listener The listener, or <tt>null</tt>.
+	 */
+	public ExecutionTask(final CPU cpu, final long maxCycles, final long maxTime, Listener listener) {
+		this.listener = listener;
+		task = new FutureTask<ExecutionResult>(new Callable<ExecutionResult>() {
+			@Override
+			public ExecutionResult call() {
+				return cpu.executeAll(maxCycles, maxTime, new ExecutionListener() {
+					@Override
+					public boolean executionProgress(long c) {
+						cycles = c;
+						if(ExecutionTask.this.listener != null)
+							ExecutionTask.this.listener.executionProgress(ExecutionTask.this, c);
+						return !stopRequested;
+					}
+				});
+			}
+		}) {
+			@Override
+			protected void done() {
+				if(ExecutionTask.this.listener != null)
+					ExecutionTask.this.listener.executionFinished(ExecutionTask.this);
+			}
+		};
+	}
+
+	/**
+	 * Starts the execution in the default executor (a pool of daemon threads).
+	 * @return This task.
+	 */
+	public ExecutionTask start() {
+		return start(getDefaultExecutor());
+	}
+
+	/**
+	 * Starts the execution in the given executor.
+	 * @param executor The executor.
+	 * @return This task.
+	 */
+	public ExecutionTask start(Executor executor) {
+		executor.execute(task);
+		return this;
+	}
+
+	/**
+	 * Asks the execution to stop.
+	 * <p>The execution stops at the next progress notification, with the
+	 * {@link ExecutionResult.Status#STOPPED} status.</p>
+	 */
+	public void stop() {
+		stopRequested = true;
+	}
+
+	/**
+	 * Returns whether the execution was asked to stop.
+	 * @return <tt>True</tt> if {@link #stop()} was called.
+	 */
+	public boolean isStopRequested() {
+		return stopRequested;
+	}
+
+	/**
+	 * Returns whether the execution has ended.
+	 * @return <tt>True</tt> if the execution has ended.
+	 */
+	public boolean isDone() {
+		return task.isDone();
+	}
+
+	/**
+	 * Returns the number of clock cycles executed so far (updated at each progress notification).
+	 * @return The number of clock cycles executed so far.
+	 */
+	public long getCycles() {
+		return cycles;
+	}
+
+	/**
+	 * Returns the result of the execution, waiting for it to end if needed.
+	 * @return The result of the execution.
+	 * @throws InterruptedException If the current thread was interrupted while waiting.
+	 * @throws ExecutionException If the execution threw an exception.
+	 */
+	public ExecutionResult getResult() throws InterruptedException, ExecutionException {
+		return task.get();
+	}
+
+	/**
+	 * Returns the default executor, creating it if needed.
+	 * @return The default executor.
+	 */
+	private static synchronized ExecutorService getDefaultExecutor() {
+		if(defaultExecutor == null) {
+			defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "CPU execution");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return defaultExecutor;
+	}
+
+	/**
+	 * Listener of an execution task.
+	 * <p>The methods are called in the executing thread.</p>
+	 */
+	public interface Listener {
+		/**
+		 * Called periodically while the program is being executed.
+		 * @param task The task.
+		 * @param cycles The number of clock cycles executed so far.
+		 */
+		public void executionProgress(ExecutionTask task, long cycles);
+
+		/**
+		 * Called when the execution ends (the result can be obtained with {@link ExecutionTask#getResult()}).
+		 * @param task The task.
+		 */
+		public void executionFinished(ExecutionTask task);
+	}
+}
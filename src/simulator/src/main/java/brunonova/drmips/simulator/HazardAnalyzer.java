@@ -0,0 +1,590 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.components.RegBank;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Static analysis of the hazards of a program in a pipelined CPU, and an
+ * instruction scheduler that removes them.
+ *
+ * <p>The hazards are predicted according to the units present in the CPU:
+ * the forwarding unit, the hazard detection unit, the internal forwarding of
+ * the register bank and the flush of the pipeline on taken branches. Along the
+ * path where no branch is taken, the analyzer predicts:</p>
+ * <ul>
+ * <li><b>stalls</b>: the load-use stalls that the hazard detection unit will
+ *     cause, attributed to the load (like in the {@link InstructionProfile});</li>
+ * <li><b>data hazards</b>: the registers that an instruction will read before
+ *     they are written, because the CPU can't forward the value in time or
+ *     stall;</li>
+ * <li><b>control hazards</b>: the branches followed by instructions that are
+ *     executed even if the branch is taken, because the CPU doesn't flush the
+ *     pipeline.</li>
+ * </ul>
+ *
+ * <p>The scheduler ({@link #schedule()}) reorders the independent instructions
+ * of each basic block, by list scheduling, to avoid the stalls and the data
+ * hazards. When no instruction can be issued without a data hazard, and in the
+ * instructions that follow a branch in CPUs that don't flush the pipeline, it
+ * inserts the <tt>nop</tt> instructions needed, so the program runs correctly
+ * in CPUs without hazard detection.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class HazardAnalyzer {
+	/** The mnemonic of the instruction inserted by the scheduler. */
+	public static final String NOP_MNEMONIC = "nop";
+	/** Marks a <tt>nop</tt> in the order returned by <tt>schedule()</tt>. */
+	public static final int NOP = -1;
+
+	/** The CPU. */
+	private final CPU cpu;
+	/** The analyzed instructions. */
+	private final List<AssembledInstruction> instructions;
+	/** Whether the CPU is pipelined. */
+	private final boolean pipeline;
+	/** Whether the CPU has a forwarding unit. */
+	private final boolean forwarding;
+	/** Whether the CPU has a hazard detection unit. */
+	private final boolean hazardDetection;
+	/** Whether the register bank forwards the value being written to the registers being read. */
+	private final boolean regBankForwarding;
+	/** Whether the CPU flushes the pipeline on taken branches. */
+	private final boolean branchFlush;
+	/** The number of instructions fetched after a branch before it is resolved (in the first MEM stage). */
+	private final int branchShadow;
+	/** The number of cycles after which a register is read with its written value, in the worst case. */
+	private final int maxGap;
+	/** The gap of the values forwarded from the EX/MEM register. */
+	private final int exMemGap;
+	/** The gap of the values forwarded from the MEM/WB register. */
+	private final int memWbGap;
+
+	/** The register written by each instruction, or <tt>-1</tt>. */
+	private final int[] dest;
+	/** The registers read by each instruction. */
+	private final int[][] sources;
+	/** The <tt>rs</tt> field of each instruction, or <tt>-1</tt>. */
+	private final int[] rs;
+	/** The <tt>rt</tt> field of each instruction, or <tt>-1</tt>. */
+	private final int[] rt;
+	/** Whether each instruction reads from the data memory. */
+	private final boolean[] load;
+	/** Whether each instruction writes to the data memory. */
+	private final boolean[] store;
+	/** Whether each instruction is a branch or jump. */
+	private final boolean[] branch;
+	/** Whether each instruction writes to the HI and LO registers. */
+	private final boolean[] writesHiLo;
+	/** Whether each instruction reads from the HI and LO registers. */
+	private final boolean[] readsHiLo;
+
+	/** The predicted stalls caused by each instruction. */
+	private final int[] stalls;
+	/** The predicted data hazards of each instruction. */
+	private final int[] dataHazards;
+	/** Whether each instruction is a branch with a control hazard. */
+	private final boolean[] controlHazards;
+	/** The total number of predicted stalls. */
+	private int totalStalls = 0;
+	/** The total number of predicted data hazards. */
+	private int totalDataHazards = 0;
+	/** The total number of control hazards. */
+	private int totalControlHazards = 0;
+
+	/**
+	 * Analyzes the given instructions for the given CPU.
+	 * @param cpu The CPU.
+	 * @param instructions The assembled instructions, with their labels.
+	 */
+	public HazardAnalyzer(CPU cpu, List<AssembledInstruction> instructions) {
+		this.cpu = cpu;
+		this.instructions = instructions;
+		pipeline = cpu.isPipeline();
+		forwarding = cpu.hasForwardingUnit();
+		hazardDetection = cpu.hasHazardDetectionUnit();
+		regBankForwarding = cpu.getRegBank().isForwarding();
+		branchFlush = pipeline && cpu.getIfIdReg().getFlush().isConnected();
+		if(pipeline) { // the distances between the stages where the values are produced and used
+			int id = cpu.getStageStartedBy(cpu.getIfIdReg()), ex = cpu.getStageStartedBy(cpu.getIdExReg());
+			int mem = cpu.getStageStartedBy(cpu.getExMemReg()), wb = cpu.getStageStartedBy(cpu.getMemWbReg());
+			branchShadow = mem;
+			maxGap = wb - id + 1;
+			exMemGap = mem - ex;
+			memWbGap = wb - ex;
+		}
+		else
+			branchShadow = maxGap = exMemGap = memWbGap = 0;
+
+		int n = instructions.size();
+		dest = new int[n];
+		sources = new int[n][];
+		rs = new int[n];
+		rt = new int[n];
+		load = new boolean[n];
+		store = new boolean[n];
+		branch = new boolean[n];
+		writesHiLo = new boolean[n];
+		readsHiLo = new boolean[n];
+		for(int i = 0; i < n; i++)
+			decode(i);
+
+		stalls = new int[n];
+		dataHazards = new int[n];
+		controlHazards = new boolean[n];
+		if(pipeline)
+			analyze();
+	}
+
+	/**
+	 * Finds the registers and resources used by an instruction, from the
+	 * instruction set's control.
+	 * @param i The index of the instruction.
+	 */
+	private void decode(int i) {
+		AssembledInstruction instruction = instructions.get(i);
+		InstructionType type = instruction.getInstruction().getType();
+		int data = instruction.getData().getValue();
+		Control control = cpu.getInstructionSet().getControl();
+		ControlALU controlALU = cpu.getInstructionSet().getControlALU();
+		RegBank regbank = cpu.getRegBank();
+		int opcode = type.getOpCodeField().getValueFromField(data);
+
+		rs[i] = getField(type, "rs", data);
+		rt[i] = getField(type, "rt", data);
+		int rd = getField(type, "rd", data);
+		boolean jump = control.getOutOfOpcode(opcode, "Jump") != 0;
+		load[i] = control.getOutOfOpcode(opcode, "MemRead") != 0;
+		store[i] = control.getOutOfOpcode(opcode, "MemWrite") != 0;
+		branch[i] = jump || control.getOutOfOpcode(opcode, "Branch") != 0;
+
+		// Destination register (constant registers are never written)
+		dest[i] = -1;
+		if(control.getOutOfOpcode(opcode, "RegWrite") != 0) {
+			int reg = control.getOutOfOpcode(opcode, "RegDst") != 0 ? rd : rt[i];
+			if(reg >= 0 && reg < regbank.getNumberOfRegisters() && !regbank.isRegisterConstant(reg))
+				dest[i] = reg;
+		}
+
+		// Source registers: rs is always an operand of the ALU, rt only if
+		// it is the 2nd operand or the value to store
+		List<Integer> regs = new ArrayList<>(2);
+		if(!jump) {
+			if(rs[i] >= 0 && rs[i] < regbank.getNumberOfRegisters() && !regbank.isRegisterConstant(rs[i]))
+				regs.add(rs[i]);
+			if((control.getOutOfOpcode(opcode, "ALUSrc") == 0 || store[i]) && rt[i] != rs[i]
+				&& rt[i] >= 0 && rt[i] < regbank.getNumberOfRegisters() && !regbank.isRegisterConstant(rt[i]))
+				regs.add(rt[i]);
+		}
+		sources[i] = new int[regs.size()];
+		for(int j = 0; j < sources[i].length; j++)
+			sources[i][j] = regs.get(j);
+
+		// Operations with the HI and LO registers of the extended ALU
+		int func = data & ((1 << controlALU.getFuncSize()) - 1);
+		int operation = controlALU.getControlValue(control.getOutOfOpcode(opcode, "ALUOp"), func, "Operation");
+		switch(controlALU.getOperation(operation)) {
+			case MULT: case DIV: writesHiLo[i] = true; break;
+			case MFHI: case MFLO: readsHiLo[i] = true; break;
+		}
+	}
+
+	/**
+	 * Returns the value of a field of an instruction.
+	 * @param type The type of the instruction.
+	 * @param id The identifier of the field.
+	 * @param data The instruction in machine code.
+	 * @return The value of the field, or <tt>-1</tt> if the type doesn't have it.
+	 */
+	private static int getField(InstructionType type, String id, int data) {
+		InstructionType.Field field = type.getField(id);
+		return field != null ? field.getValueFromField(data) : -1;
+	}
+
+	/**
+	 * Returns whether an instruction has no effect (like <tt>nop</tt>).
+	 * @param i The index of the instruction.
+	 * @return <tt>True</tt> if the instruction has no effect.
+	 */
+	private boolean isNop(int i) {
+		return dest[i] < 0 && sources[i].length == 0 && !load[i] && !store[i] && !branch[i] && !writesHiLo[i] && !readsHiLo[i];
+	}
+
+	/**
+	 * Predicts the hazards of the instructions in their current order.
+	 */
+	private void analyze() {
+		Pipeline p = new Pipeline();
+		int n = instructions.size();
+		for(int i = 0; i < n; i++) {
+			int stall = p.stallBefore(i);
+			if(stall > 0) {
+				stalls[i - 1] += stall;
+				totalStalls += stall;
+			}
+			dataHazards[i] = p.hazards(i, stall);
+			totalDataHazards += dataHazards[i];
+			p.issue(i, stall);
+
+			if(branch[i] && !branchFlush) {
+				for(int j = i + 1; j <= i + branchShadow && j < n; j++) {
+					if(!isNop(j)) {
+						controlHazards[i] = true;
+						totalControlHazards++;
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reorders the instructions within each basic block to avoid stalls and
+	 * data hazards, and inserts the <tt>nop</tt>s needed in CPUs without
+	 * hazard detection.
+	 *
+	 * <p>The basic blocks start at the labeled instructions and after the
+	 * branches, which stay at the end of their blocks. The instructions that
+	 * have no effect are removed, and only the needed <tt>nop</tt>s are
+	 * inserted (if the instruction set has the <tt>nop</tt> instruction).
+	 * Non-pipelined CPUs don't have hazards, so the order is kept.</p>
+	 * @return The index of each instruction in the new order, or <tt>NOP</tt> for an inserted <tt>nop</tt>.
+	 *         The first instruction of each block always follows the instructions of the previous block.
+	 */
+	public int[] schedule() {
+		int n = instructions.size();
+		List<Integer> order = new ArrayList<>(n);
+		boolean insertNops = pipeline && cpu.getInstructionSet().hasInstruction(NOP_MNEMONIC);
+		if(!pipeline) {
+			for(int i = 0; i < n; i++)
+				order.add(i);
+		}
+		else {
+			Pipeline p = new Pipeline();
+			for(int start = 0, end; start < n; start = end + 1) {
+				end = start;
+				while(end + 1 < n && !branch[end] && instructions.get(end + 1).getLabels().isEmpty())
+					end++;
+				scheduleBlock(start, end, p, order, insertNops);
+				if(branch[end] && !branchFlush && insertNops) {
+					for(int i = 0; i < branchShadow; i++) {
+						p.issue(NOP, 0);
+						order.add(NOP);
+					}
+				}
+			}
+		}
+
+		int[] result = new int[order.size()];
+		for(int i = 0; i < result.length; i++)
+			result[i] = order.get(i);
+		return result;
+	}
+
+	/**
+	 * Schedules the instructions of a basic block.
+	 * @param start The index of the first instruction of the block.
+	 * @param end The index of the last instruction of the block.
+	 * @param p The state of the pipeline after the previous blocks.
+	 * @param order The order of the instructions, where the block is added.
+	 * @param insertNops Whether <tt>nop</tt>s can be inserted (and removed).
+	 */
+	private void scheduleBlock(int start, int end, Pipeline p, List<Integer> order, boolean insertNops) {
+		int size = end - start + 1;
+		boolean[][] deps = new boolean[size][size]; // deps[k][j]: k must follow j
+		int[] height = new int[size];
+		int[] pending = new int[size];
+		boolean[] done = new boolean[size];
+		int remaining = 0;
+
+		for(int k = 0; k < size; k++) {
+			if(insertNops && isNop(start + k)) {
+				done[k] = true; // removed, the needed nops are inserted again
+				continue;
+			}
+			remaining++;
+			for(int j = 0; j < k; j++) {
+				if(!done[j] && dependsOn(start + k, start + j)) {
+					deps[k][j] = true;
+					pending[k]++;
+				}
+			}
+		}
+
+		// The priority is the length of the longest chain of dependencies to the end of the block
+		for(int j = size - 1; j >= 0; j--) {
+			height[j] = 1;
+			for(int k = j + 1; k < size; k++) {
+				if(deps[k][j])
+					height[j] = Math.max(height[j], height[k] + minimumGap(start + j, start + k));
+			}
+		}
+
+		while(remaining > 0) {
+			int best = -1, bestStall = 0, bestHazards = Integer.MAX_VALUE;
+			for(int k = 0; k < size; k++) {
+				if(done[k] || pending[k] > 0) continue;
+				int stall = p.stallBefore(start + k);
+				int hazards = p.hazards(start + k, stall);
+				if(best < 0 || hazards < bestHazards
+					|| (hazards == bestHazards && (stall < bestStall || (stall == bestStall && height[k] > height[best])))) {
+					best = k;
+					bestStall = stall;
+					bestHazards = hazards;
+				}
+			}
+
+			if(bestHazards > 0 && insertNops) { // wait for the values
+				p.issue(NOP, 0);
+				order.add(NOP);
+				continue;
+			}
+
+			p.issue(start + best, bestStall);
+			order.add(start + best);
+			done[best] = true;
+			remaining--;
+			for(int k = best + 1; k < size; k++) {
+				if(deps[k][best])
+					pending[k]--;
+			}
+		}
+	}
+
+	/**
+	 * Returns whether an instruction must be executed after a previous one of the same block.
+	 * @param k The index of the instruction.
+	 * @param j The index of the previous instruction.
+	 * @return <tt>True</tt> if the order of the instructions can't be changed.
+	 */
+	private boolean dependsOn(int k, int j) {
+		if(branch[k] || branch[j]) return true;
+		if(dest[j] >= 0 && (dest[j] == dest[k] || reads(k, dest[j]))) return true; // RAW and WAW
+		if(dest[k] >= 0 && reads(j, dest[k])) return true; // WAR
+		if((writesHiLo[j] && (writesHiLo[k] || readsHiLo[k])) || (readsHiLo[j] && writesHiLo[k])) return true;
+		return (store[j] && (load[k] || store[k])) || (load[j] && store[k]); // memory (no alias analysis)
+	}
+
+	/**
+	 * Returns whether an instruction reads a register.
+	 * @param i The index of the instruction.
+	 * @param reg The register.
+	 * @return <tt>True</tt> if the instruction reads the register.
+	 */
+	private boolean reads(int i, int reg) {
+		for(int r: sources[i]) {
+			if(r == reg) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the minimum number of cycles between the issue of two dependent
+	 * instructions, so that the second one doesn't stall or read an old value.
+	 * @param j The index of the first instruction.
+	 * @param k The index of the dependent instruction.
+	 * @return The minimum number of cycles.
+	 */
+	private int minimumGap(int j, int k) {
+		if(dest[j] < 0 || !reads(k, dest[j]))
+			return 1;
+		int gap = maxGap;
+		while(gap > 1 && isAvailable(gap - 1, load[j]))
+			gap--;
+		return gap;
+	}
+
+	/**
+	 * Returns whether the value written by an instruction can be read by
+	 * another that enters the ID stage some cycles later.
+	 * @param gap The number of cycles between the instructions in the ID stage.
+	 * @param fromLoad Whether the value is read from the data memory.
+	 * @return <tt>True</tt> if the correct value is read.
+	 */
+	private boolean isAvailable(int gap, boolean fromLoad) {
+		if(gap >= maxGap) // already written to the register bank
+			return true;
+		else if(gap == maxGap - 1) // being written to the register bank
+			return regBankForwarding;
+		else // forwarded from the EX/MEM (gap 1 in 5 stages) or MEM/WB (gap 2) registers
+			return forwarding && (gap == memWbGap || (gap == exMemGap && !fromLoad));
+	}
+
+	/**
+	 * Returns whether the CPU is pipelined (otherwise there are no hazards).
+	 * @return <tt>True</tt> if the CPU is pipelined.
+	 */
+	public boolean isPipeline() {
+		return pipeline;
+	}
+
+	/**
+	 * Returns whether the CPU flushes the pipeline on taken branches.
+	 * @return <tt>True</tt> if the pipeline is flushed.
+	 */
+	public boolean hasBranchFlush() {
+		return branchFlush;
+	}
+
+	/**
+	 * Returns the number of instructions fetched after a branch before it is
+	 * resolved, which are flushed if it is taken.
+	 * @return The number of instructions (3 in the classic 5-stage pipeline, 0 if not pipelined).
+	 */
+	public int getBranchShadow() {
+		return branchShadow;
+	}
+
+	/**
+	 * Returns the number of analyzed instructions.
+	 * @return The number of instructions.
+	 */
+	public int getNumberOfInstructions() {
+		return instructions.size();
+	}
+
+	/**
+	 * Returns the predicted number of stalls caused by an instruction (a load).
+	 * @param index The index of the instruction.
+	 * @return The number of stalls.
+	 */
+	public int getStalls(int index) {
+		return stalls[index];
+	}
+
+	/**
+	 * Returns the predicted number of registers that an instruction reads before they are written.
+	 * @param index The index of the instruction.
+	 * @return The number of data hazards.
+	 */
+	public int getDataHazards(int index) {
+		return dataHazards[index];
+	}
+
+	/**
+	 * Returns whether an instruction is a branch followed by instructions
+	 * that are executed even if the branch is taken.
+	 * @param index The index of the instruction.
+	 * @return <tt>True</tt> if the branch has a control hazard.
+	 */
+	public boolean isControlHazard(int index) {
+		return controlHazards[index];
+	}
+
+	/**
+	 * Returns the total number of predicted stalls.
+	 * @return The number of stalls.
+	 */
+	public int getNumberOfStalls() {
+		return totalStalls;
+	}
+
+	/**
+	 * Returns the total number of predicted data hazards.
+	 * @return The number of data hazards.
+	 */
+	public int getNumberOfDataHazards() {
+		return totalDataHazards;
+	}
+
+	/**
+	 * Returns the total number of control hazards.
+	 * @return The number of control hazards.
+	 */
+	public int getNumberOfControlHazards() {
+		return totalControlHazards;
+	}
+
+	/**
+	 * Returns whether the program has data or control hazards (stalls are not hazards).
+	 * @return <tt>True</tt> if the program may not run correctly in the CPU.
+	 */
+	public boolean hasHazards() {
+		return totalDataHazards > 0 || totalControlHazards > 0;
+	}
+
+	/**
+	 * The timing of the instructions issued to the pipeline.
+	 */
+	private final class Pipeline {
+		/** The cycle when the last instruction entered the ID stage. */
+		private int cycle = 0;
+		/** The cycle when the last instruction that writes each register entered the ID stage. */
+		private final int[] writeCycle = new int[cpu.getRegBank().getNumberOfRegisters()];
+		/** Whether the last write to each register is a load. */
+		private final boolean[] writeLoad = new boolean[cpu.getRegBank().getNumberOfRegisters()];
+		/** The last issued instruction, or <tt>NOP</tt>. */
+		private int previous = NOP;
+
+		/**
+		 * Creates an empty pipeline.
+		 */
+		public Pipeline() {
+			Arrays.fill(writeCycle, -maxGap);
+		}
+
+		/**
+		 * Returns the cycles the hazard detection unit will stall an instruction if issued now.
+		 * <p>Like the unit, compares the <tt>rt</tt> field of the previous
+		 * load with the <tt>rs</tt> and <tt>rt</tt> fields of the instruction.</p>
+		 * @param i The index of the instruction.
+		 * @return The number of stall cycles (0 or 1).
+		 */
+		public int stallBefore(int i) {
+			if(hazardDetection && previous != NOP && load[previous] && rt[previous] >= 0
+				&& (rt[previous] == rs[i] || rt[previous] == rt[i]))
+				return 1;
+			else
+				return 0;
+		}
+
+		/**
+		 * Returns the number of registers an instruction would read before they are written if issued now.
+		 * @param i The index of the instruction.
+		 * @param stall The stall cycles before the instruction.
+		 * @return The number of data hazards.
+		 */
+		public int hazards(int i, int stall) {
+			int count = 0;
+			for(int reg: sources[i]) {
+				if(!isAvailable(cycle + 1 + stall - writeCycle[reg], writeLoad[reg]))
+					count++;
+			}
+			return count;
+		}
+
+		/**
+		 * Issues an instruction.
+		 * @param i The index of the instruction, or <tt>NOP</tt>.
+		 * @param stall The stall cycles before the instruction.
+		 */
+		public void issue(int i, int stall) {
+			cycle += 1 + stall;
+			if(i != NOP && dest[i] >= 0) {
+				writeCycle[dest[i]] = cycle;
+				writeLoad[dest[i]] = load[i];
+			}
+			previous = i;
+		}
+	}
+}
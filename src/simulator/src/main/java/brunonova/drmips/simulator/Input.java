@@ -124,7 +124,7 @@ public final class Input extends IOPort {
 		int oldValue = getValue();
 		super.setValue(value);
 		if(getValue() != oldValue)
-			getComponent().execute(); // input changed, so execute the component's normal action
+			getComponent().callExecute(); // input changed, so execute the component's normal action
 	}
 	
 	/**
@@ -143,7 +143,7 @@ public final class Input extends IOPort {
 	protected void setAccumulatedLatency(int latency, boolean instructionDependent) {
 		this.accumulatedLatency = (latency >= 0) ? latency : 0;
 		if(changesComponentAccumulatedLatency)
-			getComponent().updateAccumulatedLatency(instructionDependent);
+			getComponent().callUpdateAccumulatedLatency(instructionDependent);
 	}
 	
 	/**
@@ -0,0 +1,248 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.components.PipelineRegister;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Execution profile of each instruction of the program loaded in a CPU.
+ *
+ * <p>Counts, for each instruction (by index in the instruction memory):</p>
+ * <ul>
+ * <li><b>executions</b>: the times the instruction completed (reached the
+ *     WB stage, in pipelined CPUs);</li>
+ * <li><b>cycles</b>: the clock cycles attributed to the instruction. Each
+ *     cycle is attributed to the oldest instruction in the pipeline (the next
+ *     one to complete), so the bubbles of stalls and flushes, and the cycles
+ *     spent waiting for the memory, are attributed to the instruction that
+ *     waits for them;</li>
+ * <li><b>stalls</b>: the stalls caused by the instruction, which is the load
+ *     in the (first) EX stage when the hazard detection unit detects a
+ *     load-use hazard;</li>
+ * <li><b>forwards</b>: the values forwarded to the instruction by the
+ *     forwarding unit, in the EX stage;</li>
+ * <li><b>flushes</b>: the times the instruction was discarded from the
+ *     pipeline (by a taken branch, for example).</li>
+ * </ul>
+ *
+ * <p>The counters are stored in arrays sized to the program and are updated
+ * with the global statistics of the CPU, including when a cycle is undone.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class InstructionProfile {
+	/** The CPU. */
+	private final CPU cpu;
+	/** The number of times each instruction completed. */
+	private final int[] executions;
+	/** The number of clock cycles attributed to each instruction. */
+	private final int[] cycles;
+	/** The number of stalls caused by each instruction. */
+	private final int[] stalls;
+	/** The number of forwards received by each instruction. */
+	private final int[] forwards;
+	/** The number of times each instruction was flushed. */
+	private final int[] flushes;
+
+	/**
+	 * Creates an empty profile for the program loaded in the CPU.
+	 * @param cpu The CPU.
+	 */
+	InstructionProfile(CPU cpu) {
+		this.cpu = cpu;
+		int n = cpu.getInstructionMemory().getNumberOfInstructions();
+		executions = new int[n];
+		cycles = new int[n];
+		stalls = new int[n];
+		forwards = new int[n];
+		flushes = new int[n];
+	}
+
+	/**
+	 * Adds (or removes) the current clock cycle to the profile.
+	 * <p>Called at the start of <tt>CPU.executeCycle()</tt> with <tt>delta = 1</tt>,
+	 * and after a "step back" with <tt>delta = -1</tt>.</p>
+	 * @param delta 1 to add the cycle, or -1 to remove it.
+	 */
+	void update(int delta) {
+		int index;
+		if(cpu.isPipeline()) {
+			List<PipelineRegister> regs = cpu.getPipelineRegisters();
+			PipelineRegister idEx = cpu.getIdExReg();
+			index = cpu.getMemWbReg().getCurrentInstructionIndex();
+			if(index >= 0) executions[index] += delta;
+
+			// Cycle attributed to the oldest instruction in the pipeline
+			index = getOldestInstructionIndex();
+			if(index >= 0) cycles[index] += delta;
+
+			index = idEx.getCurrentInstructionIndex();
+			if(index >= 0) {
+				if(cpu.hasHazardDetectionUnit() && cpu.getHazardDetectionUnit().getStall().getValue() != 0)
+					stalls[index] += delta;
+				if(cpu.hasForwardingUnit()) {
+					if(cpu.getForwardingUnit().getForwardA().getValue() != 0) forwards[index] += delta;
+					if(cpu.getForwardingUnit().getForwardB().getValue() != 0) forwards[index] += delta;
+				}
+			}
+
+			// Instructions discarded by flushing the next pipeline register
+			boolean pcKeeps = cpu.getPC().getWrite().getValue() == 0;
+			updateFlush(regs.get(0), cpu.getPC().getCurrentInstructionIndex(), pcKeeps, delta);
+			for(int i = 1; i < regs.size(); i++)
+				updateFlush(regs.get(i), regs.get(i - 1).getCurrentInstructionIndex(), keeps(regs.get(i - 1)), delta);
+		}
+		else {
+			index = cpu.getPC().getCurrentInstructionIndex();
+			if(index >= 0) {
+				executions[index] += delta;
+				cycles[index] += delta;
+			}
+		}
+	}
+
+	/**
+	 * Adds (or removes) the current clock cycle, in which the CPU waits for the
+	 * memory, to the profile.
+	 * <p>The cycle is only attributed to the oldest instruction, as nothing else
+	 * happens in it.</p>
+	 * @param delta 1 to add the cycle, or -1 to remove it.
+	 */
+	void updateMemoryStall(int delta) {
+		int index = getOldestInstructionIndex();
+		if(index >= 0) cycles[index] += delta;
+	}
+
+	/**
+	 * Returns the index of the oldest instruction in the CPU (the next one to complete).
+	 * @return The index of the instruction, or -1 if there is none.
+	 */
+	private int getOldestInstructionIndex() {
+		int index = -1;
+		for(int stage = cpu.getNumberOfStages() - 1; stage >= 0 && index < 0; stage--)
+			index = cpu.getStageInstructionIndex(stage);
+		return index;
+	}
+
+	/**
+	 * Returns whether a pipeline register keeps its instruction in the next cycle (is stalled).
+	 * @param reg The pipeline register.
+	 * @return <tt>True</tt> if the instruction stays in the register.
+	 */
+	private static boolean keeps(PipelineRegister reg) {
+		return reg.getWrite().getValue() == 0 && reg.getFlush().getValue() == 0;
+	}
+
+	/**
+	 * Counts the flush of the instruction that would enter a pipeline register.
+	 * @param reg The pipeline register.
+	 * @param index The index of the instruction in the previous stage.
+	 * @param kept Whether the previous stage keeps the instruction.
+	 * @param delta 1 to add the flush, or -1 to remove it.
+	 */
+	private void updateFlush(PipelineRegister reg, int index, boolean kept, int delta) {
+		if(index >= 0 && !kept && reg.getFlush().getValue() == 1)
+			flushes[index] += delta;
+	}
+
+	/**
+	 * Resets all the counters to zero.
+	 */
+	void reset() {
+		for(int i = 0; i < executions.length; i++) {
+			executions[i] = 0;
+			cycles[i] = 0;
+			stalls[i] = 0;
+			forwards[i] = 0;
+			flushes[i] = 0;
+		}
+	}
+
+	/**
+	 * Returns the number of instructions in the profile.
+	 * @return The number of instructions of the program.
+	 */
+	public int getNumberOfInstructions() {
+		return executions.length;
+	}
+
+	/**
+	 * Returns the number of times an instruction completed.
+	 * @param index The index of the instruction.
+	 * @return The number of executions.
+	 */
+	public int getExecutions(int index) {
+		return executions[index];
+	}
+
+	/**
+	 * Returns the number of clock cycles attributed to an instruction.
+	 * @param index The index of the instruction.
+	 * @return The number of cycles.
+	 */
+	public int getCycles(int index) {
+		return cycles[index];
+	}
+
+	/**
+	 * Returns the number of stalls caused by an instruction.
+	 * @param index The index of the instruction.
+	 * @return The number of stalls.
+	 */
+	public int getStalls(int index) {
+		return stalls[index];
+	}
+
+	/**
+	 * Returns the number of values forwarded to an instruction.
+	 * @param index The index of the instruction.
+	 * @return The number of forwards.
+	 */
+	public int getForwards(int index) {
+		return forwards[index];
+	}
+
+	/**
+	 * Returns the number of times an instruction was flushed from the pipeline.
+	 * @param index The index of the instruction.
+	 * @return The number of flushes.
+	 */
+	public int getFlushes(int index) {
+		return flushes[index];
+	}
+
+	/**
+	 * Writes the profile in CSV format, one line per instruction.
+	 * <p>The columns are the index, address, line number and code of the
+	 * instruction followed by its counters.</p>
+	 * @param out The writer (not closed).
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void writeCSV(Writer out) throws IOException {
+		out.write("index,address,line,code,executions,cycles,stalls,forwards,flushes\n");
+		for(int i = 0; i < executions.length; i++) {
+			AssembledInstruction instruction = cpu.getInstructionMemory().getInstruction(i);
+			out.write(i + "," + (i * (Data.DATA_SIZE / 8)) + "," + instruction.getLineNumber() + ",\""
+				+ instruction.getCodeLine().replace("\"", "\"\"") + "\"," + executions[i] + ","
+				+ cycles[i] + "," + stalls[i] + "," + forwards[i] + "," + flushes[i] + "\n");
+		}
+	}
+}
@@ -69,6 +69,22 @@ public class InstructionSet {
 		parseFile(path);
 	}
 
+	/**
+	 * Creates an instruction set from an already parsed JSON object.
+	 * @param json The JSON object of the instruction set.
+	 * @throws JSONException If the JSON object is malformed.
+	 * @throws InvalidInstructionSetException If the instruction set is invalid.
+	 * @throws ArrayIndexOutOfBoundsException If an array index is invalid somewhere.
+	 * @throws NumberFormatException If an opcode is not a number.
+	 */
+	InstructionSet(JSONObject json) throws JSONException, InvalidInstructionSetException, ArrayIndexOutOfBoundsException, NumberFormatException {
+		types = new ArrayList<>();
+		instructions = new TreeMap<>();
+		pseudoInstructions = new TreeMap<>();
+		control = new Control();
+		parseJSON(json);
+	}
+
 	/**
 	 * Adds an instruction type.
 	 * <p>All the type's fields should be defined before adding it.</p>.
@@ -228,13 +244,14 @@ public class InstructionSet {
 	 */
 	private void parseFile(String path) throws IOException, JSONException, InvalidInstructionSetException, ArrayIndexOutOfBoundsException {
 		BufferedReader reader = null;
-		String file = "", line;
+		StringBuilder file = new StringBuilder();
+		String line;
 
 		// Read file to String
 		try {
 			reader = new BufferedReader(new InputStreamReader(new FileInputStream(path), "UTF8"));
 			while((line = reader.readLine()) != null) 
-				file += line + "\n";
+				file.append(line).append('\n');
 			reader.close();
 		}
 		catch(IOException e) {
@@ -244,7 +261,17 @@ public class InstructionSet {
 			if(reader != null) reader.close();
 		}
 		
-		JSONObject json = new JSONObject(file);
+		parseJSON(new JSONObject(file.toString()));
+	}
+
+	/**
+	 * Parses the whole instruction set from the given JSON object.
+	 * @param json The JSON object of the instruction set.
+	 * @throws JSONException If the JSON object is malformed.
+	 * @throws InvalidInstructionSetException If the instruction set is invalid.
+	 * @throws ArrayIndexOutOfBoundsException If an array index is invalid somewhere.
+	 */
+	private void parseJSON(JSONObject json) throws JSONException, InvalidInstructionSetException, ArrayIndexOutOfBoundsException {
 		parseTypes(json.getJSONObject("types"));
 		parseInstructions(json.getJSONObject("instructions"));
 		if(json.has("pseudo")) parsePseudo(json.getJSONObject("pseudo"));
@@ -0,0 +1,274 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.components.DataMemory;
+import brunonova.drmips.simulator.exceptions.InvalidCPUException;
+import brunonova.drmips.simulator.exceptions.SyntaxErrorException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.json.JSONException;
+
+/**
+ * Simulation of the same program, on the same CPU, over many inputs.
+ *
+ * <p>The batch has <tt>L</tt> independent instances ("lanes") of a CPU,
+ * created from the same template. The program is assembled only once and
+ * loaded in all the lanes, which then receive their own inputs (values of
+ * registers and data memory positions). The history of the lanes is disabled,
+ * because they never go back. Each lane is executed to completion with
+ * {@link CPU#executeAll(long, long, ExecutionListener)}, so the results of
+ * each lane are the same as those of a separate execution.</p>
+ *
+ * <p>The inputs and results can be accessed "by lane" or as arrays with the
+ * value of a register or memory position in all the lanes
+ * (<tt>int[lane]</tt>), which is convenient to compare the results of all the
+ * inputs with the expected ones.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class LaneBatch {
+	/** The maximum number of lanes. */
+	public static final int MAXIMUM_LANES = 65536;
+
+	/** The lanes. */
+	private final CPU[] lanes;
+	/** The result of the last execution of each lane, or <tt>null</tt>. */
+	private final ExecutionResult[] results;
+
+	/**
+	 * Creates the lanes.
+	 * @param template The template of the CPU of the lanes.
+	 * @param numberOfLanes The number of lanes.
+	 * @throws InvalidCPUException If a lane could not be created.
+	 * @throws JSONException If a component's JSON is invalid.
+	 * @throws IllegalArgumentException If the number of lanes is invalid.
+	 */
+	public LaneBatch(CPUTemplate template, int numberOfLanes) throws InvalidCPUException, JSONException, IllegalArgumentException {
+		if(numberOfLanes < 1 || numberOfLanes > MAXIMUM_LANES)
+			throw new IllegalArgumentException("Invalid number of lanes: " + numberOfLanes + "!");
+		lanes = new CPU[numberOfLanes];
+		results = new ExecutionResult[numberOfLanes];
+		for(int i = 0; i < numberOfLanes; i++) {
+			lanes[i] = template.createCPU();
+			lanes[i].setHistoryEnabled(false); // the lanes never go back
+		}
+	}
+
+	/**
+	 * Sets whether the instructions are scheduled to avoid pipeline hazards
+	 * when the code is assembled.
+	 * @param enabled Whether to schedule the instructions.
+	 */
+	public void setSchedulingEnabled(boolean enabled) {
+		lanes[0].getAssembler().setSchedulingEnabled(enabled);
+	}
+
+	/**
+	 * Resets the data of all the lanes, assembles the code and loads it in all the lanes.
+	 * <p>The code is assembled only once, in the first lane. The others
+	 * receive the same instructions and the same initial data memory.</p>
+	 * @param code The code to assemble.
+	 * @throws SyntaxErrorException If the code has a syntax error.
+	 */
+	public void assembleCode(String code) throws SyntaxErrorException {
+		for(CPU lane: lanes)
+			lane.resetData();
+		lanes[0].assembleCode(code);
+
+		List<AssembledInstruction> instructions = new ArrayList<>(lanes[0].getInstructionMemory().getNumberOfInstructions());
+		for(int i = 0; i < lanes[0].getInstructionMemory().getNumberOfInstructions(); i++)
+			instructions.add(lanes[0].getInstructionMemory().getInstruction(i));
+		DataMemory memory = lanes[0].hasDataMemory() ? lanes[0].getDataMemory() : null;
+		for(int l = 1; l < lanes.length; l++) {
+			if(memory != null) {
+				for(int i = 0; i < memory.getMemorySize(); i++) {
+					if(memory.getDataInIndex(i) != 0)
+						lanes[l].getDataMemory().setDataInIndex(i, memory.getDataInIndex(i));
+				}
+			}
+			lanes[l].loadProgram(instructions);
+		}
+		for(int l = 0; l < lanes.length; l++)
+			results[l] = null;
+	}
+
+	/**
+	 * Returns the number of lanes.
+	 * @return The number of lanes.
+	 */
+	public int getNumberOfLanes() {
+		return lanes.length;
+	}
+
+	/**
+	 * Returns the CPU of a lane, with its state and statistics.
+	 * @param lane The index of the lane.
+	 * @return The CPU of the lane.
+	 */
+	public CPU getLane(int lane) {
+		return lanes[lane];
+	}
+
+	/**
+	 * Returns the result of the last execution of a lane.
+	 * @param lane The index of the lane.
+	 * @return The result, or <tt>null</tt> if the lane wasn't executed yet.
+	 */
+	public ExecutionResult getResult(int lane) {
+		return results[lane];
+	}
+
+	/**
+	 * Updates the value of a register in all the lanes.
+	 * @param reg The index of the register.
+	 * @param values The value of the register in each lane.
+	 * @throws IllegalArgumentException If the number of values is not the number of lanes.
+	 */
+	public void setRegister(int reg, int[] values) throws IllegalArgumentException {
+		checkLength(values);
+		for(int l = 0; l < lanes.length; l++)
+			lanes[l].getRegBank().setRegister(reg, values[l]);
+	}
+
+	/**
+	 * Returns the value of a register in all the lanes.
+	 * @param reg The index of the register.
+	 * @return The value of the register in each lane.
+	 */
+	public int[] getRegister(int reg) {
+		int[] values = new int[lanes.length];
+		for(int l = 0; l < lanes.length; l++)
+			values[l] = lanes[l].getRegBank().getRegister(reg).getValue();
+		return values;
+	}
+
+	/**
+	 * Updates the value of a data memory position in all the lanes.
+	 * @param address The address of the memory position.
+	 * @param values The value of the position in each lane.
+	 * @throws IllegalArgumentException If the number of values is not the number of lanes.
+	 */
+	public void setData(int address, int[] values) throws IllegalArgumentException {
+		checkLength(values);
+		for(int l = 0; l < lanes.length; l++)
+			lanes[l].getDataMemory().setData(address, values[l]);
+	}
+
+	/**
+	 * Returns the value of a data memory position in all the lanes.
+	 * @param address The address of the memory position.
+	 * @return The value of the position in each lane.
+	 */
+	public int[] getData(int address) {
+		int[] values = new int[lanes.length];
+		for(int l = 0; l < lanes.length; l++)
+			values[l] = lanes[l].getDataMemory().getData(address);
+		return values;
+	}
+
+	/**
+	 * Throws an exception if the number of values is not the number of lanes.
+	 * @param values The values of each lane.
+	 * @throws IllegalArgumentException If the number of values is wrong.
+	 */
+	private void checkLength(int[] values) throws IllegalArgumentException {
+		if(values.length != lanes.length)
+			throw new IllegalArgumentException("Expected " + lanes.length + " values, got " + values.length + "!");
+	}
+
+	/**
+	 * Executes the program in all the lanes until each one ends.
+	 * <p>The lanes are divided into <tt>threads</tt> groups of consecutive
+	 * lanes, which are executed in parallel, one lane after the other. The lanes
+	 * are independent, so the results don't depend on the number of
+	 * threads.</p>
+	 * @param maxCycles The maximum number of clock cycles of each lane (no limit if not positive).
+	 * @param threads The number of parallel threads.
+	 * @return The number of lanes that finished the program.
+	 * @throws InterruptedException If interrupted while waiting for the threads.
+	 */
+	public int executeAll(long maxCycles, int threads) throws InterruptedException {
+		int groups = Math.max(1, Math.min(threads, lanes.length));
+		if(groups == 1)
+			new Group(0, lanes.length, maxCycles).call();
+		else {
+			List<Callable<Void>> tasks = new ArrayList<>(groups);
+			for(int g = 0; g < groups; g++)
+				tasks.add(new Group(g * lanes.length / groups, (g + 1) * lanes.length / groups, maxCycles));
+			ForkJoinPool pool = new ForkJoinPool(groups);
+			try {
+				for(Future<Void> f: pool.invokeAll(tasks)) {
+					try {
+						f.get();
+					} catch(ExecutionException ex) {
+						if(ex.getCause() instanceof RuntimeException)
+							throw (RuntimeException)ex.getCause();
+						else
+							throw new IllegalStateException(ex.getCause());
+					}
+				}
+			}
+			finally {
+				pool.shutdown();
+			}
+		}
+
+		int finished = 0;
+		for(ExecutionResult result: results) {
+			if(result.getStatus() == ExecutionResult.Status.FINISHED)
+				finished++;
+		}
+		return finished;
+	}
+
+	/**
+	 * Group of consecutive lanes executed one after the other.
+	 */
+	private final class Group implements Callable<Void> {
+		/** The index of the first lane. */
+		private final int first;
+		/** The index after the last lane. */
+		private final int end;
+		/** The maximum number of clock cycles. */
+		private final long maxCycles;
+
+		/**
+		 * Creates the group.
+		 * @param first The index of the first lane.
+		 * @param end The index after the last lane.
+		 * @param maxCycles The maximum number of clock cycles (no limit if not positive).
+		 */
+		public Group(int first, int end, long maxCycles) {
+			this.first = first;
+			this.end = end;
+			this.maxCycles = maxCycles;
+		}
+
+		@Override
+		public Void call() {
+			for(int l = first; l < end; l++)
+				results[l] = lanes[l].executeAll(maxCycles, 0, null);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,549 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.components.DataMemory;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import org.json.JSONException;
+import org.json.JSONWriter;
+
+/**
+ * Analyzer of the locality of the memory accesses of a CPU.
+ *
+ * <p>Records the stream of instruction fetches and the stream of data memory
+ * reads and writes, and computes for each one:</p>
+ * <ul>
+ * <li><b>reuse distances</b>: the number of distinct blocks accessed between
+ *     two accesses to the same block. An access with reuse distance <tt>d</tt>
+ *     hits in a fully-associative LRU cache with more than <tt>d</tt> blocks,
+ *     so the histogram gives the miss ratio of all the cache sizes in a single
+ *     run;</li>
+ * <li><b>strides</b>: the distance, in bytes, between consecutive accesses.
+ *     The spatial locality is the fraction of the accesses that are to a
+ *     different position in the same or a neighbouring block.</li>
+ * </ul>
+ *
+ * <p>The reuse distances are counted with a Fenwick tree (binary indexed tree)
+ * indexed by the time of the last access to each block, so each access takes
+ * <tt>O(log n)</tt> time.</p>
+ *
+ * <p>The analyzer is attached to the CPU with
+ * {@link CPU#setLocalityAnalyzer(LocalityAnalyzer)}, and is updated in each
+ * clock cycle and undone with "step back" while the history of the CPU is
+ * enabled.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class LocalityAnalyzer {
+	/** The default size of the blocks, in bytes. */
+	public static final int DEFAULT_BLOCK_SIZE = 4;
+	/** The number of bytes in a memory position. */
+	private static final int WORD_SIZE = Data.DATA_SIZE / 8;
+	/** Initial capacity of the logs and the Fenwick trees. */
+	private static final int INITIAL_CAPACITY = 256;
+	/** Mask of the cycle log for an instruction fetch. */
+	private static final int FETCH = 1;
+	/** Mask of the cycle log for a data access. */
+	private static final int DATA = 2;
+
+	/** The size of the blocks, in bytes. */
+	private final int blockSize;
+	/** The stream of instruction fetches. */
+	private AccessStream instructions;
+	/** The stream of data memory accesses. */
+	private AccessStream data;
+	/** The streams accessed in each cycle recorded with the history enabled. */
+	private byte[] cycleLog = new byte[INITIAL_CAPACITY];
+	/** The number of cycles in the log. */
+	private int cycleLogSize = 0;
+
+	/**
+	 * Creates an analyzer.
+	 * @param blockSize The size of the blocks, in bytes (a power of 2 not
+	 *                  less than the size of a memory position).
+	 * @throws IllegalArgumentException If the size of the blocks is invalid.
+	 */
+	public LocalityAnalyzer(int blockSize) {
+		if(blockSize < WORD_SIZE || Integer.bitCount(blockSize) != 1)
+			throw new IllegalArgumentException("Invalid block size: " + blockSize + "!");
+		this.blockSize = blockSize;
+		instructions = new AccessStream(0);
+		data = new AccessStream(0);
+	}
+
+	/**
+	 * Discards the recorded accesses and sizes the streams to the program and
+	 * data memory of the CPU.
+	 * <p>Called when the analyzer is attached to the CPU and when its
+	 * statistics are reset.</p>
+	 * @param cpu The CPU.
+	 */
+	void reset(CPU cpu) {
+		instructions = new AccessStream(cpu.getInstructionMemory().getNumberOfInstructions());
+		data = new AccessStream(cpu.hasDataMemory() ? cpu.getDataMemory().getMemorySize() : 0);
+		clearHistory();
+	}
+
+	/**
+	 * Records the memory accesses of the current clock cycle.
+	 * <p>Called in <tt>CPU.executeCycle()</tt>, before the synchronous
+	 * components are executed, except in the cycles the CPU waits for the
+	 * memory.</p>
+	 * @param cpu The CPU.
+	 */
+	void update(CPU cpu) {
+		boolean history = cpu.isHistoryEnabled();
+		int mask = 0;
+
+		int index = cpu.getPC().getAddress().getValue() / WORD_SIZE;
+		if(index >= 0 && index < cpu.getInstructionMemory().getNumberOfInstructions()) {
+			instructions.access(index, history);
+			mask |= FETCH;
+		}
+
+		if(cpu.hasDataMemory()) {
+			DataMemory memory = cpu.getDataMemory();
+			if(memory.getMemRead().getValue() == 1 || memory.getMemWrite().getValue() == 1) {
+				index = memory.getIndexOfAddress(memory.getAddress().getValue());
+				if(index >= 0) {
+					data.access(index, history);
+					mask |= DATA;
+				}
+			}
+		}
+
+		if(history) {
+			if(cycleLogSize == cycleLog.length)
+				cycleLog = Arrays.copyOf(cycleLog, cycleLog.length * 2);
+			cycleLog[cycleLogSize++] = (byte)mask;
+		}
+	}
+
+	/**
+	 * Removes the memory accesses of the last recorded clock cycle.
+	 * <p>Called after a "step back". Does nothing if the cycle wasn't recorded
+	 * with the history enabled.</p>
+	 */
+	void undo() {
+		if(cycleLogSize > 0) {
+			int mask = cycleLog[--cycleLogSize];
+			if((mask & DATA) != 0) data.undo();
+			if((mask & FETCH) != 0) instructions.undo();
+		}
+	}
+
+	/**
+	 * Discards the information needed to undo the recorded clock cycles.
+	 * <p>Called when the CPU discards its saved states.</p>
+	 */
+	void clearHistory() {
+		cycleLogSize = 0;
+		instructions.clearHistory();
+		data.clearHistory();
+	}
+
+	/**
+	 * Returns the size of the blocks.
+	 * @return The size of the blocks, in bytes.
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Returns the analysis of the instruction fetches.
+	 * @return The stream of instruction fetches.
+	 */
+	public AccessStream getInstructionStream() {
+		return instructions;
+	}
+
+	/**
+	 * Returns the analysis of the data memory reads and writes.
+	 * @return The stream of data accesses.
+	 */
+	public AccessStream getDataStream() {
+		return data;
+	}
+
+	/**
+	 * Writes the analysis in JSON format.
+	 * <p>The miss ratios are written for the cache sizes (in blocks) that are
+	 * powers of 2, up to the footprint of each stream.</p>
+	 * @param out The writer (not closed).
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void writeJSON(Writer out) throws IOException {
+		try {
+			JSONWriter json = new JSONWriter(out);
+			json.object().key("block_size").value(blockSize);
+			json.key("instructions");
+			writeStream(json, instructions);
+			json.key("data");
+			writeStream(json, data);
+			json.endObject();
+			out.write('\n');
+			out.flush();
+		} catch(JSONException ex) {
+			throw new IOException(ex);
+		}
+	}
+
+	/**
+	 * Writes the analysis of a stream in JSON format.
+	 * @param json The JSON writer.
+	 * @param stream The stream.
+	 * @throws JSONException If the JSON can't be written.
+	 */
+	private void writeStream(JSONWriter json, AccessStream stream) throws JSONException {
+		json.object().key("accesses").value(stream.getAccesses())
+			.key("footprint").value(stream.getFootprint())
+			.key("cold_misses").value(stream.getColdMisses())
+			.key("spatial_locality").value(stream.getSpatialLocality());
+
+		json.key("reuse_distances").array();
+		for(int d = 0; d <= stream.getMaxReuseDistance(); d++)
+			json.value(stream.getReuseDistanceCount(d));
+		json.endArray();
+
+		json.key("miss_ratios").array();
+		for(int blocks: stream.getCacheSizes()) {
+			json.object().key("blocks").value(blocks)
+				.key("bytes").value((long)blocks * blockSize)
+				.key("miss_ratio").value(stream.getMissRatio(blocks))
+				.endObject();
+		}
+		json.endArray();
+
+		json.key("strides").array();
+		for(int stride: stream.getMostFrequentStrides(8)) {
+			json.object().key("stride").value(stride)
+				.key("count").value(stream.getStrideCount(stride))
+				.endObject();
+		}
+		json.endArray();
+		json.endObject();
+	}
+
+	/**
+	 * The analysis of a stream of memory accesses.
+	 */
+	public final class AccessStream {
+		/** The time of the last access to each block (0 if never accessed). */
+		private final int[] lastAccess;
+		/** The Fenwick tree of the times that are the last access to a block. */
+		private int[] tree = new int[INITIAL_CAPACITY + 1];
+		/** The current time (the number of timestamps used in the tree). */
+		private int time = 0;
+		/** The number of accesses with each reuse distance. */
+		private final long[] reuseDistances;
+		/** The number of consecutive accesses with each stride, in memory positions. */
+		private final long[] strides;
+		/** The index of the last memory position accessed (-1 if none). */
+		private int lastIndex = -1;
+		/** The number of accesses. */
+		private long accesses = 0;
+		/** The number of accesses to blocks never accessed before. */
+		private long coldMisses = 0;
+		/** The number of accesses to near positions. */
+		private long spatialAccesses = 0;
+		/** The log of (block, previous time, reuse distance, previous index) of each access. */
+		private int[] log = new int[0];
+		/** The number of integers in the log. */
+		private int logSize = 0;
+
+		/**
+		 * Creates an empty stream.
+		 * @param size The number of memory positions that can be accessed.
+		 */
+		private AccessStream(int size) {
+			int blocks = (int)(((long)size * WORD_SIZE + blockSize - 1) / blockSize);
+			lastAccess = new int[blocks];
+			reuseDistances = new long[Math.max(blocks, 1)];
+			strides = new long[Math.max(2 * size - 1, 1)];
+		}
+
+		/**
+		 * Records an access to a memory position.
+		 * @param index The index of the memory position.
+		 * @param history Whether to log the access so it can be undone.
+		 */
+		private void access(int index, boolean history) {
+			int block = index * WORD_SIZE / blockSize;
+			if(time == tree.length - 1)
+				compact();
+			int t = ++time;
+			int previous = lastAccess[block];
+			int distance = -1;
+			if(previous == 0)
+				coldMisses++;
+			else {
+				distance = sum(t - 1) - sum(previous);
+				reuseDistances[distance]++;
+				add(previous, -1);
+			}
+			add(t, 1);
+			lastAccess[block] = t;
+
+			if(lastIndex >= 0) {
+				int stride = index - lastIndex;
+				strides[stride + strides.length / 2]++;
+				if(isSpatial(stride)) spatialAccesses++;
+			}
+			if(history) {
+				if(logSize + 4 > log.length)
+					log = Arrays.copyOf(log, Math.max(log.length * 2, INITIAL_CAPACITY));
+				log[logSize++] = block;
+				log[logSize++] = previous;
+				log[logSize++] = distance;
+				log[logSize++] = lastIndex;
+			}
+			lastIndex = index;
+			accesses++;
+		}
+
+		/**
+		 * Removes the last logged access.
+		 */
+		private void undo() {
+			if(logSize == 0) return;
+			int previousIndex = log[--logSize];
+			int distance = log[--logSize];
+			int previous = log[--logSize];
+			int block = log[--logSize];
+
+			add(time, -1);
+			time--;
+			if(previous == 0)
+				coldMisses--;
+			else {
+				add(previous, 1);
+				reuseDistances[distance]--;
+			}
+			lastAccess[block] = previous;
+
+			if(previousIndex >= 0) {
+				int stride = lastIndex - previousIndex;
+				strides[stride + strides.length / 2]--;
+				if(isSpatial(stride)) spatialAccesses--;
+			}
+			lastIndex = previousIndex;
+			accesses--;
+		}
+
+		/**
+		 * Discards the log of the accesses.
+		 */
+		private void clearHistory() {
+			log = new int[0];
+			logSize = 0;
+		}
+
+		/**
+		 * Frees space in the full tree.
+		 * <p>The times of the last accesses are renumbered to
+		 * <tt>1..footprint</tt>, keeping their order, if there is no logged
+		 * access (the log contains previous times). The tree grows if it is
+		 * still more than half full.</p>
+		 */
+		private void compact() {
+			if(logSize == 0) {
+				long[] order = new long[lastAccess.length];
+				int n = 0;
+				for(int b = 0; b < lastAccess.length; b++) {
+					if(lastAccess[b] > 0)
+						order[n++] = ((long)lastAccess[b] << 32) | b;
+				}
+				Arrays.sort(order, 0, n);
+				for(int i = 0; i < n; i++)
+					lastAccess[(int)order[i]] = i + 1;
+				time = n;
+			}
+			if(2 * time >= tree.length - 1)
+				tree = new int[2 * (tree.length - 1) + 1];
+
+			// Build the tree in linear time
+			Arrays.fill(tree, 0);
+			for(int b = 0; b < lastAccess.length; b++) {
+				if(lastAccess[b] > 0)
+					tree[lastAccess[b]] = 1;
+			}
+			for(int i = 1; i < tree.length; i++) {
+				int parent = i + (i & -i);
+				if(parent < tree.length)
+					tree[parent] += tree[i];
+			}
+		}
+
+		/**
+		 * Adds a value to a time in the tree.
+		 * @param t The time.
+		 * @param delta The value to add.
+		 */
+		private void add(int t, int delta) {
+			for(; t < tree.length; t += t & -t)
+				tree[t] += delta;
+		}
+
+		/**
+		 * Returns the number of blocks whose last access was up to a time.
+		 * @param t The time.
+		 * @return The sum of the tree up to <tt>t</tt>.
+		 */
+		private int sum(int t) {
+			int s = 0;
+			for(; t > 0; t -= t & -t)
+				s += tree[t];
+			return s;
+		}
+
+		/**
+		 * Returns whether a stride is to a different position in the same or a neighbouring block.
+		 * @param stride The stride, in memory positions.
+		 * @return <tt>True</tt> if the stride is spatial.
+		 */
+		private boolean isSpatial(int stride) {
+			return stride != 0 && Math.abs(stride) * WORD_SIZE <= blockSize;
+		}
+
+		/**
+		 * Returns the number of accesses.
+		 * @return The number of accesses recorded.
+		 */
+		public long getAccesses() {
+			return accesses;
+		}
+
+		/**
+		 * Returns the number of distinct blocks accessed.
+		 * @return The footprint, in blocks.
+		 */
+		public int getFootprint() {
+			return (int)coldMisses;
+		}
+
+		/**
+		 * Returns the number of accesses to blocks never accessed before.
+		 * <p>These miss in caches of any size.</p>
+		 * @return The number of cold (compulsory) misses.
+		 */
+		public long getColdMisses() {
+			return coldMisses;
+		}
+
+		/**
+		 * Returns the number of accesses with a reuse distance.
+		 * @param distance The reuse distance (number of distinct blocks accessed in between).
+		 * @return The number of accesses.
+		 */
+		public long getReuseDistanceCount(int distance) {
+			return (distance >= 0 && distance < reuseDistances.length) ? reuseDistances[distance] : 0;
+		}
+
+		/**
+		 * Returns the highest reuse distance recorded.
+		 * @return The highest reuse distance, or -1 if no block was reused.
+		 */
+		public int getMaxReuseDistance() {
+			for(int d = reuseDistances.length - 1; d >= 0; d--) {
+				if(reuseDistances[d] != 0)
+					return d;
+			}
+			return -1;
+		}
+
+		/**
+		 * Returns the number of misses of a fully-associative LRU cache.
+		 * @param blocks The number of blocks of the cache.
+		 * @return The number of misses, including the cold misses.
+		 */
+		public long getMisses(int blocks) {
+			long misses = coldMisses;
+			for(int d = Math.max(blocks, 0); d < reuseDistances.length; d++)
+				misses += reuseDistances[d];
+			return misses;
+		}
+
+		/**
+		 * Returns the miss ratio of a fully-associative LRU cache.
+		 * @param blocks The number of blocks of the cache.
+		 * @return The fraction of the accesses that miss (0 if there are no accesses).
+		 */
+		public double getMissRatio(int blocks) {
+			return accesses > 0 ? (double)getMisses(blocks) / accesses : 0;
+		}
+
+		/**
+		 * Returns the cache sizes (in blocks) worth reporting.
+		 * <p>These are the powers of 2 up to the first one that holds the
+		 * whole footprint (after which the miss ratio doesn't change).</p>
+		 * @return The cache sizes, in blocks.
+		 */
+		public int[] getCacheSizes() {
+			int n = 1;
+			while((1 << (n - 1)) < getFootprint())
+				n++;
+			int[] sizes = new int[n];
+			for(int i = 0; i < n; i++)
+				sizes[i] = 1 << i;
+			return sizes;
+		}
+
+		/**
+		 * Returns the number of consecutive accesses with a stride.
+		 * @param stride The stride, in bytes.
+		 * @return The number of accesses.
+		 */
+		public long getStrideCount(int stride) {
+			if(stride % WORD_SIZE != 0) return 0;
+			int i = stride / WORD_SIZE + strides.length / 2;
+			return (i >= 0 && i < strides.length) ? strides[i] : 0;
+		}
+
+		/**
+		 * Returns the most frequent strides, from the most to the least frequent.
+		 * @param max The maximum number of strides to return.
+		 * @return The strides, in bytes.
+		 */
+		public int[] getMostFrequentStrides(int max) {
+			long[] order = new long[strides.length];
+			int n = 0;
+			for(int i = 0; i < strides.length; i++) {
+				if(strides[i] != 0) // sorted by descending count, then by index
+					order[n++] = (-strides[i] << 32) | i;
+			}
+			Arrays.sort(order, 0, n);
+			int[] result = new int[Math.min(n, max)];
+			for(int i = 0; i < result.length; i++)
+				result[i] = ((int)order[i] - strides.length / 2) * WORD_SIZE;
+			return result;
+		}
+
+		/**
+		 * Returns the spatial locality of the stream.
+		 * @return The fraction of the consecutive accesses to a different
+		 *         position in the same or a neighbouring block (0 if there are
+		 *         none).
+		 */
+		public double getSpatialLocality() {
+			return accesses > 1 ? (double)spatialAccesses / (accesses - 1) : 0;
+		}
+	}
+}
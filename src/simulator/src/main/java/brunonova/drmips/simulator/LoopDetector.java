@@ -0,0 +1,124 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+/**
+ * Detects that the state of the CPU has repeated, using Brent's cycle
+ * detection algorithm on the hashes of the states.
+ *
+ * <p>The hash of the state is saved at clock cycles that are powers of 2 and
+ * compared with the hash of every following state. If they are equal, the CPU
+ * is back in a state it has been in before, and since the execution is
+ * deterministic, it will run the same clock cycles forever. Any loop is found
+ * after at most a few times its length, using constant memory.</p>
+ *
+ * <p>The range of the addresses in the PC between the saved state and the
+ * current one is also tracked, which is the range of the addresses of the
+ * instructions in the loop (that are fetched, in a pipeline).</p>
+ *
+ * @author Bruno Nova
+ */
+final class LoopDetector {
+	/** The hash of the saved state. */
+	private long savedHash;
+	/** The number of clock cycles between saves. */
+	private long power = 1;
+	/** The number of clock cycles since the last save. */
+	private long length = 0;
+	/** The lowest address in the PC since the last save. */
+	private int startAddress;
+	/** The highest address in the PC since the last save. */
+	private int endAddress;
+	/** Whether a loop was found. */
+	private boolean found = false;
+
+	/**
+	 * Constructor.
+	 * @param hash The hash of the initial state.
+	 * @param address The initial address in the PC.
+	 */
+	public LoopDetector(long hash, int address) {
+		save(hash, address);
+	}
+
+	/**
+	 * Adds the state after a clock cycle.
+	 * @param hash The hash of the state.
+	 * @param address The address in the PC.
+	 * @return <tt>True</tt> if the state is repeated (infinite loop).
+	 */
+	public boolean update(long hash, int address) {
+		if(found) return true;
+		length++;
+		if(hash == savedHash)
+			found = true;
+		else if(length == power) {
+			power *= 2;
+			save(hash, address);
+		}
+		else {
+			if(address < startAddress) startAddress = address;
+			if(address > endAddress) endAddress = address;
+		}
+		return found;
+	}
+
+	/**
+	 * Saves the given state.
+	 * @param hash The hash of the state.
+	 * @param address The address in the PC.
+	 */
+	private void save(long hash, int address) {
+		savedHash = hash;
+		length = 0;
+		startAddress = endAddress = address;
+	}
+
+	/**
+	 * Returns whether a loop was found.
+	 * @return <tt>True</tt> if a loop was found.
+	 */
+	public boolean isLoopFound() {
+		return found;
+	}
+
+	/**
+	 * Returns the number of clock cycles of an iteration of the loop.
+	 * @return The length of the loop, or 0 if no loop was found.
+	 */
+	public long getLoopLength() {
+		return found ? length : 0;
+	}
+
+	/**
+	 * Returns the lowest address of the instructions in the loop.
+	 * @return The lowest address in the PC during the loop.
+	 */
+	public int getStartAddress() {
+		return startAddress;
+	}
+
+	/**
+	 * Returns the highest address of the instructions in the loop.
+	 * @return The highest address in the PC during the loop.
+	 */
+	public int getEndAddress() {
+		return endAddress;
+	}
+}
@@ -0,0 +1,170 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.components.DataMemory;
+import java.util.List;
+
+/**
+ * Arbiter of the data memory shared by the cores of a {@link MultiCore}.
+ *
+ * <p>Each core keeps its own copy of the data memory, which the arbiter keeps
+ * equal in all the cores. The write made by each core in a clock cycle is
+ * captured through a {@link CycleListener} (its "port") and, when all the cores
+ * have executed the cycle, {@link #commit()} applies the writes to the copies
+ * of the other cores in the order of the core identifiers. Therefore, if more
+ * than one core writes to the same position in the same cycle, the core with
+ * the highest identifier wins, independently of the order in which the cores
+ * were executed. A read in the same cycle as a write of another core to the
+ * same position gets the old value.</p>
+ *
+ * <p>The arbiter also counts, for each core, the writes to the shared memory
+ * and the conflicts (writes overwritten by a core with a higher identifier in
+ * the same cycle).</p>
+ *
+ * @author Bruno Nova
+ */
+public final class MemoryArbiter {
+	/** The data memories of the cores. */
+	private final DataMemory[] memories;
+	/** The index written by each core in the current cycle, or -1. */
+	private final int[] pendingIndex;
+	/** The value written by each core in the current cycle. */
+	private final int[] pendingValue;
+	/** The number of writes of each core. */
+	private final long[] writes;
+	/** The number of conflicting writes of each core. */
+	private final long[] conflicts;
+
+	/**
+	 * Creates the arbiter and connects it to the data memories of the cores.
+	 * @param cores The cores, in the order of their identifiers.
+	 * @throws IllegalArgumentException If a core has no data memory or the sizes are different.
+	 */
+	MemoryArbiter(List<CPU> cores) throws IllegalArgumentException {
+		int n = cores.size();
+		memories = new DataMemory[n];
+		pendingIndex = new int[n];
+		pendingValue = new int[n];
+		writes = new long[n];
+		conflicts = new long[n];
+
+		for(int i = 0; i < n; i++) {
+			CPU core = cores.get(i);
+			if(!core.hasDataMemory())
+				throw new IllegalArgumentException("The CPU has no data memory!");
+			memories[i] = core.getDataMemory();
+			if(memories[i].getMemorySize() != memories[0].getMemorySize())
+				throw new IllegalArgumentException("The data memories of the cores have different sizes!");
+			pendingIndex[i] = -1;
+			core.addCycleListener(new Port(i));
+		}
+	}
+
+	/**
+	 * Applies the writes of the current clock cycle to the data memories of all the cores.
+	 * <p>Must be called after all the cores have executed the cycle, and never
+	 * while any of them is executing.</p>
+	 */
+	void commit() {
+		for(int port = 0; port < memories.length; port++) {
+			int index = pendingIndex[port];
+			if(index < 0) continue;
+			int value = pendingValue[port];
+			writes[port]++;
+			for(int prev = 0; prev < port; prev++) { // overwritten writes of the previous cores
+				if(pendingIndex[prev] == index) {
+					conflicts[prev]++;
+					pendingIndex[prev] = -2; // counted
+				}
+			}
+			for(DataMemory memory: memories) {
+				if(memory.getDataInIndex(index) != value)
+					memory.setDataInIndex(index, value);
+			}
+		}
+		for(int port = 0; port < memories.length; port++)
+			pendingIndex[port] = -1;
+	}
+
+	/**
+	 * Resets the counters of all the cores.
+	 */
+	void resetStatistics() {
+		for(int i = 0; i < memories.length; i++) {
+			writes[i] = 0;
+			conflicts[i] = 0;
+		}
+	}
+
+	/**
+	 * Returns the number of ports (cores) of the arbiter.
+	 * @return The number of cores.
+	 */
+	public int getNumberOfPorts() {
+		return memories.length;
+	}
+
+	/**
+	 * Returns the number of writes of a core to the shared memory.
+	 * @param core The identifier of the core.
+	 * @return The number of writes.
+	 */
+	public long getWrites(int core) {
+		return writes[core];
+	}
+
+	/**
+	 * Returns the number of writes of a core that were overwritten by a core
+	 * with a higher identifier in the same clock cycle.
+	 * @param core The identifier of the core.
+	 * @return The number of conflicts.
+	 */
+	public long getConflicts(int core) {
+		return conflicts[core];
+	}
+
+	/**
+	 * Port of a core, which captures its writes to the data memory.
+	 * <p>The port is notified in the thread that executes the core, and only
+	 * writes its own slot of the pending writes.</p>
+	 */
+	private final class Port implements CycleListener {
+		/** The identifier of the core. */
+		private final int core;
+
+		/**
+		 * Creates the port.
+		 * @param core The identifier of the core.
+		 */
+		public Port(int core) {
+			this.core = core;
+		}
+
+		@Override
+		public void stateWritten(Component component, int index) {
+			if(component == memories[core]) {
+				pendingIndex[core] = index;
+				pendingValue[core] = memories[core].getDataInIndex(index);
+			}
+		}
+
+		@Override
+		public void cycleExecuted(CPU cpu) { }
+	}
+}
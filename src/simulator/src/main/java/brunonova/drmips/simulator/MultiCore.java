@@ -0,0 +1,369 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.exceptions.InvalidCPUException;
+import brunonova.drmips.simulator.exceptions.SyntaxErrorException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.json.JSONException;
+
+/**
+ * Multi-core simulation: several cores, created from the same CPU template,
+ * that execute the same program and share the data memory.
+ *
+ * <p>Each core is an independent {@link CPU}, with its own PC, register bank,
+ * pipeline and statistics. The data memory is shared through a
+ * {@link MemoryArbiter}, which makes the writes of each clock cycle visible to
+ * all the cores at the end of the cycle, in a deterministic order. The
+ * identifier of each core (0 to <tt>N - 1</tt>) is in a constant register
+ * ({@link #DEFAULT_CORE_ID_REGISTER}, <tt>$k0</tt>, by default), so the
+ * program can partition the work between the cores.</p>
+ *
+ * <p>{@link #executeAll(long, long, ExecutionListener, int)} executes the cores
+ * in parallel, in a pool of threads that wait for each other at the end of
+ * each clock cycle. The result doesn't depend on the number of threads. A core
+ * that finishes the program stops executing (its statistics stop too) while
+ * the others continue.</p>
+ *
+ * <p>The breakpoints and the detection of infinite loops of the cores are not
+ * used, and there is no "step back" of the whole system.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class MultiCore {
+	/** The default register with the identifier of the core (<tt>$k0</tt>). */
+	public static final int DEFAULT_CORE_ID_REGISTER = 26;
+	/** The maximum number of cores. */
+	public static final int MAXIMUM_CORES = 64;
+
+	/** The cores. */
+	private final List<CPU> cores;
+	/** The arbiter of the shared data memory. */
+	private final MemoryArbiter arbiter;
+	/** The register with the identifier of the core. */
+	private final int coreIdRegister;
+	/** The number of clock cycles executed by the system. */
+	private long executedCycles = 0;
+
+	/**
+	 * Creates the cores, with the identifier in the default register.
+	 * @param template The template of the CPU of the cores.
+	 * @param numberOfCores The number of cores.
+	 * @throws InvalidCPUException If a core could not be created.
+	 * @throws JSONException If a component's JSON is invalid.
+	 * @throws IllegalArgumentException If the number of cores is invalid or the CPU has no data memory.
+	 */
+	public MultiCore(CPUTemplate template, int numberOfCores) throws InvalidCPUException, JSONException, IllegalArgumentException {
+		this(template, numberOfCores, DEFAULT_CORE_ID_REGISTER);
+	}
+
+	/**
+	 * Creates the cores.
+	 * @param template The template of the CPU of the cores.
+	 * @param numberOfCores The number of cores.
+	 * @param coreIdRegister The register with the identifier of the core.
+	 * @throws InvalidCPUException If a core could not be created.
+	 * @throws JSONException If a component's JSON is invalid.
+	 * @throws IllegalArgumentException If the number of cores or the register are invalid or the CPU has no data memory.
+	 */
+	public MultiCore(CPUTemplate template, int numberOfCores, int coreIdRegister) throws InvalidCPUException, JSONException, IllegalArgumentException {
+		if(numberOfCores < 1 || numberOfCores > MAXIMUM_CORES)
+			throw new IllegalArgumentException("Invalid number of cores: " + numberOfCores + "!");
+		this.coreIdRegister = coreIdRegister;
+
+		List<CPU> list = new ArrayList<>(numberOfCores);
+		for(int i = 0; i < numberOfCores; i++) {
+			CPU core = template.createCPU();
+			if(coreIdRegister < 0 || coreIdRegister >= core.getRegBank().getNumberOfRegisters()
+				|| core.getRegBank().isRegisterConstant(coreIdRegister))
+				throw new IllegalArgumentException("Invalid core identifier register: " + coreIdRegister + "!");
+			core.getRegBank().setRegisterConstant(coreIdRegister, i);
+			core.setHistoryEnabled(false);
+			list.add(core);
+		}
+		cores = Collections.unmodifiableList(list);
+		arbiter = new MemoryArbiter(cores);
+	}
+
+	/**
+	 * Assembles the code and loads it in all the cores.
+	 * <p>All the cores start with the same data memory.</p>
+	 * @param code The code to assemble.
+	 * @throws SyntaxErrorException If the code has a syntax error.
+	 */
+	public void assembleCode(String code) throws SyntaxErrorException {
+		for(CPU core: cores)
+			core.assembleCode(code);
+		arbiter.resetStatistics();
+		executedCycles = 0;
+	}
+
+	/**
+	 * Returns the number of cores.
+	 * @return The number of cores.
+	 */
+	public int getNumberOfCores() {
+		return cores.size();
+	}
+
+	/**
+	 * Returns a core.
+	 * <p>The statistics of the core (clock cycles, instructions, stalls, etc.)
+	 * are those of its own execution.</p>
+	 * @param id The identifier of the core.
+	 * @return The core.
+	 */
+	public CPU getCore(int id) {
+		return cores.get(id);
+	}
+
+	/**
+	 * Returns the arbiter of the shared data memory, with the memory statistics of each core.
+	 * @return The arbiter.
+	 */
+	public MemoryArbiter getArbiter() {
+		return arbiter;
+	}
+
+	/**
+	 * Returns the register with the identifier of each core.
+	 * @return The index of the register.
+	 */
+	public int getCoreIdRegister() {
+		return coreIdRegister;
+	}
+
+	/**
+	 * Returns the number of clock cycles executed by the system, which is
+	 * the number of cycles of the slowest core.
+	 * @return The number of clock cycles.
+	 */
+	public long getExecutedCycles() {
+		return executedCycles;
+	}
+
+	/**
+	 * Returns whether all the cores have finished the program.
+	 * @return <tt>True</tt> if the program has finished in all the cores.
+	 */
+	public boolean isProgramFinished() {
+		for(CPU core: cores) {
+			if(!core.isProgramFinished())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Executes a clock cycle in all the cores that haven't finished, in the current thread.
+	 */
+	public void executeCycle() {
+		for(CPU core: cores) {
+			if(!core.isProgramFinished())
+				core.executeCycle();
+		}
+		arbiter.commit();
+		executedCycles++;
+	}
+
+	/**
+	 * Executes the program until all the cores finish or one of the limits is reached.
+	 * <p>The cores are distributed among <tt>threads</tt> threads, which wait
+	 * for each other at the end of each clock cycle, when the writes to the
+	 * shared memory are applied. The limits are checked, and the listener
+	 * notified, every <tt>CPU.EXECUTION_PROGRESS_INTERVAL</tt> clock
+	 * cycles, in one of the threads.</p>
+	 * @param maxCycles The maximum number of clock cycles to execute (no limit if not positive).
+	 * @param maxTime The maximum execution time, in milliseconds (no limit if not positive).
+	 * @param listener The listener that is notified of the progress and can stop the execution, or <tt>null</tt>.
+	 * @param threads The number of parallel threads (1 to execute in the current thread).
+	 * @return The status of the execution (<tt>FINISHED</tt>, <tt>CYCLE_LIMIT</tt>, <tt>TIME_LIMIT</tt> or <tt>STOPPED</tt>).
+	 * @throws InterruptedException If interrupted while waiting for the threads.
+	 */
+	public ExecutionResult.Status executeAll(long maxCycles, long maxTime, ExecutionListener listener, int threads) throws InterruptedException {
+		Execution execution = new Execution(maxCycles, maxTime, listener);
+		int workers = Math.max(1, Math.min(threads, cores.size()));
+		if(workers == 1) {
+			while(execution.status == null) {
+				for(int i = 0; i < cores.size(); i++) {
+					if(!execution.finished[i])
+						cores.get(i).executeCycle();
+				}
+				execution.endCycle();
+			}
+			return execution.status;
+		}
+
+		final CyclicBarrier barrier = new CyclicBarrier(workers, execution);
+		List<Callable<Void>> tasks = new ArrayList<>(workers);
+		for(int w = 0; w < workers; w++)
+			tasks.add(new Worker(w, workers, execution, barrier));
+
+		ExecutorService pool = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "Core execution");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			pool.invokeAll(tasks);
+		}
+		finally {
+			pool.shutdownNow();
+		}
+
+		if(execution.failure instanceof RuntimeException)
+			throw (RuntimeException)execution.failure;
+		else if(execution.failure instanceof Error)
+			throw (Error)execution.failure;
+		else if(execution.failure != null)
+			throw new IllegalStateException(execution.failure);
+		return execution.status;
+	}
+
+	/**
+	 * State of an execution, updated at the end of each clock cycle.
+	 * <p>As the action of the barrier, it is executed when all the threads
+	 * have executed the cycle, so it can access all the cores.</p>
+	 */
+	private final class Execution implements Runnable {
+		/** The maximum number of clock cycles. */
+		private final long maxCycles;
+		/** The maximum execution time. */
+		private final long maxTime;
+		/** The listener, or <tt>null</tt>. */
+		private final ExecutionListener listener;
+		/** The start time of the execution, in nanoseconds. */
+		private final long start = System.nanoTime();
+		/** Whether each core has finished the program. */
+		private final boolean[] finished = new boolean[cores.size()];
+		/** The number of clock cycles executed in this execution. */
+		private long cycles = 0;
+		/** The status of the execution, or <tt>null</tt> while it continues. */
+		private volatile ExecutionResult.Status status = null;
+		/** The exception thrown by a thread, or <tt>null</tt>. */
+		private volatile Throwable failure = null;
+
+		/**
+		 * Creates the state of the execution, checking whether it has already ended.
+		 * @param maxCycles The maximum number of clock cycles.
+		 * @param maxTime The maximum execution time.
+		 * @param listener The listener, or <tt>null</tt>.
+		 */
+		public Execution(long maxCycles, long maxTime, ExecutionListener listener) {
+			this.maxCycles = maxCycles;
+			this.maxTime = maxTime;
+			this.listener = listener;
+			updateStatus();
+		}
+
+		@Override
+		public void run() {
+			endCycle();
+		}
+
+		/**
+		 * Ends the current clock cycle: applies the writes to the shared memory and checks whether to continue.
+		 */
+		public void endCycle() {
+			arbiter.commit();
+			executedCycles++;
+			cycles++;
+			updateStatus();
+			if(status == null && cycles % CPU.EXECUTION_PROGRESS_INTERVAL == 0) {
+				if(maxTime > 0 && (System.nanoTime() - start) / 1000000 >= maxTime)
+					status = ExecutionResult.Status.TIME_LIMIT;
+				else if(listener != null && !listener.executionProgress(cycles))
+					status = ExecutionResult.Status.STOPPED;
+			}
+		}
+
+		/**
+		 * Updates the cores that have finished and checks the end of the program and the cycles limit.
+		 */
+		private void updateStatus() {
+			boolean all = true;
+			for(int i = 0; i < finished.length; i++) {
+				finished[i] = cores.get(i).isProgramFinished();
+				all &= finished[i];
+			}
+			if(all)
+				status = ExecutionResult.Status.FINISHED;
+			else if(maxCycles > 0 && cycles >= maxCycles)
+				status = ExecutionResult.Status.CYCLE_LIMIT;
+		}
+	}
+
+	/**
+	 * Thread that executes some of the cores (those whose identifier modulo
+	 * the number of threads is the index of the thread).
+	 */
+	private final class Worker implements Callable<Void> {
+		/** The index of the thread. */
+		private final int index;
+		/** The number of threads. */
+		private final int workers;
+		/** The state of the execution. */
+		private final Execution execution;
+		/** The barrier at the end of each clock cycle. */
+		private final CyclicBarrier barrier;
+
+		/**
+		 * Creates the thread.
+		 * @param index The index of the thread.
+		 * @param workers The number of threads.
+		 * @param execution The state of the execution.
+		 * @param barrier The barrier at the end of each clock cycle.
+		 */
+		public Worker(int index, int workers, Execution execution, CyclicBarrier barrier) {
+			this.index = index;
+			this.workers = workers;
+			this.execution = execution;
+			this.barrier = barrier;
+		}
+
+		@Override
+		public Void call() {
+			try {
+				while(execution.status == null) {
+					for(int i = index; i < cores.size(); i += workers) {
+						if(!execution.finished[i])
+							cores.get(i).executeCycle();
+					}
+					barrier.await();
+				}
+			} catch(BrokenBarrierException | InterruptedException ex) {
+				// another thread failed
+			} catch(Throwable t) {
+				if(execution.failure == null) execution.failure = t;
+				barrier.reset(); // releases the other threads
+			}
+			return null;
+		}
+	}
+}
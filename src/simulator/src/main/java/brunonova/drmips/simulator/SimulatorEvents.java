@@ -0,0 +1,220 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Emits the events of the simulator to the installed {@link EventSink}.
+ *
+ * <p>The events mark the loading of CPUs, the phases of the assembler, the
+ * executions of programs, the "step backs" and restarts and the refreshes of
+ * the user interface, so that slow operations can be diagnosed with an event
+ * recorder like the JDK Flight Recorder (see the <tt>src/jfr</tt> module).</p>
+ *
+ * <p>The sink is loaded once, with {@link ServiceLoader}. If there is no sink
+ * (or it can't be loaded in this JVM), each event costs only a <tt>null</tt>
+ * check. Usage:</p>
+ * <pre>
+ * Object event = SimulatorEvents.beginExecution();
+ * ...
+ * SimulatorEvents.commitExecution(event, file, cycles, instructions, status);
+ * </pre>
+ *
+ * @author Bruno Nova
+ */
+public final class SimulatorEvents {
+	/** CPU loading phase: reading and parsing the CPU file (JSON or binary). */
+	public static final String CPU_LOAD_READ = "read";
+	/** CPU loading phase: loading the instruction set. */
+	public static final String CPU_LOAD_INSTRUCTION_SET = "instruction set";
+	/** CPU loading phase: creating the components. */
+	public static final String CPU_LOAD_COMPONENTS = "components";
+	/** CPU loading phase: connecting the wires. */
+	public static final String CPU_LOAD_WIRES = "wires";
+	/** CPU loading phase: initializing the values and calculating the performance. */
+	public static final String CPU_LOAD_INITIALIZE = "initialize";
+
+	/** Assembly phase: parsing the lines, finding the labels and loading the data segment. */
+	public static final String ASSEMBLY_PASS_1 = "pass 1";
+	/** Assembly phase: assembling the instructions. */
+	public static final String ASSEMBLY_PASS_2 = "pass 2";
+	/** Assembly phase: scheduling the instructions (if enabled). */
+	public static final String ASSEMBLY_SCHEDULE = "schedule";
+	/** Assembly phase: loading the program into the instruction memory. */
+	public static final String ASSEMBLY_LOAD = "load";
+
+	/** Restore operation: "step back". */
+	public static final String RESTORE_PREVIOUS_CYCLE = "previous cycle";
+	/** Restore operation: restart. */
+	public static final String RESTORE_FIRST_CYCLE = "first cycle";
+
+	/** The installed sink, or <tt>null</tt>. */
+	private static volatile EventSink sink = loadSink();
+
+	/**
+	 * This class is not instantiable.
+	 */
+	private SimulatorEvents() {
+	}
+
+	/**
+	 * Loads the first sink that is installed and available in this JVM.
+	 * @return The sink, or <tt>null</tt> if none.
+	 */
+	private static EventSink loadSink() {
+		try {
+			Iterator<EventSink> it = ServiceLoader.load(EventSink.class, SimulatorEvents.class.getClassLoader()).iterator();
+			while(true) {
+				try {
+					return it.hasNext() ? it.next() : null;
+				}
+				catch(ServiceConfigurationError | LinkageError ex) {
+					// needs a newer JVM (ex: no jdk.jfr), try the next one
+				}
+			}
+		}
+		catch(ServiceConfigurationError | SecurityException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the installed sink.
+	 * @return The sink, or <tt>null</tt> if none.
+	 */
+	public static EventSink getSink() {
+		return sink;
+	}
+
+	/**
+	 * Replaces the installed sink (for tests).
+	 * <p>The events that are in progress are lost.</p>
+	 * @param sink The new sink, or <tt>null</tt> to disable the events.
+	 */
+	static void setSink(EventSink sink) {
+		SimulatorEvents.sink = sink;
+	}
+
+	/**
+	 * Starts a phase of the loading of a CPU.
+	 * @return The event, or <tt>null</tt> if not recorded.
+	 */
+	public static Object beginCPULoad() {
+		EventSink s = sink;
+		return s != null ? s.beginCPULoad() : null;
+	}
+
+	/**
+	 * Ends a phase of the loading of a CPU.
+	 * @param event The event returned by <tt>beginCPULoad()</tt>.
+	 * @param file The path of the CPU file.
+	 * @param phase The phase (one of the <tt>CPU_LOAD_*</tt> constants).
+	 */
+	public static void commitCPULoad(Object event, String file, String phase) {
+		EventSink s = sink;
+		if(event != null && s != null) s.commitCPULoad(event, file, phase);
+	}
+
+	/**
+	 * Starts a phase of the assembly of a program.
+	 * @return The event, or <tt>null</tt> if not recorded.
+	 */
+	public static Object beginAssembly() {
+		EventSink s = sink;
+		return s != null ? s.beginAssembly() : null;
+	}
+
+	/**
+	 * Ends a phase of the assembly of a program.
+	 * @param event The event returned by <tt>beginAssembly()</tt>.
+	 * @param phase The phase (one of the <tt>ASSEMBLY_*</tt> constants).
+	 * @param lines The number of lines processed.
+	 * @param instructions The number of instructions (or lines of code for the first pass).
+	 * @param errors The number of syntax errors found.
+	 */
+	public static void commitAssembly(Object event, String phase, int lines, int instructions, int errors) {
+		EventSink s = sink;
+		if(event != null && s != null) s.commitAssembly(event, phase, lines, instructions, errors);
+	}
+
+	/**
+	 * Starts an execution of a program.
+	 * @return The event, or <tt>null</tt> if not recorded.
+	 */
+	public static Object beginExecution() {
+		EventSink s = sink;
+		return s != null ? s.beginExecution() : null;
+	}
+
+	/**
+	 * Ends an execution of a program.
+	 * @param event The event returned by <tt>beginExecution()</tt>.
+	 * @param file The path of the CPU file, or <tt>null</tt>.
+	 * @param cycles The number of clock cycles executed.
+	 * @param instructions The number of instructions executed.
+	 * @param status Why the execution stopped.
+	 */
+	public static void commitExecution(Object event, String file, long cycles, long instructions, String status) {
+		EventSink s = sink;
+		if(event != null && s != null) s.commitExecution(event, file, cycles, instructions, status);
+	}
+
+	/**
+	 * Starts a restoration of a previous state of the CPU.
+	 * @return The event, or <tt>null</tt> if not recorded.
+	 */
+	public static Object beginRestore() {
+		EventSink s = sink;
+		return s != null ? s.beginRestore() : null;
+	}
+
+	/**
+	 * Ends a restoration of a previous state of the CPU.
+	 * @param event The event returned by <tt>beginRestore()</tt>.
+	 * @param operation The operation (one of the <tt>RESTORE_*</tt> constants).
+	 * @param fromCycle The clock cycle before the restoration.
+	 * @param toCycle The clock cycle after the restoration.
+	 */
+	public static void commitRestore(Object event, String operation, long fromCycle, long toCycle) {
+		EventSink s = sink;
+		if(event != null && s != null) s.commitRestore(event, operation, fromCycle, toCycle);
+	}
+
+	/**
+	 * Starts a refresh of the user interface.
+	 * @return The event, or <tt>null</tt> if not recorded.
+	 */
+	public static Object beginGUIRefresh() {
+		EventSink s = sink;
+		return s != null ? s.beginGUIRefresh() : null;
+	}
+
+	/**
+	 * Ends a refresh of the user interface.
+	 * @param event The event returned by <tt>beginGUIRefresh()</tt>.
+	 * @param view The refreshed view.
+	 * @param cycle The displayed clock cycle.
+	 */
+	public static void commitGUIRefresh(Object event, String view, long cycle) {
+		EventSink s = sink;
+		if(event != null && s != null) s.commitGUIRefresh(event, view, cycle);
+	}
+}
@@ -0,0 +1,107 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+/**
+ * Helper functions to compute 64-bit Zobrist-like hashes of the state of the components.
+ *
+ * <p>Each position of the state of a component (a register, a memory position,
+ * etc.) has its own random-looking key, derived from the component's identifier
+ * and from the index of the position. The hash of a state is the XOR of the
+ * hashes of all positions, so it can be updated incrementally when a position is
+ * written, by XORing out the hash of the old value and XORing in the hash of
+ * the new value.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class StateHash {
+	/** The golden ratio constant used to spread the indexes. */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * Private constructor (only static methods).
+	 */
+	private StateHash() {}
+
+	/**
+	 * Returns the seed of the keys of a component.
+	 * @param id The identifier of the component.
+	 * @return The seed of the keys.
+	 */
+	public static long seed(String id) {
+		return mix(id.hashCode() * GOLDEN_GAMMA + id.length());
+	}
+
+	/**
+	 * Returns the key of a position of the state of a component.
+	 * @param seed The seed of the component (see {@link #seed(String)}).
+	 * @param index The index of the position.
+	 * @return The key of the position.
+	 */
+	public static long key(long seed, int index) {
+		return mix(seed + (index + 1) * GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Returns the keys of the positions of the state of a component.
+	 * @param seed The seed of the component (see {@link #seed(String)}).
+	 * @param size The number of positions.
+	 * @return The keys of the positions.
+	 */
+	public static long[] keys(long seed, int size) {
+		long[] keys = new long[size];
+		for(int i = 0; i < size; i++)
+			keys[i] = key(seed, i);
+		return keys;
+	}
+
+	/**
+	 * Returns the hash of a value in a position.
+	 * @param key The key of the position.
+	 * @param value The value in the position.
+	 * @return The hash of the value in the position.
+	 */
+	public static long hash(long key, int value) {
+		return mix(key ^ (value & 0xffffffffL));
+	}
+
+	/**
+	 * Returns the hash of all the values in an array.
+	 * @param keys The keys of the positions of the array.
+	 * @param values The values.
+	 * @return The XOR of the hashes of the values.
+	 */
+	public static long hash(long[] keys, int[] values) {
+		long h = 0;
+		for(int i = 0; i < values.length; i++)
+			h ^= hash(keys[i], values[i]);
+		return h;
+	}
+
+	/**
+	 * Scrambles the bits of a 64-bit value (the finalizer of SplitMix64).
+	 * @param z The value.
+	 * @return The scrambled value.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,39 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+/**
+ * Interface of the synchronous components that can compute a hash of their
+ * internal state.
+ *
+ * <p>The hashes are used by the CPU to detect that its whole state has
+ * repeated, which means that the program is in an infinite loop. Loop detection
+ * is disabled if any synchronous component doesn't implement this interface.
+ * Two equal states must have the same hash, and the hash should be cheap to
+ * obtain, because it is requested on every clock cycle (see {@link StateHash}).</p>
+ *
+ * @author Bruno Nova
+ */
+public interface StateHashable {
+	/**
+	 * Returns the hash of the current internal state of the component.
+	 * @return The hash of the state.
+	 */
+	public long getStateHash();
+}
@@ -0,0 +1,565 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.components.PipelineRegister;
+import brunonova.drmips.simulator.exceptions.InvalidCPUException;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.json.JSONException;
+import org.json.JSONWriter;
+
+/**
+ * Static timing report of a CPU: the critical path of each instruction and the
+ * worst path of each pipeline stage.
+ *
+ * <p>The report contains:</p>
+ * <ul>
+ * <li>the worst path of each stage, between the pipeline registers (or of
+ *     the whole datapath, in unicycle CPUs), which exposes the bottleneck
+ *     stage that sets the clock period;</li>
+ * <li>for each instruction of the instruction set, its latency and critical
+ *     path in the "instruction performance" mode. In pipelined CPUs, the
+ *     instruction is followed through all the stages and its latency is that of
+ *     its slowest stage.</li>
+ * </ul>
+ *
+ * <p>Each instruction is evaluated on its own CPU, created from the template,
+ * in parallel. The instruction is assembled with registers as arguments
+ * (<tt>$t1</tt>, <tt>$t2</tt>, ...) and zeros as numbers, so the path of a
+ * branch, for example, is the one where it is taken.</p>
+ *
+ * @author Bruno Nova
+ */
+public final class TimingReport {
+	/** The names of the stages of the classic 5-stage pipeline (see {@link CPU#getStageRole(int)}). */
+	public static final String[] PIPELINE_STAGES = {"IF", "ID", "EX", "MEM", "WB"};
+	/** The name of the only "stage" of unicycle CPUs. */
+	public static final String UNICYCLE_STAGE = "CPU";
+
+	/** The names of the stages. */
+	private final String[] stages;
+	/** The worst path of each stage (<tt>null</tt> if none). */
+	private final Path[] stagePaths;
+	/** The clock period of the CPU. */
+	private final int clockPeriod;
+	/** The timing of each instruction. */
+	private final InstructionTiming[] instructions;
+
+	/**
+	 * Constructor.
+	 * @param stages The names of the stages.
+	 * @param stagePaths The worst path of each stage.
+	 * @param clockPeriod The clock period of the CPU.
+	 * @param instructions The timing of each instruction.
+	 */
+	private TimingReport(String[] stages, Path[] stagePaths, int clockPeriod, InstructionTiming[] instructions) {
+		this.stages = stages;
+		this.stagePaths = stagePaths;
+		this.clockPeriod = clockPeriod;
+		this.instructions = instructions;
+	}
+
+	/**
+	 * Generates the timing report of a CPU, with the latencies of its file.
+	 * @param template The template of the CPU.
+	 * @param threads The number of parallel threads.
+	 * @return The report.
+	 * @throws InvalidCPUException If the CPU could not be created.
+	 * @throws JSONException If a component's JSON is invalid.
+	 * @throws InterruptedException If interrupted while waiting for the evaluations.
+	 */
+	public static TimingReport generate(CPUTemplate template, int threads) throws InvalidCPUException, JSONException, InterruptedException {
+		return generate(template, null, threads);
+	}
+
+	/**
+	 * Generates the timing report of a CPU, with the current latencies of a loaded CPU.
+	 * @param template The template of the CPU.
+	 * @param source The CPU, created from the same file, whose latencies are used (or <tt>null</tt>).
+	 * @param threads The number of parallel threads.
+	 * @return The report.
+	 * @throws InvalidCPUException If the CPU could not be created.
+	 * @throws JSONException If a component's JSON is invalid.
+	 * @throws InterruptedException If interrupted while waiting for the evaluations.
+	 */
+	public static TimingReport generate(final CPUTemplate template, CPU source, int threads) throws InvalidCPUException, JSONException, InterruptedException {
+		final Map<String, Integer> latencies = new HashMap<>();
+		if(source != null) {
+			for(Component c: source.getComponents())
+				latencies.put(c.getId(), c.getLatency());
+		}
+
+		CPU cpu = template.createCPU();
+		setLatencies(cpu, latencies);
+		cpu.calculatePerformance();
+		String[] stages = new String[cpu.getNumberOfStages()];
+		for(int i = 0; i < stages.length; i++)
+			stages[i] = cpu.getStageName(i);
+		Path[] stagePaths = findStagePaths(cpu, false);
+
+		Instruction[] set = cpu.getInstructionSet().getInstructions();
+		List<Callable<InstructionTiming>> tasks = new ArrayList<>(set.length);
+		for(final Instruction instruction: set) {
+			tasks.add(new Callable<InstructionTiming>() {
+				@Override
+				public InstructionTiming call() throws Exception {
+					return evaluate(template, latencies, instruction);
+				}
+			});
+		}
+
+		InstructionTiming[] timings = new InstructionTiming[set.length];
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			int i = 0;
+			for(Future<InstructionTiming> f: pool.invokeAll(tasks)) {
+				try {
+					timings[i++] = f.get();
+				} catch(ExecutionException ex) {
+					if(ex.getCause() instanceof InvalidCPUException)
+						throw (InvalidCPUException)ex.getCause();
+					else if(ex.getCause() instanceof JSONException)
+						throw (JSONException)ex.getCause();
+					else
+						throw new IllegalStateException(ex.getCause());
+				}
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		return new TimingReport(stages, stagePaths, cpu.getClockPeriod(), timings);
+	}
+
+	/**
+	 * Sets the latencies of the components of a CPU.
+	 * @param cpu The CPU.
+	 * @param latencies The latencies of the components, by identifier (the others are kept).
+	 */
+	private static void setLatencies(CPU cpu, Map<String, Integer> latencies) {
+		for(Component c: cpu.getComponents()) {
+			Integer latency = latencies.get(c.getId());
+			if(latency != null) c.setLatency(latency);
+		}
+	}
+
+	/**
+	 * Evaluates the timing of an instruction on a new CPU.
+	 * @param template The template of the CPU.
+	 * @param latencies The latencies of the components, by identifier.
+	 * @param instruction The instruction.
+	 * @return The timing of the instruction.
+	 * @throws InvalidCPUException If the CPU could not be created.
+	 * @throws JSONException If a component's JSON is invalid.
+	 */
+	private static InstructionTiming evaluate(CPUTemplate template, Map<String, Integer> latencies, Instruction instruction) throws InvalidCPUException, JSONException {
+		String code = sampleCode(instruction);
+		CPU cpu = template.createCPU();
+		setLatencies(cpu, latencies);
+		cpu.setPerformanceInstructionDependent(true);
+		try {
+			cpu.assembleCode(code);
+		} catch(Exception ex) { // the instruction can't be used in this CPU
+			return new InstructionTiming(instruction.getMnemonic(), code, null, ex.getMessage() != null ? ex.getMessage() : ex.toString());
+		}
+		cpu.setHistoryEnabled(false);
+
+		if(cpu.isPipeline()) {
+			// Follow the instruction through the stages
+			Path[] paths = new Path[cpu.getNumberOfStages()];
+			for(int s = 0; s < paths.length; s++) {
+				if(s > 0) cpu.executeCycle();
+				paths[s] = findStagePaths(cpu, true)[s];
+			}
+			return new InstructionTiming(instruction.getMnemonic(), code, paths, null);
+		}
+		else
+			return new InstructionTiming(instruction.getMnemonic(), code, findStagePaths(cpu, true), null);
+	}
+
+	/**
+	 * Returns a line of code that uses the instruction.
+	 * @param instruction The instruction.
+	 * @return The line of code.
+	 */
+	private static String sampleCode(Instruction instruction) {
+		String code = instruction.getMnemonic();
+		for(int i = 0; i < instruction.getNumberOfArguments(); i++) {
+			code += i > 0 ? ", " : " ";
+			switch(instruction.getArgument(i)) {
+				case REG: code += CPU.REGISTER_PREFIX + "t" + (i + 1); break;
+				case DATA: code += "0(" + CPU.REGISTER_PREFIX + "t" + (i + 1) + ")"; break;
+				default: code += "0"; break;
+			}
+		}
+		return code;
+	}
+
+	/**
+	 * Finds the worst path of each stage of the CPU with the current accumulated latencies.
+	 * <p>The paths end in the inputs that don't change the accumulated latency
+	 * of their components, or in components without connected outputs. If the
+	 * latencies are instruction dependent, they end in the inputs of the
+	 * synchronous components that are writing state instead (like the
+	 * critical path of the CPU). The paths
+	 * that end in the data of a pipeline register belong to the stage before
+	 * it, including the forwarded values. The others (like the writes to the
+	 * register bank and the control of the pipeline) belong to the stage of
+	 * the PC or pipeline register where they start.</p>
+	 * @param cpu The CPU.
+	 * @param instructionDependent Whether the latencies depend on the current instruction.
+	 * @return The worst path of each stage (<tt>null</tt> if none).
+	 */
+	private static Path[] findStagePaths(CPU cpu, boolean instructionDependent) {
+		Path[] paths = new Path[cpu.getNumberOfStages()];
+		LinkedList<String> components = new LinkedList<>();
+		int stage, endStage;
+		for(Component c: cpu.getComponents()) {
+			if(instructionDependent && !(c instanceof Synchronous && ((Synchronous)c).isWritingState()))
+				continue;
+			endStage = cpu.getStageStartedBy(c) - 1;
+			for(Input in: c.getInputs()) {
+				if(!in.isConnected() || (!instructionDependent && in.canChangeComponentAccumulatedLatency() && hasConnectedOutputs(c)))
+					continue;
+				components.clear();
+				stage = trace(cpu, in.getConnectedOutput().getComponent(), instructionDependent, components);
+				if(endStage >= 0 && c instanceof PipelineRegister && in != ((PipelineRegister)c).getWrite() && in != ((PipelineRegister)c).getFlush())
+					stage = endStage;
+				if(stage >= 0 && (paths[stage] == null || in.getAccumulatedLatency() > paths[stage].getLatency())) {
+					components.add(c.getId());
+					paths[stage] = new Path(in.getAccumulatedLatency(), components);
+				}
+			}
+		}
+		return paths;
+	}
+
+	/**
+	 * Returns whether a component has outputs connected to other components.
+	 * @param component The component.
+	 * @return <tt>True</tt> if at least one output is connected.
+	 */
+	private static boolean hasConnectedOutputs(Component component) {
+		for(Output out: component.getOutputs()) {
+			if(out.isConnected()) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Follows the critical path backwards from a component to the PC or pipeline register where it starts.
+	 * @param cpu The CPU.
+	 * @param component The current component.
+	 * @param instructionDependent Whether the latencies depend on the current instruction.
+	 * @param components The identifiers of the components of the path, updated from the start.
+	 * @return The index of the stage where the path starts, or <tt>-1</tt> if it doesn't start in a stage.
+	 */
+	private static int trace(CPU cpu, Component component, boolean instructionDependent, LinkedList<String> components) {
+		components.addFirst(component.getId());
+		int stage = cpu.getStageStartedBy(component);
+		if(stage >= 0) return stage;
+
+		int latency = component.getAccumulatedLatency() - component.getLatency();
+		for(Input in: instructionDependent ? component.getLatencyInputs() : component.getInputs()) {
+			if(in.isConnected() && in.canChangeComponentAccumulatedLatency() && in.getAccumulatedLatency() == latency) {
+				stage = trace(cpu, in.getConnectedOutput().getComponent(), instructionDependent, components);
+				if(stage >= 0) return stage;
+			}
+		}
+		components.removeFirst();
+		return -1;
+	}
+
+	/**
+	 * Returns the number of stages (1 in unicycle CPUs).
+	 * @return The number of stages.
+	 */
+	public int getNumberOfStages() {
+		return stages.length;
+	}
+
+	/**
+	 * Returns the name of a stage.
+	 * @param stage The index of the stage.
+	 * @return The name of the stage.
+	 */
+	public String getStageName(int stage) {
+		return stages[stage];
+	}
+
+	/**
+	 * Returns the worst path of a stage.
+	 * @param stage The index of the stage.
+	 * @return The path, or <tt>null</tt> if the stage has no paths.
+	 */
+	public Path getStagePath(int stage) {
+		return stagePaths[stage];
+	}
+
+	/**
+	 * Returns the stage with the worst path, which sets the clock period.
+	 * @return The index of the stage.
+	 */
+	public int getBottleneckStage() {
+		int worst = 0;
+		for(int s = 1; s < stagePaths.length; s++) {
+			if(stagePaths[s] != null && (stagePaths[worst] == null || stagePaths[s].getLatency() > stagePaths[worst].getLatency()))
+				worst = s;
+		}
+		return worst;
+	}
+
+	/**
+	 * Returns the clock period of the CPU.
+	 * @return The clock period (in LATENCY_UNIT unit).
+	 */
+	public int getClockPeriod() {
+		return clockPeriod;
+	}
+
+	/**
+	 * Returns the number of instructions in the report.
+	 * @return The number of instructions of the instruction set.
+	 */
+	public int getNumberOfInstructions() {
+		return instructions.length;
+	}
+
+	/**
+	 * Returns the timing of an instruction.
+	 * @param index The index of the instruction (sorted by mnemonic).
+	 * @return The timing of the instruction.
+	 */
+	public InstructionTiming getInstruction(int index) {
+		return instructions[index];
+	}
+
+	/**
+	 * Writes the report as a JSON object.
+	 * @param out The writer (not closed).
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void writeJSON(Writer out) throws IOException {
+		try {
+			JSONWriter json = new JSONWriter(out);
+			json.object().key("clock_period").value(clockPeriod)
+				.key("bottleneck_stage").value(stages[getBottleneckStage()]);
+
+			json.key("stages").array();
+			for(int s = 0; s < stages.length; s++) {
+				json.object().key("stage").value(stages[s]);
+				if(stagePaths[s] != null)
+					writePath(json, stagePaths[s]);
+				json.endObject();
+			}
+			json.endArray();
+
+			json.key("instructions").array();
+			for(InstructionTiming t: instructions) {
+				json.object().key("mnemonic").value(t.getMnemonic()).key("code").value(t.getCode());
+				if(t.isValid()) {
+					json.key("critical_stage").value(stages[t.getCriticalStage()]);
+					if(t.getCriticalPath() != null)
+						writePath(json, t.getCriticalPath());
+					json.key("stage_latencies").array();
+					for(int s = 0; s < stages.length; s++)
+						json.value(t.getStageLatency(s));
+					json.endArray();
+				}
+				else
+					json.key("error").value(t.getError());
+				json.endObject();
+			}
+			json.endArray();
+
+			json.endObject();
+			out.write('\n');
+			out.flush();
+		} catch(JSONException ex) {
+			throw new IOException(ex);
+		}
+	}
+
+	/**
+	 * Writes the latency and components of a path to the current JSON object.
+	 * @param json The JSON writer.
+	 * @param path The path.
+	 * @throws JSONException If the JSON can't be written.
+	 */
+	private static void writePath(JSONWriter json, Path path) throws JSONException {
+		json.key("latency").value(path.getLatency()).key("path").array();
+		for(String id: path.getComponents())
+			json.value(id);
+		json.endArray();
+	}
+
+	/**
+	 * A path of the datapath.
+	 */
+	public static final class Path {
+		/** The accumulated latency at the end of the path. */
+		private final int latency;
+		/** The identifiers of the components of the path, from the start. */
+		private final List<String> components;
+
+		/**
+		 * Constructor.
+		 * @param latency The accumulated latency at the end of the path.
+		 * @param components The identifiers of the components of the path (copied).
+		 */
+		private Path(int latency, List<String> components) {
+			this.latency = latency;
+			this.components = Collections.unmodifiableList(new ArrayList<>(components));
+		}
+
+		/**
+		 * Returns the latency of the path.
+		 * @return The accumulated latency at the end of the path (in LATENCY_UNIT unit).
+		 */
+		public int getLatency() {
+			return latency;
+		}
+
+		/**
+		 * Returns the components of the path.
+		 * @return The identifiers of the components, from the start of the path to its end.
+		 */
+		public List<String> getComponents() {
+			return components;
+		}
+
+		@Override
+		public String toString() {
+			String str = "";
+			for(String id: components)
+				str += (str.isEmpty() ? "" : " -> ") + id;
+			return str;
+		}
+	}
+
+	/**
+	 * The timing of an instruction.
+	 */
+	public static final class InstructionTiming {
+		/** The mnemonic of the instruction. */
+		private final String mnemonic;
+		/** The code used to evaluate the instruction. */
+		private final String code;
+		/** The critical path of the instruction in each stage, or <tt>null</tt> if it could not be evaluated. */
+		private final Path[] stagePaths;
+		/** The error that prevented the evaluation, or <tt>null</tt>. */
+		private final String error;
+
+		/**
+		 * Constructor.
+		 * @param mnemonic The mnemonic of the instruction.
+		 * @param code The code used to evaluate the instruction.
+		 * @param stagePaths The critical path of the instruction in each stage, or <tt>null</tt>.
+		 * @param error The error that prevented the evaluation, or <tt>null</tt>.
+		 */
+		private InstructionTiming(String mnemonic, String code, Path[] stagePaths, String error) {
+			this.mnemonic = mnemonic;
+			this.code = code;
+			this.stagePaths = stagePaths != null ? Arrays.copyOf(stagePaths, stagePaths.length) : null;
+			this.error = error;
+		}
+
+		/**
+		 * Returns the mnemonic of the instruction.
+		 * @return The mnemonic.
+		 */
+		public String getMnemonic() {
+			return mnemonic;
+		}
+
+		/**
+		 * Returns the code used to evaluate the instruction.
+		 * @return The line of code.
+		 */
+		public String getCode() {
+			return code;
+		}
+
+		/**
+		 * Returns whether the instruction was evaluated.
+		 * @return <tt>False</tt> if the instruction could not be assembled in the CPU.
+		 */
+		public boolean isValid() {
+			return stagePaths != null;
+		}
+
+		/**
+		 * Returns the error that prevented the evaluation of the instruction.
+		 * @return The error message, or <tt>null</tt>.
+		 */
+		public String getError() {
+			return error;
+		}
+
+		/**
+		 * Returns the latency of the instruction in a stage.
+		 * @param stage The index of the stage.
+		 * @return The latency of the critical path of the instruction in the stage (0 if none).
+		 */
+		public int getStageLatency(int stage) {
+			return stagePaths[stage] != null ? stagePaths[stage].getLatency() : 0;
+		}
+
+		/**
+		 * Returns the stage where the instruction is slowest.
+		 * @return The index of the stage.
+		 */
+		public int getCriticalStage() {
+			int worst = 0;
+			for(int s = 1; s < stagePaths.length; s++) {
+				if(getStageLatency(s) > getStageLatency(worst))
+					worst = s;
+			}
+			return worst;
+		}
+
+		/**
+		 * Returns the latency of the instruction (of its slowest stage).
+		 * @return The latency (in LATENCY_UNIT unit).
+		 */
+		public int getLatency() {
+			return getStageLatency(getCriticalStage());
+		}
+
+		/**
+		 * Returns the critical path of the instruction (in its slowest stage).
+		 * @return The path, or <tt>null</tt> if the instruction has no paths.
+		 */
+		public Path getCriticalPath() {
+			return stagePaths[getCriticalStage()];
+		}
+	}
+}
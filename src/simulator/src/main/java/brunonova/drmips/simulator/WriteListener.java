@@ -0,0 +1,39 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+/**
+ * Interface of the objects that are notified when a component writes to its
+ * internal state in a clock transition.
+ *
+ * <p>Used by {@link Breakpoints} to implement write watchpoints on the
+ * registers and on the data memory.</p>
+ *
+ * @author Bruno Nova
+ */
+public interface WriteListener {
+	/**
+	 * Called when a position of the state of a component is written in a clock transition.
+	 * <p>This method is called while the clock transition is taking place, so
+	 * the state of the CPU may still be incomplete.</p>
+	 * @param component The component.
+	 * @param index The index of the position (register index, memory index, etc.).
+	 */
+	public void stateWritten(Component component, int index);
+}
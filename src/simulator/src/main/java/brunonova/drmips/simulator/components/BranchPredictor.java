@@ -0,0 +1,400 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator.components;
+
+import brunonova.drmips.simulator.*;
+import brunonova.drmips.simulator.exceptions.InvalidCPUException;
+import brunonova.drmips.simulator.util.Dimension;
+import java.util.Locale;
+import java.util.Stack;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Class that represents a dynamic branch predictor in the IF stage of a
+ * pipelined CPU.
+ *
+ * <p>In each clock cycle, the predictor chooses the address of the next
+ * instruction to fetch from the address of the next sequential instruction
+ * (<tt>PC+4</tt>): if it predicts that the instruction being fetched is a taken
+ * branch, the next address is the target stored in the branch target buffer
+ * (BTB), otherwise it is <tt>PC+4</tt>. The prediction is sent to the
+ * <tt>IF/ID</tt> register and travels with the instruction.</p>
+ *
+ * <p>When the branch is resolved (its <tt>branch</tt>, <tt>taken</tt>,
+ * <tt>target</tt>, <tt>branch_pc_plus_4</tt> and <tt>predicted</tt> inputs are
+ * connected to the stage where it is resolved), a misprediction is signaled in
+ * the <tt>mispredict</tt> output, which should flush the wrongly fetched
+ * instructions, and the next address is the correct one. At the end of the
+ * clock cycle the predictor is trained with the outcome of the branch.</p>
+ *
+ * <p>The supported predictors are:</p>
+ * <ul>
+ * <li><b>static_not_taken</b>: always predicts not taken;</li>
+ * <li><b>static_taken</b>: predicts taken every branch found in the BTB;</li>
+ * <li><b>one_bit</b>: a branch history table (BHT) with the last outcome of
+ *     each entry;</li>
+ * <li><b>two_bit</b>: a BHT with 2-bit saturating counters;</li>
+ * <li><b>gshare</b>: a BHT with 2-bit saturating counters, indexed by the
+ *     address xor the global history of the last branches.</li>
+ * </ul>
+ *
+ * <p>The dynamic predictors also need a BTB hit to predict taken, as the target
+ * of a branch isn't known before it is decoded. The tables are indexed by the
+ * bits of <tt>PC+4</tt> above the byte offset, and the global history is only
+ * updated when the branches are resolved, so a branch fetched before an older
+ * one is resolved uses the older history.</p>
+ *
+ * <p>The BHT, the BTB and the global history are stored in a single array of
+ * ints, which is cheap to update and to save for the "step back".</p>
+ *
+ * @author Bruno Nova
+ */
+public class BranchPredictor extends Component implements Synchronous, StateHashable {
+	/** The maximum number of entries of the tables. */
+	public static final int MAXIMUM_ENTRIES = 4096;
+
+	/** The prediction schemes. */
+	public static enum Scheme {
+		/** Always predicts not taken. */
+		STATIC_NOT_TAKEN,
+		/** Predicts taken the branches in the BTB. */
+		STATIC_TAKEN,
+		/** Predicts the last outcome of the BHT entry. */
+		ONE_BIT,
+		/** Predicts with a 2-bit saturating counter in the BHT entry. */
+		TWO_BIT,
+		/** Predicts with 2-bit saturating counters indexed by the address xor the global history. */
+		GSHARE
+	}
+
+	private final Input pcPlus4, branch, taken, target, branchPcPlus4, predicted;
+	private final Output newPc, prediction, mispredict;
+	private final Scheme scheme;
+	private final int bhtEntries, btbEntries, historyBits;
+	private final int ghr; // position of the global history in the state array
+	private int[] state; // BHT, BTB tags, BTB targets and global history
+	private final Stack<int[]> states = new Stack<>(); // previous states
+	private final long[] keys; // keys of the positions of the state
+	private long stateHash; // hash of the state (updated on each change)
+
+	/**
+	 * Component constructor.
+	 * @param id The component's identifier.
+	 * @param json The JSON object representing the component that should be parsed.
+	 * @throws InvalidCPUException If the component has invalid parameters.
+	 * @throws JSONException If the JSON object is invalid or incomplete.
+	 */
+	public BranchPredictor(String id, JSONObject json) throws InvalidCPUException, JSONException {
+		super(id, json, "Branch\npredictor", "branch_predictor", "branch_predictor_description", new Dimension(90, 50));
+
+		bhtEntries = json.optInt("bht_entries", 16);
+		btbEntries = json.optInt("btb_entries", 16);
+		historyBits = json.optInt("history_bits", 4);
+		if(bhtEntries < 1 || bhtEntries > MAXIMUM_ENTRIES || Integer.bitCount(bhtEntries) != 1)
+			throw new InvalidCPUException("Invalid number of BHT entries! Must be a power of 2 not greater than " + MAXIMUM_ENTRIES + ".");
+		if(btbEntries < 1 || btbEntries > MAXIMUM_ENTRIES || Integer.bitCount(btbEntries) != 1)
+			throw new InvalidCPUException("Invalid number of BTB entries! Must be a power of 2 not greater than " + MAXIMUM_ENTRIES + ".");
+		if(historyBits < 1 || historyBits > 16)
+			throw new InvalidCPUException("Invalid number of history bits! Must be between 1 and 16.");
+		try {
+			scheme = Scheme.valueOf(json.optString("predictor", "two_bit").toUpperCase(Locale.ROOT));
+		} catch(IllegalArgumentException ex) {
+			throw new InvalidCPUException("Invalid branch predictor! Must be one of {static_not_taken, static_taken, one_bit, two_bit, gshare}.", ex);
+		}
+
+		ghr = bhtEntries + 2 * btbEntries;
+		state = new int[ghr + 1];
+		keys = StateHash.keys(StateHash.seed(id), state.length);
+
+		pcPlus4 = addInput(json.getString("pc_plus_4"), new Data(), IOPort.Direction.WEST);
+		branch = addInput(json.getString("branch"), new Data(1), IOPort.Direction.EAST);
+		taken = addInput(json.getString("taken"), new Data(1), IOPort.Direction.EAST);
+		target = addInput(json.getString("target"), new Data(), IOPort.Direction.EAST);
+		branchPcPlus4 = addInput(json.getString("branch_pc_plus_4"), new Data(), IOPort.Direction.EAST);
+		predicted = addInput(json.getString("predicted"), new Data(1), IOPort.Direction.EAST);
+		newPc = addOutput(json.getString("new_pc"), new Data(), IOPort.Direction.SOUTH);
+		prediction = addOutput(json.getString("prediction"), new Data(1), IOPort.Direction.WEST);
+		mispredict = addOutput(json.getString("mispredict"), new Data(1), IOPort.Direction.SOUTH);
+		reset();
+	}
+
+	@Override
+	public void execute() {
+		int address = getPcPlus4().getValue();
+		boolean predictTaken = predictTaken(address);
+		boolean isTaken = getTaken().getValue() == 1;
+		boolean isMispredicted = isTaken != (getPredicted().getValue() == 1);
+
+		getPrediction().setValue(predictTaken ? 1 : 0);
+		getMispredict().setValue(isMispredicted ? 1 : 0);
+		if(isMispredicted)
+			getNewPc().setValue(isTaken ? getTarget().getValue() : getBranchPcPlus4().getValue());
+		else
+			getNewPc().setValue(predictTaken ? state[bhtEntries + btbEntries + btbIndex(address)] : address);
+
+		getTarget().setRelevant(isMispredicted && isTaken);
+		getBranchPcPlus4().setRelevant(getBranch().getValue() == 1);
+	}
+
+	@Override
+	public void executeSynchronous() {
+		if(getBranch().getValue() == 1)
+			train(getBranchPcPlus4().getValue(), getTaken().getValue() == 1, getTarget().getValue());
+	}
+
+	@Override
+	public void pushState() {
+		states.push(state.clone());
+	}
+
+	@Override
+	public void popState() {
+		state = states.pop();
+		updateStateHash();
+	}
+
+	@Override
+	public boolean hasSavedStates() {
+		return !states.empty();
+	}
+
+	@Override
+	public void clearSavedStates() {
+		states.clear();
+	}
+
+	@Override
+	public void resetFirstState() {
+		while(hasSavedStates())
+			popState();
+	}
+
+	@Override
+	public boolean isWritingState() {
+		return getBranch().getValue() == 1;
+	}
+
+	@Override
+	public long getStateHash() {
+		return stateHash;
+	}
+
+	/**
+	 * Empties the BTB and the global history and resets the BHT to "not taken"
+	 * (weakly, for the 2-bit counters).
+	 */
+	public final void reset() {
+		int initial = (scheme == Scheme.TWO_BIT || scheme == Scheme.GSHARE) ? 1 : 0;
+		for(int i = 0; i < bhtEntries; i++)
+			state[i] = initial;
+		for(int i = bhtEntries; i < bhtEntries + btbEntries; i++)
+			state[i] = -1; // invalid tag
+		for(int i = bhtEntries + btbEntries; i < state.length; i++)
+			state[i] = 0;
+		updateStateHash();
+	}
+
+	/**
+	 * Returns whether the instruction before the given address is predicted to be a taken branch.
+	 * @param address The address of the next sequential instruction (<tt>PC+4</tt>).
+	 * @return <tt>True</tt> if it is predicted taken.
+	 */
+	public final boolean predictTaken(int address) {
+		if(scheme == Scheme.STATIC_NOT_TAKEN || state[bhtEntries + btbIndex(address)] != address)
+			return false;
+		switch(scheme) {
+			case STATIC_TAKEN: return true;
+			case ONE_BIT:      return state[bhtIndex(address)] != 0;
+			default:           return state[bhtIndex(address)] >= 2;
+		}
+	}
+
+	/**
+	 * Trains the predictor with the outcome of a branch.
+	 * @param address The address of the instruction after the branch (<tt>PC+4</tt>).
+	 * @param isTaken Whether the branch was taken.
+	 * @param branchTarget The target of the branch.
+	 */
+	private void train(int address, boolean isTaken, int branchTarget) {
+		int index = bhtIndex(address);
+		switch(scheme) {
+			case ONE_BIT:
+				set(index, isTaken ? 1 : 0);
+				break;
+			case TWO_BIT: case GSHARE:
+				if(isTaken && state[index] < 3)
+					set(index, state[index] + 1);
+				else if(!isTaken && state[index] > 0)
+					set(index, state[index] - 1);
+				break;
+			default:
+		}
+		if(scheme == Scheme.GSHARE)
+			set(ghr, ((state[ghr] << 1) | (isTaken ? 1 : 0)) & ((1 << historyBits) - 1));
+		if(isTaken && scheme != Scheme.STATIC_NOT_TAKEN) {
+			int entry = btbIndex(address);
+			set(bhtEntries + entry, address);
+			set(bhtEntries + btbEntries + entry, branchTarget);
+		}
+	}
+
+	/**
+	 * Returns the entry of the BHT of the given address.
+	 * @param address The address of the instruction after the branch (<tt>PC+4</tt>).
+	 * @return The index of the entry.
+	 */
+	private int bhtIndex(int address) {
+		int index = address >>> 2;
+		if(scheme == Scheme.GSHARE)
+			index ^= state[ghr];
+		return index & (bhtEntries - 1);
+	}
+
+	/**
+	 * Returns the entry of the BTB of the given address.
+	 * @param address The address of the instruction after the branch (<tt>PC+4</tt>).
+	 * @return The index of the entry.
+	 */
+	private int btbIndex(int address) {
+		return (address >>> 2) & (btbEntries - 1);
+	}
+
+	/**
+	 * Updates a position of the state array, and the hash.
+	 * @param index The position.
+	 * @param value The new value.
+	 */
+	private void set(int index, int value) {
+		stateHash ^= StateHash.hash(keys[index], state[index]) ^ StateHash.hash(keys[index], value);
+		state[index] = value;
+	}
+
+	/**
+	 * Recalculates the hash of the state.
+	 */
+	private void updateStateHash() {
+		stateHash = 0;
+		for(int i = 0; i < keys.length; i++)
+			stateHash ^= StateHash.hash(keys[i], state[i]);
+	}
+
+	/**
+	 * Returns the prediction scheme.
+	 * @return The prediction scheme.
+	 */
+	public final Scheme getScheme() {
+		return scheme;
+	}
+
+	/**
+	 * Returns the number of entries of the branch history table.
+	 * @return The number of BHT entries.
+	 */
+	public final int getBhtEntries() {
+		return bhtEntries;
+	}
+
+	/**
+	 * Returns the number of entries of the branch target buffer.
+	 * @return The number of BTB entries.
+	 */
+	public final int getBtbEntries() {
+		return btbEntries;
+	}
+
+	/**
+	 * Returns the number of branches in the global history (used by gshare).
+	 * @return The number of history bits.
+	 */
+	public final int getHistoryBits() {
+		return historyBits;
+	}
+
+	/**
+	 * Returns the predictor's <tt>PC+4</tt> input (the address of the next sequential instruction).
+	 * @return The <tt>PC+4</tt> input.
+	 */
+	public final Input getPcPlus4() {
+		return pcPlus4;
+	}
+
+	/**
+	 * Returns the predictor's input that indicates that the resolved instruction is a branch.
+	 * @return The branch input.
+	 */
+	public final Input getBranch() {
+		return branch;
+	}
+
+	/**
+	 * Returns the predictor's input that indicates that the resolved branch is taken.
+	 * @return The taken input.
+	 */
+	public final Input getTaken() {
+		return taken;
+	}
+
+	/**
+	 * Returns the predictor's input with the target of the resolved branch.
+	 * @return The target input.
+	 */
+	public final Input getTarget() {
+		return target;
+	}
+
+	/**
+	 * Returns the predictor's input with the <tt>PC+4</tt> of the resolved branch.
+	 * @return The branch's <tt>PC+4</tt> input.
+	 */
+	public final Input getBranchPcPlus4() {
+		return branchPcPlus4;
+	}
+
+	/**
+	 * Returns the predictor's input with the prediction made for the resolved branch.
+	 * @return The predicted input.
+	 */
+	public final Input getPredicted() {
+		return predicted;
+	}
+
+	/**
+	 * Returns the predictor's output with the address of the next instruction to fetch.
+	 * @return The new PC output.
+	 */
+	public final Output getNewPc() {
+		return newPc;
+	}
+
+	/**
+	 * Returns the predictor's output with the prediction for the instruction being fetched.
+	 * @return The prediction output.
+	 */
+	public final Output getPrediction() {
+		return prediction;
+	}
+
+	/**
+	 * Returns the predictor's output that signals a misprediction.
+	 * @return The mispredict output.
+	 */
+	public final Output getMispredict() {
+		return mispredict;
+	}
+}
@@ -0,0 +1,511 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator.components;
+
+import brunonova.drmips.simulator.*;
+import brunonova.drmips.simulator.exceptions.InvalidCPUException;
+import brunonova.drmips.simulator.util.Dimension;
+import java.util.Locale;
+import java.util.Stack;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Class that represents a set-associative cache in front of a memory.
+ *
+ * <p>The cache is placed on the address wire of the instruction or data
+ * memory: the address passes through it unchanged, so the values stay in the
+ * memory and only the tags of the cached blocks are simulated. The type of
+ * access is determined by the memory connected to the output. The instruction
+ * memory is read on every clock cycle (if the address has an instruction),
+ * the data memory is accessed according to its <tt>MemRead</tt> and
+ * <tt>MemWrite</tt> inputs, and any other component is read on every
+ * cycle.</p>
+ *
+ * <p>An access takes <tt>hit_latency</tt> clock cycles if the block is in the
+ * cache and <tt>miss_latency</tt> cycles otherwise, plus another
+ * <tt>miss_latency - hit_latency</tt> cycles to write back an evicted dirty
+ * block. The cycles besides the first one are stall cycles, in which the CPU
+ * waits for the memory (see {@link CPU#isStalledByMemory()}). Write-back caches
+ * allocate the block on a write miss, while write-through caches write to the
+ * memory without allocating it and without stalling (a write buffer is
+ * assumed).</p>
+ *
+ * <p>The tags, flags and replacement order of the lines, as well as the
+ * counters, are stored in a single array of ints, which is cheap to update and
+ * to save for the "step back".</p>
+ *
+ * @author Bruno Nova
+ */
+public class Cache extends Component implements Synchronous, StateHashable {
+	/** The maximum size of the cache (in bytes). */
+	public static final int MAXIMUM_SIZE = 65536;
+
+	/** The policies to choose the line to replace on a miss. */
+	public static enum ReplacementPolicy {
+		/** Replaces the least recently used line. */
+		LRU,
+		/** Replaces the line that was filled first. */
+		FIFO,
+		/** Replaces a pseudo-random line. */
+		RANDOM
+	}
+
+	/** The policies to handle the writes. */
+	public static enum WritePolicy {
+		/** Writes to the cache and to the memory only when the block is evicted (write-allocate). */
+		WRITE_BACK,
+		/** Writes directly to the memory (no-write-allocate). */
+		WRITE_THROUGH
+	}
+
+	/** Flag of the lines that contain a block. */
+	private static final int VALID = 1;
+	/** Flag of the lines whose block was modified. */
+	private static final int DIRTY = 2;
+
+	// Positions of the counters after the lines in the state array
+	private static final int STALL = 0;
+	private static final int RANDOM = 1;
+	private static final int ACCESSES = 2;
+	private static final int HITS = 3;
+	private static final int MISSES = 4;
+	private static final int EVICTIONS = 5;
+	private static final int WRITEBACKS = 6;
+	private static final int COUNTERS = 7;
+
+	// Types of access in a clock cycle
+	private static final int NONE = 0;
+	private static final int READ = 1;
+	private static final int WRITE = 2;
+
+	private final Input input;
+	private final Output output;
+	private final int size, blockSize, associativity, sets, offsetBits, setBits;
+	private final ReplacementPolicy replacement;
+	private final WritePolicy writePolicy;
+	private final int hitLatency, missLatency;
+	private final int lines; // number of lines (sets * associativity)
+	private final int base; // position of the counters in the state array
+	private int[] state; // tags, flags and ages of the lines, followed by the counters
+	private final Stack<int[]> states = new Stack<>(); // previous states
+	private final long[] keys; // keys of the hashed positions of the state (lines and pending stall)
+	private long stateHash; // hash of the lines and pending stall (updated on each change)
+
+	/**
+	 * Component constructor.
+	 * @param id The component's identifier.
+	 * @param json The JSON object representing the component that should be parsed.
+	 * @throws InvalidCPUException If the component has invalid parameters.
+	 * @throws JSONException If the JSON object is invalid or incomplete.
+	 */
+	public Cache(String id, JSONObject json) throws InvalidCPUException, JSONException {
+		super(id, json, "Cache", "cache", "cache_description", new Dimension(50, 40));
+
+		size = json.getInt("size");
+		blockSize = json.optInt("block_size", 16);
+		associativity = json.optInt("associativity", 1);
+		hitLatency = json.optInt("hit_latency", 1);
+		missLatency = json.optInt("miss_latency", 10);
+		if(blockSize < Data.DATA_SIZE / 8 || Integer.bitCount(blockSize) != 1)
+			throw new InvalidCPUException("Invalid cache block size! Must be a power of 2 not lower than " + (Data.DATA_SIZE / 8) + " bytes.");
+		if(associativity < 1 || Integer.bitCount(associativity) != 1)
+			throw new InvalidCPUException("Invalid cache associativity! Must be a power of 2.");
+		if(size < blockSize * associativity || size > MAXIMUM_SIZE || Integer.bitCount(size) != 1)
+			throw new InvalidCPUException("Invalid cache size! Must be a power of 2 between the size of a set (" + (blockSize * associativity) + ") and " + MAXIMUM_SIZE + " bytes.");
+		if(hitLatency < 1 || missLatency < hitLatency)
+			throw new InvalidCPUException("Invalid cache latencies! The hit latency must be at least 1 clock cycle and the miss latency can't be lower than it.");
+		try {
+			replacement = ReplacementPolicy.valueOf(json.optString("replacement", "lru").toUpperCase(Locale.ROOT));
+			writePolicy = WritePolicy.valueOf(json.optString("write_policy", "write_back").toUpperCase(Locale.ROOT));
+		} catch(IllegalArgumentException ex) {
+			throw new InvalidCPUException("Invalid cache policy! The replacement must be one of {lru, fifo, random} and the write policy one of {write_back, write_through}.", ex);
+		}
+
+		lines = size / blockSize;
+		sets = lines / associativity;
+		offsetBits = Integer.numberOfTrailingZeros(blockSize);
+		setBits = Integer.numberOfTrailingZeros(sets);
+		base = 3 * lines;
+		state = new int[base + COUNTERS];
+		keys = StateHash.keys(StateHash.seed(id), base + 1);
+
+		input = addInput(json.getString("in"), new Data());
+		output = addOutput(json.getString("out"), new Data());
+		reset();
+	}
+
+	@Override
+	public void execute() {
+		getOutput().setValue(getInput().getValue());
+	}
+
+	@Override
+	public void executeSynchronous() {
+		int access = getAccessType();
+		if(access != NONE)
+			access(getInput().getValue(), access == WRITE);
+	}
+
+	@Override
+	public void pushState() {
+		states.push(state.clone());
+	}
+
+	@Override
+	public void popState() {
+		state = states.pop();
+		updateStateHash();
+	}
+
+	@Override
+	public boolean hasSavedStates() {
+		return !states.empty();
+	}
+
+	@Override
+	public void clearSavedStates() {
+		states.clear();
+	}
+
+	@Override
+	public void resetFirstState() {
+		while(hasSavedStates())
+			popState();
+	}
+
+	@Override
+	public boolean isWritingState() {
+		return getAccessType() != NONE;
+	}
+
+	@Override
+	public long getStateHash() {
+		return stateHash;
+	}
+
+	/**
+	 * Empties the cache and resets the counters to zero.
+	 */
+	public final void reset() {
+		for(int i = 0; i < state.length; i++)
+			state[i] = 0;
+		for(int l = 0; l < lines; l++)
+			state[2 * lines + l] = l % associativity; // distinct ages in each set
+		state[base + RANDOM] = (int)StateHash.seed(getId());
+		updateStateHash();
+	}
+
+	/**
+	 * Returns the type of access to the cache in the current clock cycle.
+	 * @return One of <tt>NONE</tt>, <tt>READ</tt> or <tt>WRITE</tt>.
+	 */
+	private int getAccessType() {
+		Input in = getOutput().getConnectedInput();
+		Component memory = in != null ? in.getComponent() : null;
+		int address = getInput().getValue();
+
+		if(memory instanceof DataMemory) {
+			DataMemory dataMemory = (DataMemory)memory;
+			if(dataMemory.getIndexOfAddress(address) < 0)
+				return NONE;
+			else if(dataMemory.getMemWrite().getValue() == 1)
+				return WRITE;
+			else if(dataMemory.getMemRead().getValue() == 1)
+				return READ;
+			else
+				return NONE;
+		}
+		else if(memory instanceof InstructionMemory) {
+			int index = address / (Data.DATA_SIZE / 8);
+			return (index >= 0 && index < ((InstructionMemory)memory).getNumberOfInstructions()) ? READ : NONE;
+		}
+		else
+			return READ;
+	}
+
+	/**
+	 * Accesses the block of the given address, updating the lines and counters
+	 * and setting the stall cycles of the access.
+	 * @param address The address.
+	 * @param write Whether it is a write.
+	 */
+	private void access(int address, boolean write) {
+		int block = address >>> offsetBits;
+		int first = (block & (sets - 1)) * associativity; // first line of the set
+		int tag = block >>> setBits;
+		int line = find(first, tag);
+		int time;
+		state[base + ACCESSES]++;
+
+		if(line >= 0) { // hit
+			state[base + HITS]++;
+			time = hitLatency;
+			if(write && writePolicy == WritePolicy.WRITE_BACK)
+				set(lines + line, VALID | DIRTY);
+			if(replacement == ReplacementPolicy.LRU)
+				promote(first, line);
+		}
+		else { // miss
+			state[base + MISSES]++;
+			if(write && writePolicy == WritePolicy.WRITE_THROUGH)
+				time = hitLatency; // not allocated, goes to the write buffer
+			else {
+				time = missLatency;
+				line = findVictim(first);
+				if((state[lines + line] & VALID) != 0) {
+					state[base + EVICTIONS]++;
+					if((state[lines + line] & DIRTY) != 0) {
+						state[base + WRITEBACKS]++;
+						time += missLatency - hitLatency;
+					}
+				}
+				set(line, tag);
+				set(lines + line, (write && writePolicy == WritePolicy.WRITE_BACK) ? (VALID | DIRTY) : VALID);
+				if(replacement != ReplacementPolicy.RANDOM)
+					promote(first, line);
+			}
+		}
+		set(base + STALL, time - 1);
+	}
+
+	/**
+	 * Returns the line of a set that contains the block with the given tag.
+	 * @param first The first line of the set.
+	 * @param tag The tag of the block.
+	 * @return The index of the line, or -1 if the block isn't in the cache.
+	 */
+	private int find(int first, int tag) {
+		for(int l = first; l < first + associativity; l++) {
+			if(state[l] == tag && (state[lines + l] & VALID) != 0)
+				return l;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the line of a set to be replaced: an empty one, or else the one
+	 * chosen by the replacement policy.
+	 * @param first The first line of the set.
+	 * @return The index of the line.
+	 */
+	private int findVictim(int first) {
+		for(int l = first; l < first + associativity; l++) {
+			if((state[lines + l] & VALID) == 0)
+				return l;
+		}
+		if(replacement == ReplacementPolicy.RANDOM) {
+			int random = state[base + RANDOM] * 1103515245 + 12345; // linear congruential generator
+			state[base + RANDOM] = random;
+			return first + (random >>> 16) % associativity;
+		}
+		for(int l = first; l < first + associativity; l++) {
+			if(state[2 * lines + l] == associativity - 1) // oldest line
+				return l;
+		}
+		return first;
+	}
+
+	/**
+	 * Makes a line the youngest in its set, aging the lines that were younger.
+	 * @param first The first line of the set.
+	 * @param line The line.
+	 */
+	private void promote(int first, int line) {
+		int age = state[2 * lines + line];
+		for(int l = first; l < first + associativity; l++) {
+			if(state[2 * lines + l] < age)
+				set(2 * lines + l, state[2 * lines + l] + 1);
+		}
+		set(2 * lines + line, 0);
+	}
+
+	/**
+	 * Updates a hashed position of the state array, and the hash.
+	 * @param index The position.
+	 * @param value The new value.
+	 */
+	private void set(int index, int value) {
+		stateHash ^= StateHash.hash(keys[index], state[index]) ^ StateHash.hash(keys[index], value);
+		state[index] = value;
+	}
+
+	/**
+	 * Recalculates the hash of the lines and pending stall.
+	 */
+	private void updateStateHash() {
+		stateHash = 0;
+		for(int i = 0; i < keys.length; i++)
+			stateHash ^= StateHash.hash(keys[i], state[i]);
+	}
+
+	/**
+	 * Returns the remaining clock cycles that the CPU must wait for the memory.
+	 * @return The remaining stall cycles of the last access.
+	 */
+	public final int getStallCycles() {
+		return state[base + STALL];
+	}
+
+	/**
+	 * Consumes one of the remaining stall cycles, if any.
+	 * <p>Called by the CPU in each clock cycle in which it waits for the memory.</p>
+	 */
+	public final void consumeStallCycle() {
+		if(getStallCycles() > 0)
+			set(base + STALL, getStallCycles() - 1);
+	}
+
+	/**
+	 * Returns whether the block of the given address is in the cache.
+	 * @param address The address.
+	 * @return <tt>True</tt> if the block is cached.
+	 */
+	public final boolean isCached(int address) {
+		int block = address >>> offsetBits;
+		return find((block & (sets - 1)) * associativity, block >>> setBits) >= 0;
+	}
+
+	/**
+	 * Returns the number of accesses to the cache.
+	 * @return The number of accesses.
+	 */
+	public final int getAccesses() {
+		return state[base + ACCESSES];
+	}
+
+	/**
+	 * Returns the number of accesses that found the block in the cache.
+	 * @return The number of hits.
+	 */
+	public final int getHits() {
+		return state[base + HITS];
+	}
+
+	/**
+	 * Returns the number of accesses that didn't find the block in the cache.
+	 * @return The number of misses.
+	 */
+	public final int getMisses() {
+		return state[base + MISSES];
+	}
+
+	/**
+	 * Returns the number of blocks replaced by other blocks.
+	 * @return The number of evictions.
+	 */
+	public final int getEvictions() {
+		return state[base + EVICTIONS];
+	}
+
+	/**
+	 * Returns the number of evicted dirty blocks that were written back to the memory.
+	 * @return The number of write-backs.
+	 */
+	public final int getWritebacks() {
+		return state[base + WRITEBACKS];
+	}
+
+	/**
+	 * Returns the fraction of accesses that were hits.
+	 * @return The hit rate, between 0 and 1 (0 if there were no accesses).
+	 */
+	public final double getHitRate() {
+		return getAccesses() > 0 ? (double)getHits() / getAccesses() : 0.0;
+	}
+
+	/**
+	 * Returns the size of the cache.
+	 * @return The size, in bytes.
+	 */
+	public final int getCacheSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the size of the blocks.
+	 * @return The size of each block, in bytes.
+	 */
+	public final int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Returns the number of lines in each set.
+	 * @return The associativity.
+	 */
+	public final int getAssociativity() {
+		return associativity;
+	}
+
+	/**
+	 * Returns the number of sets.
+	 * @return The number of sets.
+	 */
+	public final int getNumberOfSets() {
+		return sets;
+	}
+
+	/**
+	 * Returns the replacement policy.
+	 * @return The replacement policy.
+	 */
+	public final ReplacementPolicy getReplacementPolicy() {
+		return replacement;
+	}
+
+	/**
+	 * Returns the write policy.
+	 * @return The write policy.
+	 */
+	public final WritePolicy getWritePolicy() {
+		return writePolicy;
+	}
+
+	/**
+	 * Returns the duration of an access that hits.
+	 * @return The hit latency, in clock cycles.
+	 */
+	public final int getHitLatency() {
+		return hitLatency;
+	}
+
+	/**
+	 * Returns the duration of an access that misses.
+	 * @return The miss latency, in clock cycles.
+	 */
+	public final int getMissLatency() {
+		return missLatency;
+	}
+
+	/**
+	 * Returns the cache's input (the address).
+	 * @return Cache input.
+	 */
+	public final Input getInput() {
+		return input;
+	}
+
+	/**
+	 * Returns the cache's output (the same address).
+	 * @return Cache output.
+	 */
+	public final Output getOutput() {
+		return output;
+	}
+}
@@ -28,18 +28,55 @@ import org.json.JSONObject;
 /**
  * Class that represents the data memory.
  *
+ * <p>By default, the memory is accessed in a single clock cycle, and its
+ * latency only contributes to the clock period. The optional <tt>timing</tt>
+ * object enables a multi-cycle model, in which each access takes
+ * <tt>ceil(latency / clock period)</tt> clock cycles and the CPU waits for the
+ * extra cycles (see {@link CPU#isStalledByMemory()}). Its properties are:</p>
+ * <ul>
+ * <li><b>read_latency</b>: the duration of a read;</li>
+ * <li><b>write_latency</b>: the duration of a write (the same as the reads by
+ *     default);</li>
+ * <li><b>banks</b>: the number of banks, among which consecutive words are
+ *     interleaved (1 by default);</li>
+ * <li><b>bank_recovery</b>: the time that a bank stays busy after an access,
+ *     delaying the next access to the same bank (0 by default);</li>
+ * <li><b>burst_length</b>: the number of words of an aligned burst
+ *     (1 by default, no bursts);</li>
+ * <li><b>burst_latency</b>: the duration of an access to the same burst as the
+ *     previous access (the same as the reads by default).</li>
+ * </ul>
+ * <p>The latencies are in <tt>LATENCY_UNIT</tt>, like the latency of the
+ * component, which is still used in the calculation of the critical path.</p>
+ *
  * @author Bruno Nova
  */
-public class DataMemory extends Component implements Synchronous {
+public class DataMemory extends Component implements Synchronous, StateHashable {
 	/** The minimum size of the memory (in ints). */
 	public static final int MINIMUM_SIZE = 20;
 	/** The maximum size of the memory (in ints). */
 	public static final int MAXIMUM_SIZE = 500;
+	/** The maximum number of banks of the timing model. */
+	public static final int MAXIMUM_BANKS = 32;
+
+	// Positions in the timing state array
+	private static final int STALL = 0;
+	private static final int LAST_BURST = 1;
+	private static final int BANKS = 2;
 
 	private final Input address, writeData, memRead, memWrite;
 	private final Output output;
 	private int[] memory;
 	private final Stack<int[]> states = new Stack<>(); // previous values
+	private final long[] keys; // keys of the memory positions in the state hash
+	private long stateHash; // hash of the values in memory (updated on each write)
+	private WriteListener writeListener = null; // notified of the writes in clock transitions
+	private final int readLatency, writeLatency, banks, bankRecovery, burstLength, burstLatency;
+	private int clockPeriod = 0; // set by the CPU
+	private int[] timing = null; // pending stall, last burst and busy cycles of each bank, or null if single-cycle
+	private final Stack<int[]> timingStates = new Stack<>(); // previous timing states
+	private long[] timingKeys = null; // keys of the timing state in the state hash
+	private long timingHash = 0; // hash of the timing state
 
 	/**
 	 * Component constructor.
@@ -56,6 +93,30 @@ public class DataMemory extends Component implements Synchronous {
 			throw new InvalidCPUException("Invalid data memory size! Must be between " + MINIMUM_SIZE + " and " + MAXIMUM_SIZE + " positions (each position has 32 bits).");
 
 		memory = new int[size];
+		keys = StateHash.keys(StateHash.seed(id), size);
+		stateHash = StateHash.hash(keys, memory);
+
+		JSONObject timingJson = json.optJSONObject("timing");
+		if(timingJson != null) {
+			readLatency = timingJson.getInt("read_latency");
+			writeLatency = timingJson.optInt("write_latency", readLatency);
+			banks = timingJson.optInt("banks", 1);
+			bankRecovery = timingJson.optInt("bank_recovery", 0);
+			burstLength = timingJson.optInt("burst_length", 1);
+			burstLatency = timingJson.optInt("burst_latency", readLatency);
+			if(readLatency < 0 || writeLatency < 0 || bankRecovery < 0 || burstLatency < 0)
+				throw new InvalidCPUException("Invalid data memory timing! The latencies can't be negative.");
+			if(banks < 1 || banks > MAXIMUM_BANKS)
+				throw new InvalidCPUException("Invalid number of data memory banks! Must be between 1 and " + MAXIMUM_BANKS + ".");
+			if(burstLength < 1 || Integer.bitCount(burstLength) != 1)
+				throw new InvalidCPUException("Invalid data memory burst length! Must be a power of 2.");
+			timing = new int[BANKS + banks];
+			timingKeys = StateHash.keys(StateHash.seed(id + ".timing"), timing.length);
+			resetTiming();
+		}
+		else
+			readLatency = writeLatency = banks = bankRecovery = burstLength = burstLatency = 0;
+
 		address = addInput(json.getString("address"), new Data(), IOPort.Direction.WEST, true, true);
 		writeData = addInput(json.getString("write_data"), new Data(), IOPort.Direction.WEST, false, true);
 		memRead = addInput(json.getString("mem_read"), new Data(1), IOPort.Direction.NORTH);
@@ -81,18 +142,34 @@ public class DataMemory extends Component implements Synchronous {
 
 	@Override
 	public void executeSynchronous() {
-		if(getMemWrite().getValue() == 1)
+		boolean write = getMemWrite().getValue() == 1;
+		int index = getIndexOfAddress(getAddress().getValue());
+		if(timing != null) {
+			int bank = -1;
+			if(index >= 0 && (write || getMemRead().getValue() == 1))
+				bank = access(index, write);
+			tick(bank);
+		}
+		if(write) {
 			setData(getAddress().getValue(), getWriteData().getValue(), true);
+			if(writeListener != null && index >= 0) writeListener.stateWritten(this, index);
+		}
 	}
 
 	@Override
 	public void pushState() {
 		states.push(memory.clone());
+		if(timing != null) timingStates.push(timing.clone());
 	}
 
 	@Override
 	public void popState() {
 		memory = states.pop();
+		stateHash = StateHash.hash(keys, memory);
+		if(timing != null) {
+			timing = timingStates.pop();
+			timingHash = StateHash.hash(timingKeys, timing);
+		}
 	}
 
 	@Override
@@ -103,6 +180,7 @@ public class DataMemory extends Component implements Synchronous {
 	@Override
 	public void clearSavedStates() {
 		states.clear();
+		timingStates.clear();
 	}
 
 	@Override
@@ -116,15 +194,187 @@ public class DataMemory extends Component implements Synchronous {
 		return getMemWrite().getValue() == 1;
 	}
 
+	@Override
+	public long getStateHash() {
+		return stateHash ^ timingHash;
+	}
+
+	/**
+	 * Sets the listener that is notified when a memory position is written in a clock transition.
+	 * @param listener The listener, or <tt>null</tt>.
+	 */
+	public final void setWriteListener(WriteListener listener) {
+		writeListener = listener;
+	}
+
 	/**
 	 * Resets the memory to zeros.
 	 */
 	public final void reset() {
 		for(int i = 0; i < memory.length; i++)
 			memory[i] = 0;
+		stateHash = StateHash.hash(keys, memory);
 		execute();
 	}
 
+	/**
+	 * Resets the timing model: no pending stall cycles, no open burst and no busy banks.
+	 */
+	public final void resetTiming() {
+		if(timing != null) {
+			for(int i = 0; i < timing.length; i++)
+				timing[i] = 0;
+			timing[LAST_BURST] = -1;
+			timingHash = StateHash.hash(timingKeys, timing);
+		}
+	}
+
+	/**
+	 * Sets the clock period of the CPU, used to convert the latencies of the
+	 * timing model to clock cycles.
+	 * <p>Called by the CPU whenever the clock period is determined.</p>
+	 * @param clockPeriod The clock period, in <tt>LATENCY_UNIT</tt>.
+	 */
+	public final void setClockPeriod(int clockPeriod) {
+		this.clockPeriod = clockPeriod;
+	}
+
+	/**
+	 * Returns whether the memory has the multi-cycle timing model.
+	 * @return <tt>True</tt> if the accesses can take several clock cycles.
+	 */
+	public final boolean hasTiming() {
+		return timing != null;
+	}
+
+	/**
+	 * Returns the remaining clock cycles that the CPU must wait for the memory.
+	 * @return The remaining stall cycles of the last access (0 without the timing model).
+	 */
+	public final int getStallCycles() {
+		return timing != null ? timing[STALL] : 0;
+	}
+
+	/**
+	 * Consumes one of the remaining stall cycles, if any.
+	 * <p>Called by the CPU in each clock cycle in which it waits for the memory.</p>
+	 */
+	public final void consumeStallCycle() {
+		if(timing != null) {
+			tick(-1);
+			if(timing[STALL] > 0)
+				setTiming(STALL, timing[STALL] - 1);
+		}
+	}
+
+	/**
+	 * Returns the number of clock cycles of an access with the given latency.
+	 * @param latency The latency of the access.
+	 * @return The number of clock cycles (at least 1).
+	 */
+	public final int getAccessCycles(int latency) {
+		return Math.max(1, toCycles(latency));
+	}
+
+	/**
+	 * Converts a time to clock cycles, rounding up.
+	 * @param time The time, in <tt>LATENCY_UNIT</tt>.
+	 * @return The number of clock cycles (0 if the clock period is unknown).
+	 */
+	private int toCycles(int time) {
+		return clockPeriod > 0 ? (time + clockPeriod - 1) / clockPeriod : 0;
+	}
+
+	/**
+	 * Advances the timing model by one clock cycle, freeing the banks.
+	 * @param except The position of the bank accessed in this cycle, which is not freed (or -1).
+	 */
+	private void tick(int except) {
+		for(int i = BANKS; i < timing.length; i++) {
+			if(i != except && timing[i] > 0)
+				setTiming(i, timing[i] - 1);
+		}
+	}
+
+	/**
+	 * Starts an access, setting the stall cycles of the CPU and the busy cycles of the bank.
+	 * @param index The index of the memory position.
+	 * @param write Whether it is a write.
+	 * @return The position of the bank in the timing state array.
+	 */
+	private int access(int index, boolean write) {
+		int burst = index / burstLength;
+		int latency;
+		if(burstLength > 1 && burst == timing[LAST_BURST])
+			latency = burstLatency;
+		else
+			latency = write ? writeLatency : readLatency;
+		int bank = BANKS + index % banks;
+		int cycles = timing[bank] + getAccessCycles(latency); // waits for the bank to be free
+		setTiming(STALL, cycles - 1);
+		setTiming(bank, cycles - 1 + toCycles(bankRecovery));
+		setTiming(LAST_BURST, burst);
+		return bank;
+	}
+
+	/**
+	 * Updates a position of the timing state array, and the hash.
+	 * @param index The position.
+	 * @param value The new value.
+	 */
+	private void setTiming(int index, int value) {
+		timingHash ^= StateHash.hash(timingKeys[index], timing[index]) ^ StateHash.hash(timingKeys[index], value);
+		timing[index] = value;
+	}
+
+	/**
+	 * Returns the duration of a read in the timing model.
+	 * @return The read latency (0 without the timing model).
+	 */
+	public final int getReadLatency() {
+		return readLatency;
+	}
+
+	/**
+	 * Returns the duration of a write in the timing model.
+	 * @return The write latency (0 without the timing model).
+	 */
+	public final int getWriteLatency() {
+		return writeLatency;
+	}
+
+	/**
+	 * Returns the number of banks of the timing model.
+	 * @return The number of banks (0 without the timing model).
+	 */
+	public final int getNumberOfBanks() {
+		return banks;
+	}
+
+	/**
+	 * Returns the time that a bank stays busy after an access.
+	 * @return The bank recovery time (0 without the timing model).
+	 */
+	public final int getBankRecovery() {
+		return bankRecovery;
+	}
+
+	/**
+	 * Returns the number of words of a burst.
+	 * @return The burst length (0 without the timing model).
+	 */
+	public final int getBurstLength() {
+		return burstLength;
+	}
+
+	/**
+	 * Returns the duration of an access to the same burst as the previous one.
+	 * @return The burst latency (0 without the timing model).
+	 */
+	public final int getBurstLatency() {
+		return burstLatency;
+	}
+
 	/**
 	 * Returns the value in the specified address.
 	 * @param address The address of the memory position.
@@ -181,6 +431,7 @@ public class DataMemory extends Component implements Synchronous {
 	 */
 	public final void setDataInIndex(int index, int value, boolean propagate) {
 		if(index >= 0 && index < getMemorySize()) {
+			stateHash ^= StateHash.hash(keys[index], memory[index]) ^ StateHash.hash(keys[index], value);
 			memory[index] = value;
 			if(propagate) execute();
 		}
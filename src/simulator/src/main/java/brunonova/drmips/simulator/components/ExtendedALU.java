@@ -23,6 +23,8 @@ import brunonova.drmips.simulator.exceptions.InvalidCPUException;
 import java.util.Stack;
 import org.json.JSONException;
 import org.json.JSONObject;
+import brunonova.drmips.simulator.StateHash;
+import brunonova.drmips.simulator.StateHashable;
 import brunonova.drmips.simulator.Synchronous;
 
 /**
@@ -30,9 +32,10 @@ import brunonova.drmips.simulator.Synchronous;
  *
  * @author Bruno Nova
  */
-public class ExtendedALU extends ALU implements Synchronous {
+public class ExtendedALU extends ALU implements Synchronous, StateHashable {
 	private final Data hi, lo;
 	private final Stack<int[]> states = new Stack<>(); // previous values
+	private final long[] keys; // keys of HI and LO in the state hash
 
 	/**
 	 * Component constructor.
@@ -48,6 +51,7 @@ public class ExtendedALU extends ALU implements Synchronous {
 
 		hi = new Data();
 		lo = new Data();
+		keys = StateHash.keys(StateHash.seed(id), 2);
 	}
 
 	@Override
@@ -90,6 +94,11 @@ public class ExtendedALU extends ALU implements Synchronous {
 		return controlALU.isWritingState(getControl().getValue());
 	}
 
+	@Override
+	public long getStateHash() {
+		return StateHash.hash(keys[0], hi.getValue()) ^ StateHash.hash(keys[1], lo.getValue());
+	}
+
 	/**
 	 * Returns the <tt>HI</tt> "register".
 	 * @return The <tt>HI</tt> "register".
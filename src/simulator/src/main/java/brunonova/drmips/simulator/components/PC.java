@@ -30,13 +30,14 @@ import org.json.JSONObject;
  *
  * @author Bruno Nova
  */
-public class PC extends Component implements Synchronous {
+public class PC extends Component implements Synchronous, StateHashable {
 	private final Input input, write;
 	private final Output output;
 	private final Data address;
 	private final Stack<Integer> states = new Stack<>(); // previous adresses
 	private int currentInstructionIndex = -1;
 	private final Stack<Integer> instructions = new Stack<>(); // previous instructions
+	private final long[] keys; // keys of the address and current instruction in the state hash
 
 	/**
 	 * Component constructor.
@@ -48,6 +49,7 @@ public class PC extends Component implements Synchronous {
 	public PC(String id, JSONObject json) throws InvalidCPUException, JSONException {
 		super(id, json, "PC", "pc", "pc_description", new Dimension(30, 30));
 		address = new Data();
+		keys = StateHash.keys(StateHash.seed(id), 2);
 		input = addInput(json.getString("in"), new Data(), IOPort.Direction.WEST, false, true);
 		output = addOutput(json.getString("out"), new Data(), IOPort.Direction.EAST, true);
 		write = addInput(json.optString("write", "Write"), new Data(1, 1), IOPort.Direction.NORTH, false);
@@ -101,6 +103,11 @@ public class PC extends Component implements Synchronous {
 		return getWrite().getValue() == 1;
 	}
 
+	@Override
+	public long getStateHash() {
+		return StateHash.hash(keys[0], getAddress().getValue()) ^ StateHash.hash(keys[1], getCurrentInstructionIndex());
+	}
+
 	/**
 	 * Returns the current address of the Program Counter (the <tt>$pc</tt> register).
 	 * @return Current address.
@@ -31,14 +31,23 @@ import org.json.JSONObject;
 /**
  * Class that represents a synchronous register that divides two stages of the pipeline.
  *
+ * <p>The position of the register in the pipeline is given by its identifier
+ * (<tt>IF/ID</tt>, <tt>ID/EX</tt>, <tt>EX/MEM</tt> or <tt>MEM/WB</tt>) or,
+ * in pipelines with other stages, by its <tt>stage</tt> property: the register
+ * at the end of the first stage is <tt>1</tt>, the next one <tt>2</tt>, and so
+ * on. The identifier should still be in the form <tt>A/B</tt>, where <tt>A</tt>
+ * and <tt>B</tt> are the names of the stages before and after the register.</p>
+ *
  * @author Bruno Nova
  */
-public class PipelineRegister extends Component implements Synchronous {
+public class PipelineRegister extends Component implements Synchronous, StateHashable {
 	private final Input write, flush;
 	private Map<String, Data> registers; // stored values
 	private final Stack<Map<String, Data>> states = new Stack<>(); // previous values
 	private int currentInstructionIndex = -1;
 	private final Stack<Integer> instructions = new Stack<>(); // previous instructions
+	private final long seed; // seed of the keys of the registers in the state hash
+	private final int stage; // position in the pipeline, or 0 if given by the identifier
 
 	/**
 	 * Component constructor.
@@ -50,6 +59,10 @@ public class PipelineRegister extends Component implements Synchronous {
 	public PipelineRegister(String id, JSONObject json) throws InvalidCPUException, JSONException {
 		super(id, json, "", "pipeline_register", "pipeline_register_description", new Dimension(15, 300));
 		setDisplayName();
+		seed = StateHash.seed(id);
+		stage = json.optInt("stage", 0);
+		if(stage < 0)
+			throw new InvalidCPUException("Invalid stage of pipeline register " + id + "!");
 
 		write = addInput(json.optString("write", "Write"), new Data(1, 1), IOPort.Direction.NORTH, false);
 		flush = addInput(json.optString("flush", "Flush"), new Data(1, 0), IOPort.Direction.NORTH, false);
@@ -140,6 +153,15 @@ public class PipelineRegister extends Component implements Synchronous {
 		return getWrite().getValue() == 1 && getFlush().getValue() == 0;
 	}
 
+	@Override
+	public long getStateHash() {
+		// All the registers are rewritten on every clock cycle, so there's nothing to gain in updating the hash incrementally
+		long hash = StateHash.hash(StateHash.key(seed, -1), getCurrentInstructionIndex());
+		for(Map.Entry<String, Data> e: registers.entrySet())
+			hash ^= StateHash.hash(StateHash.key(seed, e.getKey().hashCode()), e.getValue().getValue());
+		return hash;
+	}
+
 	/**
 	 * Sets the pipeline register's display name.
 	 * <p>The name corresponds to the component's identifier, 1 letter per line.</p>
@@ -164,6 +186,14 @@ public class PipelineRegister extends Component implements Synchronous {
 		return map;
 	}
 
+	/**
+	 * Returns the position of the register in the pipeline set in the <tt>stage</tt> property.
+	 * @return The position (1 for the register at the end of the first stage), or 0 if not set.
+	 */
+	public final int getStage() {
+		return stage;
+	}
+
 	/**
 	 * Returns the index of the current instruction being executed.
 	 * @return Index of the current instruction being executed (-1 if none).
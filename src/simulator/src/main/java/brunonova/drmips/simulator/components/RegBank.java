@@ -33,13 +33,16 @@ import org.json.JSONObject;
  *
  * @author Bruno Nova
  */
-public class RegBank extends Component implements Synchronous {
+public class RegBank extends Component implements Synchronous, StateHashable {
 	private final Input readReg1, readReg2, writeReg, writeData, regWrite;
 	private final Output readData1, readData2;
 	private final Data[] registers;
 	private final Set<Integer> constantRegisters; // indexes of the constant registers
 	private final boolean forwarding; // use internal forwarding?
 	private final Stack<int[]> states = new Stack<>(); // previous values
+	private final long[] keys; // keys of the registers in the state hash
+	private long stateHash = 0; // hash of the values of the registers (updated on each write)
+	private WriteListener writeListener = null; // notified of the writes in clock transitions
 
 	/**
 	 * Component constructor.
@@ -61,8 +64,11 @@ public class RegBank extends Component implements Synchronous {
 		// Initialize registers
 		int requiredBits = Data.requiredNumberOfBits(numRegisters - 1);
 		registers = new Data[numRegisters];
-		for(int i = 0; i < numRegisters; i++)
+		keys = StateHash.keys(StateHash.seed(id), numRegisters);
+		for(int i = 0; i < numRegisters; i++) {
 			registers[i] = new Data();
+			stateHash ^= StateHash.hash(keys[i], 0);
+		}
 
 		// Add inputs/outputs
 		readReg1 = addInput(json.getString("read_reg1"), new Data(requiredBits), IOPort.Direction.WEST, true, true);
@@ -108,8 +114,10 @@ public class RegBank extends Component implements Synchronous {
 
 	@Override
 	public void executeSynchronous() {
-		if(getRegWrite().getValue() == 1 && !isRegisterConstant(getWriteReg().getValue()))
-			registers[getWriteReg().getValue()].setValue(getWriteData().getValue());
+		if(getRegWrite().getValue() == 1 && !isRegisterConstant(getWriteReg().getValue())) {
+			writeRegister(getWriteReg().getValue(), getWriteData().getValue());
+			if(writeListener != null) writeListener.stateWritten(this, getWriteReg().getValue());
+		}
 	}
 
 	@Override
@@ -125,7 +133,7 @@ public class RegBank extends Component implements Synchronous {
 		if(hasSavedStates()) {
 			int[] values = states.pop();
 			for(int i = 0; i < getNumberOfRegisters(); i++)
-				registers[i].setValue(values[i]);
+				writeRegister(i, values[i]);
 		}
 	}
 
@@ -146,7 +154,7 @@ public class RegBank extends Component implements Synchronous {
 			while(hasSavedStates())
 				values = states.pop();
 			for(int i = 0; i < getNumberOfRegisters(); i++)
-				registers[i].setValue(values[i]);
+				writeRegister(i, values[i]);
 		}
 	}
 
@@ -155,6 +163,31 @@ public class RegBank extends Component implements Synchronous {
 		return getRegWrite().getValue() == 1;
 	}
 
+	@Override
+	public long getStateHash() {
+		return stateHash;
+	}
+
+	/**
+	 * Updates the value of a register and the hash of the state.
+	 * @param index Index/address of the register.
+	 * @param value New value.
+	 */
+	private void writeRegister(int index, int value) {
+		Data register = registers[index];
+		stateHash ^= StateHash.hash(keys[index], register.getValue());
+		register.setValue(value);
+		stateHash ^= StateHash.hash(keys[index], register.getValue());
+	}
+
+	/**
+	 * Sets the listener that is notified when a register is written in a clock transition.
+	 * @param listener The listener, or <tt>null</tt>.
+	 */
+	public final void setWriteListener(WriteListener listener) {
+		writeListener = listener;
+	}
+
 	/**
 	 * Returns whether the data in the WriteData input should be forwarded to and output if reading and writing to the same register.
 	 * @return <tt>True</tt> if internal forwarding is enabled.
@@ -165,10 +198,12 @@ public class RegBank extends Component implements Synchronous {
 
 	/**
 	 * Resets the register bank to zeros.
+	 * <p>The constant registers keep their values.</p>
 	 */
 	public final void reset() {
-		for (Data register: registers)
-			register.setValue(0);
+		for(int i = 0; i < registers.length; i++) {
+			if(!isRegisterConstant(i)) writeRegister(i, 0);
+		}
 		execute();
 	}
 
@@ -198,6 +233,16 @@ public class RegBank extends Component implements Synchronous {
 		return registers[index].clone();
 	}
 
+	/**
+	 * Returns the value of the indicated register (without copying the register).
+	 * @param index Index/address of the register.
+	 * @return Value of the indicated register.
+	 * @throws ArrayIndexOutOfBoundsException If the index is invalid.
+	 */
+	public final int getRegisterValue(int index) throws ArrayIndexOutOfBoundsException {
+		return registers[index].getValue();
+	}
+
 	/**
 	 * Updates the value of the indicated register.
 	 * <p>The new register is propagated to the rest of the circuit if it is being read.</p>
@@ -218,7 +263,7 @@ public class RegBank extends Component implements Synchronous {
 	 */
 	public final void setRegister(int index, int newValue, boolean propagate) throws ArrayIndexOutOfBoundsException {
 		if(!isRegisterConstant(index)) { // don't update constant registers
-			registers[index].setValue(newValue);
+			writeRegister(index, newValue);
 			if(propagate) execute();
 		}
 	}
@@ -24,11 +24,28 @@ package brunonova.drmips.simulator.exceptions;
  * @author Bruno Nova
  */
 public class InfiniteLoopException extends Exception {
+	/** The lowest address of the instructions in the loop (-1 if unknown). */
+	private final int startAddress;
+	/** The highest address of the instructions in the loop (-1 if unknown). */
+	private final int endAddress;
+
 	/**
 	 * Exception constructor.
 	 */
 	public InfiniteLoopException() {
 		super();
+		startAddress = endAddress = -1;
+	}
+
+	/**
+	 * Exception constructor for a detected loop.
+	 * @param startAddress The lowest address of the instructions in the loop.
+	 * @param endAddress The highest address of the instructions in the loop.
+	 */
+	public InfiniteLoopException(int startAddress, int endAddress) {
+		super("Infinite loop detected between addresses " + startAddress + " and " + endAddress + "!");
+		this.startAddress = startAddress;
+		this.endAddress = endAddress;
 	}
 
 	/**
@@ -37,6 +54,7 @@ public class InfiniteLoopException extends Exception {
 	 */
 	public InfiniteLoopException(String msg) {
 		super(msg);
+		startAddress = endAddress = -1;
 	}
 
 	/**
@@ -46,5 +64,30 @@ public class InfiniteLoopException extends Exception {
 	 */
 	public InfiniteLoopException(String msg, Throwable cause) {
 		super(msg, cause);
+		startAddress = endAddress = -1;
+	}
+
+	/**
+	 * Returns whether the loop was detected (and not just assumed after too many clock cycles).
+	 * @return <tt>True</tt> if the addresses of the loop are known.
+	 */
+	public boolean isLoopDetected() {
+		return startAddress >= 0;
+	}
+
+	/**
+	 * Returns the lowest address of the instructions in the loop.
+	 * @return The lowest address, or -1 if unknown.
+	 */
+	public int getStartAddress() {
+		return startAddress;
+	}
+
+	/**
+	 * Returns the highest address of the instructions in the loop.
+	 * @return The highest address, or -1 if unknown.
+	 */
+	public int getEndAddress() {
+		return endAddress;
 	}
 }
@@ -0,0 +1,47 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator.exceptions;
+
+/**
+ * Exception to be thrown when the condition of a breakpoint is invalid.
+ *
+ * @author Bruno Nova
+ */
+public class InvalidConditionException extends Exception {
+	/** The position in the condition where the error was found. */
+	private final int position;
+
+	/**
+	 * Exception constructor.
+	 * @param msg The error message.
+	 * @param position The position in the condition where the error was found.
+	 */
+	public InvalidConditionException(String msg, int position) {
+		super(msg + " (at position " + position + ")");
+		this.position = position;
+	}
+
+	/**
+	 * Returns the position in the condition where the error was found.
+	 * @return The position (index of the character).
+	 */
+	public int getPosition() {
+		return position;
+	}
+}
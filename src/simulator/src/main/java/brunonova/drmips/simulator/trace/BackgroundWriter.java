@@ -0,0 +1,179 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator.trace;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writes data to a file in a background thread.
+ *
+ * <p>The data is put in direct buffers obtained with {@link #reserve(int)}.
+ * Full buffers are handed to a thread that writes them through a
+ * {@link FileChannel} and then recycles them, so the thread that produces the
+ * data only blocks if the disk can't keep up.</p>
+ *
+ * @author Bruno Nova
+ */
+final class BackgroundWriter implements Closeable {
+	/** The size of each buffer. */
+	static final int BUFFER_SIZE = 1 << 16;
+	/** The number of buffers (one being filled, the others being written or free). */
+	private static final int NUMBER_OF_BUFFERS = 4;
+	/** Buffer that tells the writer thread to stop. */
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	/** The output file channel. */
+	private final FileChannel channel;
+	/** The filled buffers, waiting to be written. */
+	private final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(NUMBER_OF_BUFFERS + 1);
+	/** The free buffers. */
+	private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(NUMBER_OF_BUFFERS);
+	/** The thread that writes the filled buffers. */
+	private final Thread writer;
+	/** The error that occurred in the writer thread, if any. */
+	private volatile IOException error = null;
+	/** The buffer being filled. */
+	private ByteBuffer buffer;
+	/** Whether the writer was closed. */
+	private boolean closed = false;
+
+	/**
+	 * Creates the file and starts the writer thread.
+	 * @param file The file (overwritten if it exists).
+	 * @param threadName The name of the writer thread.
+	 * @throws IOException If the file can't be created.
+	 */
+	BackgroundWriter(File file, String threadName) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		for(int i = 1; i < NUMBER_OF_BUFFERS; i++)
+			free.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeBuffers();
+			}
+		}, threadName);
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Returns the buffer where the data is put, making sure it has enough space.
+	 * <p>The returned buffer can only be used until the next call.</p>
+	 * @param bytes The number of bytes needed (at most <tt>BUFFER_SIZE</tt>).
+	 * @return The buffer, with at least <tt>bytes</tt> bytes remaining.
+	 */
+	ByteBuffer reserve(int bytes) {
+		if(buffer.remaining() < bytes)
+			swapBuffer();
+		return buffer;
+	}
+
+	/**
+	 * Writes the remaining data to the file, stops the writer thread and closes the file.
+	 * @throws IOException If an error occurred while writing the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) return;
+		closed = true;
+		buffer.flip();
+		putUninterruptibly(filled, buffer);
+		putUninterruptibly(filled, END);
+		boolean interrupted = false;
+		while(writer.isAlive()) {
+			try {
+				writer.join();
+			} catch(InterruptedException ex) {
+				interrupted = true;
+			}
+		}
+		if(interrupted) Thread.currentThread().interrupt();
+		channel.close();
+		if(error != null) throw error;
+	}
+
+	/**
+	 * Sends the current buffer to the writer thread and gets a free one.
+	 */
+	private void swapBuffer() {
+		buffer.flip();
+		putUninterruptibly(filled, buffer);
+		boolean interrupted = false;
+		while(true) {
+			try {
+				buffer = free.take();
+				break;
+			} catch(InterruptedException ex) {
+				interrupted = true;
+			}
+		}
+		if(interrupted) Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Writes the filled buffers to the file, until the <tt>END</tt> buffer is received (run by the writer thread).
+	 */
+	private void writeBuffers() {
+		try {
+			ByteBuffer b;
+			while((b = filled.take()) != END) {
+				try {
+					if(error == null) {
+						while(b.hasRemaining())
+							channel.write(b);
+					}
+				} catch(IOException ex) {
+					error = ex; // reported in close(); keep recycling the buffers
+				}
+				b.clear();
+				free.put(b);
+			}
+		} catch(InterruptedException ex) {
+			error = new IOException("Writer thread interrupted", ex);
+		}
+	}
+
+	/**
+	 * Puts an element in a queue, ignoring (but preserving) interruptions.
+	 * @param queue The queue.
+	 * @param b The element.
+	 */
+	private static void putUninterruptibly(BlockingQueue<ByteBuffer> queue, ByteBuffer b) {
+		boolean interrupted = false;
+		while(true) {
+			try {
+				queue.put(b);
+				break;
+			} catch(InterruptedException ex) {
+				interrupted = true;
+			}
+		}
+		if(interrupted) Thread.currentThread().interrupt();
+	}
+}
@@ -0,0 +1,126 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator.trace;
+
+import java.util.Arrays;
+
+/**
+ * A growable log of clock cycles, in ascending order, with an optional value for each one.
+ *
+ * <p>Used by {@link TraceIndex} for the writes to each register and memory
+ * position and for the cycles each instruction was in each stage. The cycles
+ * and values are kept in primitive arrays and searched with binary search.</p>
+ *
+ * @author Bruno Nova
+ */
+final class CycleLog {
+	/** The initial capacity of the arrays. */
+	private static final int INITIAL_CAPACITY = 8;
+
+	/** The cycles, in ascending order. */
+	private int[] cycles = new int[INITIAL_CAPACITY];
+	/** The value of each cycle, or <tt>null</tt> if the log has no values. */
+	private int[] values;
+	/** The number of entries. */
+	private int size = 0;
+
+	/**
+	 * Creates an empty log.
+	 * @param withValues Whether the log stores a value for each cycle.
+	 */
+	CycleLog(boolean withValues) {
+		values = withValues ? new int[INITIAL_CAPACITY] : null;
+	}
+
+	/**
+	 * Adds an entry to the end of the log.
+	 * @param cycle The cycle (must not be lower than the last one).
+	 * @param value The value (ignored if the log has no values).
+	 */
+	void add(int cycle, int value) {
+		if(size == cycles.length) {
+			cycles = Arrays.copyOf(cycles, size * 2);
+			if(values != null) values = Arrays.copyOf(values, size * 2);
+		}
+		cycles[size] = cycle;
+		if(values != null) values[size] = value;
+		size++;
+	}
+
+	/**
+	 * Removes the last entry of the log, if any.
+	 */
+	void removeLast() {
+		if(size > 0) size--;
+	}
+
+	/**
+	 * Returns the number of entries.
+	 * @return The number of entries.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the position of the last entry with a cycle lower than or equal to the given one.
+	 * @param cycle The cycle.
+	 * @return The position of the entry, or -1 if there's none.
+	 */
+	int floor(int cycle) {
+		int low = 0, high = size - 1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			if(cycles[mid] <= cycle)
+				low = mid + 1;
+			else
+				high = mid - 1;
+		}
+		return high;
+	}
+
+	/**
+	 * Returns the cycle of an entry.
+	 * @param position The position of the entry.
+	 * @return The cycle.
+	 */
+	int getCycle(int position) {
+		return cycles[position];
+	}
+
+	/**
+	 * Returns the value of an entry.
+	 * @param position The position of the entry.
+	 * @return The value.
+	 */
+	int getValue(int position) {
+		return values[position];
+	}
+
+	/**
+	 * Returns the cycles of the entries in the given (inclusive) range of cycles.
+	 * @param fromCycle The first cycle.
+	 * @param toCycle The last cycle.
+	 * @return The cycles, in ascending order.
+	 */
+	int[] getCycles(int fromCycle, int toCycle) {
+		if(toCycle < fromCycle) return new int[0];
+		return Arrays.copyOfRange(cycles, floor(fromCycle - 1) + 1, floor(toCycle) + 1);
+	}
+}
@@ -0,0 +1,134 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator.trace;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and encoding functions of the binary trace format.
+ *
+ * <p>A trace file starts with a header with the initial state of the CPU:</p>
+ * <pre>
+ * int    MAGIC
+ * byte   VERSION
+ * byte   number of pipeline registers (0 if the CPU is not pipelined)
+ * varint number of instructions, number of registers, size of the data memory
+ * varint number of the initial clock cycle
+ * svar   initial address in the PC
+ * svar   initial instruction indexes in the pipeline registers (IF/ID, ID/EX, ...)
+ * svar   initial values of the registers and then of the data memory
+ * </pre>
+ * <p>followed by one record per clock cycle:</p>
+ * <pre>
+ * byte   flags (FLAG_*), with the number of forwards in FORWARDS_SHIFT
+ * varint number of the clock cycle (only if FLAG_CYCLE, when not consecutive)
+ * svar   address in the PC minus (previous address + 4)
+ * svar   instruction indexes in the pipeline registers (only if FLAG_PIPELINE)
+ * varint index of the register written, svar new value minus old value (only if FLAG_REGISTER)
+ * varint index of the memory position written, svar new value minus old value (only if FLAG_MEMORY)
+ * </pre>
+ * <p><tt>varint</tt> is an unsigned LEB128 integer and <tt>svar</tt> is a
+ * zigzag-encoded <tt>varint</tt>. Most cycles take 2 or 3 bytes. The
+ * instruction indexes in the pipeline are only written when they aren't
+ * simply the indexes of the previous stages in the previous cycle.</p>
+ *
+ * @author Bruno Nova
+ */
+final class TraceFormat {
+	/** The magic number at the start of trace files ("DRMT"). */
+	static final int MAGIC = 0x44524D54;
+	/** The version of the format. */
+	static final byte VERSION = 2;
+	/** Flag of the records that have a register write. */
+	static final int FLAG_REGISTER = 1;
+	/** Flag of the records that have a memory write. */
+	static final int FLAG_MEMORY = 2;
+	/** Flag of the records with instruction indexes in the pipeline registers. */
+	static final int FLAG_PIPELINE = 4;
+	/** Flag of the records with an explicit cycle number. */
+	static final int FLAG_CYCLE = 8;
+	/** Flag of the records of cycles with a stall. */
+	static final int FLAG_STALL = 16;
+	/** The position of the number of forwards (0 to 2) in the flags. */
+	static final int FORWARDS_SHIFT = 5;
+	/** The maximum size of a varint, in bytes. */
+	static final int MAX_VARINT_SIZE = 5;
+
+	/**
+	 * Private constructor (only static members).
+	 */
+	private TraceFormat() {}
+
+	/**
+	 * Returns the maximum size of a record of a CPU.
+	 * @param pipelineRegisters The number of pipeline registers of the CPU (0 if not pipelined).
+	 * @return The maximum size, in bytes.
+	 */
+	static int maxRecordSize(int pipelineRegisters) {
+		return 1 + 5 + 5 + 5 * pipelineRegisters + 2 * (5 + 5);
+	}
+
+	/**
+	 * Writes an unsigned varint.
+	 * @param buffer The buffer.
+	 * @param value The value (interpreted as unsigned).
+	 */
+	static void putVarint(ByteBuffer buffer, int value) {
+		while((value & ~0x7f) != 0) {
+			buffer.put((byte)((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte)value);
+	}
+
+	/**
+	 * Writes a signed (zigzag-encoded) varint.
+	 * @param buffer The buffer.
+	 * @param value The value.
+	 */
+	static void putSignedVarint(ByteBuffer buffer, int value) {
+		putVarint(buffer, (value << 1) ^ (value >> 31));
+	}
+
+	/**
+	 * Reads an unsigned varint.
+	 * @param buffer The buffer.
+	 * @return The value.
+	 */
+	static int getVarint(ByteBuffer buffer) {
+		int value = 0, shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+		} while(b < 0);
+		return value;
+	}
+
+	/**
+	 * Reads a signed (zigzag-encoded) varint.
+	 * @param buffer The buffer.
+	 * @return The value.
+	 */
+	static int getSignedVarint(ByteBuffer buffer) {
+		int v = getVarint(buffer);
+		return (v >>> 1) ^ -(v & 1);
+	}
+}
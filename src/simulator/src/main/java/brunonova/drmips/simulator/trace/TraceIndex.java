@@ -0,0 +1,578 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator.trace;
+
+import brunonova.drmips.simulator.CPU;
+import brunonova.drmips.simulator.Component;
+import brunonova.drmips.simulator.CycleListener;
+import brunonova.drmips.simulator.components.DataMemory;
+import brunonova.drmips.simulator.components.PipelineRegister;
+import brunonova.drmips.simulator.components.RegBank;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An index of a recorded execution, to query the state of the CPU at any clock
+ * cycle without simulating it again.
+ *
+ * <p>The index keeps, for each register and memory position, the log of the
+ * cycles when it was written and the values written, and, for each
+ * instruction and stage, the log of the cycles when the instruction was in
+ * that stage. The logs are sorted primitive arrays searched with binary
+ * search, so queries like "what was <tt>$t0</tt> at cycle N", "which cycles
+ * wrote address 0x40" or "when did instruction 17 last reach MEM/WB" take
+ * logarithmic time. A full copy of the registers and data memory (a
+ * keyframe) is also saved every <tt>KEYFRAME_INTERVAL</tt> cycles, so the
+ * whole state at any cycle is rebuilt by replaying at most that many
+ * cycles.</p>
+ *
+ * <p>The index is built from a trace file ({@link #read(File)}) or while the
+ * CPU executes ({@link #record(CPU)}). When a cycle that was already indexed
+ * is executed again (after a "step back" or a restart), the cycles after it
+ * are discarded. Changes made by the user to the registers or memory are not
+ * indexed. The index is not thread-safe and must not be queried while the
+ * CPU it records is executing.</p>
+ *
+ * @author Bruno Nova
+ */
+public class TraceIndex implements CycleListener {
+	/** The number of clock cycles between keyframes. */
+	public static final int KEYFRAME_INTERVAL = 1024;
+	/** The initial capacity of the per-cycle arrays. */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** Whether the CPU is pipelined. */
+	private final boolean pipeline;
+	/** The number of pipeline registers of the CPU (0 if not pipelined). */
+	private final int numberOfPipelineRegisters;
+	/** The number of instructions of the program. */
+	private final int numberOfInstructions;
+	/** The number of the first clock cycle (the initial state). */
+	private final int initialCycle;
+	/** The number of the last indexed clock cycle. */
+	private int lastCycle;
+
+	/** The address in the PC after each cycle (indexed by <tt>cycle - initialCycle</tt>). */
+	private int[] pcs = new int[INITIAL_CAPACITY];
+	/** The instruction indexes in the pipeline registers after each cycle (<tt>numberOfPipelineRegisters</tt> per cycle). */
+	private int[] pipelineStages;
+	/** The register written in each cycle, or -1. */
+	private int[] writtenRegisters = new int[INITIAL_CAPACITY];
+	/** The value written to the register in each cycle. */
+	private int[] registerValues = new int[INITIAL_CAPACITY];
+	/** The memory position written in each cycle, or -1. */
+	private int[] writtenMemory = new int[INITIAL_CAPACITY];
+	/** The value written to the memory in each cycle. */
+	private int[] memoryValues = new int[INITIAL_CAPACITY];
+
+	/** The writes to each register (created when first written). */
+	private final CycleLog[] registerLogs;
+	/** The writes to each memory position (created when first written). */
+	private final CycleLog[] memoryLogs;
+	/** The cycles each instruction was in each stage (<tt>stage * numberOfInstructions + index</tt>; created when needed). */
+	private final CycleLog[] stageLogs;
+	/** The registers (element 0) and data memory (element 1) every <tt>KEYFRAME_INTERVAL</tt> cycles. */
+	private final List<int[][]> keyframes = new ArrayList<>();
+	/** The values of the registers after the last indexed cycle. */
+	private final int[] registers;
+	/** The values of the data memory after the last indexed cycle. */
+	private final int[] memory;
+
+	/** The CPU being recorded, or <tt>null</tt>. */
+	private CPU cpu = null;
+	/** The pipeline registers of the CPU being recorded, or <tt>null</tt>. */
+	private PipelineRegister[] pipelineRegisters = null;
+	/** The register written in the current cycle of the CPU being recorded, or -1. */
+	private int cpuWrittenRegister = -1;
+	/** The memory position written in the current cycle of the CPU being recorded, or -1. */
+	private int cpuWrittenMemory = -1;
+	/** Temporary array with the instruction indexes in the pipeline registers. */
+	private final int[] stages;
+
+	/**
+	 * Creates an index with the initial state of an execution.
+	 * @param numberOfPipelineRegisters The number of pipeline registers of the CPU (0 if not pipelined).
+	 * @param numberOfInstructions The number of instructions of the program.
+	 * @param initialCycle The number of the initial clock cycle.
+	 * @param pc The initial address in the PC.
+	 * @param stages The initial instruction indexes in the pipeline registers (ignored if not pipelined).
+	 * @param registers The initial values of the registers.
+	 * @param memory The initial values of the data memory.
+	 */
+	private TraceIndex(int numberOfPipelineRegisters, int numberOfInstructions, int initialCycle, int pc, int[] stages, int[] registers, int[] memory) {
+		this.numberOfPipelineRegisters = numberOfPipelineRegisters;
+		pipeline = numberOfPipelineRegisters > 0;
+		this.stages = new int[numberOfPipelineRegisters];
+		this.numberOfInstructions = numberOfInstructions;
+		this.initialCycle = lastCycle = initialCycle;
+		this.registers = registers.clone();
+		this.memory = memory.clone();
+		registerLogs = new CycleLog[registers.length];
+		memoryLogs = new CycleLog[memory.length];
+		stageLogs = new CycleLog[(numberOfPipelineRegisters + 1) * numberOfInstructions];
+		pipelineStages = pipeline ? new int[INITIAL_CAPACITY * numberOfPipelineRegisters] : null;
+
+		pcs[0] = pc;
+		writtenRegisters[0] = writtenMemory[0] = -1;
+		if(pipeline) System.arraycopy(stages, 0, pipelineStages, 0, numberOfPipelineRegisters);
+		logStages(0, initialCycle);
+		keyframes.add(new int[][] {this.registers.clone(), this.memory.clone()});
+	}
+
+	/**
+	 * Creates an index with the current state of the CPU and starts indexing the cycles it executes.
+	 * <p>The index should be created right after the program is loaded, so that
+	 * a restart goes back to its initial cycle.</p>
+	 * @param cpu The CPU.
+	 * @return The index.
+	 * @see #stop()
+	 */
+	public static TraceIndex record(CPU cpu) {
+		PipelineRegister[] pipelineRegisters = cpu.getPipelineRegisters().toArray(new PipelineRegister[0]);
+		int[] stages = new int[pipelineRegisters.length];
+		for(int i = 0; i < stages.length; i++)
+			stages[i] = pipelineRegisters[i].getCurrentInstructionIndex();
+		RegBank regbank = cpu.getRegBank();
+		int[] registers = new int[regbank.getNumberOfRegisters()];
+		for(int i = 0; i < registers.length; i++)
+			registers[i] = regbank.getRegisterValue(i);
+		int[] memory = new int[cpu.hasDataMemory() ? cpu.getDataMemory().getMemorySize() : 0];
+		for(int i = 0; i < memory.length; i++)
+			memory[i] = cpu.getDataMemory().getDataInIndex(i);
+
+		TraceIndex index = new TraceIndex(pipelineRegisters.length, cpu.getInstructionMemory().getNumberOfInstructions(),
+			cpu.getNumberOfExecutedCycles(), cpu.getPC().getAddress().getValue(), stages, registers, memory);
+		index.cpu = cpu;
+		index.pipelineRegisters = cpu.isPipeline() ? pipelineRegisters : null;
+		cpu.addCycleListener(index);
+		return index;
+	}
+
+	/**
+	 * Stops indexing the cycles executed by the CPU given to {@link #record(CPU)}.
+	 * <p>The cycles already indexed can still be queried.</p>
+	 */
+	public void stop() {
+		if(cpu != null) {
+			cpu.removeCycleListener(this);
+			cpu = null;
+			pipelineRegisters = null;
+		}
+	}
+
+	/**
+	 * Builds the index of a trace file written by a {@link TraceRecorder}.
+	 * @param file The trace file.
+	 * @return The index.
+	 * @throws IOException If the file can't be read, isn't a valid trace file
+	 *                     or has a gap in the clock cycles.
+	 */
+	public static TraceIndex read(File file) throws IOException {
+		TraceReader reader = new TraceReader(file);
+		try {
+			int[] stages = new int[reader.getNumberOfStages() - 1];
+			int[] registers = new int[reader.getNumberOfRegisters()];
+			int[] memory = new int[reader.getMemorySize()];
+			readState(reader, stages, registers, memory);
+			TraceIndex index = new TraceIndex(stages.length, reader.getNumberOfInstructions(),
+				reader.getInitialCycle(), reader.getPCAddress(), stages, registers, memory);
+
+			while(reader.next()) {
+				if(reader.getCycle() > index.lastCycle + 1)
+					throw new IOException("Gap in the clock cycles of the trace file " + file + "!");
+				for(int i = 0; i < stages.length; i++)
+					stages[i] = reader.getInstructionIndex(i + 1);
+				int reg = reader.getWrittenRegister(), mem = reader.getWrittenMemory();
+				index.add(reader.getCycle(), reader.getPCAddress(), stages,
+					reg, reg >= 0 ? reader.getRegister(reg) : 0,
+					mem, mem >= 0 ? reader.getMemory(mem) : 0);
+			}
+			return index;
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Copies the current state of a trace reader to the given arrays.
+	 * @param reader The reader.
+	 * @param stages The array for the instruction indexes in the pipeline registers.
+	 * @param registers The array for the values of the registers.
+	 * @param memory The array for the values of the data memory.
+	 */
+	private static void readState(TraceReader reader, int[] stages, int[] registers, int[] memory) {
+		for(int i = 0; i < stages.length; i++)
+			stages[i] = reader.getInstructionIndex(i + 1);
+		for(int i = 0; i < registers.length; i++)
+			registers[i] = reader.getRegister(i);
+		for(int i = 0; i < memory.length; i++)
+			memory[i] = reader.getMemory(i);
+	}
+
+	@Override
+	public void stateWritten(Component component, int index) {
+		if(component instanceof RegBank)
+			cpuWrittenRegister = index;
+		else if(component instanceof DataMemory)
+			cpuWrittenMemory = index;
+	}
+
+	@Override
+	public void cycleExecuted(CPU cpu) {
+		if(pipelineRegisters != null) {
+			for(int i = 0; i < stages.length; i++)
+				stages[i] = pipelineRegisters[i].getCurrentInstructionIndex();
+		}
+		int reg = cpuWrittenRegister, mem = cpuWrittenMemory;
+		add(cpu.getNumberOfExecutedCycles(), cpu.getPC().getAddress().getValue(), stages,
+			reg, reg >= 0 ? cpu.getRegBank().getRegisterValue(reg) : 0,
+			mem, mem >= 0 ? cpu.getDataMemory().getDataInIndex(mem) : 0);
+		cpuWrittenRegister = cpuWrittenMemory = -1;
+	}
+
+	/**
+	 * Adds a clock cycle to the index, discarding the indexed cycles from it onwards first.
+	 * <p>Cycles before or at the initial cycle are ignored.</p>
+	 * @param cycle The number of the clock cycle (at most <tt>lastCycle + 1</tt>).
+	 * @param pc The address in the PC.
+	 * @param stages The instruction indexes in the pipeline registers (ignored if not pipelined).
+	 * @param reg The register written, or -1.
+	 * @param regValue The value written to the register.
+	 * @param mem The memory position written, or -1.
+	 * @param memValue The value written to the memory.
+	 */
+	private void add(int cycle, int pc, int[] stages, int reg, int regValue, int mem, int memValue) {
+		if(cycle <= initialCycle) {
+			truncate(initialCycle);
+			return;
+		}
+		if(cycle <= lastCycle) truncate(cycle - 1);
+
+		int p = cycle - initialCycle;
+		if(p == pcs.length) {
+			int capacity = pcs.length * 2;
+			pcs = Arrays.copyOf(pcs, capacity);
+			writtenRegisters = Arrays.copyOf(writtenRegisters, capacity);
+			registerValues = Arrays.copyOf(registerValues, capacity);
+			writtenMemory = Arrays.copyOf(writtenMemory, capacity);
+			memoryValues = Arrays.copyOf(memoryValues, capacity);
+			if(pipeline) pipelineStages = Arrays.copyOf(pipelineStages, capacity * numberOfPipelineRegisters);
+		}
+
+		pcs[p] = pc;
+		if(pipeline) System.arraycopy(stages, 0, pipelineStages, p * numberOfPipelineRegisters, numberOfPipelineRegisters);
+		logStages(p, cycle);
+
+		writtenRegisters[p] = reg;
+		registerValues[p] = regValue;
+		if(reg >= 0) {
+			if(registerLogs[reg] == null) registerLogs[reg] = new CycleLog(true);
+			registerLogs[reg].add(cycle, regValue);
+			registers[reg] = regValue;
+		}
+		writtenMemory[p] = mem;
+		memoryValues[p] = memValue;
+		if(mem >= 0) {
+			if(memoryLogs[mem] == null) memoryLogs[mem] = new CycleLog(true);
+			memoryLogs[mem].add(cycle, memValue);
+			memory[mem] = memValue;
+		}
+
+		lastCycle = cycle;
+		if(p % KEYFRAME_INTERVAL == 0)
+			keyframes.add(new int[][] {registers.clone(), memory.clone()});
+	}
+
+	/**
+	 * Adds the instructions in each stage in the given cycle to the stage logs.
+	 * @param p The position of the cycle in the per-cycle arrays.
+	 * @param cycle The number of the cycle.
+	 */
+	private void logStages(int p, int cycle) {
+		for(int stage = 0; stage <= numberOfPipelineRegisters; stage++) {
+			int index = getInstructionIndexAt(stage, p);
+			if(index >= 0) {
+				int i = stage * numberOfInstructions + index;
+				if(stageLogs[i] == null) stageLogs[i] = new CycleLog(false);
+				stageLogs[i].add(cycle, 0);
+			}
+		}
+	}
+
+	/**
+	 * Discards the indexed cycles after the given one.
+	 * @param cycle The new last cycle.
+	 */
+	private void truncate(int cycle) {
+		if(cycle >= lastCycle) return;
+		for(int p = lastCycle - initialCycle; p > cycle - initialCycle; p--) {
+			if(writtenRegisters[p] >= 0) registerLogs[writtenRegisters[p]].removeLast();
+			if(writtenMemory[p] >= 0) memoryLogs[writtenMemory[p]].removeLast();
+			for(int stage = 0; stage <= numberOfPipelineRegisters; stage++) {
+				int index = getInstructionIndexAt(stage, p);
+				if(index >= 0) stageLogs[stage * numberOfInstructions + index].removeLast();
+			}
+		}
+		lastCycle = cycle;
+
+		int p = cycle - initialCycle;
+		while(keyframes.size() > p / KEYFRAME_INTERVAL + 1)
+			keyframes.remove(keyframes.size() - 1);
+		getRegisters(cycle, registers);
+		getMemory(cycle, memory);
+	}
+
+	/**
+	 * Returns whether the CPU is pipelined.
+	 * @return <tt>True</tt> if the CPU is pipelined.
+	 */
+	public boolean isPipeline() {
+		return pipeline;
+	}
+
+	/**
+	 * Returns the number of stages of the CPU (the pipeline registers plus one).
+	 * @return The number of stages (1 if not pipelined).
+	 */
+	public int getNumberOfStages() {
+		return numberOfPipelineRegisters + 1;
+	}
+
+	/**
+	 * Returns the number of instructions of the program.
+	 * @return The number of instructions.
+	 */
+	public int getNumberOfInstructions() {
+		return numberOfInstructions;
+	}
+
+	/**
+	 * Returns the number of registers.
+	 * @return The number of registers.
+	 */
+	public int getNumberOfRegisters() {
+		return registers.length;
+	}
+
+	/**
+	 * Returns the size of the data memory.
+	 * @return The number of positions of the data memory (0 if none).
+	 */
+	public int getMemorySize() {
+		return memory.length;
+	}
+
+	/**
+	 * Returns the first indexed clock cycle (the initial state).
+	 * @return The first clock cycle.
+	 */
+	public int getFirstCycle() {
+		return initialCycle;
+	}
+
+	/**
+	 * Returns the last indexed clock cycle.
+	 * @return The last clock cycle.
+	 */
+	public int getLastCycle() {
+		return lastCycle;
+	}
+
+	/**
+	 * Returns the address in the PC after a clock cycle.
+	 * @param cycle The clock cycle.
+	 * @return The address in the PC.
+	 * @throws IndexOutOfBoundsException If the cycle wasn't indexed.
+	 */
+	public int getPCAddress(int cycle) throws IndexOutOfBoundsException {
+		return pcs[position(cycle)];
+	}
+
+	/**
+	 * Returns the index of the instruction in a stage after a clock cycle.
+	 * @param stage The stage (<tt>TraceReader.STAGE_*</tt>; only <tt>STAGE_IF</tt> if not pipelined).
+	 * @param cycle The clock cycle.
+	 * @return The index of the instruction, or -1 if none.
+	 * @throws IndexOutOfBoundsException If the stage is invalid or the cycle wasn't indexed.
+	 */
+	public int getInstructionIndex(int stage, int cycle) throws IndexOutOfBoundsException {
+		if(stage < 0 || stage > numberOfPipelineRegisters)
+			throw new IndexOutOfBoundsException("Invalid stage " + stage + "!");
+		return getInstructionIndexAt(stage, position(cycle));
+	}
+
+	/**
+	 * Returns the value of a register after a clock cycle.
+	 * @param index The index of the register.
+	 * @param cycle The clock cycle.
+	 * @return The value of the register.
+	 * @throws IndexOutOfBoundsException If the register is invalid or the cycle wasn't indexed.
+	 */
+	public int getRegister(int index, int cycle) throws IndexOutOfBoundsException {
+		position(cycle);
+		return valueAt(registerLogs[index], cycle, keyframes.get(0)[0][index]);
+	}
+
+	/**
+	 * Returns the value in a position of the data memory after a clock cycle.
+	 * @param index The index of the memory position.
+	 * @param cycle The clock cycle.
+	 * @return The value.
+	 * @throws IndexOutOfBoundsException If the memory position is invalid or the cycle wasn't indexed.
+	 */
+	public int getMemory(int index, int cycle) throws IndexOutOfBoundsException {
+		position(cycle);
+		return valueAt(memoryLogs[index], cycle, keyframes.get(0)[1][index]);
+	}
+
+	/**
+	 * Copies the values of all the registers after a clock cycle to the given array.
+	 * @param cycle The clock cycle.
+	 * @param values The array, with at least <tt>getNumberOfRegisters()</tt> elements.
+	 * @throws IndexOutOfBoundsException If the cycle wasn't indexed.
+	 */
+	public void getRegisters(int cycle, int[] values) throws IndexOutOfBoundsException {
+		int p = position(cycle);
+		int[] keyframe = keyframes.get(p / KEYFRAME_INTERVAL)[0];
+		System.arraycopy(keyframe, 0, values, 0, keyframe.length);
+		for(int i = p - p % KEYFRAME_INTERVAL + 1; i <= p; i++) {
+			if(writtenRegisters[i] >= 0) values[writtenRegisters[i]] = registerValues[i];
+		}
+	}
+
+	/**
+	 * Copies the values of the whole data memory after a clock cycle to the given array.
+	 * @param cycle The clock cycle.
+	 * @param values The array, with at least <tt>getMemorySize()</tt> elements.
+	 * @throws IndexOutOfBoundsException If the cycle wasn't indexed.
+	 */
+	public void getMemory(int cycle, int[] values) throws IndexOutOfBoundsException {
+		int p = position(cycle);
+		int[] keyframe = keyframes.get(p / KEYFRAME_INTERVAL)[1];
+		System.arraycopy(keyframe, 0, values, 0, keyframe.length);
+		for(int i = p - p % KEYFRAME_INTERVAL + 1; i <= p; i++) {
+			if(writtenMemory[i] >= 0) values[writtenMemory[i]] = memoryValues[i];
+		}
+	}
+
+	/**
+	 * Returns the register written in a clock cycle.
+	 * @param cycle The clock cycle.
+	 * @return The index of the register, or -1 if none.
+	 * @throws IndexOutOfBoundsException If the cycle wasn't indexed.
+	 */
+	public int getWrittenRegister(int cycle) throws IndexOutOfBoundsException {
+		return writtenRegisters[position(cycle)];
+	}
+
+	/**
+	 * Returns the memory position written in a clock cycle.
+	 * @param cycle The clock cycle.
+	 * @return The index of the memory position, or -1 if none.
+	 * @throws IndexOutOfBoundsException If the cycle wasn't indexed.
+	 */
+	public int getWrittenMemory(int cycle) throws IndexOutOfBoundsException {
+		return writtenMemory[position(cycle)];
+	}
+
+	/**
+	 * Returns the clock cycles that wrote to a register, in a range of cycles.
+	 * @param index The index of the register.
+	 * @param fromCycle The first cycle of the range.
+	 * @param toCycle The last cycle of the range (inclusive).
+	 * @return The clock cycles, in ascending order.
+	 * @throws IndexOutOfBoundsException If the register is invalid.
+	 */
+	public int[] getRegisterWrites(int index, int fromCycle, int toCycle) throws IndexOutOfBoundsException {
+		CycleLog log = registerLogs[index];
+		return log != null ? log.getCycles(fromCycle, toCycle) : new int[0];
+	}
+
+	/**
+	 * Returns the clock cycles that wrote to a position of the data memory, in a range of cycles.
+	 * @param index The index of the memory position (the address divided by 4).
+	 * @param fromCycle The first cycle of the range.
+	 * @param toCycle The last cycle of the range (inclusive).
+	 * @return The clock cycles, in ascending order.
+	 * @throws IndexOutOfBoundsException If the memory position is invalid.
+	 */
+	public int[] getMemoryWrites(int index, int fromCycle, int toCycle) throws IndexOutOfBoundsException {
+		CycleLog log = memoryLogs[index];
+		return log != null ? log.getCycles(fromCycle, toCycle) : new int[0];
+	}
+
+	/**
+	 * Returns the last clock cycle, up to the given one, after which an instruction was in a stage.
+	 * @param instruction The index of the instruction.
+	 * @param stage The stage (<tt>TraceReader.STAGE_*</tt>).
+	 * @param cycle The clock cycle where the search starts (backwards).
+	 * @return The clock cycle, or -1 if the instruction wasn't in the stage until then.
+	 * @throws IndexOutOfBoundsException If the instruction or stage is invalid.
+	 */
+	public int findLastCycleInStage(int instruction, int stage, int cycle) throws IndexOutOfBoundsException {
+		if(instruction < 0 || instruction >= numberOfInstructions)
+			throw new IndexOutOfBoundsException("Invalid instruction index " + instruction + "!");
+		if(stage < 0 || stage > numberOfPipelineRegisters)
+			throw new IndexOutOfBoundsException("Invalid stage " + stage + "!");
+		CycleLog log = stageLogs[stage * numberOfInstructions + instruction];
+		int i = log != null ? log.floor(cycle) : -1;
+		return i >= 0 ? log.getCycle(i) : -1;
+	}
+
+	/**
+	 * Returns the position of an indexed clock cycle in the per-cycle arrays.
+	 * @param cycle The clock cycle.
+	 * @return The position.
+	 * @throws IndexOutOfBoundsException If the cycle wasn't indexed.
+	 */
+	private int position(int cycle) throws IndexOutOfBoundsException {
+		if(cycle < initialCycle || cycle > lastCycle)
+			throw new IndexOutOfBoundsException("Clock cycle " + cycle + " not indexed (" + initialCycle + " to " + lastCycle + ")!");
+		return cycle - initialCycle;
+	}
+
+	/**
+	 * Returns the index of the instruction in a stage at a position of the per-cycle arrays.
+	 * @param stage The stage (<tt>TraceReader.STAGE_*</tt>).
+	 * @param p The position.
+	 * @return The index of the instruction, or -1 if none.
+	 */
+	private int getInstructionIndexAt(int stage, int p) {
+		if(stage == TraceReader.STAGE_IF)
+			return TraceReader.instructionIndex(pcs[p], numberOfInstructions);
+		else
+			return pipeline ? pipelineStages[p * numberOfPipelineRegisters + stage - 1] : -1;
+	}
+
+	/**
+	 * Returns the value written in the last entry of a log up to a cycle.
+	 * @param log The log (<tt>null</tt> if never written).
+	 * @param cycle The clock cycle.
+	 * @param initial The initial value, returned if there was no write until then.
+	 * @return The value.
+	 */
+	private static int valueAt(CycleLog log, int cycle, int initial) {
+		int i = log != null ? log.floor(cycle) : -1;
+		return i >= 0 ? log.getValue(i) : initial;
+	}
+}
@@ -0,0 +1,364 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator.trace;
+
+import brunonova.drmips.simulator.CPU;
+import brunonova.drmips.simulator.Data;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a trace file written by a {@link TraceRecorder}, one clock cycle at a time.
+ *
+ * <p>The reader keeps the state of the CPU (PC, instructions in the pipeline,
+ * registers and data memory) as it advances through the trace, so after each
+ * call to {@link #next()} the getters return the state after that clock cycle.
+ * The file is streamed, so traces of any size can be read.</p>
+ *
+ * @author Bruno Nova
+ */
+public class TraceReader implements Closeable {
+	/** The stage of the instruction fetched (in the PC). */
+	public static final int STAGE_IF = 0;
+	/** The stage of the instruction in IF/ID (the first pipeline register). */
+	public static final int STAGE_ID = 1;
+	/** The stage of the instruction in ID/EX (in the classic 5-stage pipeline). */
+	public static final int STAGE_EX = 2;
+	/** The stage of the instruction in EX/MEM (in the classic 5-stage pipeline). */
+	public static final int STAGE_MEM = 3;
+	/** The stage of the instruction in MEM/WB (in the classic 5-stage pipeline). */
+	public static final int STAGE_WB = 4;
+
+	/** The size of the read buffer. */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** The input file channel. */
+	private final FileChannel channel;
+	/** The read buffer. */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	/** Whether the end of the file was reached. */
+	private boolean eof = false;
+
+	/** Whether the CPU is pipelined. */
+	private final boolean pipeline;
+	/** The number of instructions of the program. */
+	private final int numberOfInstructions;
+	/** The number of the first clock cycle (before the first record). */
+	private final int initialCycle;
+	/** The values of the registers. */
+	private final int[] registers;
+	/** The values of the data memory. */
+	private final int[] memory;
+	/** The instruction indexes in each stage. */
+	private final int[] stages;
+	/** The maximum size of a record. */
+	private final int maxRecordSize;
+
+	/** The current clock cycle. */
+	private int cycle;
+	/** The current address in the PC. */
+	private int pc;
+	/** The register written in the current cycle, or -1. */
+	private int writtenRegister = -1;
+	/** The memory position written in the current cycle, or -1. */
+	private int writtenMemory = -1;
+	/** The number of forwards in the current cycle. */
+	private int forwards = 0;
+	/** Whether there was a stall in the current cycle. */
+	private boolean stall = false;
+
+	/**
+	 * Opens a trace file and reads its header.
+	 * @param file The trace file.
+	 * @throws IOException If the file can't be read or isn't a valid trace file.
+	 */
+	public TraceReader(File file) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			buffer.flip();
+			fill(6);
+			if(buffer.getInt() != TraceFormat.MAGIC || buffer.get() != TraceFormat.VERSION)
+				throw new IOException("Invalid or unsupported trace file " + file + "!");
+			int pipelineRegisters = buffer.get();
+			if(pipelineRegisters < 0 || pipelineRegisters > CPU.MAXIMUM_PIPELINE_REGISTERS)
+				throw new IOException("Invalid trace file " + file + "!");
+			pipeline = pipelineRegisters > 0;
+			stages = new int[pipelineRegisters + 1];
+			maxRecordSize = TraceFormat.maxRecordSize(pipelineRegisters);
+			numberOfInstructions = readVarint();
+			registers = new int[readVarint()];
+			memory = new int[readVarint()];
+			cycle = initialCycle = readVarint();
+			pc = readSignedVarint();
+			stages[STAGE_IF] = instructionIndex(pc, numberOfInstructions);
+			for(int i = 1; i < stages.length; i++)
+				stages[i] = pipeline ? readSignedVarint() : -1;
+			for(int i = 0; i < registers.length; i++)
+				registers[i] = readSignedVarint();
+			for(int i = 0; i < memory.length; i++)
+				memory[i] = readSignedVarint();
+		}
+		catch(BufferUnderflowException ex) {
+			channel.close();
+			throw new EOFException("Truncated trace file!");
+		}
+		catch(IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Advances to the next clock cycle.
+	 * @return <tt>True</tt> if there was another clock cycle, <tt>false</tt> at the end of the trace.
+	 * @throws IOException If an I/O error occurs or the trace is truncated.
+	 */
+	public boolean next() throws IOException {
+		fill(maxRecordSize);
+		if(!buffer.hasRemaining())
+			return false;
+		try {
+			int flags = buffer.get();
+			if((flags & TraceFormat.FLAG_CYCLE) != 0)
+				cycle = TraceFormat.getVarint(buffer);
+			else
+				cycle++;
+
+			int previousIndex = stages[STAGE_IF];
+			pc += TraceFormat.getSignedVarint(buffer) + Data.DATA_SIZE / 8;
+			stages[STAGE_IF] = instructionIndex(pc, numberOfInstructions);
+			if(pipeline) {
+				if((flags & TraceFormat.FLAG_PIPELINE) != 0) {
+					for(int i = 1; i < stages.length; i++)
+						stages[i] = TraceFormat.getSignedVarint(buffer);
+				}
+				else {
+					for(int i = stages.length - 1; i > STAGE_ID; i--)
+						stages[i] = stages[i - 1];
+					stages[STAGE_ID] = previousIndex;
+				}
+			}
+
+			if((flags & TraceFormat.FLAG_REGISTER) != 0) {
+				writtenRegister = TraceFormat.getVarint(buffer);
+				registers[writtenRegister] += TraceFormat.getSignedVarint(buffer);
+			}
+			else
+				writtenRegister = -1;
+			if((flags & TraceFormat.FLAG_MEMORY) != 0) {
+				writtenMemory = TraceFormat.getVarint(buffer);
+				memory[writtenMemory] += TraceFormat.getSignedVarint(buffer);
+			}
+			else
+				writtenMemory = -1;
+
+			forwards = (flags >> TraceFormat.FORWARDS_SHIFT) & 3;
+			stall = (flags & TraceFormat.FLAG_STALL) != 0;
+			return true;
+		}
+		catch(BufferUnderflowException | ArrayIndexOutOfBoundsException ex) {
+			throw new EOFException("Truncated or corrupted trace file!");
+		}
+	}
+
+	/**
+	 * Returns whether the CPU is pipelined.
+	 * @return <tt>True</tt> if the CPU is pipelined.
+	 */
+	public boolean isPipeline() {
+		return pipeline;
+	}
+
+	/**
+	 * Returns the number of stages of the CPU.
+	 * @return The number of stages (the number of pipeline registers plus 1, or 1 if not pipelined).
+	 */
+	public int getNumberOfStages() {
+		return stages.length;
+	}
+
+	/**
+	 * Returns the number of instructions of the program.
+	 * @return The number of instructions.
+	 */
+	public int getNumberOfInstructions() {
+		return numberOfInstructions;
+	}
+
+	/**
+	 * Returns the number of the clock cycle when the recording started.
+	 * @return The initial clock cycle.
+	 */
+	public int getInitialCycle() {
+		return initialCycle;
+	}
+
+	/**
+	 * Returns the number of registers.
+	 * @return The number of registers.
+	 */
+	public int getNumberOfRegisters() {
+		return registers.length;
+	}
+
+	/**
+	 * Returns the size of the data memory.
+	 * @return The number of positions of the data memory (0 if none).
+	 */
+	public int getMemorySize() {
+		return memory.length;
+	}
+
+	/**
+	 * Returns the current clock cycle (the number of clock cycles executed by the CPU).
+	 * @return The current clock cycle.
+	 */
+	public int getCycle() {
+		return cycle;
+	}
+
+	/**
+	 * Returns the address in the PC.
+	 * @return The address in the PC.
+	 */
+	public int getPCAddress() {
+		return pc;
+	}
+
+	/**
+	 * Returns the index of the instruction in a stage.
+	 * @param stage The stage (<tt>STAGE_*</tt>, up to <tt>getNumberOfStages() - 1</tt>; only <tt>STAGE_IF</tt> if not pipelined).
+	 * @return The index of the instruction, or -1 if none.
+	 * @throws ArrayIndexOutOfBoundsException If the stage is invalid.
+	 */
+	public int getInstructionIndex(int stage) throws ArrayIndexOutOfBoundsException {
+		return stages[stage];
+	}
+
+	/**
+	 * Returns the value of a register.
+	 * @param index The index of the register.
+	 * @return The value of the register.
+	 * @throws ArrayIndexOutOfBoundsException If the index is invalid.
+	 */
+	public int getRegister(int index) throws ArrayIndexOutOfBoundsException {
+		return registers[index];
+	}
+
+	/**
+	 * Returns the value in a position of the data memory.
+	 * @param index The index of the memory position.
+	 * @return The value.
+	 * @throws ArrayIndexOutOfBoundsException If the index is invalid.
+	 */
+	public int getMemory(int index) throws ArrayIndexOutOfBoundsException {
+		return memory[index];
+	}
+
+	/**
+	 * Returns the register written in the current clock cycle.
+	 * @return The index of the register, or -1 if none.
+	 */
+	public int getWrittenRegister() {
+		return writtenRegister;
+	}
+
+	/**
+	 * Returns the memory position written in the current clock cycle.
+	 * @return The index of the memory position, or -1 if none.
+	 */
+	public int getWrittenMemory() {
+		return writtenMemory;
+	}
+
+	/**
+	 * Returns the number of forwards in the current clock cycle.
+	 * @return The number of forwards (0 to 2).
+	 */
+	public int getForwards() {
+		return forwards;
+	}
+
+	/**
+	 * Returns whether there was a stall in the current clock cycle.
+	 * @return <tt>True</tt> if there was a stall.
+	 */
+	public boolean isStall() {
+		return stall;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Returns the index of the instruction in the given address (like the CPU does).
+	 * @param address The address.
+	 * @param numberOfInstructions The number of instructions of the program.
+	 * @return The index of the instruction, or -1 if there's no instruction there.
+	 */
+	static int instructionIndex(int address, int numberOfInstructions) {
+		int index = address / (Data.DATA_SIZE / 8);
+		return (index >= 0 && index < numberOfInstructions) ? index : -1;
+	}
+
+	/**
+	 * Makes sure the buffer has at least the given number of bytes, unless the end of the file is reached.
+	 * @param bytes The number of bytes.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private void fill(int bytes) throws IOException {
+		if(buffer.remaining() >= bytes || eof) return;
+		buffer.compact();
+		while(buffer.position() < bytes) {
+			if(channel.read(buffer) < 0) {
+				eof = true;
+				break;
+			}
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Reads a varint from the header.
+	 * @return The value.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private int readVarint() throws IOException {
+		fill(TraceFormat.MAX_VARINT_SIZE);
+		return TraceFormat.getVarint(buffer);
+	}
+
+	/**
+	 * Reads a signed varint from the header.
+	 * @return The value.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private int readSignedVarint() throws IOException {
+		fill(TraceFormat.MAX_VARINT_SIZE);
+		return TraceFormat.getSignedVarint(buffer);
+	}
+}
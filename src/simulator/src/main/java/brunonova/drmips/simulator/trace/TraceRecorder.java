@@ -0,0 +1,238 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator.trace;
+
+import brunonova.drmips.simulator.CPU;
+import brunonova.drmips.simulator.Component;
+import brunonova.drmips.simulator.CycleListener;
+import brunonova.drmips.simulator.Data;
+import brunonova.drmips.simulator.components.DataMemory;
+import brunonova.drmips.simulator.components.PipelineRegister;
+import brunonova.drmips.simulator.components.RegBank;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Records the execution of a CPU, cycle by cycle, to a compact binary trace file.
+ *
+ * <p>For each clock cycle, the address in the PC, the instructions in the
+ * pipeline stages, the register and memory writes, the forwards and the stalls
+ * are recorded (see {@link TraceFormat}). The records are encoded into direct
+ * buffers that are written to the file by a background thread (see
+ * {@link BackgroundWriter}), so the simulation loop only pays for the encoding. The trace can be read back with
+ * a {@link TraceReader}.</p>
+ *
+ * <p>The recording starts when the recorder is created and stops when it is
+ * closed. Only the clock cycles executed in the meantime are recorded (changes
+ * made by the user or "step back" are not).</p>
+ *
+ * @author Bruno Nova
+ */
+public class TraceRecorder implements CycleListener, Closeable {
+	/** The CPU being recorded. */
+	private final CPU cpu;
+	/** The writer of the trace file. */
+	private final BackgroundWriter out;
+	/** Whether the recorder was closed. */
+	private boolean closed = false;
+
+	/** The last recorded values of the registers. */
+	private final int[] registers;
+	/** The last recorded values of the data memory. */
+	private final int[] memory;
+	/** The pipeline registers (IF/ID, ID/EX, ...), or <tt>null</tt> if not pipelined. */
+	private final PipelineRegister[] pipelineRegisters;
+	/** The last recorded instruction indexes in the pipeline registers. */
+	private final int[] stages;
+	/** The maximum size of a record of the CPU. */
+	private final int maxRecordSize;
+	/** The last recorded address in the PC. */
+	private int lastPC;
+	/** The last recorded clock cycle. */
+	private int lastCycle;
+	/** The number of forwards of the CPU in the last recorded cycle. */
+	private int lastForwards;
+	/** The number of stalls of the CPU in the last recorded cycle. */
+	private int lastStalls;
+	/** The register written in the current cycle, or -1. */
+	private int writtenRegister = -1;
+	/** The memory position written in the current cycle, or -1. */
+	private int writtenMemory = -1;
+	/** The number of recorded cycles. */
+	private long recordedCycles = 0;
+
+	/**
+	 * Creates the trace file, writes the initial state of the CPU and starts recording.
+	 * @param cpu The CPU to record.
+	 * @param file The trace file (overwritten if it exists).
+	 * @throws IOException If the file can't be created.
+	 */
+	public TraceRecorder(CPU cpu, File file) throws IOException {
+		this.cpu = cpu;
+		registers = new int[cpu.getRegBank().getNumberOfRegisters()];
+		memory = new int[cpu.hasDataMemory() ? cpu.getDataMemory().getMemorySize() : 0];
+		pipelineRegisters = cpu.isPipeline() ? cpu.getPipelineRegisters().toArray(new PipelineRegister[0]) : null;
+		stages = new int[pipelineRegisters != null ? pipelineRegisters.length : 0];
+		maxRecordSize = TraceFormat.maxRecordSize(stages.length);
+
+		out = new BackgroundWriter(file, "Trace writer");
+		writeHeader();
+		cpu.addCycleListener(this);
+	}
+
+	/**
+	 * Writes the header, with the initial state of the CPU.
+	 */
+	private void writeHeader() {
+		ByteBuffer buffer = out.reserve(6);
+		buffer.putInt(TraceFormat.MAGIC);
+		buffer.put(TraceFormat.VERSION);
+		buffer.put((byte)stages.length);
+		putVarint(cpu.getInstructionMemory().getNumberOfInstructions());
+		putVarint(registers.length);
+		putVarint(memory.length);
+		lastCycle = cpu.getNumberOfExecutedCycles();
+		putVarint(lastCycle);
+		lastPC = cpu.getPC().getAddress().getValue();
+		putSignedVarint(lastPC);
+		if(pipelineRegisters != null) {
+			for(int i = 0; i < stages.length; i++) {
+				stages[i] = pipelineRegisters[i].getCurrentInstructionIndex();
+				putSignedVarint(stages[i]);
+			}
+		}
+		RegBank regbank = cpu.getRegBank();
+		for(int i = 0; i < registers.length; i++) {
+			registers[i] = regbank.getRegisterValue(i);
+			putSignedVarint(registers[i]);
+		}
+		DataMemory dataMemory = cpu.getDataMemory();
+		for(int i = 0; i < memory.length; i++) {
+			memory[i] = dataMemory.getDataInIndex(i);
+			putSignedVarint(memory[i]);
+		}
+		lastForwards = cpu.getNumberOfForwards();
+		lastStalls = cpu.getNumberOfStalls();
+	}
+
+	@Override
+	public void stateWritten(Component component, int index) {
+		if(component instanceof RegBank)
+			writtenRegister = index;
+		else if(component instanceof DataMemory)
+			writtenMemory = index;
+	}
+
+	@Override
+	public void cycleExecuted(CPU cpu) {
+		ByteBuffer buffer = out.reserve(maxRecordSize);
+		int start = buffer.position();
+		buffer.put((byte)0); // flags (updated at the end)
+		int flags = 0;
+
+		int cycle = cpu.getNumberOfExecutedCycles();
+		if(cycle != lastCycle + 1) {
+			flags |= TraceFormat.FLAG_CYCLE;
+			TraceFormat.putVarint(buffer, cycle);
+		}
+		lastCycle = cycle;
+
+		int pc = cpu.getPC().getAddress().getValue();
+		TraceFormat.putSignedVarint(buffer, pc - lastPC - Data.DATA_SIZE / 8);
+
+		if(pipelineRegisters != null) {
+			// The instructions usually just advance one stage
+			boolean advanced = pipelineRegisters[0].getCurrentInstructionIndex() == TraceReader.instructionIndex(lastPC, cpu.getInstructionMemory().getNumberOfInstructions());
+			for(int i = 1; i < stages.length && advanced; i++)
+				advanced = pipelineRegisters[i].getCurrentInstructionIndex() == stages[i - 1];
+			for(int i = stages.length - 1; i >= 0; i--)
+				stages[i] = pipelineRegisters[i].getCurrentInstructionIndex();
+			if(!advanced) {
+				flags |= TraceFormat.FLAG_PIPELINE;
+				for(int s: stages)
+					TraceFormat.putSignedVarint(buffer, s);
+			}
+		}
+		lastPC = pc;
+
+		if(writtenRegister >= 0) {
+			flags |= TraceFormat.FLAG_REGISTER;
+			int value = cpu.getRegBank().getRegisterValue(writtenRegister);
+			TraceFormat.putVarint(buffer, writtenRegister);
+			TraceFormat.putSignedVarint(buffer, value - registers[writtenRegister]);
+			registers[writtenRegister] = value;
+			writtenRegister = -1;
+		}
+		if(writtenMemory >= 0) {
+			flags |= TraceFormat.FLAG_MEMORY;
+			int value = cpu.getDataMemory().getDataInIndex(writtenMemory);
+			TraceFormat.putVarint(buffer, writtenMemory);
+			TraceFormat.putSignedVarint(buffer, value - memory[writtenMemory]);
+			memory[writtenMemory] = value;
+			writtenMemory = -1;
+		}
+
+		int forwards = cpu.getNumberOfForwards(), stalls = cpu.getNumberOfStalls();
+		flags |= Math.max(0, Math.min(forwards - lastForwards, 3)) << TraceFormat.FORWARDS_SHIFT;
+		if(stalls != lastStalls) flags |= TraceFormat.FLAG_STALL;
+		lastForwards = forwards;
+		lastStalls = stalls;
+
+		buffer.put(start, (byte)flags);
+		recordedCycles++;
+	}
+
+	/**
+	 * Returns the number of clock cycles recorded so far.
+	 * @return The number of recorded cycles.
+	 */
+	public long getRecordedCycles() {
+		return recordedCycles;
+	}
+
+	/**
+	 * Stops recording and writes the remaining records to the file.
+	 * @throws IOException If an error occurred while writing the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) return;
+		closed = true;
+		cpu.removeCycleListener(this);
+		out.close();
+	}
+
+	/**
+	 * Writes a varint to the current buffer while writing the header, getting another buffer if needed.
+	 * @param value The value.
+	 */
+	private void putVarint(int value) {
+		TraceFormat.putVarint(out.reserve(TraceFormat.MAX_VARINT_SIZE), value);
+	}
+
+	/**
+	 * Writes a signed varint to the current buffer while writing the header, getting another buffer if needed.
+	 * @param value The value.
+	 */
+	private void putSignedVarint(int value) {
+		TraceFormat.putSignedVarint(out.reserve(TraceFormat.MAX_VARINT_SIZE), value);
+	}
+}
@@ -0,0 +1,259 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator.trace;
+
+import brunonova.drmips.simulator.AppInfo;
+import brunonova.drmips.simulator.CPU;
+import brunonova.drmips.simulator.Component;
+import brunonova.drmips.simulator.CycleListener;
+import brunonova.drmips.simulator.Output;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Records the values of all the outputs of all the components of a CPU,
+ * cycle by cycle, to a Value Change Dump (VCD) file.
+ *
+ * <p>VCD is the standard text format of waveform viewers like GTKWave. Each
+ * output is a signal named after its wire (<tt>component:output</tt>), and
+ * only the signals whose values changed are written in each clock cycle. The
+ * time unit is the picosecond and each clock cycle lasts the CPU's clock
+ * period (1 ps if the CPU has no latencies).</p>
+ *
+ * <p>Like the {@link TraceRecorder}, the changes are encoded into direct
+ * buffers that are written to the file by a background thread, and only the
+ * clock cycles executed while recording are recorded. The time always
+ * advances, so the cycles executed again after a "step back" appear after
+ * the previous ones.</p>
+ *
+ * @author Bruno Nova
+ */
+public class VCDRecorder implements CycleListener, Closeable {
+	/** The first character of the identifier codes of the signals. */
+	private static final int FIRST_CODE_CHAR = '!';
+	/** The number of characters used in the identifier codes of the signals ('!' to '~'). */
+	private static final int CODE_CHARS = 94;
+	/** The maximum size of a value change or time line, in bytes. */
+	private static final int MAX_LINE_SIZE = 64;
+
+	/** The CPU being recorded. */
+	private final CPU cpu;
+	/** The writer of the VCD file. */
+	private final BackgroundWriter out;
+	/** Whether the recorder was closed. */
+	private boolean closed = false;
+
+	/** The recorded outputs. */
+	private final Output[] outputs;
+	/** The identifier code of each output, in ASCII. */
+	private final byte[][] codes;
+	/** The last recorded value of each output. */
+	private final int[] values;
+	/** The duration of each clock cycle, in ps. */
+	private final long period;
+	/** The time of the last recorded cycle, in ps. */
+	private long time;
+	/** The number of recorded cycles. */
+	private long recordedCycles = 0;
+
+	/**
+	 * Creates the VCD file, writes the signals and their initial values and starts recording.
+	 * @param cpu The CPU to record.
+	 * @param file The VCD file (overwritten if it exists).
+	 * @throws IOException If the file can't be created.
+	 */
+	public VCDRecorder(CPU cpu, File file) throws IOException {
+		this.cpu = cpu;
+		List<Output> list = new ArrayList<>();
+		for(Component c: cpu.getComponents())
+			list.addAll(c.getOutputs());
+		outputs = list.toArray(new Output[list.size()]);
+		codes = new byte[outputs.length][];
+		values = new int[outputs.length];
+		for(int i = 0; i < outputs.length; i++)
+			codes[i] = identifierCode(i);
+		period = Math.max(1, cpu.getClockPeriod());
+		time = cpu.getNumberOfExecutedCycles() * period;
+
+		out = new BackgroundWriter(file, "VCD writer");
+		writeHeader();
+		cpu.addCycleListener(this);
+	}
+
+	/**
+	 * Writes the header, with the declaration of the signals and their initial values.
+	 */
+	private void writeHeader() {
+		StringBuilder header = new StringBuilder();
+		header.append("$date ").append(new Date()).append(" $end\n");
+		header.append("$version ").append(AppInfo.NAME).append(' ').append(AppInfo.VERSION).append(" $end\n");
+		if(cpu.getFile() != null)
+			header.append("$comment ").append(cpu.getFile().getName()).append(" $end\n");
+		header.append("$timescale 1 ").append(CPU.LATENCY_UNIT).append(" $end\n");
+		header.append("$scope module cpu $end\n");
+		for(int i = 0; i < outputs.length; i++) {
+			String name = outputs[i].getComponent().getId() + ":" + outputs[i].getId();
+			header.append("$var wire ").append(outputs[i].getSize()).append(' ')
+				.append(new String(codes[i], StandardCharsets.US_ASCII)).append(' ')
+				.append(name.replaceAll("\\s", "_")).append(" $end\n");
+		}
+		header.append("$upscope $end\n");
+		header.append("$enddefinitions $end\n");
+
+		byte[] bytes = header.toString().getBytes(StandardCharsets.UTF_8);
+		for(int i = 0; i < bytes.length; i += BackgroundWriter.BUFFER_SIZE) {
+			int length = Math.min(BackgroundWriter.BUFFER_SIZE, bytes.length - i);
+			out.reserve(length).put(bytes, i, length);
+		}
+
+		putTime();
+		putText("$dumpvars\n");
+		for(int i = 0; i < outputs.length; i++) {
+			values[i] = outputs[i].getValue();
+			putValue(i);
+		}
+		putText("$end\n");
+	}
+
+	@Override
+	public void stateWritten(Component component, int index) {
+	}
+
+	@Override
+	public void cycleExecuted(CPU cpu) {
+		time += period;
+		boolean timeWritten = false;
+		for(int i = 0; i < outputs.length; i++) {
+			int value = outputs[i].getValue();
+			if(value != values[i]) {
+				if(!timeWritten) {
+					putTime();
+					timeWritten = true;
+				}
+				values[i] = value;
+				putValue(i);
+			}
+		}
+		recordedCycles++;
+	}
+
+	/**
+	 * Returns the number of clock cycles recorded so far.
+	 * @return The number of recorded cycles.
+	 */
+	public long getRecordedCycles() {
+		return recordedCycles;
+	}
+
+	/**
+	 * Returns the number of signals (outputs) recorded.
+	 * @return The number of signals.
+	 */
+	public int getNumberOfSignals() {
+		return outputs.length;
+	}
+
+	/**
+	 * Stops recording and writes the remaining changes to the file.
+	 * @throws IOException If an error occurred while writing the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) return;
+		closed = true;
+		cpu.removeCycleListener(this);
+		time += period;
+		putTime(); // mark the end of the last cycle
+		out.close();
+	}
+
+	/**
+	 * Writes the current time (<tt>#time</tt>).
+	 */
+	private void putTime() {
+		ByteBuffer buffer = out.reserve(MAX_LINE_SIZE);
+		buffer.put((byte)'#');
+		putDecimal(buffer, time);
+		buffer.put((byte)'\n');
+	}
+
+	/**
+	 * Writes the last recorded value of an output.
+	 * @param i The index of the output.
+	 */
+	private void putValue(int i) {
+		ByteBuffer buffer = out.reserve(MAX_LINE_SIZE);
+		int value = values[i];
+		int size = outputs[i].getSize();
+		if(size == 1) // scalar: "0!"
+			buffer.put((byte)((value & 1) != 0 ? '1' : '0'));
+		else { // vector, without the leading zeros: "b101 !"
+			if(size < 32) value &= (1 << size) - 1;
+			buffer.put((byte)'b');
+			if(value == 0)
+				buffer.put((byte)'0');
+			for(int bit = 31 - Integer.numberOfLeadingZeros(value); bit >= 0; bit--)
+				buffer.put((byte)(((value >>> bit) & 1) != 0 ? '1' : '0'));
+			buffer.put((byte)' ');
+		}
+		buffer.put(codes[i]);
+		buffer.put((byte)'\n');
+	}
+
+	/**
+	 * Writes a line of ASCII text.
+	 * @param text The text (at most <tt>MAX_LINE_SIZE</tt> characters).
+	 */
+	private void putText(String text) {
+		out.reserve(MAX_LINE_SIZE).put(text.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Writes a non-negative number in decimal.
+	 * @param buffer The buffer.
+	 * @param value The number.
+	 */
+	private static void putDecimal(ByteBuffer buffer, long value) {
+		long divisor = 1;
+		while(value / divisor >= 10)
+			divisor *= 10;
+		for(; divisor > 0; divisor /= 10)
+			buffer.put((byte)('0' + (value / divisor) % 10));
+	}
+
+	/**
+	 * Returns the identifier code of a signal (a short sequence of printable ASCII characters).
+	 * @param index The index of the signal.
+	 * @return The identifier code, in ASCII.
+	 */
+	private static byte[] identifierCode(int index) {
+		StringBuilder code = new StringBuilder();
+		do {
+			code.append((char)(FIRST_CODE_CHAR + index % CODE_CHARS));
+			index = index / CODE_CHARS - 1;
+		} while(index >= 0);
+		return code.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+}
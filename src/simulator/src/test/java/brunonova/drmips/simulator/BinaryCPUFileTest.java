@@ -0,0 +1,110 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class BinaryCPUFileTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File copy(String name) throws Exception {
+		File f = new File(folder.getRoot(), name);
+		Files.copy(new File("cpu/" + name).toPath(), f.toPath());
+		return f;
+	}
+
+	@Test
+	public void testSameAsJSON() throws Exception {
+		File set = copy("default-no-jump.set");
+		File cpuFile = copy("pipeline.cpu");
+		BinaryCPUFile.compile(set, BinaryCPUFile.getBinaryFile(set));
+		BinaryCPUFile.compile(cpuFile, BinaryCPUFile.getBinaryFile(cpuFile));
+		assertNotNull(BinaryCPUFile.readCPU(cpuFile, folder.getRoot()));
+		assertNotNull(BinaryCPUFile.readInstructionSet(set));
+
+		CPU expected = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		CPU cpu = new CPUTemplate(cpuFile.getPath()).createCPU();
+		assertEquals(expected.getClockPeriod(), cpu.getClockPeriod());
+		assertEquals(expected.getComponents().length, cpu.getComponents().length);
+		assertEquals(expected.getRegisterName(8), cpu.getRegisterName(8));
+		assertEquals(expected.getInstructionSet().getInstructions().length, cpu.getInstructionSet().getInstructions().length);
+		for(Component c: expected.getComponents()) {
+			Component b = cpu.getComponent(c.getId());
+			assertEquals(c.getPosition(), b.getPosition());
+			assertEquals(c.getCustomDescription("pt"), b.getCustomDescription("pt"));
+			assertEquals(c.getOutputs().size(), b.getOutputs().size());
+		}
+	}
+
+	@Test
+	public void testInstructionDescriptions() throws Exception {
+		File file = copy("default-extended.set");
+		BinaryCPUFile.compile(file, BinaryCPUFile.getBinaryFile(file));
+		InstructionSet expected = new InstructionSet("cpu/default-extended.set");
+		InstructionSet set = BinaryCPUFile.readInstructionSet(file);
+		assertNotNull(set);
+		for(Instruction i: expected.getInstructions()) {
+			assertEquals(i.hasDescription(), set.getInstruction(i.getMnemonic()).hasDescription());
+			assertEquals(i.getDescription(), set.getInstruction(i.getMnemonic()).getDescription());
+		}
+		for(PseudoInstruction p: expected.getPseudoInstructions())
+			assertEquals(p.getDescription(), set.getPseudoInstruction(p.getMnemonic()).getDescription());
+		assertEquals("$t1 = $t2 + $t3", set.getInstruction("add").getDescription());
+	}
+
+	@Test
+	public void testModifiedSourceIgnoresBinary() throws Exception {
+		copy("default.set");
+		File cpuFile = copy("unicycle.cpu");
+		BinaryCPUFile.compile(cpuFile, BinaryCPUFile.getBinaryFile(cpuFile));
+		assertNotNull(BinaryCPUFile.readCPU(cpuFile, folder.getRoot()));
+
+		try (FileWriter w = new FileWriter(cpuFile, true)) {
+			w.write("\n");
+		}
+		assertNull(BinaryCPUFile.readCPU(cpuFile, folder.getRoot()));
+		assertEquals(CPU.createFromJSONFile("cpu/unicycle.cpu").getClockPeriod(), new CPUTemplate(cpuFile.getPath()).createCPU().getClockPeriod());
+	}
+
+	@Test
+	public void testModificationTime() throws Exception {
+		copy("default.set");
+		File cpuFile = copy("unicycle.cpu");
+		BinaryCPUFile.compile(cpuFile, BinaryCPUFile.getBinaryFile(cpuFile));
+
+		// Touched (or copied) without changes: still up to date
+		assertTrue(cpuFile.setLastModified(cpuFile.lastModified() - 60000));
+		assertNotNull(BinaryCPUFile.readCPU(cpuFile, folder.getRoot()));
+
+		// Changed with the same size
+		byte[] json = Files.readAllBytes(cpuFile.toPath());
+		int i = 0;
+		while(json[i] < '0' || json[i] > '8') i++;
+		json[i]++; // a digit
+		Files.write(cpuFile.toPath(), json);
+		assertTrue(cpuFile.setLastModified(cpuFile.lastModified() - 120000));
+		assertNull(BinaryCPUFile.readCPU(cpuFile, folder.getRoot()));
+	}
+}
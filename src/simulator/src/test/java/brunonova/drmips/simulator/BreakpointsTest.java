@@ -0,0 +1,119 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.exceptions.InvalidConditionException;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BreakpointsTest {
+	private static final String CODE = "addi $t0, $zero, 10\n"
+		+ "loop: addi $t0, $t0, -1\n"  // 4
+		+ "sw $t0, 16($zero)\n"          // 8
+		+ "beq $t0, $zero, end\n"        // 12
+		+ "j loop\n"                     // 16
+		+ "end: addi $t1, $zero, 1\n";   // 20
+	private CPU cpu;
+
+	@Before
+	public void setUp() throws Exception {
+		cpu = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		cpu.assembleCode(CODE);
+	}
+
+	@Test
+	public void testInstructionBreakpoints() throws Exception {
+		cpu.getBreakpoints().addInstructionBreakpoint(12, null, 1);
+		cpu.getBreakpoints().addInstructionBreakpoint(20, null, 1);
+		assertEquals(ExecutionResult.Status.BREAKPOINT, cpu.executeAll(0, 0, null).getStatus());
+		assertEquals(12, cpu.getPC().getAddress().getValue());
+		cpu.getBreakpoints().remove(cpu.getBreakpoints().getLastHit());
+		assertEquals(ExecutionResult.Status.BREAKPOINT, cpu.executeAll(0, 0, null).getStatus());
+		assertEquals(20, cpu.getPC().getAddress().getValue());
+		assertEquals(ExecutionResult.Status.FINISHED, cpu.executeAll(0, 0, null).getStatus());
+	}
+
+	@Test
+	public void testConditionAndHitCount() throws Exception {
+		Breakpoint b = cpu.getBreakpoints().addInstructionBreakpoint(4, "$t0 <= 5 && !($t0 == 3)", 2);
+		cpu.executeAll(0, 0, null);
+		assertEquals(4, cpu.getRegBank().getRegister(8).getValue());
+		assertEquals(2, b.getHits());
+		cpu.executeAll(0, 0, null);
+		assertEquals(2, cpu.getRegBank().getRegister(8).getValue());
+		assertEquals(3, b.getHits());
+	}
+
+	@Test
+	public void testStalls() throws Exception {
+		// The PC keeps the address of the third instruction in the load-use stall, and of the fourth in the memory stall
+		String code = "lw $t0, 0($zero)\n add $t1, $t0, $t0\n add $t2, $t1, $t1\n add $t3, $t2, $t2\n";
+		for(String[] test: new String[][] {{"cpu/pipeline.cpu", "8"}, {"cpu/pipeline-memory.cpu", "12"}}) {
+			cpu = CPU.createFromJSONFile(test[0]);
+			cpu.assembleCode(code);
+			Breakpoint b = cpu.getBreakpoints().addInstructionBreakpoint(Integer.parseInt(test[1]), null, 1);
+			assertEquals(ExecutionResult.Status.BREAKPOINT, cpu.executeAll(0, 0, null).getStatus());
+			assertEquals(1, b.getHits());
+			assertEquals(ExecutionResult.Status.FINISHED, cpu.executeAll(0, 0, null).getStatus());
+			assertEquals(1, b.getHits());
+		}
+	}
+
+	@Test
+	public void testStepBack() throws Exception {
+		Breakpoint b = cpu.getBreakpoints().addInstructionBreakpoint(4, null, 2);
+		assertEquals(ExecutionResult.Status.BREAKPOINT, cpu.executeAll(0, 0, null).getStatus());
+		assertEquals(2, b.getHits());
+		assertEquals(9, cpu.getRegBank().getRegister(8).getValue());
+		cpu.restorePreviousCycle(); // back to "j loop"
+		assertEquals(1, b.getHits());
+		assertEquals(ExecutionResult.Status.BREAKPOINT, cpu.executeAll(0, 0, null).getStatus());
+		assertEquals(2, b.getHits());
+		assertEquals(9, cpu.getRegBank().getRegister(8).getValue());
+		cpu.resetToFirstCycle();
+		assertEquals(0, b.getHits());
+	}
+
+	@Test
+	public void testWatchpoints() throws Exception {
+		Breakpoint reg = cpu.getBreakpoints().addRegisterWatchpoint(cpu.getRegisterIndex("$t1"), null, 1);
+		Breakpoint mem = cpu.getBreakpoints().addMemoryWatchpoint(16, "mem[16] == 7", 1);
+		assertEquals(ExecutionResult.Status.BREAKPOINT, cpu.executeAll(0, 0, null).getStatus());
+		assertSame(mem, cpu.getBreakpoints().getLastHit());
+		assertEquals(7, cpu.getDataMemory().getData(16));
+		assertEquals(ExecutionResult.Status.BREAKPOINT, cpu.executeAll(0, 0, null).getStatus());
+		assertSame(reg, cpu.getBreakpoints().getLastHit());
+		assertTrue(cpu.isProgramFinished());
+	}
+
+	@Test
+	public void testConditions() throws Exception {
+		cpu.getRegBank().setRegister(8, 6);
+		cpu.getDataMemory().setData(8, -2);
+		assertTrue(BreakpointCondition.compile("$t0 + mem[$t0 + 2] == 4", cpu).evaluate(cpu));
+		assertTrue(BreakpointCondition.compile("-$8 < 0x10 || $pc != 0", cpu).evaluate(cpu));
+		assertFalse(BreakpointCondition.compile("$pc", cpu).evaluate(cpu));
+		for(String invalid: new String[] {"", "$t0 ==", "$foo > 1", "mem[4", "1 2", "12abc"}) {
+			try {
+				BreakpointCondition.compile(invalid, cpu);
+				fail("\"" + invalid + "\" compiled");
+			} catch(InvalidConditionException ex) { }
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class CPUTemplateTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	@Test
+	public void testCreatedCPUsAreIndependent() throws Exception {
+		CPUTemplate template = new CPUTemplate("cpu/pipeline.cpu");
+		CPU cpu1 = template.createCPU();
+		CPU cpu2 = template.createCPU();
+
+		assertNotSame(cpu1.getRegBank(), cpu2.getRegBank());
+		assertSame(cpu1.getInstructionSet(), cpu2.getInstructionSet());
+		assertEquals(cpu1.getClockPeriod(), cpu2.getClockPeriod());
+		assertEquals(8, cpu1.getRegisterIndex("$t0"));
+
+		cpu1.getRegBank().setRegister(8, 123);
+		cpu1.getDataMemory().setDataInIndex(0, 456);
+		assertEquals(0, cpu2.getRegBank().getRegister(8).getValue());
+		assertEquals(0, cpu2.getDataMemory().getDataInIndex(0));
+	}
+
+	@Test
+	public void testSameAsCreateFromJSONFile() throws Exception {
+		CPU expected = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		CPU cpu = CPUTemplate.getTemplate("cpu/unicycle.cpu").createCPU();
+
+		assertEquals(expected.getClockPeriod(), cpu.getClockPeriod());
+		assertEquals(expected.getComponents().length, cpu.getComponents().length);
+		assertEquals(expected.isPipeline(), cpu.isPipeline());
+	}
+
+	@Test
+	public void testCache() throws Exception {
+		CPUTemplate t1 = CPUTemplate.getTemplate("cpu/unicycle.cpu");
+		CPUTemplate t2 = CPUTemplate.getTemplate("cpu/../cpu/unicycle.cpu");
+		assertSame(t1, t2);
+		assertFalse(t1.isOutdated());
+
+		CPUTemplate.clearCache();
+		assertNotSame(t1, CPUTemplate.getTemplate("cpu/unicycle.cpu"));
+	}
+
+	@Test
+	public void testCacheEviction() throws Exception {
+		Files.copy(new File("cpu/default.set").toPath(), new File(folder.getRoot(), "default.set").toPath());
+		String[] paths = new String[CPUTemplate.MAX_CACHED_TEMPLATES + 1];
+		for(int i = 0; i < paths.length; i++) {
+			File f = new File(folder.getRoot(), "cpu" + i + ".cpu");
+			Files.copy(new File("cpu/unicycle.cpu").toPath(), f.toPath());
+			paths[i] = f.getPath();
+		}
+
+		CPUTemplate first = CPUTemplate.getTemplate(paths[0]);
+		CPUTemplate second = CPUTemplate.getTemplate(paths[1]);
+		for(int i = 2; i < paths.length; i++) {
+			assertSame(first, CPUTemplate.getTemplate(paths[0])); // recently used, so it's kept
+			CPUTemplate.getTemplate(paths[i]);
+		}
+		assertSame(first, CPUTemplate.getTemplate(paths[0]));
+		assertNotSame(second, CPUTemplate.getTemplate(paths[1])); // the least recently used was evicted
+	}
+}
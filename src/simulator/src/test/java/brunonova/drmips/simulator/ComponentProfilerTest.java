@@ -0,0 +1,87 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ComponentProfilerTest {
+	private static final String CODE = "addi $t0, $zero, 20\n"
+		+ "loop: addi $t0, $t0, -1\n"
+		+ "sw $t0, 0($zero)\n"
+		+ "lw $t1, 0($zero)\n"
+		+ "add $t2, $t1, $t1\n"
+		+ "beq $t0, $zero, end\n"
+		+ "beq $zero, $zero, loop\n"
+		+ "end: add $t3, $t2, $t2\n";
+
+	@Test
+	public void testPipeline() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		cpu.setPerformanceInstructionDependent(true);
+		cpu.assembleCode(CODE);
+		assertNull(cpu.getProfiler());
+		cpu.setProfilingEnabled(true);
+		ComponentProfiler profiler = cpu.getProfiler();
+		assertNotNull(profiler);
+		cpu.executeAll(0, 0, null);
+
+		long cycles = cpu.getNumberOfExecutedCycles();
+		assertEquals(cycles, profiler.getProfiledCycles());
+		Component[] components = profiler.getComponents();
+		assertEquals(cpu.getComponents().length, components.length);
+		long totalTime = 0;
+		for(int i = 0; i < components.length; i++) {
+			// All components are executed at least once per cycle
+			assertTrue(components[i].getId(), profiler.getExecuteCalls(i) >= cycles);
+			assertTrue(profiler.getMaxDepth(i) >= 1);
+			if(components[i] instanceof Synchronous)
+				assertEquals(cycles, profiler.getSynchronousCalls(i));
+			else
+				assertEquals(0, profiler.getSynchronousCalls(i));
+			assertTrue(profiler.getLatencyCalls(i) >= 0);
+			totalTime += profiler.getTotalTime(i);
+		}
+		assertTrue(totalTime > 0);
+		assertTrue(profiler.getMaxPropagationDepth() > 1);
+		assertTrue(profiler.getAveragePropagationDepth() >= 1);
+		assertTrue(profiler.getAveragePropagationDepth() <= profiler.getMaxPropagationDepth());
+
+		profiler.reset();
+		assertEquals(0, profiler.getProfiledCycles());
+		assertEquals(0, profiler.getExecuteCalls(0));
+		assertEquals(0, profiler.getMaxPropagationDepth());
+	}
+
+	@Test
+	public void testSameResults() throws Exception {
+		CPU profiled = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		profiled.assembleCode(CODE);
+		profiled.setProfilingEnabled(true);
+		profiled.executeAll(0, 0, null);
+		profiled.setProfilingEnabled(false);
+		assertNull(profiled.getProfiler());
+
+		CPU cpu = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		cpu.assembleCode(CODE);
+		cpu.executeAll(0, 0, null);
+		assertEquals(cpu.getNumberOfExecutedCycles(), profiled.getNumberOfExecutedCycles());
+		for(int i = 0; i < cpu.getRegBank().getNumberOfRegisters(); i++)
+			assertEquals(cpu.getRegBank().getRegisterValue(i), profiled.getRegBank().getRegisterValue(i));
+	}
+}
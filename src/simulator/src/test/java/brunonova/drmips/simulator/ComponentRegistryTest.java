@@ -0,0 +1,68 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.components.Add;
+import brunonova.drmips.simulator.exceptions.InvalidCPUException;
+import java.io.File;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ComponentRegistryTest {
+	@Test
+	public void testBuiltInComponent() throws Exception {
+		ComponentFactory factory = ComponentRegistry.getFactory("Add", null);
+		assertSame(factory, ComponentRegistry.getFactory("Add", new File("cpu")));
+
+		JSONObject json = new JSONObject().put("x", 0).put("y", 0)
+			.put("in1", "in1").put("in2", "in2").put("out", "out");
+		Component c = factory.create("test", json);
+		assertTrue(c instanceof Add);
+		assertEquals("test", c.getId());
+	}
+
+	@Test
+	public void testCustomComponent() throws Exception {
+		// Not found among the built-in types, so it is loaded through its constructor
+		ComponentFactory factory = ComponentRegistry.getFactory("brunonova.drmips.simulator.components.Add", new File("cpu"));
+		assertSame(factory, ComponentRegistry.getFactory("brunonova.drmips.simulator.components.Add", new File("cpu")));
+
+		JSONObject json = new JSONObject().put("x", 0).put("y", 0)
+			.put("in1", "in1").put("in2", "in2").put("out", "out");
+		Component c = factory.create("test", json);
+		assertTrue(c instanceof Add);
+		assertEquals("test", c.getId());
+		try {
+			factory.create("test", new JSONObject());
+			fail("Missing properties");
+		} catch(JSONException ex) { }
+	}
+
+	@Test(expected = InvalidCPUException.class)
+	public void testUnknownComponent() throws Exception {
+		ComponentRegistry.getFactory("NoSuchComponent", new File("cpu"));
+	}
+
+	@Test(expected = InvalidCPUException.class)
+	public void testNotAComponent() throws Exception {
+		ComponentRegistry.getFactory("java.lang.String", new File("cpu"));
+	}
+}
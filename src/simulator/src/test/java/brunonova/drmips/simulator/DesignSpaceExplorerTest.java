@@ -0,0 +1,174 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.exceptions.InfiniteLoopException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DesignSpaceExplorerTest {
+	private static final String CODE = "addi $t0, $zero, 5\n"
+		+ "loop: addi $t0, $t0, -1\n"
+		+ "sw $t0, 0($zero)\n"
+		+ "beq $t0, $zero, end\n"
+		+ "j loop\n"
+		+ "end: add $t1, $t0, $t0\n";
+
+	@Test
+	public void testParseLatencies() {
+		assertArrayEquals(new int[] {50, 100, 150, 200}, DesignSpaceExplorer.parseLatencies("50:200:50"));
+		assertArrayEquals(new int[] {50, 100}, DesignSpaceExplorer.parseLatencies("50:149:50"));
+		assertArrayEquals(new int[] {100, 300, 200}, DesignSpaceExplorer.parseLatencies("100, 300,200"));
+		assertArrayEquals(new int[] {7}, DesignSpaceExplorer.parseLatencies("7"));
+		try {
+			DesignSpaceExplorer.parseLatencies("200:50:50");
+			fail("Backwards range");
+		} catch(IllegalArgumentException ex) { }
+		try {
+			DesignSpaceExplorer.parseLatencies("50:200");
+			fail("Range without step");
+		} catch(IllegalArgumentException ex) { }
+		try {
+			DesignSpaceExplorer.parseLatencies("a,b");
+			fail("Not numbers");
+		} catch(IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testExploration() throws Exception {
+		CPUTemplate template = CPUTemplate.getTemplate("cpu/unicycle.cpu");
+		DesignSpaceExplorer explorer = new DesignSpaceExplorer(template);
+		explorer.addComponent("ALU", new int[] {50, 100, 200});
+		explorer.addComponent("InstMem", new int[] {100, 300});
+		explorer.addComponent("RegBank", new int[] {100, 50});
+		assertEquals(12, explorer.getNumberOfCombinations());
+		DesignSpaceExplorer.Exploration result = explorer.explore(CODE, 0, 3);
+
+		CPU cpu = template.createCPU();
+		cpu.assembleCode(CODE);
+		cpu.executeAll(0, 0, null);
+		assertEquals(cpu.getNumberOfExecutedCycles(), result.getCycles(0));
+		assertEquals(cpu.getNumberOfExecutedInstructions(), result.getInstructions());
+		assertEquals(12, result.getNumberOfCombinations());
+		assertEquals(3, result.getNumberOfComponents());
+		assertEquals("InstMem", result.getComponentId(1));
+
+		// The last component changes the fastest
+		assertEquals(50, result.getLatency(0, 0));
+		assertEquals(100, result.getLatency(0, 1));
+		assertEquals(50, result.getLatency(1, 2));
+		assertEquals(300, result.getLatency(2, 1));
+		assertEquals(100, result.getLatency(4, 0));
+
+		// Same clock periods as setting the latencies by hand
+		for(int c = 0; c < result.getNumberOfCombinations(); c++) {
+			cpu.getComponent("ALU").setLatency(result.getLatency(c, 0));
+			cpu.getComponent("InstMem").setLatency(result.getLatency(c, 1));
+			cpu.getComponent("RegBank").setLatency(result.getLatency(c, 2));
+			cpu.calculatePerformance();
+			assertEquals(cpu.getClockPeriod(), result.getClockPeriod(c));
+			assertEquals(cpu.getExecutionTime(), result.getExecutionTime(c));
+		}
+
+		// No combination dominates one in the Pareto frontier
+		int[] frontier = result.getParetoFrontier();
+		assertTrue(frontier.length > 0);
+		for(int i = 0; i < frontier.length; i++) {
+			int p = frontier[i];
+			assertTrue(result.isInParetoFrontier(p));
+			if(i > 0) assertTrue(result.getExecutionTime(p) > result.getExecutionTime(frontier[i - 1]));
+			for(int c = 0; c < result.getNumberOfCombinations(); c++) {
+				if(c != p) {
+					boolean dominates = result.getExecutionTime(c) <= result.getExecutionTime(p)
+						&& result.getTotalLatency(c) >= result.getTotalLatency(p)
+						&& (result.getExecutionTime(c) < result.getExecutionTime(p) || result.getTotalLatency(c) > result.getTotalLatency(p));
+					assertFalse(dominates);
+				}
+			}
+		}
+		assertEquals(1, frontier[0]); // the lowest latencies are the fastest
+
+		// All components are in the critical path of the unicycle CPU
+		int[] ranking = result.getSensitivityRanking();
+		assertEquals(3, ranking.length);
+		assertArrayEquals(new int[] {1, 0, 2}, ranking); // InstMem +200, ALU +150, RegBank +50 (partly hidden)
+		assertEquals(200.0 * result.getCycles(0), result.getSensitivity(1), 0.001);
+		assertEquals(150.0 * result.getCycles(0), result.getSensitivity(0), 0.001);
+		for(int k = 0; k < 3; k++)
+			assertTrue(result.getSensitivity(k) > 0);
+	}
+
+	@Test
+	public void testTimedDataMemory() throws Exception {
+		String code = "addi $t0, $zero, 5\n"
+			+ "loop: sw $t0, 0($zero)\n"
+			+ "lw $t1, 0($zero)\n"
+			+ "addi $t0, $t1, -1\n"
+			+ "beq $t0, $zero, end\n"
+			+ "beq $zero, $zero, loop\n"
+			+ "end: add $t1, $t0, $t0\n";
+		CPUTemplate template = CPUTemplate.getTemplate("cpu/pipeline-memory.cpu");
+		DesignSpaceExplorer explorer = new DesignSpaceExplorer(template);
+		explorer.addComponent("InstMem", new int[] {200, 400, 700});
+		DesignSpaceExplorer.Exploration result = explorer.explore(code, 0, 2);
+		assertTrue(result.isCyclesLatencyDependent());
+
+		// Same cycles and execution times as executing with the latencies set by hand
+		for(int c = 0; c < result.getNumberOfCombinations(); c++) {
+			CPU cpu = template.createCPU();
+			cpu.getComponent("InstMem").setLatency(result.getLatency(c, 0));
+			cpu.calculatePerformance();
+			cpu.assembleCode(code);
+			cpu.executeAll(0, 0, null);
+			assertEquals(cpu.getClockPeriod(), result.getClockPeriod(c));
+			assertEquals(cpu.getNumberOfExecutedCycles(), result.getCycles(c));
+			assertEquals(cpu.getExecutionTime(), result.getExecutionTime(c));
+		}
+		assertTrue(result.getCycles(0) != result.getCycles(2)); // the memory takes fewer cycles with a longer clock
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownComponent() throws Exception {
+		DesignSpaceExplorer explorer = new DesignSpaceExplorer(CPUTemplate.getTemplate("cpu/unicycle.cpu"));
+		explorer.addComponent("Foo", new int[] {100});
+		explorer.explore(CODE, 0, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateComponent() {
+		DesignSpaceExplorer explorer = new DesignSpaceExplorer(null);
+		explorer.addComponent("ALU", new int[] {100});
+		explorer.addComponent("ALU", new int[] {200});
+	}
+
+	@Test
+	public void testLongProgram() throws Exception {
+		String code = "addi $t0, $zero, 400\n"
+			+ "loop: addi $t0, $t0, -1\n"
+			+ "beq $t0, $zero, end\n"
+			+ "j loop\n"
+			+ "end: add $t1, $t0, $t0\n";
+		DesignSpaceExplorer explorer = new DesignSpaceExplorer(CPUTemplate.getTemplate("cpu/unicycle.cpu"));
+		explorer.addComponent("ALU", new int[] {100, 200});
+		assertEquals(1201, explorer.explore(code, 0, 2).getCycles(0)); // more than CPU.EXECUTE_ALL_LIMIT_CYCLES
+		try {
+			explorer.explore(code, 1000, 2);
+			fail("Cycle limit");
+		} catch(InfiniteLoopException ex) { }
+	}
+}
@@ -0,0 +1,69 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ExecutionTaskTest {
+	private static final String LOOP = "loop: addi $t0, $t0, 1\n j loop\n";
+
+	@Test
+	public void testCycleLimit() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		cpu.assembleCode(LOOP);
+		ExecutionResult result = cpu.executeAll(5000, 0, null);
+		assertEquals(ExecutionResult.Status.CYCLE_LIMIT, result.getStatus());
+		assertEquals(5000, result.getCycles());
+		assertEquals(2500, result.getRegister(8));
+	}
+
+	@Test
+	public void testFinished() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		cpu.assembleCode("addi $t0, $zero, 3\n add $t1, $t0, $t0\n");
+		ExecutionResult result = cpu.executeAll(0, 0, null);
+		assertEquals(ExecutionResult.Status.FINISHED, result.getStatus());
+		assertEquals(6, result.getRegister(9));
+		assertEquals(cpu.getNumberOfExecutedCycles(), result.getTotalCycles());
+	}
+
+	@Test
+	public void testStop() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		cpu.assembleCode(LOOP);
+		final CountDownLatch finished = new CountDownLatch(1);
+		ExecutionTask task = new ExecutionTask(cpu, 0, 0, new ExecutionTask.Listener() {
+			@Override
+			public void executionProgress(ExecutionTask task, long cycles) {
+				if(cycles >= 3 * CPU.EXECUTION_PROGRESS_INTERVAL) task.stop();
+			}
+
+			@Override
+			public void executionFinished(ExecutionTask task) {
+				finished.countDown();
+			}
+		}).start();
+
+		assertTrue(finished.await(30, TimeUnit.SECONDS));
+		assertEquals(ExecutionResult.Status.STOPPED, task.getResult().getStatus());
+		assertEquals(3 * CPU.EXECUTION_PROGRESS_INTERVAL, task.getResult().getCycles());
+	}
+}
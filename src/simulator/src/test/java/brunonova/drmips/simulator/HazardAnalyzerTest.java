@@ -0,0 +1,158 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.components.InstructionMemory;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class HazardAnalyzerTest {
+	private static final String CODE = ".data\n"
+		+ "arr: .word 3, 1, 4, 1, 5\n"
+		+ ".text\n"
+		+ "addi $t0, $zero, 5\n"
+		+ "addi $t2, $zero, 0\n"
+		+ "addi $t3, $zero, 0\n"
+		+ "loop: lw $t1, 0($t2)\n"
+		+ "add $t3, $t3, $t1\n"
+		+ "sw $t3, 20($t2)\n"
+		+ "addi $t2, $t2, 4\n"
+		+ "addi $t0, $t0, -1\n"
+		+ "beq $t0, $zero, end\n"
+		+ "b loop\n"
+		+ "end: add $t4, $t3, $t3\n";
+	private static final int MAX_CYCLES = 1000;
+
+	@Test
+	public void testPredictedStalls() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		cpu.assembleCode("lw $t0, 0($zero)\n"
+			+ "add $t1, $t0, $t0\n"
+			+ "lw $t2, 4($zero)\n"
+			+ "addi $t3, $zero, 1\n"
+			+ "sub $t4, $t2, $t3\n"
+			+ "lw $t5, 8($zero)\n"
+			+ "sw $t5, 12($zero)\n");
+		HazardAnalyzer analyzer = cpu.getHazardAnalyzer();
+		assertEquals(1, analyzer.getStalls(0));
+		assertEquals(0, analyzer.getStalls(2)); // the value is forwarded from MEM/WB
+		assertEquals(1, analyzer.getStalls(5));
+		assertEquals(2, analyzer.getNumberOfStalls());
+		assertFalse(analyzer.hasHazards());
+
+		cpu.executeAll(0, 0, null);
+		assertEquals(analyzer.getNumberOfStalls(), cpu.getNumberOfStalls());
+	}
+
+	@Test
+	public void testPredictedHazards() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline-no-hazard-detection.cpu");
+		cpu.assembleCode(CODE);
+		HazardAnalyzer analyzer = cpu.getHazardAnalyzer();
+		assertEquals(0, analyzer.getNumberOfStalls());
+		assertEquals(0, analyzer.getDataHazards(2)); // only reads $zero
+		assertEquals(1, analyzer.getDataHazards(3)); // $t2 written 2 instructions before
+		assertEquals(2, analyzer.getDataHazards(4)); // $t3, and $t1 loaded by the previous instruction
+		assertEquals(1, analyzer.getDataHazards(5)); // $t3
+		assertEquals(0, analyzer.getDataHazards(6)); // $t2 written 5 instructions before
+		assertEquals(1, analyzer.getDataHazards(8)); // $t0
+		assertTrue(analyzer.isControlHazard(8));
+		assertTrue(analyzer.isControlHazard(9));
+		assertTrue(analyzer.hasHazards());
+
+		cpu = CPU.createFromJSONFile("cpu/pipeline-only-forwarding.cpu");
+		cpu.assembleCode(CODE);
+		analyzer = cpu.getHazardAnalyzer();
+		assertEquals(1, analyzer.getNumberOfDataHazards()); // only the load-use
+		assertEquals(1, analyzer.getDataHazards(4));
+		assertEquals(2, analyzer.getNumberOfControlHazards()); // the pipeline isn't flushed either
+
+		cpu = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		cpu.assembleCode(CODE);
+		assertFalse(cpu.getHazardAnalyzer().hasHazards());
+
+		cpu = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		cpu.assembleCode(CODE);
+		assertFalse(cpu.getHazardAnalyzer().hasHazards());
+		assertEquals(0, cpu.getHazardAnalyzer().getNumberOfStalls());
+	}
+
+	@Test
+	public void testScheduleRemovesStalls() throws Exception {
+		CPU reference = run("cpu/unicycle.cpu", false);
+		CPU original = run("cpu/pipeline.cpu", false);
+		CPU scheduled = run("cpu/pipeline.cpu", true);
+		assertEquals(5, original.getNumberOfStalls());
+		assertEquals(0, scheduled.getNumberOfStalls());
+		assertEquals(0, scheduled.getHazardAnalyzer().getNumberOfStalls());
+		assertTrue(scheduled.getNumberOfExecutedCycles() < original.getNumberOfExecutedCycles());
+		assertEquals(original.getNumberOfExecutedInstructions(), scheduled.getNumberOfExecutedInstructions());
+		assertSameState(reference, scheduled);
+	}
+
+	@Test
+	public void testScheduleInsertsNops() throws Exception {
+		CPU reference = run("cpu/unicycle.cpu", false);
+		for(String file: new String[] {"cpu/pipeline-no-hazard-detection.cpu", "cpu/pipeline-only-forwarding.cpu"}) {
+			CPU scheduled = run(file, true);
+			assertFalse(file, scheduled.getHazardAnalyzer().hasHazards());
+			assertSameState(reference, scheduled);
+		}
+
+		// Without scheduling, the hazards give wrong results (or don't even finish)
+		CPU original = run("cpu/pipeline-no-hazard-detection.cpu", false);
+		assertNotEquals(reference.getRegBank().getRegisterValue(11), original.getRegBank().getRegisterValue(11));
+	}
+
+	@Test
+	public void testLabelsAndNopsInSchedule() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline-no-hazard-detection.cpu");
+		cpu.getAssembler().setSchedulingEnabled(true);
+		cpu.assembleCode("addi $t0, $zero, 1\n"
+			+ "nop\n"
+			+ "beq $t0, $zero, end\n"
+			+ "addi $t1, $t0, 1\n"
+			+ "end: add $t2, $t0, $t0\n");
+		InstructionMemory memory = cpu.getInstructionMemory();
+		assertEquals("addi", memory.getInstruction(0).getInstruction().getMnemonic());
+		assertEquals(1 + 3 + 1 + 3 + 1 + 1, memory.getNumberOfInstructions()); // the nop is replaced by 3 before the beq, and 3 follow it
+		assertEquals("beq", memory.getInstruction(4).getInstruction().getMnemonic());
+		assertEquals(3, memory.getInstruction(4).getLineNumber());
+		assertEquals("nop", memory.getInstruction(5).getInstruction().getMnemonic());
+		assertTrue(memory.getInstruction(8).getInstruction().getMnemonic().equals("addi"));
+		assertEquals("end", memory.getInstruction(9).getLabels().get(0));
+		cpu.executeAll(0, 0, null);
+		assertEquals(2, cpu.getRegBank().getRegisterValue(9));
+		assertEquals(2, cpu.getRegBank().getRegisterValue(10));
+	}
+
+	private static CPU run(String file, boolean schedule) throws Exception {
+		CPU cpu = CPU.createFromJSONFile(file);
+		cpu.getAssembler().setSchedulingEnabled(schedule);
+		cpu.assembleCode(CODE);
+		cpu.executeAll(MAX_CYCLES, 0, null);
+		return cpu;
+	}
+
+	private static void assertSameState(CPU expected, CPU actual) {
+		for(int i = 0; i < expected.getRegBank().getNumberOfRegisters(); i++)
+			assertEquals("register " + i, expected.getRegBank().getRegisterValue(i), actual.getRegBank().getRegisterValue(i));
+		for(int i = 0; i < expected.getDataMemory().getMemorySize(); i++)
+			assertEquals("memory " + i, expected.getDataMemory().getDataInIndex(i), actual.getDataMemory().getDataInIndex(i));
+	}
+}
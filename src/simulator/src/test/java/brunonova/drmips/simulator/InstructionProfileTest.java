@@ -0,0 +1,119 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import java.io.StringWriter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class InstructionProfileTest {
+	private static final String CODE = "addi $t0, $zero, 3\n"
+		+ "loop: lw $t1, 0($zero)\n"
+		+ "add $t2, $t1, $t1\n"
+		+ "sw $t2, 0($zero)\n"
+		+ "addi $t0, $t0, -1\n"
+		+ "beq $t0, $zero, end\n"
+		+ "beq $zero, $zero, loop\n"
+		+ "addi $t3, $zero, 1\n"
+		+ "addi $t4, $zero, 1\n"
+		+ "addi $t5, $zero, 1\n"
+		+ "end: add $t6, $t2, $t2\n";
+
+	@Test
+	public void testPipeline() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		cpu.assembleCode(CODE);
+		cpu.executeAll(0, 0, null);
+		InstructionProfile profile = cpu.getInstructionProfile();
+		assertEquals(11, profile.getNumberOfInstructions());
+
+		int executions = 0, cycles = 0, stalls = 0, forwards = 0;
+		for(int i = 0; i < profile.getNumberOfInstructions(); i++) {
+			executions += profile.getExecutions(i);
+			cycles += profile.getCycles(i);
+			stalls += profile.getStalls(i);
+			forwards += profile.getForwards(i);
+		}
+		assertEquals(cpu.getNumberOfExecutedInstructions(), executions);
+		assertEquals(cpu.getNumberOfExecutedCycles(), cycles);
+		assertEquals(cpu.getNumberOfStalls(), stalls);
+		assertEquals(cpu.getNumberOfForwards(), forwards);
+
+		assertEquals(1, profile.getExecutions(0));
+		assertEquals(3, profile.getExecutions(1));
+		assertEquals(3, profile.getStalls(1)); // lw -> add (load-use)
+		assertEquals(0, profile.getStalls(2));
+		assertEquals(6, profile.getForwards(2)); // $t1 twice
+		assertEquals(2, profile.getExecutions(6));
+		assertEquals(0, profile.getExecutions(7));
+		assertEquals(2 + 1, profile.getFlushes(7)); // by the loop branch twice and the exit branch once
+		assertEquals(1, profile.getExecutions(10));
+		assertTrue(profile.getCycles(2) > profile.getExecutions(2)); // waits for the stall
+
+		// Undo all the cycles
+		int[] cyclesBefore = new int[profile.getNumberOfInstructions()];
+		int[] flushesBefore = new int[profile.getNumberOfInstructions()];
+		for(int i = 0; i < cyclesBefore.length; i++) {
+			cyclesBefore[i] = profile.getCycles(i);
+			flushesBefore[i] = profile.getFlushes(i);
+		}
+		while(cpu.hasPreviousCycle())
+			cpu.restorePreviousCycle();
+		for(int i = 0; i < profile.getNumberOfInstructions(); i++) {
+			assertEquals(0, profile.getExecutions(i));
+			assertEquals(0, profile.getCycles(i));
+			assertEquals(0, profile.getStalls(i));
+			assertEquals(0, profile.getForwards(i));
+			assertEquals(0, profile.getFlushes(i));
+		}
+		cpu.executeAll(0, 0, null);
+		for(int i = 0; i < cyclesBefore.length; i++) {
+			assertEquals(cyclesBefore[i], profile.getCycles(i));
+			assertEquals(flushesBefore[i], profile.getFlushes(i));
+		}
+
+		cpu.resetToFirstCycle();
+		assertEquals(0, profile.getCycles(0));
+	}
+
+	@Test
+	public void testUnicycle() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		assertEquals(0, cpu.getInstructionProfile().getNumberOfInstructions());
+		cpu.assembleCode(CODE);
+		cpu.executeAll(0, 0, null);
+		InstructionProfile profile = cpu.getInstructionProfile();
+		for(int i = 0; i < profile.getNumberOfInstructions(); i++) {
+			assertEquals(profile.getExecutions(i), profile.getCycles(i));
+			assertEquals(0, profile.getStalls(i));
+			assertEquals(0, profile.getFlushes(i));
+		}
+		assertEquals(3, profile.getExecutions(2));
+
+		StringWriter out = new StringWriter();
+		profile.writeCSV(out);
+		String[] lines = out.toString().split("\n");
+		assertEquals(12, lines.length);
+		assertEquals("index,address,line,code,executions,cycles,stalls,forwards,flushes", lines[0]);
+		assertEquals("2,8,3,\"add $t2, $t1, $t1\",3,3,0,0,0", lines[3]);
+
+		// A new program gets a new profile
+		cpu.assembleCode("nop\n");
+		assertEquals(1, cpu.getInstructionProfile().getNumberOfInstructions());
+	}
+}
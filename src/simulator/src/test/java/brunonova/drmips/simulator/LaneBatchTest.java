@@ -0,0 +1,129 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LaneBatchTest {
+	private static final String CODE = ".data\n"
+		+ "n: .word 0\n"
+		+ "res: .word 0\n"
+		+ "spin: .word 0\n"
+		+ ".text\n"
+		+ "lw $t2, 8($zero)\n"
+		+ "lw $t0, 0($zero)\n"
+		+ "addi $t1, $zero, 0\n"
+		+ "beq $t2, $zero, loop\n"
+		+ "forever: beq $zero, $zero, forever\n"
+		+ "loop: beq $t0, $zero, end\n"
+		+ "add $t1, $t1, $t0\n"
+		+ "addi $t0, $t0, -1\n"
+		+ "beq $zero, $zero, loop\n"
+		+ "end: sw $t1, 4($zero)\n";
+	private static final int LANES = 24;
+	private static final int MAX_CYCLES = 2000;
+
+	private static int[] inputN() {
+		int[] n = new int[LANES];
+		for(int l = 0; l < LANES; l++)
+			n[l] = l * 7 % 19;
+		n[5] = 100000; // reaches the cycle limit
+		return n;
+	}
+
+	private static int[] inputSpin() {
+		int[] spin = new int[LANES];
+		spin[3] = spin[17] = 1; // infinite loop
+		return spin;
+	}
+
+	@Test
+	public void testSameResultsAsSeparateExecutions() throws Exception {
+		testSameResultsAsSeparateExecutions("cpu/unicycle.cpu");
+		testSameResultsAsSeparateExecutions("cpu/pipeline.cpu");
+	}
+
+	private void testSameResultsAsSeparateExecutions(String file) throws Exception {
+		CPUTemplate template = CPUTemplate.getTemplate(file);
+		int[] n = inputN(), spin = inputSpin();
+		LaneBatch batch = new LaneBatch(template, LANES);
+		batch.assembleCode(CODE);
+		batch.setData(0, n);
+		batch.setData(8, spin);
+		assertEquals(LANES - 3, batch.executeAll(MAX_CYCLES, 3));
+
+		int[] res = batch.getData(4);
+		for(int l = 0; l < LANES; l++) {
+			CPU cpu = template.createCPU();
+			cpu.assembleCode(CODE);
+			cpu.getDataMemory().setData(0, n[l]);
+			cpu.getDataMemory().setData(8, spin[l]);
+			ExecutionResult expected = cpu.executeAll(MAX_CYCLES, 0, null);
+			ExecutionResult result = batch.getResult(l);
+
+			assertEquals(file + " lane " + l, expected.getStatus(), result.getStatus());
+			assertEquals(expected.getCycles(), result.getCycles());
+			assertEquals(expected.getTotalInstructions(), result.getTotalInstructions());
+			assertEquals(expected.getLoopLength(), result.getLoopLength());
+			assertEquals(cpu.getStateHash(), batch.getLane(l).getStateHash());
+			assertEquals(cpu.getDataMemory().getData(4), res[l]);
+			if(expected.getStatus() == ExecutionResult.Status.FINISHED)
+				assertEquals(n[l] * (n[l] + 1) / 2, res[l]);
+		}
+		assertEquals(ExecutionResult.Status.CYCLE_LIMIT, batch.getResult(5).getStatus());
+		assertEquals(ExecutionResult.Status.INFINITE_LOOP, batch.getResult(3).getStatus());
+	}
+
+	@Test
+	public void testSameResultsWithAnyNumberOfThreads() throws Exception {
+		long[] reference = null;
+		for(int threads = 1; threads <= 5; threads += 2) {
+			LaneBatch batch = new LaneBatch(CPUTemplate.getTemplate("cpu/pipeline.cpu"), LANES);
+			batch.assembleCode(CODE);
+			batch.setData(0, inputN());
+			batch.setData(8, inputSpin());
+			batch.executeAll(MAX_CYCLES, threads);
+			long[] hashes = new long[LANES];
+			for(int l = 0; l < LANES; l++)
+				hashes[l] = batch.getLane(l).getStateHash();
+			if(reference == null)
+				reference = hashes;
+			else
+				assertArrayEquals(reference, hashes);
+		}
+	}
+
+	@Test
+	public void testRegisterInputs() throws Exception {
+		LaneBatch batch = new LaneBatch(CPUTemplate.getTemplate("cpu/unicycle.cpu"), 3);
+		batch.assembleCode("add $t1, $t0, $t0\n");
+		assertNull(batch.getResult(0));
+		batch.setRegister(8, new int[] {1, 2, 3});
+		assertEquals(3, batch.executeAll(0, 1));
+		assertArrayEquals(new int[] {2, 4, 6}, batch.getRegister(9));
+
+		batch.assembleCode("add $t1, $t0, $t0\n"); // resets the data
+		assertArrayEquals(new int[] {0, 0, 0}, batch.getRegister(8));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongNumberOfValues() throws Exception {
+		new LaneBatch(CPUTemplate.getTemplate("cpu/unicycle.cpu"), 3).setData(0, new int[2]);
+	}
+}
@@ -0,0 +1,165 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.components.DataMemory;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LocalityAnalyzerTest {
+	private static final String LOOP = "addi $t0, $zero, 20\n"
+		+ "outer: addi $t1, $zero, 0\n"
+		+ "inner: lw $t2, 0($t1)\n"
+		+ "sw $t2, 40($t1)\n"
+		+ "addi $t1, $t1, 4\n"
+		+ "addi $t3, $t1, -36\n"
+		+ "beq $t3, $zero, next\n"
+		+ "beq $zero, $zero, inner\n"
+		+ "next: addi $t0, $t0, -1\n"
+		+ "beq $t0, $zero, end\n"
+		+ "beq $zero, $zero, outer\n"
+		+ "end: addi $t4, $zero, 1\n";
+
+	@Test
+	public void testReuseDistances() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		LocalityAnalyzer analyzer = new LocalityAnalyzer(4);
+		cpu.setLocalityAnalyzer(analyzer);
+		cpu.assembleCode("lw $t0, 0($zero)\n"
+			+ "lw $t0, 4($zero)\n"
+			+ "sw $t0, 8($zero)\n"
+			+ "lw $t0, 0($zero)\n"
+			+ "lw $t0, 4($zero)\n"
+			+ "lw $t0, 8($zero)\n");
+		cpu.executeAll(0, 0, null);
+
+		LocalityAnalyzer.AccessStream data = analyzer.getDataStream();
+		assertEquals(6, data.getAccesses());
+		assertEquals(3, data.getFootprint());
+		assertEquals(3, data.getColdMisses());
+		assertEquals(3, data.getReuseDistanceCount(2));
+		assertEquals(2, data.getMaxReuseDistance());
+		assertEquals(1.0, data.getMissRatio(2), 1e-9);
+		assertEquals(0.5, data.getMissRatio(3), 1e-9);
+		assertArrayEquals(new int[] {1, 2, 4}, data.getCacheSizes());
+		assertArrayEquals(new int[] {4, -8}, data.getMostFrequentStrides(8));
+		assertEquals(4, data.getStrideCount(4));
+		assertEquals(0.8, data.getSpatialLocality(), 1e-9);
+
+		LocalityAnalyzer.AccessStream instructions = analyzer.getInstructionStream();
+		assertEquals(6, instructions.getAccesses());
+		assertEquals(6, instructions.getColdMisses());
+		assertEquals(1.0, instructions.getSpatialLocality(), 1e-9);
+
+		// Blocks of 8 bytes
+		cpu.setLocalityAnalyzer(analyzer = new LocalityAnalyzer(8));
+		cpu.resetToFirstCycle();
+		cpu.executeAll(0, 0, null);
+		data = analyzer.getDataStream();
+		assertEquals(2, data.getFootprint());
+		assertEquals(2, data.getReuseDistanceCount(0)); // 0 -> 4
+		assertEquals(2, data.getReuseDistanceCount(1));
+		assertEquals(3, analyzer.getInstructionStream().getFootprint());
+
+		StringWriter out = new StringWriter();
+		analyzer.writeJSON(out);
+		JSONObject json = new JSONObject(out.toString());
+		assertEquals(8, json.getInt("block_size"));
+		assertEquals(6, json.getJSONObject("data").getInt("accesses"));
+		assertEquals(2, json.getJSONObject("data").getJSONArray("miss_ratios").length());
+	}
+
+	@Test
+	public void testLRUStack() throws Exception {
+		for(boolean history: new boolean[] {false, true}) {
+			CPU cpu = CPU.createFromJSONFile("cpu/unicycle.cpu");
+			cpu.setHistoryEnabled(history);
+			LocalityAnalyzer analyzer = new LocalityAnalyzer(8);
+			cpu.setLocalityAnalyzer(analyzer);
+			cpu.assembleCode(LOOP);
+
+			// Record the streams and count the misses with an explicit LRU stack
+			List<Integer> fetches = new ArrayList<>(), accesses = new ArrayList<>();
+			DataMemory memory = cpu.getDataMemory();
+			while(!cpu.isProgramFinished()) {
+				fetches.add(cpu.getPC().getAddress().getValue() / 8);
+				if(memory.getMemRead().getValue() == 1 || memory.getMemWrite().getValue() == 1)
+					accesses.add(memory.getAddress().getValue() / 8);
+				cpu.executeCycle();
+			}
+			assertTrue(fetches.size() > 1000); // compacts or grows the tree
+			assertStream(fetches, analyzer.getInstructionStream());
+			assertStream(accesses, analyzer.getDataStream());
+		}
+	}
+
+	@Test
+	public void testUndo() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		LocalityAnalyzer analyzer = new LocalityAnalyzer(4);
+		cpu.setLocalityAnalyzer(analyzer);
+		cpu.assembleCode(LOOP);
+		cpu.executeAll(0, 0, null);
+		StringWriter before = new StringWriter();
+		analyzer.writeJSON(before);
+		assertTrue(analyzer.getDataStream().getAccesses() > 0);
+
+		while(cpu.hasPreviousCycle())
+			cpu.restorePreviousCycle();
+		assertEquals(0, analyzer.getInstructionStream().getAccesses());
+		assertEquals(0, analyzer.getDataStream().getAccesses());
+		assertEquals(0, analyzer.getDataStream().getFootprint());
+		assertEquals(-1, analyzer.getDataStream().getMaxReuseDistance());
+		assertEquals(0, analyzer.getDataStream().getMostFrequentStrides(8).length);
+
+		cpu.executeAll(0, 0, null);
+		StringWriter after = new StringWriter();
+		analyzer.writeJSON(after);
+		assertEquals(before.toString(), after.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBlockSize() {
+		new LocalityAnalyzer(12);
+	}
+
+	/**
+	 * Compares the misses of all the cache sizes with an explicit LRU stack.
+	 */
+	private static void assertStream(List<Integer> blocks, LocalityAnalyzer.AccessStream stream) {
+		List<Integer> stack = new ArrayList<>();
+		long[] misses = new long[stream.getFootprint() + 2];
+		for(int block: blocks) {
+			int distance = stack.indexOf(block);
+			for(int size = 1; size < misses.length; size++) {
+				if(distance < 0 || distance >= size) misses[size]++;
+			}
+			if(distance >= 0) stack.remove(distance);
+			stack.add(0, block);
+		}
+		assertEquals(blocks.size(), stream.getAccesses());
+		assertEquals(stack.size(), stream.getFootprint());
+		for(int size = 1; size < misses.length; size++)
+			assertEquals(misses[size], stream.getMisses(size));
+	}
+}
@@ -0,0 +1,67 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LoopDetectionTest {
+	@Test
+	public void testUnicycleLoop() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		cpu.assembleCode("addi $t0, $zero, 5\n loop: add $t1, $t0, $t0\n sw $t1, 0($zero)\n j loop\n");
+		ExecutionResult result = cpu.executeAll(0, 0, null);
+		assertEquals(ExecutionResult.Status.INFINITE_LOOP, result.getStatus());
+		assertEquals(3, result.getLoopLength());
+		assertEquals(4, result.getLoopStartAddress());
+		assertEquals(12, result.getLoopEndAddress());
+		assertTrue(result.getCycles() < 20);
+	}
+
+	@Test
+	public void testPipelineLoop() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		cpu.assembleCode("addi $t0, $zero, 1\n loop: add $t1, $t0, $t0\n beq $t0, $t0, loop\n");
+		ExecutionResult result = cpu.executeAll(0, 0, null);
+		assertEquals(ExecutionResult.Status.INFINITE_LOOP, result.getStatus());
+		assertEquals(4, result.getLoopStartAddress());
+	}
+
+	@Test
+	public void testNoFalseLoop() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		// Same instructions repeated many times, but the state always changes
+		cpu.assembleCode("addi $t0, $zero, 300\n loop: addi $t0, $t0, -1\n beq $t0, $zero, end\n j loop\n end: add $t1, $t0, $t0\n");
+		ExecutionResult result = cpu.executeAll(0, 0, null);
+		assertEquals(ExecutionResult.Status.FINISHED, result.getStatus());
+		assertEquals(901, result.getCycles());
+	}
+
+	@Test
+	public void testIncrementalHash() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		cpu.assembleCode("addi $t0, $zero, 7\n sw $t0, 8($zero)\n addi $t0, $zero, 0\n");
+		long initial = cpu.getStateHash();
+		cpu.executeCycle();
+		cpu.executeCycle();
+		cpu.executeCycle();
+		assertNotEquals(initial, cpu.getStateHash());
+		cpu.resetToFirstCycle();
+		assertEquals(initial, cpu.getStateHash());
+	}
+}
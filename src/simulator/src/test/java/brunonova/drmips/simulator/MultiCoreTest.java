@@ -0,0 +1,120 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.components.DataMemory;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MultiCoreTest {
+	private static final String CODE = ".data\n"
+		+ "arr: .word 1, 2, 3, 4, 5, 6, 7, 8\n"
+		+ "sums: .word 0, 0, 0, 0\n"
+		+ "flag: .word 0\n"
+		+ ".text\n"
+		+ "sw $k0, 48($zero)\n" // all the cores write in the same cycle
+		+ "add $t0, $k0, $k0\n"
+		+ "add $t0, $t0, $t0\n" // 4 * id
+		+ "add $t1, $t0, $t0\n" // 8 * id
+		+ "lw $t2, 0($t1)\n"
+		+ "lw $t3, 4($t1)\n"
+		+ "add $t4, $t2, $t3\n"
+		+ "sw $t4, 32($t0)\n";
+	private static final int CORES = 4;
+
+	@Test
+	public void testCoreIds() throws Exception {
+		MultiCore system = new MultiCore(CPUTemplate.getTemplate("cpu/unicycle.cpu"), CORES);
+		assertEquals(CORES, system.getNumberOfCores());
+		for(int i = 0; i < CORES; i++) {
+			CPU core = system.getCore(i);
+			assertEquals(i, core.getRegBank().getRegister(MultiCore.DEFAULT_CORE_ID_REGISTER).getValue());
+			core.getRegBank().setRegister(MultiCore.DEFAULT_CORE_ID_REGISTER, 100);
+			core.resetData();
+			assertEquals(i, core.getRegBank().getRegister(MultiCore.DEFAULT_CORE_ID_REGISTER).getValue());
+		}
+
+		system = new MultiCore(CPUTemplate.getTemplate("cpu/unicycle.cpu"), 2, 27);
+		assertEquals(1, system.getCore(1).getRegBank().getRegister(27).getValue());
+	}
+
+	@Test
+	public void testSharedMemory() throws Exception {
+		testSharedMemory("cpu/unicycle.cpu");
+		testSharedMemory("cpu/pipeline.cpu");
+	}
+
+	private void testSharedMemory(String file) throws Exception {
+		MultiCore system = new MultiCore(CPUTemplate.getTemplate(file), CORES);
+		system.assembleCode(CODE);
+		assertEquals(ExecutionResult.Status.FINISHED, system.executeAll(0, 0, null, 2));
+		assertTrue(system.isProgramFinished());
+
+		for(int i = 0; i < CORES; i++) {
+			DataMemory memory = system.getCore(i).getDataMemory();
+			for(int j = 0; j < CORES; j++) // the sums of all the cores are in every memory
+				assertEquals(file, 4 * j + 3, memory.getData(32 + 4 * j));
+			assertEquals(file, CORES - 1, memory.getData(48)); // the highest core wins
+			assertEquals(2, system.getArbiter().getWrites(i));
+			assertEquals(i < CORES - 1 ? 1 : 0, system.getArbiter().getConflicts(i));
+			assertEquals(system.getCore(0).getNumberOfExecutedCycles(), system.getCore(i).getNumberOfExecutedCycles());
+		}
+		assertEquals((long)system.getCore(0).getNumberOfExecutedCycles(), system.getExecutedCycles());
+	}
+
+	@Test
+	public void testSameResultsWithAnyNumberOfThreads() throws Exception {
+		MultiCore reference = new MultiCore(CPUTemplate.getTemplate("cpu/pipeline.cpu"), CORES);
+		reference.assembleCode(CODE);
+		while(!reference.isProgramFinished())
+			reference.executeCycle();
+
+		for(int threads = 1; threads <= CORES + 1; threads++) {
+			MultiCore system = new MultiCore(CPUTemplate.getTemplate("cpu/pipeline.cpu"), CORES);
+			system.assembleCode(CODE);
+			assertEquals(ExecutionResult.Status.FINISHED, system.executeAll(0, 0, null, threads));
+			assertEquals(reference.getExecutedCycles(), system.getExecutedCycles());
+			for(int i = 0; i < CORES; i++) {
+				CPU core = system.getCore(i);
+				assertEquals(reference.getCore(i).getNumberOfExecutedInstructions(), core.getNumberOfExecutedInstructions());
+				assertEquals(reference.getCore(i).getStateHash(), core.getStateHash());
+				assertEquals(reference.getArbiter().getConflicts(i), system.getArbiter().getConflicts(i));
+			}
+		}
+	}
+
+	@Test
+	public void testCycleLimit() throws Exception {
+		MultiCore system = new MultiCore(CPUTemplate.getTemplate("cpu/pipeline.cpu"), CORES);
+		system.assembleCode(CODE);
+		assertEquals(ExecutionResult.Status.CYCLE_LIMIT, system.executeAll(3, 0, null, CORES));
+		assertEquals(3, system.getExecutedCycles());
+		assertFalse(system.isProgramFinished());
+		assertEquals(ExecutionResult.Status.FINISHED, system.executeAll(0, 0, null, CORES));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidNumberOfCores() throws Exception {
+		new MultiCore(CPUTemplate.getTemplate("cpu/unicycle.cpu"), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstantCoreIdRegister() throws Exception {
+		new MultiCore(CPUTemplate.getTemplate("cpu/unicycle.cpu"), 2, 0); // $zero
+	}
+}
@@ -0,0 +1,162 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import brunonova.drmips.simulator.exceptions.InvalidCPUException;
+import brunonova.drmips.simulator.trace.TraceIndex;
+import brunonova.drmips.simulator.trace.TraceReader;
+import brunonova.drmips.simulator.trace.TraceRecorder;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class PipelineDepthTest {
+	private static final String CODE = ".data\n"
+		+ "arr: .word 3, 1, 4, 1, 5\n"
+		+ ".text\n"
+		+ "addi $t0, $zero, 5\n"
+		+ "addi $t2, $zero, 0\n"
+		+ "addi $t3, $zero, 0\n"
+		+ "loop: lw $t1, 0($t2)\n"
+		+ "add $t3, $t3, $t1\n"
+		+ "sw $t3, 20($t2)\n"
+		+ "addi $t2, $t2, 4\n"
+		+ "addi $t0, $t0, -1\n"
+		+ "beq $t0, $zero, end\n"
+		+ "beq $zero, $zero, loop\n"
+		+ "end: add $t4, $t3, $t3\n";
+	private static final int TAKEN_BRANCHES = 5; // 4 back to the loop and 1 out of it
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testStages() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline-deep.cpu");
+		String[] names = {"IF", "IS", "ID", "EX", "MEM", "WB"};
+		int[] roles = {CPU.STAGE_IF, CPU.STAGE_IF, CPU.STAGE_ID, CPU.STAGE_EX, CPU.STAGE_MEM, CPU.STAGE_WB};
+		assertEquals(names.length, cpu.getNumberOfStages());
+		assertEquals(names.length - 1, cpu.getPipelineRegisters().size());
+		for(int i = 0; i < names.length; i++) {
+			assertEquals(names[i], cpu.getStageName(i));
+			assertEquals(roles[i], cpu.getStageRole(i));
+		}
+		assertEquals("IF/IS", cpu.getPipelineRegisters().get(0).getId());
+		assertEquals("IS/ID", cpu.getIfIdReg().getId());
+		assertEquals("ID/EX", cpu.getIdExReg().getId());
+		assertEquals("MEM/WB", cpu.getMemWbReg().getId());
+		assertEquals(0, cpu.getStageStartedBy(cpu.getPC()));
+		assertEquals(3, cpu.getStageStartedBy(cpu.getIdExReg()));
+		assertEquals(-1, cpu.getStageStartedBy(cpu.getRegBank()));
+
+		// The classic pipeline keeps its stages
+		cpu = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		assertEquals(TimingReport.PIPELINE_STAGES.length, cpu.getNumberOfStages());
+		for(int i = 0; i < TimingReport.PIPELINE_STAGES.length; i++) {
+			assertEquals(TimingReport.PIPELINE_STAGES[i], cpu.getStageName(i));
+			assertEquals(i, cpu.getStageRole(i));
+		}
+		assertEquals(1, CPU.createFromJSONFile("cpu/unicycle.cpu").getNumberOfStages());
+	}
+
+	@Test
+	public void testSameResultsAsClassicPipeline() throws Exception {
+		CPU reference = run("cpu/pipeline.cpu");
+		CPU deep = run("cpu/pipeline-deep.cpu");
+		for(int i = 0; i < reference.getRegBank().getNumberOfRegisters(); i++)
+			assertEquals("register " + i, reference.getRegBank().getRegisterValue(i), deep.getRegBank().getRegisterValue(i));
+		for(int i = 0; i < reference.getDataMemory().getMemorySize(); i++)
+			assertEquals("memory " + i, reference.getDataMemory().getDataInIndex(i), deep.getDataMemory().getDataInIndex(i));
+		assertEquals(reference.getNumberOfExecutedInstructions(), deep.getNumberOfExecutedInstructions());
+		assertEquals(reference.getNumberOfStalls(), deep.getNumberOfStalls());
+
+		// One more cycle to fill the pipeline and one more flushed stage per taken branch
+		assertEquals(reference.getNumberOfExecutedCycles() + TAKEN_BRANCHES + 1, deep.getNumberOfExecutedCycles());
+
+		// The hazard analyzer follows the position of the stages
+		HazardAnalyzer analyzer = deep.getHazardAnalyzer();
+		assertEquals(reference.getHazardAnalyzer().getBranchShadow() + 1, analyzer.getBranchShadow());
+		assertEquals(reference.getHazardAnalyzer().getNumberOfStalls(), analyzer.getNumberOfStalls());
+		assertFalse(analyzer.hasHazards());
+	}
+
+	@Test
+	public void testTrace() throws Exception {
+		File file = folder.newFile("deep.trace");
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline-deep.cpu");
+		cpu.assembleCode(CODE);
+		try(TraceRecorder recorder = new TraceRecorder(cpu, file)) {
+			cpu.executeAll(0, 0, null);
+			assertEquals(cpu.getNumberOfExecutedCycles(), recorder.getRecordedCycles());
+		}
+
+		TraceIndex index = TraceIndex.read(file);
+		assertEquals(cpu.getNumberOfStages(), index.getNumberOfStages());
+		assertEquals(cpu.getNumberOfExecutedCycles(), index.getLastCycle());
+		int wb = cpu.getNumberOfStages() - 1, end = cpu.getInstructionMemory().getNumberOfInstructions() - 1;
+		int last = index.findLastCycleInStage(end, wb, index.getLastCycle());
+		assertEquals(end, index.getInstructionIndex(wb, last));
+		assertEquals(-1, index.findLastCycleInStage(end, wb, last - 1));
+		try(TraceReader reader = new TraceReader(file)) {
+			assertEquals(cpu.getNumberOfStages(), reader.getNumberOfStages());
+		}
+	}
+
+	@Test
+	public void testInvalidStages() throws Exception {
+		JSONObject json = new JSONObject(new String(Files.readAllBytes(Paths.get("cpu/pipeline-deep.cpu")), StandardCharsets.UTF_8));
+		JSONObject register = json.getJSONObject("components").getJSONObject("IF/IS");
+		for(int stage: new int[] {2, 6, -1}) { // same as IS/ID, only 5 registers, negative
+			register.put("stage", stage);
+			invalid(json);
+		}
+		register.remove("stage"); // and not a standard identifier
+		invalid(json);
+	}
+
+	private static CPU run(String file) throws Exception {
+		CPU cpu = CPU.createFromJSONFile(file);
+		cpu.assembleCode(CODE);
+		cpu.executeAll(1000, 0, null);
+		return cpu;
+	}
+
+	private static void invalid(JSONObject json) throws Exception {
+		File file = File.createTempFile("invalid", ".cpu", new File("cpu")); // next to the instruction set
+		try {
+			try(Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+				out.write(json.toString());
+			}
+			CPU.createFromJSONFile(file.getPath());
+			fail("Expected InvalidCPUException");
+		} catch(InvalidCPUException ex) {
+			// expected
+		} finally {
+			file.delete();
+		}
+	}
+}
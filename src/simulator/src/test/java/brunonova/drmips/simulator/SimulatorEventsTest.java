@@ -0,0 +1,148 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SimulatorEventsTest {
+	private RecordingSink recorder;
+	private EventSink previous;
+
+	@Before
+	public void setUp() {
+		previous = SimulatorEvents.getSink();
+		recorder = new RecordingSink();
+		SimulatorEvents.setSink(recorder);
+	}
+
+	@After
+	public void tearDown() {
+		SimulatorEvents.setSink(previous);
+	}
+
+	@Test
+	public void testEvents() throws Exception {
+		CPU cpu = new CPUTemplate("cpu/unicycle.cpu").createCPU();
+		assertTrue(recorder.events.contains("load read"));
+		assertTrue(recorder.events.contains("load instruction set"));
+		assertTrue(recorder.events.contains("load components"));
+		assertTrue(recorder.events.contains("load wires"));
+		assertTrue(recorder.events.contains("load initialize"));
+
+		recorder.events.clear();
+		cpu.assembleCode("addi $t0, $zero, 3\nloop: addi $t0, $t0, -1\nbeq $t0, $zero, end\nj loop\nend: nop\n");
+		assertEquals("[assembly pass 1 5 5 0, assembly pass 2 5 5 0, assembly load 5 5 0]", recorder.events.toString());
+
+		recorder.events.clear();
+		cpu.executeAll(0, 0, null);
+		assertEquals("[execution 10 10 FINISHED]", recorder.events.toString());
+
+		recorder.events.clear();
+		cpu.restorePreviousCycle();
+		cpu.resetToFirstCycle();
+		assertEquals("[restore previous cycle 10 9, restore first cycle 9 0]", recorder.events.toString());
+		assertEquals(0, recorder.open);
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		recorder.enabled = false;
+		CPU cpu = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		cpu.assembleCode("addi $t0, $zero, 3\n");
+		cpu.executeAll(0, 0, null);
+		assertTrue(recorder.events.isEmpty());
+
+		SimulatorEvents.setSink(null);
+		assertNull(SimulatorEvents.beginExecution());
+		SimulatorEvents.commitExecution(null, null, 0, 0, "FINISHED");
+	}
+
+	private static class RecordingSink implements EventSink {
+		List<String> events = new ArrayList<>();
+		boolean enabled = true;
+		int open = 0;
+
+		private Object begin() {
+			if(!enabled) return null;
+			open++;
+			return new Object();
+		}
+
+		private void commit(Object event, String text) {
+			assertNotNull(event);
+			open--;
+			events.add(text);
+		}
+
+		@Override
+		public Object beginCPULoad() {
+			return begin();
+		}
+
+		@Override
+		public void commitCPULoad(Object event, String file, String phase) {
+			assertTrue(file.endsWith("unicycle.cpu"));
+			commit(event, "load " + phase);
+		}
+
+		@Override
+		public Object beginAssembly() {
+			return begin();
+		}
+
+		@Override
+		public void commitAssembly(Object event, String phase, int lines, int instructions, int errors) {
+			commit(event, "assembly " + phase + " " + lines + " " + instructions + " " + errors);
+		}
+
+		@Override
+		public Object beginExecution() {
+			return begin();
+		}
+
+		@Override
+		public void commitExecution(Object event, String file, long cycles, long instructions, String status) {
+			commit(event, "execution " + cycles + " " + instructions + " " + status);
+		}
+
+		@Override
+		public Object beginRestore() {
+			return begin();
+		}
+
+		@Override
+		public void commitRestore(Object event, String operation, long fromCycle, long toCycle) {
+			commit(event, "restore " + operation + " " + fromCycle + " " + toCycle);
+		}
+
+		@Override
+		public Object beginGUIRefresh() {
+			return begin();
+		}
+
+		@Override
+		public void commitGUIRefresh(Object event, String view, long cycle) {
+			commit(event, "refresh " + view + " " + cycle);
+		}
+	}
+}
@@ -25,7 +25,26 @@ import org.junit.runners.Suite;
  * This test suite runs all of the tests of the simulator.
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({brunonova.drmips.simulator.components.TestSuite.class})
+@Suite.SuiteClasses({brunonova.drmips.simulator.components.TestSuite.class,
+                     BinaryCPUFileTest.class,
+                     BreakpointsTest.class,
+                     ComponentProfilerTest.class,
+                     SimulatorEventsTest.class,
+                     InstructionProfileTest.class,
+                     HazardAnalyzerTest.class,
+                     DesignSpaceExplorerTest.class,
+                     TimingReportTest.class,
+                     ComponentRegistryTest.class,
+                     CPUTemplateTest.class,
+                     ExecutionTaskTest.class,
+                     LoopDetectionTest.class,
+                     LocalityAnalyzerTest.class,
+                     PipelineDepthTest.class,
+                     MultiCoreTest.class,
+                     LaneBatchTest.class,
+                     brunonova.drmips.simulator.trace.TraceIndexTest.class,
+                     brunonova.drmips.simulator.trace.TraceRecorderTest.class,
+                     brunonova.drmips.simulator.trace.VCDRecorderTest.class})
 public class TestSuite {
 
 }
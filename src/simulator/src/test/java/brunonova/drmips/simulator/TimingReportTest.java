@@ -0,0 +1,120 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator;
+
+import java.io.StringWriter;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TimingReportTest {
+	private static TimingReport.InstructionTiming find(TimingReport report, String mnemonic) {
+		for(int i = 0; i < report.getNumberOfInstructions(); i++) {
+			if(report.getInstruction(i).getMnemonic().equals(mnemonic))
+				return report.getInstruction(i);
+		}
+		fail("Instruction " + mnemonic + " not in the report");
+		return null;
+	}
+
+	@Test
+	public void testUnicycle() throws Exception {
+		CPUTemplate template = CPUTemplate.getTemplate("cpu/unicycle.cpu");
+		TimingReport report = TimingReport.generate(template, 2);
+		CPU cpu = template.createCPU();
+		assertEquals(cpu.getClockPeriod(), report.getClockPeriod());
+		assertEquals(1, report.getNumberOfStages());
+		assertEquals(TimingReport.UNICYCLE_STAGE, report.getStageName(0));
+		assertEquals(report.getClockPeriod(), report.getStagePath(0).getLatency());
+		assertEquals(cpu.getInstructionSet().getInstructions().length, report.getNumberOfInstructions());
+
+		TimingReport.InstructionTiming lw = find(report, "lw");
+		TimingReport.InstructionTiming add = find(report, "add");
+		TimingReport.InstructionTiming j = find(report, "j");
+		assertTrue(lw.isValid());
+		assertEquals("lw $t1, 0($t2)", lw.getCode());
+		assertTrue(lw.getLatency() <= report.getClockPeriod());
+		assertTrue(lw.getLatency() > add.getLatency());
+		assertTrue(add.getLatency() > j.getLatency());
+		assertTrue(lw.getCriticalPath().getComponents().contains("DataMem"));
+		assertFalse(add.getCriticalPath().getComponents().contains("DataMem"));
+		List<String> path = j.getCriticalPath().getComponents();
+		assertEquals("PC", path.get(0));
+		assertEquals("PC", path.get(path.size() - 1));
+		assertFalse(path.contains("ALU"));
+
+		// With the latencies of a loaded CPU
+		cpu.getComponent("ALU").setLatency(cpu.getComponent("ALU").getLatency() + 100);
+		cpu.calculatePerformance();
+		TimingReport changed = TimingReport.generate(template, cpu, 2);
+		assertEquals(cpu.getClockPeriod(), changed.getClockPeriod());
+		assertEquals(report.getClockPeriod() + 100, changed.getClockPeriod());
+		assertEquals(find(report, "add").getLatency() + 100, find(changed, "add").getLatency());
+		assertEquals(find(report, "j").getLatency(), find(changed, "j").getLatency());
+	}
+
+	@Test
+	public void testPipeline() throws Exception {
+		CPUTemplate template = CPUTemplate.getTemplate("cpu/pipeline.cpu");
+		TimingReport report = TimingReport.generate(template, 2);
+		assertEquals(TimingReport.PIPELINE_STAGES.length, report.getNumberOfStages());
+		assertEquals(template.createCPU().getClockPeriod(), report.getClockPeriod());
+
+		int worst = 0;
+		for(int s = 0; s < report.getNumberOfStages(); s++) {
+			assertNotNull(report.getStagePath(s));
+			worst = Math.max(worst, report.getStagePath(s).getLatency());
+		}
+		assertEquals(report.getClockPeriod(), worst);
+		assertEquals("MEM", report.getStageName(report.getBottleneckStage()));
+
+		// The stages end in the pipeline registers
+		List<String> path = report.getStagePath(0).getComponents();
+		assertEquals("PC", path.get(0));
+		assertEquals("IF/ID", path.get(path.size() - 1));
+		path = report.getStagePath(2).getComponents();
+		assertTrue(path.contains("ALU"));
+		assertEquals("EX/MEM", path.get(path.size() - 1));
+		path = report.getStagePath(4).getComponents();
+		assertEquals("MEM/WB", path.get(0));
+		assertEquals("RegBank", path.get(path.size() - 1));
+
+		TimingReport.InstructionTiming add = find(report, "add");
+		assertTrue(add.getStageLatency(2) > 0);
+		assertTrue(add.getStageLatency(2) <= report.getStagePath(2).getLatency());
+		assertTrue(add.getLatency() <= report.getClockPeriod());
+	}
+
+	@Test
+	public void testJSON() throws Exception {
+		TimingReport report = TimingReport.generate(CPUTemplate.getTemplate("cpu/pipeline.cpu"), 1);
+		StringWriter out = new StringWriter();
+		report.writeJSON(out);
+		JSONObject json = new JSONObject(out.toString());
+		assertEquals(report.getClockPeriod(), json.getInt("clock_period"));
+		assertEquals("MEM", json.getString("bottleneck_stage"));
+		assertEquals(5, json.getJSONArray("stages").length());
+		JSONArray instructions = json.getJSONArray("instructions");
+		assertEquals(report.getNumberOfInstructions(), instructions.length());
+		JSONObject first = instructions.getJSONObject(0);
+		assertEquals(report.getInstruction(0).getMnemonic(), first.getString("mnemonic"));
+		assertEquals(5, first.getJSONArray("stage_latencies").length());
+	}
+}
@@ -0,0 +1,214 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator.components;
+
+import brunonova.drmips.simulator.CPU;
+import brunonova.drmips.simulator.exceptions.InvalidCPUException;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BranchPredictorTest {
+	private static final String CODE = "addi $t0, $zero, 5\n"
+		+ "loop: addi $t1, $t1, 2\n"
+		+ "addi $t0, $t0, -1\n"
+		+ "beq $t0, $zero, end\n"
+		+ "beq $zero, $zero, loop\n"
+		+ "end: add $t2, $t1, $t1\n";
+
+	@Test
+	public void testTwoBit() throws InvalidCPUException, JSONException {
+		BranchPredictor p = create("two_bit", 16);
+		assertFalse(p.predictTaken(8));
+		assertTrue(resolve(p, 8, true, 100)); // not in the BTB
+		assertFalse(resolve(p, 8, true, 100));
+
+		// The next address comes from the BTB
+		p.getPcPlus4().setValue(8);
+		p.getBranch().setValue(0);
+		p.getTaken().setValue(0);
+		p.getPredicted().setValue(0);
+		p.execute();
+		assertEquals(1, p.getPrediction().getValue());
+		assertEquals(100, p.getNewPc().getValue());
+		assertEquals(0, p.getMispredict().getValue());
+		p.getPcPlus4().setValue(12);
+		p.execute();
+		assertEquals(0, p.getPrediction().getValue());
+		assertEquals(12, p.getNewPc().getValue());
+
+		// Hysteresis: a single not taken outcome doesn't change the prediction
+		assertTrue(resolve(p, 8, false, 100));
+		assertTrue(p.predictTaken(8));
+		assertTrue(resolve(p, 8, false, 100));
+		assertFalse(p.predictTaken(8));
+
+		// Recovery addresses of mispredictions
+		p.getBranch().setValue(1);
+		p.getTaken().setValue(0);
+		p.getPredicted().setValue(1);
+		p.getBranchPcPlus4().setValue(8);
+		p.execute();
+		assertEquals(1, p.getMispredict().getValue());
+		assertEquals(8, p.getNewPc().getValue());
+		p.getTaken().setValue(1);
+		p.getPredicted().setValue(0);
+		p.getTarget().setValue(100);
+		p.execute();
+		assertEquals(100, p.getNewPc().getValue());
+	}
+
+	@Test
+	public void testSchemes() throws InvalidCPUException, JSONException {
+		// Loop branch taken 3 times and then not taken, repeated 10 times
+		int[] mispredictions = new int[4];
+		String[] schemes = {"static_not_taken", "static_taken", "one_bit", "two_bit"};
+		for(int s = 0; s < schemes.length; s++) {
+			BranchPredictor p = create(schemes[s], 16);
+			for(int i = 0; i < 40; i++) {
+				if(resolve(p, 20, i % 4 != 3, 4))
+					mispredictions[s]++;
+			}
+		}
+		assertEquals(30, mispredictions[0]);
+		assertEquals(11, mispredictions[1]); // the first one isn't in the BTB
+		assertEquals(20, mispredictions[2]); // the exit and the next entry
+		assertEquals(11, mispredictions[3]); // only the exit
+
+		// Alternating branch: gshare learns the pattern from the history
+		BranchPredictor twoBit = create("two_bit", 16), gshare = create("gshare", 16);
+		int twoBitMispredictions = 0, gshareMispredictions = 0;
+		for(int i = 0; i < 40; i++) {
+			boolean wrong1 = resolve(twoBit, 20, i % 2 == 0, 4);
+			boolean wrong2 = resolve(gshare, 20, i % 2 == 0, 4);
+			if(i >= 20) {
+				if(wrong1) twoBitMispredictions++;
+				if(wrong2) gshareMispredictions++;
+			}
+		}
+		assertTrue(twoBitMispredictions >= 10);
+		assertEquals(0, gshareMispredictions);
+	}
+
+	@Test
+	public void testStateHash() throws InvalidCPUException, JSONException {
+		BranchPredictor p = create("gshare", 16);
+		long initial = p.getStateHash();
+		p.pushState();
+		resolve(p, 20, true, 4);
+		assertNotEquals(initial, p.getStateHash());
+		p.popState();
+		assertEquals(initial, p.getStateHash());
+		assertFalse(p.predictTaken(20));
+		resolve(p, 20, true, 4);
+		p.reset();
+		assertEquals(initial, p.getStateHash());
+	}
+
+	@Test
+	public void testPipeline() throws Exception {
+		CPU reference = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		reference.assembleCode(CODE);
+		reference.executeAll(0, 0, null);
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline-predictor.cpu");
+		cpu.assembleCode(CODE);
+		cpu.executeAll(0, 0, null);
+		assertTrue(cpu.isProgramFinished());
+		assertFalse(reference.hasBranchPredictor());
+		assertTrue(cpu.hasBranchPredictor());
+
+		// Same results
+		assertEquals(20, cpu.getRegBank().getRegisterValue(10)); // $t2
+		assertEquals(reference.getNumberOfExecutedInstructions(), cpu.getNumberOfExecutedInstructions());
+
+		// 5 + 4 branches, of which the first loop branch and the exit are mispredicted
+		assertEquals(9, cpu.getNumberOfBranches());
+		assertEquals(2, cpu.getNumberOfMispredictions());
+		assertEquals(7.0 / 9.0, cpu.getPredictionAccuracy(), 1e-9);
+		assertEquals(3 * 2, cpu.getMispredictionPenalty());
+		// Without prediction, the 5 taken branches flush 3 stages each
+		assertEquals(reference.getNumberOfExecutedCycles() - 3 * 5 + cpu.getMispredictionPenalty(), cpu.getNumberOfExecutedCycles());
+		assertTrue(cpu.getCPI() < reference.getCPI());
+
+		// Undo everything and execute again
+		int executedCycles = cpu.getNumberOfExecutedCycles();
+		while(cpu.hasPreviousCycle())
+			cpu.restorePreviousCycle();
+		assertEquals(0, cpu.getNumberOfBranches());
+		assertEquals(0, cpu.getNumberOfMispredictions());
+		assertEquals(0, cpu.getMispredictionPenalty());
+		cpu.executeAll(0, 0, null);
+		assertEquals(executedCycles, cpu.getNumberOfExecutedCycles());
+		assertEquals(2, cpu.getNumberOfMispredictions());
+
+		// A new program starts with an empty predictor
+		BranchPredictor predictor = cpu.getBranchPredictor();
+		assertTrue(predictor.predictTaken(5 * 4)); // the backward branch
+		cpu.assembleCode(CODE);
+		assertFalse(predictor.predictTaken(5 * 4));
+		assertEquals(0, cpu.getNumberOfBranches());
+	}
+
+	@Test
+	public void testInvalid() throws JSONException {
+		invalid(new JSONObject().put("predictor", "tournament"));
+		invalid(new JSONObject().put("bht_entries", 12)); // not a power of 2
+		invalid(new JSONObject().put("btb_entries", 0));
+		invalid(new JSONObject().put("history_bits", 17));
+	}
+
+	private static BranchPredictor create(String scheme, int entries) throws InvalidCPUException, JSONException {
+		return new BranchPredictor("test", ports(new JSONObject()).put("predictor", scheme)
+			.put("bht_entries", entries).put("btb_entries", entries));
+	}
+
+	private static JSONObject ports(JSONObject json) throws JSONException {
+		return json.put("x", 0).put("y", 0).put("pc_plus_4", "pc4").put("branch", "branch").put("taken", "taken")
+			.put("target", "target").put("branch_pc_plus_4", "bpc4").put("predicted", "predicted")
+			.put("new_pc", "new_pc").put("prediction", "prediction").put("mispredict", "mispredict");
+	}
+
+	/**
+	 * Predicts a branch when it is fetched and resolves it, like the CPU does
+	 * (without other branches in between).
+	 * @return Whether the branch was mispredicted.
+	 */
+	private static boolean resolve(BranchPredictor p, int address, boolean taken, int target) {
+		boolean predicted = p.predictTaken(address);
+		p.getBranch().setValue(1);
+		p.getTaken().setValue(taken ? 1 : 0);
+		p.getTarget().setValue(target);
+		p.getBranchPcPlus4().setValue(address);
+		p.getPredicted().setValue(predicted ? 1 : 0);
+		p.execute();
+		boolean mispredicted = p.getMispredict().getValue() == 1;
+		assertEquals(predicted != taken, mispredicted);
+		p.executeSynchronous();
+		return mispredicted;
+	}
+
+	private static void invalid(JSONObject json) throws JSONException {
+		try {
+			new BranchPredictor("test", ports(json));
+			fail("Expected InvalidCPUException for " + json);
+		} catch(InvalidCPUException ex) {
+			// expected
+		}
+	}
+}
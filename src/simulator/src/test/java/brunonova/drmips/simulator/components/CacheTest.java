@@ -0,0 +1,202 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator.components;
+
+import brunonova.drmips.simulator.CPU;
+import brunonova.drmips.simulator.InstructionProfile;
+import brunonova.drmips.simulator.exceptions.InvalidCPUException;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CacheTest {
+	private static final String CODE = "addi $t0, $zero, 3\n"
+		+ "loop: sw $t0, 0($zero)\n"
+		+ "sw $t0, 32($zero)\n"
+		+ "lw $t1, 64($zero)\n"
+		+ "addi $t0, $t0, -1\n"
+		+ "beq $t0, $zero, end\n"
+		+ "beq $zero, $zero, loop\n"
+		+ "end: lw $t2, 0($zero)\n";
+
+	@Test
+	public void testDirectMapped() throws InvalidCPUException, JSONException {
+		Cache c = create(64, 16, 1, "lru", 1, 4);
+		assertEquals(4, c.getNumberOfSets());
+
+		access(c, 0); // miss
+		assertEquals(3, c.getStallCycles());
+		assertTrue(c.isCached(12));
+		c.consumeStallCycle();
+		assertEquals(2, c.getStallCycles());
+		c.consumeStallCycle();
+		c.consumeStallCycle();
+		c.consumeStallCycle();
+		assertEquals(0, c.getStallCycles());
+
+		access(c, 4); // hit in the same block
+		assertEquals(0, c.getStallCycles());
+		access(c, 16); // miss in another set
+		access(c, 64); // miss in set 0, evicts block 0
+		assertFalse(c.isCached(0));
+		assertTrue(c.isCached(16));
+		assertEquals(4, c.getAccesses());
+		assertEquals(1, c.getHits());
+		assertEquals(3, c.getMisses());
+		assertEquals(1, c.getEvictions());
+		assertEquals(0.25, c.getHitRate(), 1e-9);
+
+		// Step back and reset
+		c.pushState();
+		access(c, 0);
+		assertEquals(5, c.getAccesses());
+		c.popState();
+		assertEquals(4, c.getAccesses());
+		assertFalse(c.isCached(0));
+		c.reset();
+		assertEquals(0, c.getAccesses());
+		assertFalse(c.isCached(16));
+	}
+
+	@Test
+	public void testReplacement() throws InvalidCPUException, JSONException {
+		// A, B, A, C in the same set of a 2-way cache
+		Cache lru = create(32, 8, 2, "lru", 1, 10);
+		Cache fifo = create(32, 8, 2, "fifo", 1, 10);
+		for(Cache c: new Cache[] {lru, fifo}) {
+			access(c, 0);
+			access(c, 16);
+			access(c, 0);
+			access(c, 32);
+			assertEquals(1, c.getEvictions());
+		}
+		assertTrue(lru.isCached(0)); // B was the least recently used
+		assertFalse(lru.isCached(16));
+		assertFalse(fifo.isCached(0)); // A was the first in
+		assertTrue(fifo.isCached(16));
+
+		Cache random = create(32, 8, 2, "random", 1, 10);
+		for(int i = 0; i < 20; i++)
+			access(random, i * 16);
+		assertEquals(18, random.getEvictions());
+		assertTrue(random.isCached(19 * 16)); // the last block is always there
+	}
+
+	@Test
+	public void testStateHash() throws InvalidCPUException, JSONException {
+		Cache c = create(64, 16, 2, "lru", 1, 4);
+		long empty = c.getStateHash();
+		access(c, 0);
+		assertNotEquals(empty, c.getStateHash());
+		long afterMiss = c.getStateHash();
+		c.pushState();
+		c.consumeStallCycle();
+		c.popState();
+		assertEquals(afterMiss, c.getStateHash());
+		c.reset();
+		assertEquals(empty, c.getStateHash());
+	}
+
+	@Test
+	public void testPipeline() throws Exception {
+		CPU reference = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		reference.assembleCode(CODE);
+		reference.executeAll(0, 0, null);
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline-cache.cpu");
+		cpu.assembleCode(CODE);
+		cpu.executeAll(0, 0, null);
+		assertTrue(cpu.isProgramFinished());
+
+		// Same execution, plus the cycles waiting for the memory
+		Cache iCache = (Cache)cpu.getComponent("ICache"), dCache = (Cache)cpu.getComponent("DCache");
+		assertTrue(cpu.getNumberOfMemoryStalls() > 0);
+		assertEquals(reference.getNumberOfExecutedCycles() + cpu.getNumberOfMemoryStalls(), cpu.getNumberOfExecutedCycles());
+		assertEquals(reference.getNumberOfExecutedInstructions(), cpu.getNumberOfExecutedInstructions());
+		assertEquals(reference.getNumberOfStalls(), cpu.getNumberOfStalls());
+		assertEquals(1, reference.getRegBank().getRegisterValue(10)); // $t2
+		assertEquals(1, cpu.getRegBank().getRegisterValue(10));
+
+		// 8 instructions in 2 blocks, fetched again after each flush
+		assertEquals(2, iCache.getMisses());
+		assertEquals(0, iCache.getEvictions());
+		// 0, 32 and 64 share the set, so the 3 accesses of each iteration miss and evict a dirty block
+		assertEquals(3 * 3 + 1, dCache.getAccesses());
+		assertEquals(3 * 3 + 1, dCache.getMisses());
+		assertEquals(3 * 3 + 1 - 2, dCache.getEvictions());
+		assertTrue(dCache.getWritebacks() > 0);
+		int stalls = 3 * iCache.getMisses() + 3 * dCache.getMisses() + 3 * dCache.getWritebacks();
+		assertTrue(cpu.getNumberOfMemoryStalls() <= stalls); // misses in the same cycle overlap
+
+		InstructionProfile profile = cpu.getInstructionProfile();
+		int cycles = 0;
+		for(int i = 0; i < profile.getNumberOfInstructions(); i++)
+			cycles += profile.getCycles(i);
+		assertEquals(cpu.getNumberOfExecutedCycles(), cycles);
+
+		// Undo everything and execute again
+		int executedCycles = cpu.getNumberOfExecutedCycles();
+		int memoryStalls = cpu.getNumberOfMemoryStalls();
+		while(cpu.hasPreviousCycle())
+			cpu.restorePreviousCycle();
+		assertEquals(0, cpu.getNumberOfExecutedCycles());
+		assertEquals(0, cpu.getNumberOfMemoryStalls());
+		assertEquals(0, dCache.getAccesses());
+		cpu.executeAll(0, 0, null);
+		assertEquals(executedCycles, cpu.getNumberOfExecutedCycles());
+		assertEquals(memoryStalls, cpu.getNumberOfMemoryStalls());
+
+		// A new program starts with cold caches
+		cpu.assembleCode("nop\n");
+		assertEquals(0, iCache.getAccesses());
+		assertFalse(iCache.isCached(0));
+	}
+
+	@Test
+	public void testInvalid() throws JSONException {
+		invalid(new JSONObject().put("size", 48)); // not a power of 2
+		invalid(new JSONObject().put("size", 64).put("block_size", 2)); // smaller than a word
+		invalid(new JSONObject().put("size", 64).put("associativity", 8)); // 128 bytes per set
+		invalid(new JSONObject().put("size", 64).put("replacement", "lfu"));
+		invalid(new JSONObject().put("size", 64).put("write_policy", "write_around"));
+		invalid(new JSONObject().put("size", 64).put("hit_latency", 2).put("miss_latency", 1));
+	}
+
+	private static Cache create(int size, int blockSize, int associativity, String replacement, int hitLatency, int missLatency) throws InvalidCPUException, JSONException {
+		JSONObject json = new JSONObject().put("x", 0).put("y", 0).put("in", "in").put("out", "out")
+			.put("size", size).put("block_size", blockSize).put("associativity", associativity)
+			.put("replacement", replacement).put("hit_latency", hitLatency).put("miss_latency", missLatency);
+		return new Cache("test", json);
+	}
+
+	private static void access(Cache c, int address) {
+		c.getInput().setValue(address);
+		c.execute();
+		assertEquals(address, c.getOutput().getValue());
+		c.executeSynchronous(); // not connected to a memory: always a read
+	}
+
+	private static void invalid(JSONObject json) throws JSONException {
+		try {
+			new Cache("test", json.put("x", 0).put("y", 0).put("in", "in").put("out", "out"));
+			fail("Expected InvalidCPUException for " + json);
+		} catch(InvalidCPUException ex) {
+			// expected
+		}
+	}
+}
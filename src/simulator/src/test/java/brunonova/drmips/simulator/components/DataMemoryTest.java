@@ -0,0 +1,207 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator.components;
+
+import brunonova.drmips.simulator.CPU;
+import brunonova.drmips.simulator.exceptions.InvalidCPUException;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DataMemoryTest {
+	private static final String CODE = "addi $t0, $zero, 4\n"
+		+ "loop: lw $t1, 0($t2)\n"
+		+ "add $t3, $t3, $t1\n"
+		+ "sw $t3, 40($t2)\n"
+		+ "addi $t2, $t2, 4\n"
+		+ "addi $t0, $t0, -1\n"
+		+ "beq $t0, $zero, end\n"
+		+ "beq $zero, $zero, loop\n"
+		+ "end: add $t4, $t3, $t3\n"
+		+ ".data\n"
+		+ ".word 1, 2, 3, 4\n";
+
+	@Test
+	public void testLatencies() throws InvalidCPUException, JSONException {
+		DataMemory m = create(new JSONObject().put("read_latency", 600).put("write_latency", 400));
+		assertTrue(m.hasTiming());
+		m.setClockPeriod(300);
+		assertEquals(2, m.getAccessCycles(600));
+		assertEquals(1, m.getAccessCycles(0));
+
+		access(m, 0, false);
+		assertEquals(1, m.getStallCycles());
+		m.consumeStallCycle();
+		assertEquals(0, m.getStallCycles());
+		m.consumeStallCycle(); // nothing to consume
+		assertEquals(0, m.getStallCycles());
+
+		m.setClockPeriod(100);
+		access(m, 40, true);
+		assertEquals(3, m.getStallCycles());
+		for(int i = 0; i < 3; i++)
+			m.consumeStallCycle();
+		idle(m);
+		assertEquals(0, m.getStallCycles());
+
+		// Clock period unknown: single-cycle accesses
+		m.setClockPeriod(0);
+		access(m, 0, false);
+		assertEquals(0, m.getStallCycles());
+
+		// Without the timing model
+		DataMemory single = create(null);
+		assertFalse(single.hasTiming());
+		single.setClockPeriod(100);
+		access(single, 0, false);
+		assertEquals(0, single.getStallCycles());
+	}
+
+	@Test
+	public void testBanks() throws InvalidCPUException, JSONException {
+		DataMemory m = create(new JSONObject().put("read_latency", 100).put("banks", 2).put("bank_recovery", 200));
+		m.setClockPeriod(100);
+		access(m, 0, false); // bank 0 busy for 2 cycles
+		assertEquals(0, m.getStallCycles());
+		access(m, 4, false); // bank 1 is free
+		assertEquals(0, m.getStallCycles());
+		access(m, 8, false); // waits 1 cycle for bank 0
+		assertEquals(1, m.getStallCycles());
+		m.consumeStallCycle();
+		idle(m);
+		idle(m);
+		access(m, 8, false); // bank 0 is free again
+		assertEquals(0, m.getStallCycles());
+	}
+
+	@Test
+	public void testBursts() throws InvalidCPUException, JSONException {
+		DataMemory m = create(new JSONObject().put("read_latency", 400).put("burst_length", 4).put("burst_latency", 100));
+		m.setClockPeriod(100);
+		access(m, 0, false);
+		assertEquals(3, m.getStallCycles());
+		for(int i = 0; i < 3; i++)
+			m.consumeStallCycle();
+		for(int i = 1; i < 4; i++) { // rest of the burst
+			access(m, i * 4, false);
+			assertEquals(0, m.getStallCycles());
+		}
+		access(m, 16, false); // next burst
+		assertEquals(3, m.getStallCycles());
+	}
+
+	@Test
+	public void testStateHash() throws InvalidCPUException, JSONException {
+		DataMemory m = create(new JSONObject().put("read_latency", 300).put("banks", 2).put("bank_recovery", 100));
+		m.setClockPeriod(100);
+		long initial = m.getStateHash();
+		m.pushState();
+		access(m, 4, false);
+		assertEquals(2, m.getStallCycles());
+		assertNotEquals(initial, m.getStateHash());
+		m.pushState();
+		m.consumeStallCycle();
+		assertEquals(1, m.getStallCycles());
+		m.popState();
+		assertEquals(2, m.getStallCycles());
+		m.popState();
+		assertEquals(0, m.getStallCycles());
+		assertEquals(initial, m.getStateHash());
+		access(m, 4, false);
+		m.resetTiming();
+		assertEquals(0, m.getStallCycles());
+		assertEquals(initial, m.getStateHash());
+	}
+
+	@Test
+	public void testPipeline() throws Exception {
+		CPU reference = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		reference.assembleCode(CODE);
+		reference.executeAll(0, 0, null);
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline-memory.cpu");
+		cpu.assembleCode(CODE);
+		cpu.executeAll(0, 0, null);
+		assertTrue(cpu.isProgramFinished());
+		assertFalse(reference.getDataMemory().hasTiming());
+		assertTrue(cpu.getDataMemory().hasTiming());
+
+		// Same results
+		assertEquals(20, cpu.getRegBank().getRegisterValue(12)); // $t4
+		assertEquals(reference.getDataMemory().getData(52), cpu.getDataMemory().getData(52));
+		assertEquals(reference.getNumberOfExecutedInstructions(), cpu.getNumberOfExecutedInstructions());
+
+		// Each of the 4 reads and 4 writes takes 2 cycles
+		assertEquals(8, cpu.getNumberOfMemoryStalls());
+		assertEquals(reference.getNumberOfExecutedCycles() + 8, cpu.getNumberOfExecutedCycles());
+		assertTrue(cpu.getClockPeriod() < reference.getClockPeriod());
+
+		// Undo everything and execute again
+		int executedCycles = cpu.getNumberOfExecutedCycles();
+		while(cpu.hasPreviousCycle())
+			cpu.restorePreviousCycle();
+		assertEquals(0, cpu.getNumberOfMemoryStalls());
+		assertEquals(0, cpu.getDataMemory().getStallCycles());
+		cpu.executeAll(0, 0, null);
+		assertEquals(executedCycles, cpu.getNumberOfExecutedCycles());
+		assertEquals(8, cpu.getNumberOfMemoryStalls());
+	}
+
+	@Test
+	public void testInvalid() throws JSONException {
+		invalid(new JSONObject().put("read_latency", -1));
+		invalid(new JSONObject().put("read_latency", 100).put("banks", 0));
+		invalid(new JSONObject().put("read_latency", 100).put("banks", DataMemory.MAXIMUM_BANKS + 1));
+		invalid(new JSONObject().put("read_latency", 100).put("burst_length", 3));
+	}
+
+	private static DataMemory create(JSONObject timing) throws InvalidCPUException, JSONException {
+		JSONObject json = new JSONObject().put("x", 0).put("y", 0).put("size", 32).put("address", "address")
+			.put("write_data", "write_data").put("out", "out").put("mem_read", "mem_read").put("mem_write", "mem_write");
+		if(timing != null) json.put("timing", timing);
+		return new DataMemory("test", json);
+	}
+
+	/**
+	 * Accesses an address in a clock transition.
+	 */
+	private static void access(DataMemory m, int address, boolean write) {
+		m.getAddress().setValue(address);
+		m.getMemRead().setValue(write ? 0 : 1);
+		m.getMemWrite().setValue(write ? 1 : 0);
+		m.executeSynchronous();
+	}
+
+	/**
+	 * Executes a clock transition without accessing the memory.
+	 */
+	private static void idle(DataMemory m) {
+		m.getMemRead().setValue(0);
+		m.getMemWrite().setValue(0);
+		m.executeSynchronous();
+	}
+
+	private static void invalid(JSONObject timing) throws JSONException {
+		try {
+			create(timing);
+			fail("Expected InvalidCPUException for " + timing);
+		} catch(InvalidCPUException ex) {
+			// expected
+		}
+	}
+}
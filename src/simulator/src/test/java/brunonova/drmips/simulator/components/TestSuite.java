@@ -27,6 +27,9 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({AddTest.class,
                      AndTest.class,
+                     BranchPredictorTest.class,
+                     CacheTest.class,
+                     DataMemoryTest.class,
                      ConcatenatorTest.class,
                      ConstantTest.class,
                      ForkTest.class,
@@ -0,0 +1,131 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator.trace;
+
+import brunonova.drmips.simulator.CPU;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class TraceIndexTest {
+	private static final String CODE = "addi $t0, $zero, 5\n"
+		+ "loop: lw $t1, 0($t2)\n"
+		+ "add $t1, $t1, $t0\n"
+		+ "sw $t1, 4($t2)\n"
+		+ "addi $t2, $t2, 4\n"
+		+ "addi $t0, $t0, -1\n"
+		+ "beq $t0, $zero, end\n"
+		+ "beq $zero, $zero, loop\n"
+		+ "end: add $t3, $t1, $t1\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRecordAndRead() throws Exception {
+		File file = folder.newFile("pipeline.trace");
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		cpu.assembleCode(CODE);
+		TraceIndex index = TraceIndex.record(cpu);
+		try(TraceRecorder recorder = new TraceRecorder(cpu, file)) {
+			cpu.executeAll(0, 0, null);
+			assertEquals(cpu.getNumberOfExecutedCycles(), recorder.getRecordedCycles());
+		}
+		index.stop();
+
+		// Save the state of each cycle of the same program executed step by step
+		CPU replay = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		replay.assembleCode(CODE);
+		List<int[]> registers = new ArrayList<>(), memory = new ArrayList<>();
+		List<Integer> pcs = new ArrayList<>(), wb = new ArrayList<>();
+		do {
+			int[] r = new int[replay.getRegBank().getNumberOfRegisters()];
+			for(int i = 0; i < r.length; i++)
+				r[i] = replay.getRegBank().getRegisterValue(i);
+			registers.add(r);
+			int[] m = new int[replay.getDataMemory().getMemorySize()];
+			for(int i = 0; i < m.length; i++)
+				m[i] = replay.getDataMemory().getDataInIndex(i);
+			memory.add(m);
+			pcs.add(replay.getPC().getAddress().getValue());
+			wb.add(replay.getMemWbReg().getCurrentInstructionIndex());
+			if(replay.isProgramFinished()) break;
+			replay.executeCycle();
+		} while(true);
+
+		for(TraceIndex idx: new TraceIndex[] {index, TraceIndex.read(file)}) {
+			assertEquals(0, idx.getFirstCycle());
+			assertEquals(cpu.getNumberOfExecutedCycles(), idx.getLastCycle());
+			int[] r = new int[idx.getNumberOfRegisters()], m = new int[idx.getMemorySize()];
+			for(int cycle = idx.getLastCycle(); cycle >= 0; cycle--) {
+				assertEquals((int)pcs.get(cycle), idx.getPCAddress(cycle));
+				assertEquals((int)wb.get(cycle), idx.getInstructionIndex(TraceReader.STAGE_WB, cycle));
+				assertEquals(registers.get(cycle)[9], idx.getRegister(9, cycle));
+				assertEquals(memory.get(cycle)[1], idx.getMemory(1, cycle));
+				idx.getRegisters(cycle, r);
+				assertArrayEquals(registers.get(cycle), r);
+				idx.getMemory(cycle, m);
+				assertArrayEquals(memory.get(cycle), m);
+			}
+
+			// sw $t1, 4($t2) writes to the 5 memory positions after address 0
+			for(int i = 1; i <= 5; i++)
+				assertEquals(1, idx.getMemoryWrites(i, 0, idx.getLastCycle()).length);
+			assertEquals(0, idx.getMemoryWrites(0, 0, idx.getLastCycle()).length);
+			assertEquals(6, idx.getRegisterWrites(8, 0, idx.getLastCycle()).length);
+
+			int last = idx.findLastCycleInStage(8, TraceReader.STAGE_WB, idx.getLastCycle());
+			assertEquals(8, idx.getInstructionIndex(TraceReader.STAGE_WB, last));
+			assertEquals(-1, idx.findLastCycleInStage(8, TraceReader.STAGE_WB, last - 1));
+		}
+	}
+
+	@Test
+	public void testStepBack() throws Exception {
+		CPU cpu = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		cpu.assembleCode("loop: addi $t0, $t0, 1\n sw $t0, 0($zero)\n j loop\n");
+		TraceIndex index = TraceIndex.record(cpu);
+		for(int i = 0; i < 3000; i++)
+			cpu.executeCycle();
+		assertEquals(1000, index.getRegister(8, 3000));
+
+		for(int i = 0; i < 1500; i++)
+			cpu.restorePreviousCycle();
+		cpu.getRegBank().setRegister(8, 100);
+		for(int i = 0; i < 3; i++)
+			cpu.executeCycle();
+		assertEquals(1503, index.getLastCycle());
+		assertEquals(101, index.getRegister(8, 1503));
+		assertEquals(500, index.getRegister(8, 1500));
+		assertEquals(501, index.getRegisterWrites(8, 0, 1503).length);
+
+		int[] r = new int[index.getNumberOfRegisters()];
+		index.getRegisters(1503, r);
+		assertEquals(101, r[8]);
+
+		cpu.resetToFirstCycle();
+		cpu.executeCycle();
+		assertEquals(1, index.getLastCycle());
+		assertEquals(1, index.getRegister(8, 1));
+		index.stop();
+	}
+}
@@ -0,0 +1,100 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator.trace;
+
+import brunonova.drmips.simulator.CPU;
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class TraceRecorderTest {
+	private static final String CODE = "addi $t0, $zero, 5\n"
+		+ "loop: lw $t1, 0($t2)\n"
+		+ "add $t1, $t1, $t0\n"
+		+ "sw $t1, 4($t2)\n"
+		+ "addi $t2, $t2, 4\n"
+		+ "addi $t0, $t0, -1\n"
+		+ "beq $t0, $zero, end\n"
+		+ "beq $zero, $zero, loop\n"
+		+ "end: add $t3, $t1, $t1\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPipeline() throws Exception {
+		File file = folder.newFile("pipeline.trace");
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		cpu.assembleCode(CODE);
+		try(TraceRecorder recorder = new TraceRecorder(cpu, file)) {
+			cpu.executeAll(0, 0, null);
+			assertEquals(cpu.getNumberOfExecutedCycles(), recorder.getRecordedCycles());
+		}
+
+		// Compare with the same program executed step by step
+		CPU replay = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		replay.assembleCode(CODE);
+		int forwards = 0, stalls = 0;
+		try(TraceReader reader = new TraceReader(file)) {
+			assertTrue(reader.isPipeline());
+			assertEquals(0, reader.getInitialCycle());
+			while(reader.next()) {
+				replay.executeCycle();
+				assertEquals(replay.getNumberOfExecutedCycles(), reader.getCycle());
+				assertEquals(replay.getPC().getAddress().getValue(), reader.getPCAddress());
+				assertEquals(replay.getIdExReg().getCurrentInstructionIndex(), reader.getInstructionIndex(TraceReader.STAGE_EX));
+				assertEquals(replay.getMemWbReg().getCurrentInstructionIndex(), reader.getInstructionIndex(TraceReader.STAGE_WB));
+				for(int i = 0; i < reader.getNumberOfRegisters(); i++)
+					assertEquals(replay.getRegBank().getRegisterValue(i), reader.getRegister(i));
+				for(int i = 0; i < reader.getMemorySize(); i++)
+					assertEquals(replay.getDataMemory().getDataInIndex(i), reader.getMemory(i));
+				forwards += reader.getForwards();
+				if(reader.isStall()) stalls++;
+			}
+			assertTrue(replay.isProgramFinished());
+		}
+		assertEquals(cpu.getNumberOfForwards(), forwards);
+		assertEquals(cpu.getNumberOfStalls(), stalls);
+	}
+
+	@Test
+	public void testLongRun() throws Exception {
+		File file = folder.newFile("unicycle.trace");
+		CPU cpu = CPU.createFromJSONFile("cpu/unicycle.cpu");
+		cpu.setHistoryEnabled(false);
+		cpu.assembleCode("loop: addi $t0, $t0, 1\n sw $t0, 0($zero)\n j loop\n");
+		try(TraceRecorder recorder = new TraceRecorder(cpu, file)) {
+			cpu.executeAll(300000, 0, null);
+			assertEquals(300000, recorder.getRecordedCycles());
+		}
+		assertFalse(cpu.hasPreviousCycle());
+		assertTrue(file.length() < 300000 * 5);
+
+		int cycles = 0;
+		try(TraceReader reader = new TraceReader(file)) {
+			while(reader.next())
+				cycles++;
+			assertEquals(100000, reader.getRegister(8));
+			assertEquals(100000, reader.getMemory(0));
+			assertEquals(0, reader.getPCAddress());
+		}
+		assertEquals(300000, cycles);
+	}
+}
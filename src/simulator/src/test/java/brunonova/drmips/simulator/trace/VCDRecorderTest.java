@@ -0,0 +1,104 @@
+/*
+    DrMIPS - Educational MIPS simulator
+    Copyright (C) 2013-2015 Bruno Nova <brunomb.nova@gmail.com>
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package brunonova.drmips.simulator.trace;
+
+import brunonova.drmips.simulator.CPU;
+import brunonova.drmips.simulator.Component;
+import brunonova.drmips.simulator.Output;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class VCDRecorderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPipeline() throws Exception {
+		File file = folder.newFile("pipeline.vcd");
+		CPU cpu = CPU.createFromJSONFile("cpu/pipeline.cpu");
+		cpu.assembleCode("addi $t0, $zero, 5\n"
+			+ "loop: addi $t0, $t0, -1\n"
+			+ "sw $t0, 0($zero)\n"
+			+ "beq $t0, $zero, end\n"
+			+ "beq $zero, $zero, loop\n"
+			+ "end: add $t1, $t0, $t0\n");
+		int signals = 0;
+		for(Component c: cpu.getComponents())
+			signals += c.getOutputs().size();
+
+		// Check each cycle against the values of the outputs in the CPU
+		Map<Long, Map<String, Integer>> expected = new HashMap<>();
+		try(VCDRecorder recorder = new VCDRecorder(cpu, file)) {
+			assertEquals(signals, recorder.getNumberOfSignals());
+			long period = Math.max(1, cpu.getClockPeriod());
+			expected.put(0L, outputValues(cpu));
+			while(!cpu.isProgramFinished()) {
+				cpu.executeCycle();
+				expected.put(cpu.getNumberOfExecutedCycles() * period, outputValues(cpu));
+			}
+			assertEquals(cpu.getNumberOfExecutedCycles(), recorder.getRecordedCycles());
+		}
+
+		Map<String, String> names = new HashMap<>();
+		Map<String, Integer> values = new HashMap<>();
+		long time = -1;
+		boolean definitions = true;
+		int timestamps = 0;
+		for(String line: Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+			if(definitions) {
+				if(line.startsWith("$var wire ")) {
+					String[] parts = line.split(" ");
+					names.put(parts[3], parts[4]);
+				}
+				else if(line.equals("$enddefinitions $end"))
+					definitions = false;
+			}
+			else if(line.startsWith("#")) {
+				if(time >= 0 && expected.containsKey(time))
+					assertEquals("time " + time, expected.get(time), values);
+				time = Long.parseLong(line.substring(1));
+				timestamps++;
+			}
+			else if(line.startsWith("b")) {
+				String[] parts = line.split(" ");
+				values.put(names.get(parts[1]), (int)Long.parseLong(parts[0].substring(1), 2));
+			}
+			else if(line.startsWith("0") || line.startsWith("1"))
+				values.put(names.get(line.substring(1)), line.charAt(0) - '0');
+		}
+		assertEquals(signals, names.size());
+		assertTrue(names.containsValue("RegBank:ReadData1"));
+		assertTrue(timestamps > 2);
+	}
+
+	private static Map<String, Integer> outputValues(CPU cpu) {
+		Map<String, Integer> values = new HashMap<>();
+		for(Component c: cpu.getComponents()) {
+			for(Output o: c.getOutputs())
+				values.put(c.getId() + ":" + o.getId(), o.getValue());
+		}
+		return values;
+	}
+}